@@ -0,0 +1,347 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategy for turning a key's hash code into a bucket index, and for
+ * choosing the table sizes the index function works with.
+ *
+ * <p>
+ * Four strategies are provided:
+ * <ul>
+ * <li>{@link Modulus}: the hash code mod the table size asked for, as
+ * {@code Map4} has always done; the default of {@code Map4}.</li>
+ * <li>{@link PrimeModulus}: the hash code mod a prime table size; the
+ * distribution depends on the prime to break up regular patterns in the
+ * hash codes.</li>
+ * <li>{@link MixedMask}: the hash code's bits are mixed and the low bits are
+ * kept with a mask over a power-of-two table size; this avoids the integer
+ * division and does not depend on the quality of the low bits of
+ * {@code hashCode}.</li>
+ * <li>{@link Seeded}: like {@code MixedMask}, but the mix depends on a
+ * per-instance random seed, so someone who knows the hash codes of their
+ * keys cannot choose keys that all land in the same bucket. Keys whose hash
+ * codes are equal still collide; {@code Map4} bounds that case with tree
+ * buckets.</li>
+ * </ul>
+ *
+ * @author Kierra Smith
+ *
+ */
+public interface HashStrategy {
+
+    /**
+     * Largest table size that {@code grownTableSize} grows to.
+     */
+    int MAX_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Reports the table size to use when {@code requested} buckets are asked
+     * for.
+     *
+     * @param requested
+     *            the requested number of buckets
+     * @return the table size this strategy works with
+     * @requires requested > 0
+     * @ensures tableSize >= requested
+     */
+    int tableSize(int requested);
+
+    /**
+     * Reports the table size to grow to from a table of {@code tableSize}
+     * buckets, which is {@code tableSize} itself once the table cannot grow
+     * without passing {@code MAX_TABLE_SIZE}.
+     *
+     * @param tableSize
+     *            the number of buckets
+     * @return the grown table size
+     * @requires tableSize = [a value returned by this.tableSize]
+     * @ensures <pre>
+     * [grownTableSize is a value returned by this.tableSize]  and
+     * if 2 * tableSize <= MAX_TABLE_SIZE then
+     *   grownTableSize > tableSize
+     * else
+     *   grownTableSize = tableSize
+     * </pre>
+     */
+    default int grownTableSize(int tableSize) {
+        int grown = tableSize;
+        if (tableSize <= MAX_TABLE_SIZE / 2) {
+            grown = this.tableSize(2 * tableSize);
+        }
+        return grown;
+    }
+
+    /**
+     * Reports the bucket index for hash code {@code hashCode} in a table of
+     * {@code tableSize} buckets.
+     *
+     * @param hashCode
+     *            the key's hash code
+     * @param tableSize
+     *            the number of buckets
+     * @return the bucket index
+     * @requires tableSize = [a value returned by this.tableSize]
+     * @ensures 0 <= index < tableSize
+     */
+    int index(int hashCode, int tableSize);
+
+    /**
+     * Reports whether {@code obj} is a strategy that gives the same table
+     * sizes and bucket indices as {@code this}, so that two tables of the same
+     * size using the two strategies place every key in the same bucket.
+     *
+     * @param obj
+     *            the object to compare with
+     * @return true iff {@code obj} is an equivalent strategy
+     */
+    @Override
+    boolean equals(Object obj);
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return the hash code
+     */
+    @Override
+    int hashCode();
+
+    /**
+     * Hash code mod a table size that is exactly the size asked for.
+     */
+    final class Modulus implements HashStrategy {
+
+        /**
+         * Reports {@code hashCode} mod {@code tableSize}, in the range
+         * [0, tableSize) even for a negative hash code.
+         *
+         * @param hashCode
+         *            the hash code
+         * @param tableSize
+         *            the number of buckets
+         * @return the bucket index
+         * @requires tableSize > 0
+         * @ensures 0 <= mod < tableSize
+         */
+        static int mod(int hashCode, int tableSize) {
+            int result = hashCode % tableSize;
+            if (result < 0) {
+                result = result + tableSize;
+            }
+            return result;
+        }
+
+        @Override
+        public int tableSize(int requested) {
+            assert requested > 0 : "Violation of: requested > 0";
+            return requested;
+        }
+
+        @Override
+        public int grownTableSize(int tableSize) {
+            int grown = tableSize;
+            if (tableSize <= MAX_TABLE_SIZE / 2) {
+                //keep an odd size odd, so that halving it gives the old size
+                grown = 2 * tableSize + 1;
+            }
+            return grown;
+        }
+
+        @Override
+        public int index(int hashCode, int tableSize) {
+            return mod(hashCode, tableSize);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Modulus;
+        }
+
+        @Override
+        public int hashCode() {
+            return Modulus.class.hashCode();
+        }
+
+    }
+
+    /**
+     * Hash code mod a prime table size.
+     */
+    final class PrimeModulus implements HashStrategy {
+
+        /**
+         * Reports whether {@code n} is prime.
+         *
+         * @param n
+         *            the number to check
+         * @return true iff {@code n} is prime
+         */
+        private static boolean isPrime(int n) {
+            boolean prime = n >= 2;
+            for (int d = 2; prime && (long) d * d <= n; d++) {
+                prime = n % d != 0;
+            }
+            return prime;
+        }
+
+        @Override
+        public int tableSize(int requested) {
+            assert requested > 0 : "Violation of: requested > 0";
+            /*
+             * A single bucket is allowed as a degenerate table; otherwise use
+             * the next prime, which leaves the sizes 101 and 1009 unchanged
+             */
+            int size = requested;
+            if (size > 1) {
+                while (!isPrime(size)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public int index(int hashCode, int tableSize) {
+            return Modulus.mod(hashCode, tableSize);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PrimeModulus;
+        }
+
+        @Override
+        public int hashCode() {
+            return PrimeModulus.class.hashCode();
+        }
+
+    }
+
+    /**
+     * Bit-mixed hash code masked to a power-of-two table size.
+     */
+    final class MixedMask implements HashStrategy {
+
+        /**
+         * Rounds {@code requested} up to a power of 2.
+         *
+         * @param requested
+         *            the requested number of buckets
+         * @return the smallest power of 2 that is at least {@code requested}
+         * @requires 0 < requested <= MAX_TABLE_SIZE
+         */
+        static int powerOfTwoAtLeast(int requested) {
+            assert requested > 0 : "Violation of: requested > 0";
+            assert requested <= MAX_TABLE_SIZE : ""
+                    + "Violation of: requested <= MAX_TABLE_SIZE";
+            int size = 1;
+            while (size < requested) {
+                size = size << 1;
+            }
+            return size;
+        }
+
+        /**
+         * Mixes the bits of {@code h} (the finalizer of MurmurHash3) so that
+         * every output bit depends on every input bit.
+         *
+         * @param h
+         *            the value to mix
+         * @return the mixed value
+         */
+        static int mix(int h) {
+            int x = h;
+            x ^= x >>> 16;
+            x *= 0x85EBCA6B;
+            x ^= x >>> 13;
+            x *= 0xC2B2AE35;
+            x ^= x >>> 16;
+            return x;
+        }
+
+        @Override
+        public int tableSize(int requested) {
+            return powerOfTwoAtLeast(requested);
+        }
+
+        @Override
+        public int index(int hashCode, int tableSize) {
+            return mix(hashCode) & (tableSize - 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof MixedMask;
+        }
+
+        @Override
+        public int hashCode() {
+            return MixedMask.class.hashCode();
+        }
+
+    }
+
+    /**
+     * Hash code mixed with a per-instance random seed, masked to a
+     * power-of-two table size.
+     */
+    final class Seeded implements HashStrategy {
+
+        /**
+         * Seed combined with every hash code.
+         */
+        private final int seed;
+
+        /**
+         * Constructor with a fresh random seed.
+         */
+        public Seeded() {
+            this(ThreadLocalRandom.current().nextInt());
+        }
+
+        /**
+         * Constructor from seed, for reproducible runs.
+         *
+         * @param seed
+         *            the seed
+         */
+        public Seeded(int seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Reports the seed, so that a table laid out with this strategy can be
+         * saved and read back.
+         *
+         * @return the seed
+         */
+        int seed() {
+            return this.seed;
+        }
+
+        @Override
+        public int tableSize(int requested) {
+            return MixedMask.powerOfTwoAtLeast(requested);
+        }
+
+        @Override
+        public int index(int hashCode, int tableSize) {
+            /*
+             * Mixing twice around the seed means the bucket of a key cannot
+             * be predicted from its hash code without knowing the seed
+             */
+            return MixedMask.mix(MixedMask.mix(hashCode ^ this.seed)
+                    + this.seed) & (tableSize - 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Seeded && ((Seeded) obj).seed == this.seed;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.seed;
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+import components.set.Set;
+import components.set.Set1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the {@code HashStrategy} implementations on the words of a text
+ * file: how evenly each spreads the distinct words over the buckets, and how
+ * fast {@code Map4} counts all the words with each.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class HashStrategyBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private HashStrategyBenchmark() {
+    }
+
+    /**
+     * Load factor used for both the distribution and the throughput runs.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Number of times the word list is counted for the throughput run.
+     */
+    private static final int REPETITIONS = 50;
+
+    /**
+     * Characters that separate words.
+     */
+    private static final String SEPARATORS = " \t\n\r,.-;:!?\"'()[]{}<>_*";
+
+    /**
+     * Reads every word of the file {@code fileName}, in lower case.
+     *
+     * @param fileName
+     *            the name of the text file
+     * @return the words, in order, including repeats
+     */
+    private static String[] readWords(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        StringBuilder all = new StringBuilder();
+        while (!file.atEOS()) {
+            all.append(file.nextLine().toLowerCase()).append(' ');
+        }
+        file.close();
+        java.util.List<String> words = new java.util.ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= all.length(); i++) {
+            boolean separator = i == all.length()
+                    || SEPARATORS.indexOf(all.charAt(i)) >= 0;
+            if (separator && start >= 0) {
+                words.add(all.substring(start, i));
+                start = -1;
+            } else if (!separator && start < 0) {
+                start = i;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Reports how the distinct words spread over a table sized for them by
+     * {@code strategy}.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the strategy name
+     * @param strategy
+     *            the strategy
+     * @param distinct
+     *            the distinct words
+     */
+    private static void reportDistribution(SimpleWriter out, String name,
+            HashStrategy strategy, Set<String> distinct) {
+        int tableSize = strategy
+                .tableSize((int) Math.ceil(distinct.size() / LOAD_FACTOR));
+        int[] counts = new int[tableSize];
+        for (String word : distinct) {
+            counts[strategy.index(word.hashCode(), tableSize)]++;
+        }
+        int empty = 0;
+        int max = 0;
+        long sumOfSquares = 0;
+        for (int c : counts) {
+            if (c == 0) {
+                empty++;
+            }
+            max = Math.max(max, c);
+            sumOfSquares += (long) c * c;
+        }
+        /*
+         * Average number of keys compared by a successful lookup; a perfectly
+         * random spread gives about 1 + load / 2
+         */
+        double probes = 0.5 + (double) sumOfSquares / (2.0 * distinct.size());
+        out.println(String.format("%-13s %9d %8.1f%% %6d %8.3f", name,
+                tableSize, 100.0 * empty / tableSize, max, probes));
+    }
+
+    /**
+     * Returns the nanoseconds per word taken to count {@code words} in a
+     * resizing {@code Map4} using {@code strategy}.
+     *
+     * @param strategy
+     *            the strategy
+     * @param words
+     *            the words to count
+     * @return nanoseconds per word
+     */
+    private static double timeCounting(HashStrategy strategy,
+            String[] words) {
+        long start = System.nanoTime();
+        long total = 0;
+        for (int r = 0; r < REPETITIONS; r++) {
+            Map4<String, Integer> counts = new Map4<>(1, LOAD_FACTOR, 8,
+                    strategy);
+            for (String word : words) {
+                Map4.increment(counts, word, 1);
+            }
+            total += counts.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (total < 0) {
+            throw new AssertionError("Unexpected negative total");
+        }
+        return (double) elapsed / ((long) REPETITIONS * words.length);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the first, if any, is the name
+     *            of the text file
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        String fileName;
+        if (args.length > 0) {
+            fileName = args[0];
+        } else {
+            out.print("Enter the name of a text file: ");
+            fileName = in.nextLine();
+        }
+        String[] words = readWords(fileName);
+        Set<String> distinct = new Set1L<>();
+        for (String word : words) {
+            if (!distinct.contains(word)) {
+                distinct.add(word);
+            }
+        }
+        String[] names = { "modulus", "prime modulus", "mixed mask",
+            "seeded" };
+        HashStrategy[] strategies = { new HashStrategy.Modulus(),
+            new HashStrategy.PrimeModulus(), new HashStrategy.MixedMask(),
+            new HashStrategy.Seeded() };
+        out.println(words.length + " words, " + distinct.size()
+                + " distinct");
+        out.println();
+        out.println("strategy         buckets   empty    max   probes");
+        for (int i = 0; i < strategies.length; i++) {
+            reportDistribution(out, names[i], strategies[i], distinct);
+        }
+        out.println();
+        //first pass warms up the JIT for all strategies
+        for (HashStrategy strategy : strategies) {
+            timeCounting(strategy, words);
+        }
+        out.println("strategy      ns/word");
+        for (int i = 0; i < strategies.length; i++) {
+            out.println(String.format("%-13s %7.1f", names[i],
+                    timeCounting(strategies[i], words)));
+        }
+        in.close();
+        out.close();
+    }
+
+}
@@ -1,5 +1,14 @@
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import components.map.Map;
 import components.map.Map2;
@@ -9,29 +18,95 @@ import components.map.MapSecondary;
  * {@code Map} represented as a hash table using {@code Map}s for the buckets,
  * with implementations of primary methods.
  *
+ * <p>
+ * A bucket is normally a {@code Map2}, whose lookups are linear in the length
+ * of its chain. When a bucket of the current table grows past the treeify
+ * threshold and all of its keys are {@code Comparable} instances of one
+ * class that {@code compareTo} tells apart, it is converted to a tree bucket
+ * ordered by hash code and then by {@code compareTo}, whose lookups are
+ * logarithmic; it is converted back to a {@code Map2} once it shrinks below
+ * three quarters of the threshold, or when a key it cannot order arrives:
+ * one of another class, or one that {@code compareTo} ranks as equal to a
+ * key of the bucket without being {@code equals} to it.
+ *
+ * <p>
+ * Storage is allocated lazily: the table itself, with the two {@code int}
+ * arrays of its occupancy index, is not allocated until the first key is
+ * added, and a bucket is not allocated until it gets its first key and is
+ * dropped again when it becomes empty. So constructing, clearing, and
+ * transferring from a {@code Map4} take constant time whatever its table
+ * size.
+ *
+ * <p>
+ * Statistics about hashing and bucket occupancy can be turned on with
+ * {@link #enableStatistics()}; see {@link Map4Stats}.
+ *
  * @param <K>
  *            type of {@code Map} domain (key) entries
  * @param <V>
  *            type of {@code Map} range (associated value) entries
+ * @mathdefinitions <pre>
+ * LIVE_BUCKETS (
+ *   m: Map4 representation
+ *  ) : finite set of PARTIAL_FUNCTION is
+ *  [the buckets $this.hashTable[i, i+1) for 0 <= i < |$this.hashTable|,
+ *   together with, if $this.oldTable /= null, the buckets
+ *   $this.oldTable[i, i+1) for $this.rehashIndex <= i < |$this.oldTable|,
+ *   where a null entry of either table is an empty bucket; or no buckets
+ *   at all if $this.hashTable = null]
+ * </pre>
  * @convention <pre>
+ * if $this.hashTable = null then
+ *   [the table has not been allocated yet]  and
+ *   $this.oldTable = null  and  $this.liveCount = 0  and  $this.size = 0
+ * else [all of the following hold]
  * |$this.hashTable| > 0  and
  * for all i: integer, pf: PARTIAL_FUNCTION, x: K
  *     where (0 <= i  and  i < |$this.hashTable|  and
  *            <pf> = $this.hashTable[i, i+1)  and
  *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable| = i))  and
+ *   ($this.hashStrategy.index([computed result of x.hashCode()],
+ *                             |$this.hashTable|) = i))  and
  * for all i: integer
  *     where (0 <= i  and  i < |$this.hashTable|)
- *   ([entry at position i in $this.hashTable is not null])  and
- * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
+ *   ([entry at position i in $this.hashTable is null iff
+ *     $this.hashTable[i, i+1) = <{}>])  and
+ * if $this.oldTable /= null then
+ *   0 <= $this.rehashIndex <= |$this.oldTable|  and
+ *   $this.rehashRate > 0  and
+ *   for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ *       where ($this.rehashIndex <= i  and  i < |$this.oldTable|  and
+ *              <pf> = $this.oldTable[i, i+1)  and
+ *              x is in DOMAIN(pf))
+ *     ($this.hashStrategy.index([computed result of x.hashCode()],
+ *                               |$this.oldTable|) = i))  and
+ *   [the domains of the buckets in LIVE_BUCKETS($this) are pairwise
+ *    disjoint]  and
+ * $this.loadFactor >= 0  and
+ * [|$this.hashTable| and, if $this.oldTable /= null, |$this.oldTable| are
+ *  table sizes returned by $this.hashStrategy.tableSize]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.hashTable|)
+ *   ([$this.hashTable[i] is null, a Map2, or a TreeBucket]  and
+ *    if [$this.hashTable[i] is a TreeBucket] then
+ *      [all keys in $this.hashTable[i] are of its key class])  and
+ * |$this.liveIndex| = |$this.hashTable|  and
+ * 0 <= $this.liveCount <= |$this.liveBuckets| = |$this.hashTable|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.liveCount)
+ *   ($this.hashTable[$this.liveBuckets[i], $this.liveBuckets[i]+1) /= <{}>
+ *    and  $this.liveIndex[$this.liveBuckets[i]] = i)  and
+ * for all i: integer
  *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1))
+ *            $this.hashTable[i, i+1) = <{}>)
+ *   ($this.liveIndex[i] = -1)  and
+ * $this.size = sum pf: PARTIAL_FUNCTION
+ *     where (pf is in LIVE_BUCKETS($this))
  *   (|pf|)
  * </pre>
  * @correspondence <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
- *            where (0 <= i  and  i < |$this.hashTable|  and
- *                   <pf> = $this.hashTable[i, i+1))
+ * this = union pf: PARTIAL_FUNCTION
+ *            where (pf is in LIVE_BUCKETS($this))
  *          (pf)
  * </pre>
  *
@@ -41,220 +116,2074 @@ import components.map.MapSecondary;
 public class Map4<K, V> extends MapSecondary<K, V> {
 
     /*
-     * Private members --------------------------------------------------------
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Least number of old-table buckets moved into the new table by each
+     * mutating operation while an incremental rehash is in progress.
+     */
+    private static final int REHASH_BUCKETS_PER_OPERATION = 4;
+
+    /**
+     * Factor applied to the load factor to get the load below which a
+     * resizing table shrinks.
+     */
+    private static final int SHRINK_DIVISOR = 4;
+
+    /**
+     * Default bucket size above which a bucket becomes a tree.
+     */
+    private static final int DEFAULT_TREEIFY_THRESHOLD = 8;
+
+    /**
+     * Fraction of the treeify threshold below which a tree bucket becomes a
+     * {@code Map2} again; the gap keeps a bucket from converting back and
+     * forth on every add and remove.
+     */
+    private static final double UNTREEIFY_FRACTION = 0.75;
+
+    /**
+     * Number of buckets at or below which {@code mergeFrom} merges a range of
+     * buckets in one task rather than splitting it.
+     */
+    private static final int MERGE_GRAIN = 4096;
+
+    /**
+     * Index, in the counts kept by a merge task, of the change in size.
+     */
+    private static final int SIZE_CHANGE = 0;
+
+    /**
+     * Index, in the counts kept by a merge task, of the number of buckets
+     * converted to trees.
+     */
+    private static final int TREEIFIED = 1;
+
+    /**
+     * Index, in the counts kept by a merge task, of the number of tree
+     * buckets converted back to {@code Map2}s.
+     */
+    private static final int UNTREEIFIED = 2;
+
+    /**
+     * Number of counts kept by a merge task.
+     */
+    private static final int MERGE_COUNTS = 3;
+
+    /**
+     * Buckets for hashing, with {@code null} for an empty bucket, or
+     * {@code null} until the first key is added.
+     */
+    private Map<K, V>[] hashTable;
+
+    /**
+     * Indices of the non-empty buckets of {@code hashTable}, in the first
+     * {@code liveCount} positions.
+     */
+    private int[] liveBuckets;
+
+    /**
+     * Position of each bucket of {@code hashTable} in {@code liveBuckets}, or
+     * -1 for an empty bucket.
+     */
+    private int[] liveIndex;
+
+    /**
+     * Number of non-empty buckets of {@code hashTable}.
+     */
+    private int liveCount;
+
+    /**
+     * Buckets of the table being rehashed into {@code hashTable}, or
+     * {@code null} when no rehash is in progress.
+     */
+    private Map<K, V>[] oldTable;
+
+    /**
+     * Index of the next bucket of {@code oldTable} to be rehashed.
+     */
+    private int rehashIndex;
+
+    /**
+     * Number of buckets of {@code oldTable} moved by each mutating operation,
+     * chosen when the rehash starts so that it ends before the size can
+     * reach the next resize.
+     */
+    private int rehashRate;
+
+    /**
+     * Hash table size requested at construction; a resizing table never
+     * shrinks below it.
+     */
+    private int initialTableSize;
+
+    /**
+     * Maximum ratio of size to buckets before the table grows, or 0 if the
+     * table never changes size.
+     */
+    private double loadFactor;
+
+    /**
+     * Maps hash codes to bucket indices and picks table sizes.
+     */
+    private HashStrategy hashStrategy;
+
+    /**
+     * Bucket size above which a bucket becomes a tree, or 0 if buckets never
+     * become trees.
+     */
+    private int treeifyThreshold;
+
+    /**
+     * Number of buckets converted to trees since {@code this} was created or
+     * cleared.
+     */
+    private long treeifyCount;
+
+    /**
+     * Number of tree buckets converted back to {@code Map2}s since
+     * {@code this} was created or cleared.
+     */
+    private long untreeifyCount;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Statistics gathered about {@code this}, or {@code null} if statistics
+     * are disabled.
+     */
+    private Map4Stats stats;
+
+    /**
+     * Bucket for a long chain: a {@code Map} whose keys, all
+     * {@code Comparable} instances of one class, are kept in a balanced tree
+     * ordered by hash code and then by {@code compareTo}. The tree can only
+     * hold keys that this order tells apart, so a key that {@code compareTo}
+     * ranks as equal to a key of the bucket without being {@code equals} to
+     * it is not accepted, and lookups check {@code equals} on the key found.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @convention <pre>
+     * [$this.keyClass implements Comparable]  and
+     * [all keys in $this.tree are of class $this.keyClass]  and
+     * [no two keys in $this.tree are equal by compareKeys]
+     * </pre>
+     * @correspondence this = $this.tree
+     */
+    private static final class TreeBucket<K, V> extends MapSecondary<K, V> {
+
+        /**
+         * Class of every key in the bucket.
+         */
+        private final Class<?> keyClass;
+
+        /**
+         * Entries, ordered by hash code and then by {@code compareTo}.
+         */
+        private TreeMap<K, V> tree;
+
+        /**
+         * Orders keys by hash code and then by {@code compareTo}; hash codes
+         * are compared first so that keys whose {@code compareTo} is costly
+         * but whose hash codes differ are told apart cheaply.
+         *
+         * @param a
+         *            one key
+         * @param b
+         *            the other key
+         * @return negative, zero, or positive as {@code a} is before, equal
+         *         to, or after {@code b}
+         * @requires [a and b are Comparable instances of the same class]
+         */
+        @SuppressWarnings("unchecked")
+        private static int compareKeys(Object a, Object b) {
+            int result = Integer.compare(a.hashCode(), b.hashCode());
+            if (result == 0) {
+                result = ((Comparable<Object>) a).compareTo(b);
+            }
+            return result;
+        }
+
+        /**
+         * Constructor from key class.
+         *
+         * @param keyClass
+         *            the class of every key to be added
+         * @requires [keyClass implements Comparable]
+         */
+        TreeBucket(Class<?> keyClass) {
+            this.keyClass = keyClass;
+            this.tree = new TreeMap<K, V>(TreeBucket::compareKeys);
+        }
+
+        /**
+         * Reports whether {@code key} is of the key class of this bucket, and
+         * so can be compared with its keys.
+         *
+         * @param key
+         *            the key
+         * @return true iff {@code key} is of the key class of this bucket
+         */
+        private boolean isOfKeyClass(Object key) {
+            return key.getClass() == this.keyClass;
+        }
+
+        /**
+         * Reports whether {@code key}, which is not in this bucket, can be
+         * added to it: it must be of the key class, and no key of the bucket
+         * may have the same hash code and a {@code compareTo} of 0 with it.
+         *
+         * @param key
+         *            the key
+         * @return true iff {@code key} can be added to this bucket
+         * @requires key is not in DOMAIN(this)
+         */
+        boolean accepts(K key) {
+            return this.isOfKeyClass(key) && !this.tree.containsKey(key);
+        }
+
+        /**
+         * Returns the entry of the tree for {@code key}, or {@code null} if
+         * {@code key} is not in this bucket, with one descent of the tree.
+         *
+         * @param key
+         *            the key
+         * @return the entry whose key equals {@code key}, or {@code null}
+         */
+        private java.util.Map.Entry<K, V> entryOf(K key) {
+            java.util.Map.Entry<K, V> e = null;
+            /*
+             * A key of another class cannot be compared with the keys here,
+             * and cannot be equal to any of them either; a key that compares
+             * as equal to one here may still not be equal to it
+             */
+            if (this.isOfKeyClass(key)) {
+                e = this.tree.floorEntry(key);
+                if (e != null && !e.getKey().equals(key)) {
+                    e = null;
+                }
+            }
+            return e;
+        }
+
+        @Override
+        public Map<K, V> newInstance() {
+            return new TreeBucket<K, V>(this.keyClass);
+        }
+
+        @Override
+        public void clear() {
+            this.tree = new TreeMap<K, V>(TreeBucket::compareKeys);
+        }
+
+        @Override
+        public void transferFrom(Map<K, V> source) {
+            assert source instanceof TreeBucket<?, ?> : ""
+                    + "Violation of: source is of dynamic type TreeBucket<?,?>";
+            TreeBucket<K, V> localSource = (TreeBucket<K, V>) source;
+            assert localSource.keyClass == this.keyClass : ""
+                    + "Violation of: source has the same key class";
+            this.tree = localSource.tree;
+            localSource.clear();
+        }
+
+        @Override
+        public void add(K key, V value) {
+            assert this.accepts(key) : ""
+                    + "Violation of: key can be ordered among the keys here";
+            this.tree.put(key, value);
+        }
+
+        @Override
+        public Pair<K, V> remove(K key) {
+            return new MapPair<K, V>(key, this.tree.remove(key));
+        }
+
+        @Override
+        public Pair<K, V> removeAny() {
+            java.util.Map.Entry<K, V> e = this.tree.pollLastEntry();
+            return new MapPair<K, V>(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public V value(K key) {
+            return this.tree.get(key);
+        }
+
+        @Override
+        public V replaceValue(K key, V value) {
+            //one descent of the tree rather than a remove and an add
+            return this.tree.put(key, value);
+        }
+
+        /**
+         * Reports the value of {@code key}, or {@code null} if it is not in
+         * this bucket, with one descent of the tree.
+         *
+         * @param key
+         *            the key
+         * @return the value of {@code key}, or {@code null}
+         * @ensures <pre>
+         * if key is in DOMAIN(this) then valueOrNull = this(key)
+         * else valueOrNull = null
+         * </pre>
+         */
+        V valueOrNull(K key) {
+            java.util.Map.Entry<K, V> e = this.entryOf(key);
+            V result = null;
+            if (e != null) {
+                result = e.getValue();
+            }
+            return result;
+        }
+
+        @Override
+        public boolean hasKey(K key) {
+            return this.entryOf(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return this.tree.size();
+        }
+
+        @Override
+        public Iterator<Pair<K, V>> iterator() {
+            Iterator<java.util.Map.Entry<K, V>> entries = this.tree.entrySet()
+                    .iterator();
+            return new Iterator<Pair<K, V>>() {
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Pair<K, V> next() {
+                    java.util.Map.Entry<K, V> e = entries.next();
+                    return new MapPair<K, V>(e.getKey(), e.getValue());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException(
+                            "remove operation not supported");
+                }
+
+            };
+        }
+
+    }
+
+    /**
+     * Counts an operation if statistics are enabled.
+     */
+    private void countOperation() {
+        if (this.stats != null) {
+            this.stats.recordOperation();
+        }
+    }
+
+    /**
+     * Counts a hash code computation if statistics are enabled.
+     */
+    private void countHash() {
+        if (this.stats != null) {
+            this.stats.recordHash();
+        }
+    }
+
+    /**
+     * Counts the key comparisons of a search of {@code bucket} if statistics
+     * are enabled: the length of the chain for a {@code Map2}, or the depth
+     * of the tree for a tree bucket.
+     *
+     * @param bucket
+     *            the bucket searched, or {@code null} for an empty bucket
+     */
+    private void countSearch(Map<K, V> bucket) {
+        if (this.stats != null && bucket != null) {
+            int comparisons = bucket.size();
+            if (bucket instanceof TreeBucket<?, ?>) {
+                comparisons = Integer.SIZE
+                        - Integer.numberOfLeadingZeros(comparisons);
+            }
+            this.stats.recordComparisons(comparisons);
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the size of the hash table
+     * @param maxLoad
+     *            the load factor, or 0 for a table that never changes size
+     * @param treeifyAbove
+     *            the treeify threshold, or 0 for buckets that never become
+     *            trees
+     * @param strategy
+     *            the hash strategy
+     * @requires hashTableSize > 0  and  maxLoad >= 0  and  treeifyAbove >= 0
+     * @ensures <pre>
+     * $this.hashTable = null  and
+     * $this.liveCount = 0  and  $this.oldTable = null  and
+     * $this.initialTableSize = strategy.tableSize(hashTableSize)  and
+     * $this.loadFactor = maxLoad  and  $this.hashStrategy = strategy  and
+     * $this.treeifyThreshold = treeifyAbove  and  $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize, double maxLoad,
+            int treeifyAbove, HashStrategy strategy) {
+        this.initialTableSize = strategy.tableSize(hashTableSize);
+        this.hashStrategy = strategy;
+        this.loadFactor = maxLoad;
+        this.treeifyThreshold = treeifyAbove;
+        this.resetRep();
+    }
+
+    /**
+     * Resets {@code this} to an empty representation with the same table
+     * size, load factor, treeify threshold, and hash strategy.
+     *
+     * @updates $this
+     * @ensures <pre>
+     * $this.hashTable = null  and
+     * $this.liveCount = 0  and  $this.oldTable = null  and
+     * $this.size = 0  and
+     * [the other fields of $this are unchanged]
+     * </pre>
+     */
+    private void resetRep() {
+        /*
+         * Only fields are set here, so that clearing and transferring from a
+         * map take constant time; the table is allocated by the first add
+         */
+        this.hashTable = null;
+        this.liveBuckets = null;
+        this.liveIndex = null;
+        this.liveCount = 0;
+        this.oldTable = null;
+        this.rehashIndex = 0;
+        this.treeifyCount = 0;
+        this.untreeifyCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Creates and returns a table of empty buckets, each represented by
+     * {@code null}.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param tableSize
+     *            the number of buckets
+     * @return the new table
+     * @requires tableSize > 0
+     * @ensures <pre>
+     * |newTable| = tableSize  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |newTable|)
+     *   (newTable[i] = null)
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newTable(int tableSize) {
+        assert tableSize > 0 : "Violation of: tableSize > 0";
+        /*
+         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
+         * compile; as shown, it results in a warning about an unchecked
+         * conversion, though it cannot fail.
+         */
+        //buckets are allocated by admit when they get their first key
+        return new Map[tableSize];
+    }
+
+    /**
+     * Allocates the table, if it has not been allocated yet.
+     *
+     * @updates $this.hashTable, $this.liveBuckets, $this.liveIndex
+     * @ensures <pre>
+     * if #$this.hashTable = null then
+     *   |$this.hashTable| = $this.initialTableSize  and
+     *   [all buckets of $this.hashTable are empty]
+     * else
+     *   $this.hashTable = #$this.hashTable
+     * </pre>
+     */
+    private void ensureTable() {
+        if (this.hashTable == null) {
+            this.installTable(newTable(this.initialTableSize));
+        }
+    }
+
+    /**
+     * Makes {@code table}, whose buckets must all be empty, the current hash
+     * table, with an empty occupancy index. The index takes two {@code int}
+     * arrays as long as the table, allocated here, so lazy allocation defers
+     * them together with the table but does not avoid them: the first add
+     * to a map, and each resize, allocates the table and both arrays at
+     * once.
+     *
+     * @param table
+     *            the new hash table
+     * @updates $this.hashTable, $this.liveBuckets, $this.liveIndex,
+     *          $this.liveCount
+     * @requires [all buckets of table are empty]
+     * @ensures $this.hashTable = table  and  $this.liveCount = 0
+     */
+    private void installTable(Map<K, V>[] table) {
+        this.hashTable = table;
+        this.liveBuckets = new int[table.length];
+        this.liveIndex = new int[table.length];
+        Arrays.fill(this.liveIndex, -1);
+        this.liveCount = 0;
+    }
+
+    /**
+     * Records that bucket {@code bucket} of {@code this.hashTable} has just
+     * become non-empty.
+     *
+     * @param bucket
+     *            the bucket index
+     * @updates $this.liveBuckets, $this.liveIndex, $this.liveCount
+     * @requires $this.liveIndex[bucket] = -1
+     * @ensures [bucket is recorded in the occupancy index]
+     */
+    private void linkBucket(int bucket) {
+        this.liveIndex[bucket] = this.liveCount;
+        this.liveBuckets[this.liveCount] = bucket;
+        this.liveCount++;
+    }
+
+    /**
+     * Records that bucket {@code bucket} of {@code this.hashTable} has just
+     * become empty, moving the last live bucket into its position.
+     *
+     * @param bucket
+     *            the bucket index
+     * @updates $this.liveBuckets, $this.liveIndex, $this.liveCount
+     * @requires $this.liveIndex[bucket] /= -1
+     * @ensures [bucket is no longer recorded in the occupancy index]
+     */
+    private void unlinkBucket(int bucket) {
+        int position = this.liveIndex[bucket];
+        this.liveCount--;
+        int last = this.liveBuckets[this.liveCount];
+        this.liveBuckets[position] = last;
+        this.liveIndex[last] = position;
+        this.liveIndex[bucket] = -1;
+    }
+
+    /**
+     * Replaces bucket {@code bucket} of {@code this.hashTable} with a
+     * {@code Map} of the same entries represented by {@code replacement}.
+     *
+     * @param bucket
+     *            the bucket index
+     * @param replacement
+     *            an empty bucket to move the entries into
+     * @updates $this.hashTable
+     * @requires replacement = {}
+     * @ensures <pre>
+     * $this.hashTable[bucket, bucket+1) = #$this.hashTable[bucket, bucket+1)
+     * and  [$this.hashTable[bucket] is replacement]
+     * </pre>
+     */
+    private void convertBucket(int bucket, Map<K, V> replacement) {
+        Map<K, V> current = this.hashTable[bucket];
+        while (current.size() > 0) {
+            Pair<K, V> p = current.removeAny();
+            replacement.add(p.key(), p.value());
+        }
+        this.hashTable[bucket] = replacement;
+    }
+
+    /**
+     * Prepares bucket {@code bucket} of {@code this.hashTable} to have
+     * {@code key} added, allocating an empty bucket and turning a tree bucket
+     * that cannot order {@code key} back into a {@code Map2}.
+     *
+     * @param bucket
+     *            the bucket index
+     * @param key
+     *            the key about to be added
+     * @return the bucket, ready for {@code key} to be added
+     * @updates $this.hashTable
+     * @ensures <pre>
+     * $this.hashTable[bucket, bucket+1) = #$this.hashTable[bucket, bucket+1)
+     * and  admit = $this.hashTable[bucket]  and
+     * [key can be added to admit]
+     * </pre>
+     */
+    private Map<K, V> admit(int bucket, K key) {
+        Map<K, V> current = this.hashTable[bucket];
+        if (current == null) {
+            this.hashTable[bucket] = new Map2<K, V>();
+        } else if (current instanceof TreeBucket<?, ?>
+                && !((TreeBucket<K, V>) current).accepts(key)) {
+            this.convertBucket(bucket, new Map2<K, V>());
+            this.untreeifyCount++;
+        }
+        return this.hashTable[bucket];
+    }
+
+    /**
+     * Updates the occupancy index and the bucket representation after the
+     * size of bucket {@code bucket} of {@code this.hashTable} has changed from
+     * {@code oldBucketSize}, dropping the bucket if it is now empty.
+     *
+     * @param bucket
+     *            the bucket index
+     * @param oldBucketSize
+     *            the size of the bucket before the change
+     * @updates $this.hashTable, $this.liveBuckets, $this.liveIndex,
+     *          $this.liveCount
+     * @requires $this.hashTable[bucket] /= null
+     * @ensures <pre>
+     * $this.hashTable[bucket, bucket+1) = #$this.hashTable[bucket, bucket+1)
+     * and  [the occupancy index and the bucket representation satisfy the
+     *       convention]
+     * </pre>
+     */
+    private void bucketResized(int bucket, int oldBucketSize) {
+        Map<K, V> current = this.hashTable[bucket];
+        int newBucketSize = current.size();
+        if (oldBucketSize == 0 && newBucketSize > 0) {
+            this.linkBucket(bucket);
+        } else if (oldBucketSize > 0 && newBucketSize == 0) {
+            this.unlinkBucket(bucket);
+        }
+        if (newBucketSize == 0) {
+            //an empty bucket costs nothing until it gets a key again
+            this.hashTable[bucket] = null;
+        } else {
+            int conversion = this.adaptBucket(bucket, oldBucketSize);
+            if (conversion > 0) {
+                this.treeifyCount++;
+            } else if (conversion < 0) {
+                this.untreeifyCount++;
+            }
+        }
+    }
+
+    /**
+     * Converts bucket {@code bucket} of {@code this.hashTable}, whose size has
+     * changed from {@code oldBucketSize}, to a tree if it has just grown past
+     * the treeify threshold, or back to a {@code Map2} if it is a tree that
+     * has become too small. Only the bucket itself is changed, so buckets
+     * with different indices can be adapted in parallel.
+     *
+     * @param bucket
+     *            the bucket index
+     * @param oldBucketSize
+     *            the size of the bucket before the change
+     * @return 1 if the bucket became a tree, -1 if it became a {@code Map2},
+     *         or 0 if it was not converted
+     * @updates $this.hashTable[bucket]
+     * @requires |$this.hashTable[bucket, bucket+1)| > 0
+     * @ensures <pre>
+     * $this.hashTable[bucket, bucket+1) = #$this.hashTable[bucket, bucket+1)
+     * </pre>
+     */
+    private int adaptBucket(int bucket, int oldBucketSize) {
+        Map<K, V> current = this.hashTable[bucket];
+        int newBucketSize = current.size();
+        int conversion = 0;
+        if (current instanceof TreeBucket<?, ?>) {
+            if (this.treeifyThreshold == 0 || newBucketSize
+                    < UNTREEIFY_FRACTION * this.treeifyThreshold) {
+                this.convertBucket(bucket, new Map2<K, V>());
+                conversion = -1;
+            }
+        } else if (this.treeifyThreshold > 0
+                && oldBucketSize <= this.treeifyThreshold
+                && newBucketSize > this.treeifyThreshold) {
+            /*
+             * Trying only as the threshold is crossed keeps a bucket that
+             * cannot become a tree from being checked on every add
+             */
+            Class<?> keyClass = treeKeyClass(current);
+            if (keyClass != null) {
+                this.convertBucket(bucket, new TreeBucket<K, V>(keyClass));
+                conversion = 1;
+            }
+        }
+        return conversion;
+    }
+
+    /**
+     * Returns the class shared by all keys of {@code bucket} if that class is
+     * {@code Comparable} and no two keys of {@code bucket} are ranked as
+     * equal by hash code and {@code compareTo}, or {@code null} otherwise. A
+     * tree could not hold two keys ranked as equal, which happens only when
+     * {@code compareTo} is inconsistent with {@code equals}.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param bucket
+     *            the bucket
+     * @return the common {@code Comparable} key class, or {@code null}
+     * @requires |bucket| > 0
+     */
+    private static <K, V> Class<?> treeKeyClass(Map<K, V> bucket) {
+        Class<?> keyClass = null;
+        boolean sameClass = true;
+        for (Pair<K, V> p : bucket) {
+            if (keyClass == null) {
+                keyClass = p.key().getClass();
+            } else if (p.key().getClass() != keyClass) {
+                sameClass = false;
+            }
+        }
+        if (!sameClass || !Comparable.class.isAssignableFrom(keyClass)) {
+            keyClass = null;
+        } else {
+            Object[] keys = new Object[bucket.size()];
+            int i = 0;
+            for (Pair<K, V> p : bucket) {
+                keys[i] = p.key();
+                i++;
+            }
+            Arrays.sort(keys, TreeBucket::compareKeys);
+            for (i = 1; keyClass != null && i < keys.length; i++) {
+                if (TreeBucket.compareKeys(keys[i - 1], keys[i]) == 0) {
+                    keyClass = null;
+                }
+            }
+        }
+        return keyClass;
+    }
+
+    /**
+     * Adds {@code (key, value)} to its bucket of {@code this.hashTable}.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates $this
+     * @requires [key is not in any bucket in LIVE_BUCKETS($this)]
+     * @ensures <pre>
+     * [(key, value) is in bucket
+     *  $this.hashStrategy.index(key.hashCode(), |$this.hashTable|)]
+     * </pre>
+     */
+    private void addToTable(K key, V value) {
+        this.ensureTable();
+        this.countHash();
+        int bucket = this.hashStrategy.index(key.hashCode(),
+                this.hashTable.length);
+        Map<K, V> target = this.admit(bucket, key);
+        int oldBucketSize = target.size();
+        target.add(key, value);
+        this.bucketResized(bucket, oldBucketSize);
+    }
+
+    /**
+     * Returns the index of the not-yet-rehashed old bucket that holds
+     * {@code key}, or -1 if {@code key} is not in the old table.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of {@code key}
+     * @return the old bucket holding {@code key}, or -1
+     * @requires hash = [computed result of key.hashCode()]
+     * @ensures <pre>
+     * if [key is in $this.oldTable[i, i+1) for some i >= $this.rehashIndex]
+     * then oldBucketOf = i
+     * else oldBucketOf = -1
+     * </pre>
+     */
+    private int oldBucketOf(K key, int hash) {
+        int oldBucket = -1;
+        if (this.oldTable != null) {
+            int candidate = this.hashStrategy.index(hash,
+                    this.oldTable.length);
+            //buckets below rehashIndex have already been moved
+            Map<K, V> bucket = null;
+            if (candidate >= this.rehashIndex) {
+                bucket = this.oldTable[candidate];
+            }
+            if (bucket != null) {
+                this.countSearch(bucket);
+                if (bucket.hasKey(key)) {
+                    oldBucket = candidate;
+                }
+            }
+        }
+        return oldBucket;
+    }
+
+    /**
+     * Returns the bucket that holds, or would hold, {@code key}, looking in
+     * the old table first while a rehash is in progress, or {@code null} if
+     * that bucket is empty.
+     *
+     * @param key
+     *            the key
+     * @return the bucket for {@code key}, or {@code null}
+     * @ensures <pre>
+     * (bucketFor = null  or  bucketFor is in LIVE_BUCKETS($this))  and
+     * if key is in DOMAIN(this) then
+     *   bucketFor /= null  and  key is in DOMAIN(bucketFor)
+     * </pre>
+     */
+    private Map<K, V> bucketFor(K key) {
+        this.countHash();
+        int hash = key.hashCode();
+        Map<K, V> bucket = null;
+        int oldBucket = this.oldBucketOf(key, hash);
+        if (oldBucket >= 0) {
+            bucket = this.oldTable[oldBucket];
+        } else if (this.hashTable != null) {
+            bucket = this.hashTable[this.hashStrategy.index(hash,
+                    this.hashTable.length)];
+            this.countSearch(bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Moves up to {@code bucketCount} buckets of the old table into
+     * {@code this.hashTable}, ending the rehash once all have been moved.
+     *
+     * @param bucketCount
+     *            the maximum number of old buckets to move
+     * @updates $this
+     * @requires bucketCount > 0
+     * @ensures this = #this
+     */
+    private void rehashStep(int bucketCount) {
+        int stop = Math.min(this.oldTable.length,
+                this.rehashIndex + bucketCount);
+        while (this.rehashIndex < stop) {
+            Map<K, V> bucket = this.oldTable[this.rehashIndex];
+            if (bucket != null) {
+                while (bucket.size() > 0) {
+                    Pair<K, V> p = bucket.removeAny();
+                    this.addToTable(p.key(), p.value());
+                }
+                this.oldTable[this.rehashIndex] = null;
+            }
+            this.rehashIndex++;
+        }
+        if (this.rehashIndex == this.oldTable.length) {
+            this.oldTable = null;
+            this.rehashIndex = 0;
+        }
+    }
+
+    /**
+     * Finishes any rehash in progress.
+     *
+     * @updates $this
+     * @ensures this = #this  and  $this.oldTable = null
+     */
+    private void finishRehash() {
+        if (this.oldTable != null) {
+            this.rehashStep(this.oldTable.length);
+        }
+    }
+
+    /**
+     * Advances any rehash in progress, then starts a new one if the load of
+     * a resizing table has left the range allowed by its load factor.
+     *
+     * @updates $this
+     * @ensures this = #this
+     */
+    private void maintainLoad() {
+        if (this.oldTable != null) {
+            this.rehashStep(this.rehashRate);
+        }
+        if (this.loadFactor > 0) {
+            int tableSize = this.hashTable.length;
+            int newTableSize = tableSize;
+            /*
+             * Resize as far as needed to bring the load back into range, so
+             * that at least one more operation is needed to leave it again
+             */
+            boolean canGrow = true;
+            while (canGrow && this.growsAt(newTableSize) <= this.size) {
+                int grown = this.hashStrategy.grownTableSize(newTableSize);
+                //a table at MAX_TABLE_SIZE stays there and just fills up
+                canGrow = grown != newTableSize;
+                newTableSize = grown;
+            }
+            while (newTableSize > this.initialTableSize
+                    && this.shrinksAt(newTableSize) >= this.size) {
+                newTableSize = Math.max(this.initialTableSize,
+                        this.hashStrategy.tableSize(newTableSize / 2));
+            }
+            if (newTableSize != tableSize) {
+                /*
+                 * The rate chosen below has already finished any previous
+                 * rehash by now
+                 */
+                assert this.oldTable == null : ""
+                        + "Violation of: the previous rehash has finished";
+                this.finishRehash();
+                if (this.stats != null) {
+                    this.stats.recordResize();
+                }
+                /*
+                 * Each operation changes the size by at most one, so moving
+                 * the old buckets over as many operations as it takes the
+                 * size to reach the next resize finishes the rehash first
+                 */
+                int headroom = Math.max(1,
+                        this.growsAt(newTableSize) - this.size);
+                if (newTableSize > this.initialTableSize) {
+                    headroom = Math.min(headroom,
+                            this.size - this.shrinksAt(newTableSize));
+                }
+                this.rehashRate = Math.max(REHASH_BUCKETS_PER_OPERATION,
+                        (tableSize + headroom - 1) / headroom);
+                this.oldTable = this.hashTable;
+                this.rehashIndex = 0;
+                this.installTable(newTable(newTableSize));
+            }
+        }
+    }
+
+    /**
+     * Reports the smallest size at which a resizing table of
+     * {@code tableSize} buckets grows.
+     *
+     * @param tableSize
+     *            the number of buckets
+     * @return the smallest size above the load factor
+     * @requires $this.loadFactor > 0
+     * @ensures growsAt = min(Integer.MAX_VALUE, [smallest integer n with
+     *                     n > $this.loadFactor * tableSize])
+     */
+    private int growsAt(int tableSize) {
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.floor(this.loadFactor * tableSize) + 1);
+    }
+
+    /**
+     * Reports the largest size at which a resizing table of
+     * {@code tableSize} buckets shrinks, unless it is at its initial size.
+     *
+     * @param tableSize
+     *            the number of buckets
+     * @return the largest size below the shrink load, or -1 if there is none
+     * @requires $this.loadFactor > 0
+     * @ensures shrinksAt = [largest integer n with
+     *                       n < $this.loadFactor * tableSize / SHRINK_DIVISOR,
+     *                       or -1 if that is less than 0]
+     */
+    private int shrinksAt(int tableSize) {
+        return (int) Math.ceil(this.loadFactor * tableSize / SHRINK_DIVISOR)
+                - 1;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4() {
+        //create hashtable (no arg)
+        this.createNewRep(DEFAULT_HASH_TABLE_SIZE, 0,
+                DEFAULT_TREEIFY_THRESHOLD, new HashStrategy.Modulus());
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     *
+     * @param hashTableSize
+     *            size of hash table
+     * @requires hashTableSize > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize) {
+
+        //create hashtable (with arg)
+        this.createNewRep(hashTableSize, 0, DEFAULT_TREEIFY_THRESHOLD,
+                new HashStrategy.Modulus());
+
+    }
+
+    /**
+     * Constructor resulting in a hash table that starts with
+     * {@code hashTableSize} buckets and then grows and shrinks to keep the
+     * average number of entries per bucket at most {@code loadFactor}. Each
+     * resize is spread over later {@code add} and {@code remove} calls rather
+     * than copying the whole table at once.
+     *
+     * @param hashTableSize
+     *            initial (and minimum) size of hash table
+     * @param loadFactor
+     *            maximum average number of entries per bucket
+     * @requires hashTableSize > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor) {
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+
+        this.createNewRep(hashTableSize, loadFactor,
+                DEFAULT_TREEIFY_THRESHOLD, new HashStrategy.Modulus());
+
+    }
+
+    /**
+     * Constructor resulting in a hash table that starts with
+     * {@code hashTableSize} buckets, resizes as for
+     * {@link #Map4(int, double)} unless {@code loadFactor} is 0, and turns
+     * any bucket with more than {@code treeifyThreshold} entries into a tree
+     * unless {@code treeifyThreshold} is 0.
+     *
+     * @param hashTableSize
+     *            initial (and minimum) size of hash table
+     * @param loadFactor
+     *            maximum average number of entries per bucket, or 0 for a
+     *            table that never changes size
+     * @param treeifyThreshold
+     *            bucket size above which a bucket becomes a tree, or 0 for
+     *            buckets that never become trees
+     * @requires <pre>
+     * hashTableSize > 0  and  loadFactor >= 0  and  treeifyThreshold >= 0
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor, int treeifyThreshold) {
+        assert loadFactor >= 0 : "Violation of: loadFactor >= 0";
+        assert treeifyThreshold >= 0 : "Violation of: treeifyThreshold >= 0";
+
+        this.createNewRep(hashTableSize, loadFactor, treeifyThreshold,
+                new HashStrategy.Modulus());
+
+    }
+
+    /**
+     * Constructor as for {@link #Map4(int, double, int)}, with bucket indices
+     * and table sizes chosen by {@code hashStrategy} instead of by the hash
+     * code mod exactly {@code hashTableSize}. The initial table size is
+     * {@code hashStrategy.tableSize(hashTableSize)}, which for
+     * {@code HashStrategy.PrimeModulus} is the next prime.
+     *
+     * @param hashTableSize
+     *            requested initial (and minimum) size of hash table
+     * @param loadFactor
+     *            maximum average number of entries per bucket, or 0 for a
+     *            table that never changes size
+     * @param treeifyThreshold
+     *            bucket size above which a bucket becomes a tree, or 0 for
+     *            buckets that never become trees
+     * @param hashStrategy
+     *            the hash strategy
+     * @requires <pre>
+     * hashTableSize > 0  and  loadFactor >= 0  and  treeifyThreshold >= 0
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor, int treeifyThreshold,
+            HashStrategy hashStrategy) {
+        assert loadFactor >= 0 : "Violation of: loadFactor >= 0";
+        assert treeifyThreshold >= 0 : "Violation of: treeifyThreshold >= 0";
+        assert hashStrategy != null : "Violation of: hashStrategy is not null";
+
+        this.createNewRep(hashTableSize, loadFactor, treeifyThreshold,
+                hashStrategy);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.resetRep();
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map4<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map4<K, V> localSource = (Map4<K, V>) source;
+        this.hashTable = localSource.hashTable;
+        this.liveBuckets = localSource.liveBuckets;
+        this.liveIndex = localSource.liveIndex;
+        this.liveCount = localSource.liveCount;
+        this.oldTable = localSource.oldTable;
+        this.rehashIndex = localSource.rehashIndex;
+        this.rehashRate = localSource.rehashRate;
+        this.initialTableSize = localSource.initialTableSize;
+        this.loadFactor = localSource.loadFactor;
+        this.hashStrategy = localSource.hashStrategy;
+        this.treeifyThreshold = localSource.treeifyThreshold;
+        this.treeifyCount = localSource.treeifyCount;
+        this.untreeifyCount = localSource.untreeifyCount;
+        this.size = localSource.size;
+        localSource.resetRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        this.countOperation();
+        //new keys always go into the current table
+        this.addToTable(key, value);
+        this.size += 1;
+        this.maintainLoad();
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        this.countOperation();
+        //find the bucket we want to remove from
+        Pair<K, V> removed;
+        this.countHash();
+        int hash = key.hashCode();
+        int oldBucket = this.oldBucketOf(key, hash);
+        if (oldBucket >= 0) {
+            removed = this.oldTable[oldBucket].remove(key);
+        } else {
+            int bucket = this.hashStrategy.index(hash, this.hashTable.length);
+            int oldBucketSize = this.hashTable[bucket].size();
+            this.countSearch(this.hashTable[bucket]);
+            removed = this.hashTable[bucket].remove(key);
+            this.bucketResized(bucket, oldBucketSize);
+        }
+        this.size -= 1;
+        this.maintainLoad();
+        return removed;
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        this.countOperation();
+        /*
+         * While rehashing, every entry may still be in the old table; moving
+         * old buckets until the current table has an entry is work the rehash
+         * has to do anyway
+         */
+        while (this.liveCount == 0) {
+            this.rehashStep(1);
+        }
+        //take from the most recently occupied bucket
+        int bucket = this.liveBuckets[this.liveCount - 1];
+        int oldBucketSize = this.hashTable[bucket].size();
+        Pair<K, V> removed = this.hashTable[bucket].removeAny();
+        this.bucketResized(bucket, oldBucketSize);
+        this.size--;
+        this.maintainLoad();
+        return removed;
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        this.countOperation();
+        //find the bucket we want to find value from and return the value
+        return this.bucketFor(key).value(key);
+
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        this.countOperation();
+        //find the bucket we want to find key from and return boolean
+        Map<K, V> bucket = this.bucketFor(key);
+        return bucket != null && bucket.hasKey(key);
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        //iteration is linear anyway, so finish moving buckets before it starts
+        this.finishRehash();
+        return new Map4Iterator();
+    }
+
+    /**
+     * Returns a {@code Spliterator} over the entries of {@code this}, which
+     * splits the occupied buckets into ranges so that the entries can be
+     * traversed by several threads. It reports {@code SIZED} and
+     * {@code SUBSIZED}: the sizes of the ranges are exact, from a table of
+     * running entry counts made on the first split. {@code this} must not be
+     * changed while the spliterator, or any split from it, is in use.
+     *
+     * @return a spliterator over the entries of {@code this}
+     * @ensures spliterator traverses each entry of this exactly once
+     */
+    @Override
+    public final Spliterator<Pair<K, V>> spliterator() {
+        //as for iterator, the ranges are of buckets of hashTable alone
+        this.finishRehash();
+        return new Map4Spliterator(0, this.liveCount, this.size, null);
+    }
+
+    /**
+     * Returns a sequential {@code Stream} of the entries of {@code this}.
+     * {@code this} must not be changed while the stream is in use.
+     *
+     * @return a sequential stream of the entries of {@code this}
+     * @ensures stream contains each entry of this exactly once
+     */
+    public final Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel {@code Stream} of the entries of {@code this}, split
+     * on ranges of buckets. {@code this} must not be changed while the stream
+     * is in use.
+     *
+     * @return a parallel stream of the entries of {@code this}
+     * @ensures parallelStream contains each entry of this exactly once
+     */
+    public final Stream<Pair<K, V>> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /*
+     * Fused update methods ---------------------------------------------------
+     */
+
+    /**
+     * Reports the value of {@code key} in {@code bucket}, or {@code null} if
+     * {@code key} is not there, with one search of the bucket rather than the
+     * two of {@code hasKey} followed by {@code value}.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param bucket
+     *            the bucket, or {@code null} for an empty bucket
+     * @param key
+     *            the key
+     * @return the value of {@code key}, or {@code null}
+     * @requires key /= null
+     * @ensures <pre>
+     * if bucket /= null  and  key is in DOMAIN(bucket) then
+     *   valueOrNull = bucket(key)
+     * else
+     *   valueOrNull = null
+     * </pre>
+     */
+    private static <K, V> V valueOrNull(Map<K, V> bucket, K key) {
+        V result = null;
+        if (bucket instanceof TreeBucket<?, ?>) {
+            result = ((TreeBucket<K, V>) bucket).valueOrNull(key);
+        } else if (bucket != null) {
+            Iterator<Pair<K, V>> entries = bucket.iterator();
+            while (result == null && entries.hasNext()) {
+                Pair<K, V> p = entries.next();
+                if (p.key().equals(key)) {
+                    result = p.value();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hashes {@code key} and searches its bucket once, then replaces the
+     * value of {@code key} with a new value: {@code remapping} applied to the
+     * current value (or {@code null} if {@code key} is not in {@code this}),
+     * or, if {@code remapping} is {@code null}, the current value if there is
+     * one and {@code value} otherwise. A {@code null} new value removes
+     * {@code key}. Replacing or removing the value of a key in a
+     * {@code Map2} bucket searches that bucket once more.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value to add if {@code remapping} is {@code null} and
+     *            {@code key} is absent
+     * @param remapping
+     *            the function computing the new value, or {@code null}
+     * @param reportOld
+     *            whether to report the old value rather than the new one
+     * @return the old value if {@code reportOld}, else the new value, where
+     *         either is {@code null} if there is none
+     * @updates this
+     * @requires key /= null  and  (remapping /= null  or  value /= null)
+     * @ensures <pre>
+     * [old = if key is in DOMAIN(#this) then #this(key) else null]  and
+     * [r = if remapping /= null then remapping(key, old)
+     *      else if old /= null then old
+     *      else value]  and
+     * if r = null then
+     *   this = #this \ {(key, #this(key))}
+     * else
+     *   this = (#this \ {(key, #this(key))}) union {(key, r)}  and
+     * update = (if reportOld then old else r)
+     * </pre>
+     */
+    private V update(K key, V value,
+            BiFunction<? super K, ? super V, ? extends V> remapping,
+            boolean reportOld) {
+        this.countOperation();
+        this.countHash();
+        int hash = key.hashCode();
+        int bucketIndex = -1;
+        Map<K, V> bucket = null;
+        V oldValue = null;
+        if (this.oldTable != null) {
+            int oldBucket = this.hashStrategy.index(hash, this.oldTable.length);
+            //buckets below rehashIndex have already been moved
+            if (oldBucket >= this.rehashIndex) {
+                Map<K, V> candidate = this.oldTable[oldBucket];
+                this.countSearch(candidate);
+                oldValue = valueOrNull(candidate, key);
+                if (oldValue != null) {
+                    bucket = candidate;
+                }
+            }
+        }
+        if (bucket == null && this.hashTable != null) {
+            bucketIndex = this.hashStrategy.index(hash,
+                    this.hashTable.length);
+            bucket = this.hashTable[bucketIndex];
+            this.countSearch(bucket);
+            oldValue = valueOrNull(bucket, key);
+        }
+        int bucketSize = 0;
+        if (bucket != null) {
+            bucketSize = bucket.size();
+        }
+        //compute before changing anything so a throwing function has no effect
+        V newValue = oldValue;
+        if (remapping != null) {
+            newValue = remapping.apply(key, oldValue);
+        } else if (oldValue == null) {
+            newValue = value;
+        }
+        if (newValue != null) {
+            if (oldValue == null) {
+                /*
+                 * A key found in the old table has a value, so an absent key
+                 * always goes into the current table, allocated only now
+                 */
+                if (bucketIndex < 0) {
+                    this.ensureTable();
+                    bucketIndex = this.hashStrategy.index(hash,
+                            this.hashTable.length);
+                }
+                bucket = this.admit(bucketIndex, key);
+                bucket.add(key, newValue);
+                this.size++;
+            } else if (newValue != oldValue) {
+                bucket.replaceValue(key, newValue);
+            }
+        } else if (oldValue != null) {
+            bucket.remove(key);
+            this.size--;
+        }
+        int newBucketSize = 0;
+        if (bucket != null) {
+            newBucketSize = bucket.size();
+        }
+        //only buckets of the current table are indexed and adapted
+        if (bucketIndex >= 0 && bucket != null) {
+            this.bucketResized(bucketIndex, bucketSize);
+        }
+        if (newBucketSize != bucketSize) {
+            this.maintainLoad();
+        }
+        V result = newValue;
+        if (reportOld) {
+            result = oldValue;
+        }
+        return result;
+    }
+
+    /**
+     * Reports the value associated with {@code key}, or {@code defaultValue}
+     * if {@code key} is not in {@code this}, hashing {@code key} and
+     * searching its bucket once.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the value to report when {@code key} is absent
+     * @return the value for {@code key}, or {@code defaultValue}
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then getOrDefault = this(key)
+     * else getOrDefault = defaultValue
+     * </pre>
+     */
+    public final V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        this.countOperation();
+        V result = valueOrNull(this.bucketFor(key), key);
+        if (result == null) {
+            result = defaultValue;
+        }
+        return result;
+    }
+
+    /**
+     * Adds {@code (key, value)} to {@code this} unless {@code key} is already
+     * there, hashing {@code key} and searching its bucket once.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value to add if {@code key} is absent
+     * @return the value already associated with {@code key}, or {@code null}
+     *         if {@code key} was absent
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   this = #this  and  putIfAbsent = #this(key)
+     * else
+     *   this = #this union {(key, value)}  and  putIfAbsent = null
+     * </pre>
+     */
+    public final V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        return this.update(key, value, null, true);
+    }
+
+    /**
+     * Combines {@code value} into the value associated with {@code key}, or
+     * adds {@code (key, value)} if {@code key} is absent, hashing {@code key}
+     * and searching its bucket once (see {@link #update}). If
+     * {@code combiner} returns {@code null}, {@code key} is removed.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value to add or combine in
+     * @param combiner
+     *            the function combining the old value with {@code value}
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         {@code key} was removed
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   [r = combiner(#this(key), value)]
+     * else
+     *   r = value  and
+     * [this and merge are as for update with the result r]
+     * </pre>
+     */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> combiner) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert combiner != null : "Violation of: combiner is not null";
+
+        return this.update(key, null,
+                (k, old) -> (old == null) ? value : combiner.apply(old, value),
+                false);
+    }
+
+    /**
+     * Replaces the value associated with {@code key} (or {@code null} if
+     * {@code key} is absent) with the result of {@code remapping}, hashing
+     * {@code key} and searching its bucket once (see {@link #update}). If
+     * {@code remapping} returns {@code null}, {@code key} is removed or stays
+     * absent.
+     *
+     * @param key
+     *            the key
+     * @param remapping
+     *            the function computing the new value from the key and the
+     *            old value
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @updates this
+     * @requires key /= null
+     * @ensures [this and compute are as for update with remapping]
+     */
+    public final V compute(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        return this.update(key, null, remapping, false);
+    }
+
+    /**
+     * Adds {@code delta} to the count associated with {@code key} in
+     * {@code map}, starting from 0 if {@code key} is absent, hashing
+     * {@code key} and searching its bucket once (see {@link #update}).
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param map
+     *            the map of counts
+     * @param key
+     *            the key whose count changes
+     * @param delta
+     *            the amount to add
+     * @return the new count for {@code key}
+     * @updates map
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#map) then
+     *   map = (#map \ {(key, #map(key))}) union {(key, #map(key) + delta)}
+     * else
+     *   map = #map union {(key, delta)}  and
+     * increment = map(key)
+     * </pre>
+     */
+    public static <K> int increment(Map4<K, Integer> map, K key, int delta) {
+        assert map != null : "Violation of: map is not null";
+        assert key != null : "Violation of: key is not null";
+
+        return map.merge(key, delta, Integer::sum);
+    }
+
+    /*
+     * Bulk methods -----------------------------------------------------------
      */
 
     /**
-     * Default size of hash table.
+     * Merges bucket {@code from} of another map, whose keys all belong in
+     * bucket {@code bucket} of {@code this.hashTable}, into that bucket. The
+     * bucket is taken over whole if this one is empty. Only bucket
+     * {@code bucket} is changed, and changes to the size and the conversion
+     * counts are added to {@code counts} rather than applied, so buckets with
+     * different indices can be merged in parallel. The occupancy index is not
+     * updated.
+     *
+     * @param bucket
+     *            the bucket index
+     * @param from
+     *            the bucket to merge in
+     * @param combiner
+     *            the function combining the values of a key in both buckets
+     * @param counts
+     *            the size change and conversion counts so far
+     * @updates $this.hashTable[bucket], from, counts
+     * @requires <pre>
+     * [every key of from belongs in bucket bucket of $this.hashTable]  and
+     * |counts| = MERGE_COUNTS
+     * </pre>
+     * @ensures <pre>
+     * $this.hashTable[bucket, bucket+1) =
+     *   [#$this.hashTable[bucket, bucket+1) with the entries of #from
+     *    merged in as by merge]  and
+     * [$this.hashTable[bucket] is null iff it is empty]  and
+     * [counts is increased by the change in size and the conversions]
+     * </pre>
      */
-    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+    private void mergeBucket(int bucket, Map<K, V> from,
+            BiFunction<? super V, ? super V, ? extends V> combiner,
+            long[] counts) {
+        Map<K, V> target = this.hashTable[bucket];
+        int oldBucketSize = sizeOf(target);
+        if (target == null) {
+            //nothing to combine with, so the whole bucket moves over
+            this.hashTable[bucket] = from;
+            counts[SIZE_CHANGE] += from.size();
+        } else {
+            while (from.size() > 0) {
+                Pair<K, V> p = from.removeAny();
+                K key = p.key();
+                //one search for the key, as update does
+                V oldValue = valueOrNull(target, key);
+                if (oldValue != null) {
+                    V combined = combiner.apply(oldValue, p.value());
+                    if (combined == null) {
+                        target.remove(key);
+                        counts[SIZE_CHANGE]--;
+                    } else if (combined != oldValue) {
+                        target.replaceValue(key, combined);
+                    }
+                } else {
+                    //as admit does, but counting locally
+                    if (target instanceof TreeBucket<?, ?>
+                            && !((TreeBucket<K, V>) target).accepts(key)) {
+                        this.convertBucket(bucket, new Map2<K, V>());
+                        target = this.hashTable[bucket];
+                        counts[UNTREEIFIED]++;
+                    }
+                    target.add(key, p.value());
+                    counts[SIZE_CHANGE]++;
+                }
+            }
+        }
+        if (this.hashTable[bucket].size() == 0) {
+            this.hashTable[bucket] = null;
+        } else {
+            int conversion = this.adaptBucket(bucket, oldBucketSize);
+            if (conversion > 0) {
+                counts[TREEIFIED]++;
+            } else if (conversion < 0) {
+                counts[UNTREEIFIED]++;
+            }
+        }
+    }
 
     /**
-     * Buckets for hashing.
+     * Rebuilds the occupancy index from the buckets of
+     * {@code this.hashTable}.
+     *
+     * @updates $this.liveBuckets, $this.liveIndex, $this.liveCount
+     * @requires <pre>
+     * $this.hashTable /= null  and
+     * [each bucket of $this.hashTable is null iff it is empty]
+     * </pre>
+     * @ensures [the occupancy index satisfies the convention]
      */
-    private Map<K, V>[] hashTable;
+    private void rebuildLiveIndex() {
+        Arrays.fill(this.liveIndex, -1);
+        this.liveCount = 0;
+        for (int i = 0; i < this.hashTable.length; i++) {
+            if (this.hashTable[i] != null) {
+                this.linkBucket(i);
+            }
+        }
+    }
 
     /**
-     * Total size of abstract {@code this}.
+     * Merges all entries of {@code other} into {@code this}, as by
+     * {@link #merge(Object, Object, BiFunction)} for each entry, and clears
+     * {@code other}. Uses the common fork-join pool; see
+     * {@link #mergeFrom(Map4, BiFunction, ForkJoinPool)}.
+     *
+     * @param other
+     *            the map whose entries are merged in
+     * @param combiner
+     *            the function combining the value in {@code this} with the
+     *            value in {@code other} of a key in both
+     * @updates this
+     * @clears other
+     * @requires other /= null  and  other is not this
+     * @ensures <pre>
+     * this = [#this with each entry of #other merged in as by merge]
+     * </pre>
      */
-    private int size;
+    public final void mergeFrom(Map4<K, V> other,
+            BiFunction<? super V, ? super V, ? extends V> combiner) {
+        this.mergeFrom(other, combiner, ForkJoinPool.commonPool());
+    }
 
     /**
-     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     * Merges all entries of {@code other} into {@code this}, as by
+     * {@link #merge(Object, Object, BiFunction)} for each entry, and clears
+     * {@code other}.
      *
-     * @param a
-     *            the number being reduced
-     * @param b
-     *            the modulus
-     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
-     * @requires b > 0
+     * <p>
+     * When the two tables have the same size and hash strategy, bucket i of
+     * {@code other} is merged straight into bucket i of {@code this} with no
+     * rehashing, a bucket that is empty here is taken over whole, and ranges
+     * of buckets are merged in parallel on {@code pool}; {@code combiner} must
+     * then be safe to call from several threads at once. Otherwise the entries
+     * of {@code other} are merged in one at a time. The table is not resized
+     * during a merge, so that merging many maps of one size in turn keeps to
+     * the bucket-wise path; if the merge leaves it overloaded, the operations
+     * that follow resize it as usual.
+     *
+     * @param other
+     *            the map whose entries are merged in
+     * @param combiner
+     *            the function combining the value in {@code this} with the
+     *            value in {@code other} of a key in both
+     * @param pool
+     *            the pool whose threads merge the buckets
+     * @updates this
+     * @clears other
+     * @requires other /= null  and  other is not this  and  pool /= null
      * @ensures <pre>
-     * 0 <= mod  and  mod < b  and
-     * there exists k: integer (a = k * b + mod)
+     * this = [#this with each entry of #other merged in as by merge]
      * </pre>
      */
-    private static int mod(int a, int b) {
-        assert b > 0 : "Violation of: b > 0";
-
-        int result = a % b;
+    public final void mergeFrom(Map4<K, V> other,
+            BiFunction<? super V, ? super V, ? extends V> combiner,
+            ForkJoinPool pool) {
+        assert other != null : "Violation of: other is not null";
+        assert other != this : "Violation of: other is not this";
+        assert combiner != null : "Violation of: combiner is not null";
+        assert pool != null : "Violation of: pool is not null";
 
-        if (result < 0) {
-            result = result + b;
+        this.countOperation();
+        //buckets line up only once both tables are whole
+        this.finishRehash();
+        other.finishRehash();
+        if (other.size > 0) {
+            this.ensureTable();
+            if (this.hashTable.length == other.hashTable.length
+                    && this.hashStrategy.equals(other.hashStrategy)) {
+                long[] counts = pool.invoke(new MergeTask(other.hashTable,
+                        combiner, 0, this.hashTable.length));
+                this.size += (int) counts[SIZE_CHANGE];
+                this.treeifyCount += counts[TREEIFIED];
+                this.untreeifyCount += counts[UNTREEIFIED];
+                this.rebuildLiveIndex();
+            } else {
+                while (other.size() > 0) {
+                    Pair<K, V> p = other.removeAny();
+                    this.merge(p.key(), p.value(), combiner);
+                }
+            }
         }
-        return result;
+        other.resetRep();
     }
 
     /**
-     * Creator of initial representation.
-     *
-     * @param hashTableSize
-     *            the size of the hash table
-     * @requires hashTableSize > 0
-     * @ensures <pre>
-     * |$this.hashTable| = hashTableSize  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |$this.hashTable|)
-     *   ($this.hashTable[i, i+1) = <{}>)  and
-     * $this.size = 0
-     * </pre>
+     * Task merging a range of buckets of another map, with the same table size
+     * and hash strategy, into the same buckets of {@code this}.
      */
-    @SuppressWarnings("unchecked")
-    private void createNewRep(int hashTableSize) {
-        /*
-         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
-         * compile; as shown, it results in a warning about an unchecked
-         * conversion, though it cannot fail.
+    private final class MergeTask extends RecursiveTask<long[]> {
+
+        /**
+         * Serialization version; tasks are never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Table of the map being merged in.
+         */
+        private final Map<K, V>[] from;
+
+        /**
+         * Function combining the values of a key in both maps.
+         */
+        private final BiFunction<? super V, ? super V, ? extends V> combiner;
+
+        /**
+         * First bucket of the range.
          */
-        this.hashTable = new Map[hashTableSize];
+        private final int low;
 
-        //initialize all empty buckets
+        /**
+         * Bucket just past the range.
+         */
+        private final int high;
+
+        /**
+         * Constructor from table, combiner, and bucket range.
+         *
+         * @param from
+         *            the table of the map being merged in
+         * @param combiner
+         *            the function combining the values of a key in both maps
+         * @param low
+         *            the first bucket of the range
+         * @param high
+         *            the bucket just past the range
+         */
+        MergeTask(Map<K, V>[] from,
+                BiFunction<? super V, ? super V, ? extends V> combiner,
+                int low, int high) {
+            this.from = from;
+            this.combiner = combiner;
+            this.low = low;
+            this.high = high;
+        }
 
-        for (int i = 0; i < hashTableSize; i++) {
-            this.hashTable[i] = new Map2<K, V>();
+        @Override
+        protected long[] compute() {
+            long[] counts;
+            if (this.high - this.low <= MERGE_GRAIN) {
+                counts = new long[MERGE_COUNTS];
+                for (int i = this.low; i < this.high; i++) {
+                    if (this.from[i] != null) {
+                        Map4.this.mergeBucket(i, this.from[i], this.combiner,
+                                counts);
+                    }
+                }
+            } else {
+                int middle = (this.low + this.high) >>> 1;
+                MergeTask left = new MergeTask(this.from, this.combiner,
+                        this.low, middle);
+                left.fork();
+                counts = new MergeTask(this.from, this.combiner, middle,
+                        this.high).compute();
+                long[] leftCounts = left.join();
+                for (int k = 0; k < MERGE_COUNTS; k++) {
+                    counts[k] += leftCounts[k];
+                }
+            }
+            return counts;
         }
 
     }
 
-    /*
-     * Constructors -----------------------------------------------------------
+    /**
+     * Returns an immutable copy of {@code this} whose lookups take one probe
+     * of a minimal perfect hash table; see {@link Map4Frozen}. {@code this}
+     * is left unchanged, and later changes to it do not affect the copy.
+     *
+     * @return the frozen copy
+     * @ensures freeze = this
      */
+    public final Map4Frozen<K, V> freeze() {
+        return new Map4Frozen<K, V>(this);
+    }
 
     /**
-     * No-argument constructor.
+     * Reports the hash strategy, for code that lays out keys as this table
+     * does.
+     *
+     * @return the hash strategy
      */
-    public Map4() {
-        //create hashtable (no arg)
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
-        //initialize size to 0
-        this.size = 0;
-
+    final HashStrategy hashStrategy() {
+        return this.hashStrategy;
     }
 
     /**
-     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     * Reports the number of buckets of the current table, or of the table
+     * the first {@code add} will allocate.
      *
-     * @param hashTableSize
-     *            size of hash table
-     * @requires hashTableSize > 0
-     * @ensures this = {}
+     * @return the table size
+     * @ensures [tableSize is a value returned by this.hashStrategy().tableSize]
      */
-    public Map4(int hashTableSize) {
-
-        //create hashtable (with arg)
-        this.createNewRep(hashTableSize);
-        //initialize size to 0
-        this.size = 0;
-
+    final int tableSize() {
+        int result = this.initialTableSize;
+        if (this.hashTable != null) {
+            result = this.hashTable.length;
+        }
+        return result;
     }
 
     /*
-     * Standard methods -------------------------------------------------------
+     * Chain statistics methods -----------------------------------------------
      */
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public final Map<K, V> newInstance() {
-        try {
-            return this.getClass().getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new AssertionError(
-                    "Cannot construct object of type " + this.getClass());
+    /**
+     * Reports the number of entries in the largest bucket.
+     *
+     * @return the longest chain length
+     * @ensures <pre>
+     * maxChainLength = max pf: PARTIAL_FUNCTION
+     *     where (pf is in LIVE_BUCKETS($this))
+     *   (|pf|)
+     * </pre>
+     */
+    public final int maxChainLength() {
+        int longest = 0;
+        for (int i = 0; i < this.liveCount; i++) {
+            longest = Math.max(longest,
+                    this.hashTable[this.liveBuckets[i]].size());
         }
+        if (this.oldTable != null) {
+            for (int i = this.rehashIndex; i < this.oldTable.length; i++) {
+                longest = Math.max(longest, sizeOf(this.oldTable[i]));
+            }
+        }
+        return longest;
     }
 
-    @Override
-    public final void clear() {
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
-    }
-
-    @Override
-    public final void transferFrom(Map<K, V> source) {
-        assert source != null : "Violation of: source is not null";
-        assert source != this : "Violation of: source is not this";
-        assert source instanceof Map4<?, ?> : ""
-                + "Violation of: source is of dynamic type Map4<?,?>";
-        /*
-         * This cast cannot fail since the assert above would have stopped
-         * execution in that case: source must be of dynamic type Map4<?,?>, and
-         * the ?,? must be K,V or the call would not have compiled.
-         */
-        Map4<K, V> localSource = (Map4<K, V>) source;
-        this.hashTable = localSource.hashTable;
-        this.size = localSource.size;
-        localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+    /**
+     * Reports the number of buckets currently represented as trees.
+     *
+     * @return the number of tree buckets
+     */
+    public final int treeBucketCount() {
+        int trees = 0;
+        for (int i = 0; i < this.liveCount; i++) {
+            Map<K, V> bucket = this.hashTable[this.liveBuckets[i]];
+            if (bucket instanceof TreeBucket<?, ?>) {
+                trees++;
+            }
+        }
+        return trees;
     }
 
-    /*
-     * Kernel methods ---------------------------------------------------------
+    /**
+     * Reports how many times a bucket has been converted to a tree since
+     * {@code this} was created or cleared.
+     *
+     * @return the number of treeify conversions
      */
-
-    @Override
-    public final void add(K key, V value) {
-        assert key != null : "Violation of: key is not null";
-        assert value != null : "Violation of: value is not null";
-        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
-
-        //calculate which bucket we want to add to
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        //access the bucket, add <K, V> to the map
-        this.hashTable[bucket].add(key, value);
-        this.size += 1;
+    public final long treeifyCount() {
+        return this.treeifyCount;
     }
 
-    @Override
-    public final Pair<K, V> remove(K key) {
-        assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
-
-        //calculate which bucket we want to remove from
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        this.size -= 1;
-        //access the bucket, remove the key from the map and return it
-        return this.hashTable[bucket].remove(key);
+    /**
+     * Reports how many times a tree bucket has been converted back to a
+     * {@code Map2} since {@code this} was created or cleared.
+     *
+     * @return the number of untreeify conversions
+     */
+    public final long untreeifyCount() {
+        return this.untreeifyCount;
     }
 
-    @Override
-    public final Pair<K, V> removeAny() {
-        assert this.size() > 0 : "Violation of: this /= empty_set";
-        int num = 0;
-        for (int i = 0; this.hashTable.length > i; i++) {
-            if (this.hashTable[i].size() != 0) {
-                num = i;
+    /**
+     * Reports the bucket occupancy histogram: entry {@code i} is the number of
+     * buckets holding exactly {@code i} entries. Buckets of a table still
+     * being rehashed are included.
+     *
+     * @return the occupancy histogram
+     * @ensures <pre>
+     * |chainLengthHistogram| = maxChainLength + 1  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |chainLengthHistogram|)
+     *   (chainLengthHistogram[i] =
+     *      [number of buckets pf in LIVE_BUCKETS($this) with |pf| = i])
+     * </pre>
+     */
+    public final int[] chainLengthHistogram() {
+        /*
+         * The tables are read once into locals so that a read from another
+         * thread, such as over JMX, sees a consistent set of buckets
+         */
+        int[] histogram = new int[1];
+        Map<K, V>[] table = this.hashTable;
+        if (table == null) {
+            histogram[0] = this.initialTableSize;
+        } else {
+            for (Map<K, V> bucket : table) {
+                histogram = tally(histogram, sizeOf(bucket));
             }
         }
-        this.size--;
-        return this.hashTable[num].removeAny();
+        Map<K, V>[] old = this.oldTable;
+        if (old != null) {
+            for (int i = this.rehashIndex; i < old.length; i++) {
+                histogram = tally(histogram, sizeOf(old[i]));
+            }
+        }
+        return histogram;
     }
 
-    @Override
-    public final V value(K key) {
-        assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
-        //calculate which bucket we want to find value from
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        //access the bucket, find the value from the map by using the key and return it
-        return this.hashTable[bucket].value(key);
-
+    /**
+     * Reports the number of entries in {@code bucket}, which is {@code null}
+     * for an empty bucket.
+     *
+     * @param bucket
+     *            the bucket, or {@code null}
+     * @return the size of the bucket
+     */
+    private static int sizeOf(Map<?, ?> bucket) {
+        int bucketSize = 0;
+        if (bucket != null) {
+            bucketSize = bucket.size();
+        }
+        return bucketSize;
     }
 
-    @Override
-    public final boolean hasKey(K key) {
-        assert key != null : "Violation of: key is not null";
-        //calculate which bucket we want to find key from
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        //access the bucket, find the key from the map by using the key and return boolean
-        return this.hashTable[bucket].hasKey(key);
+    /**
+     * Adds one bucket of {@code length} entries to {@code histogram}, growing
+     * it if needed.
+     *
+     * @param histogram
+     *            the histogram so far
+     * @param length
+     *            the number of entries in the bucket
+     * @return the updated histogram
+     * @requires length >= 0
+     */
+    private static int[] tally(int[] histogram, int length) {
+        int[] result = histogram;
+        if (length >= result.length) {
+            result = Arrays.copyOf(result, length + 1);
+        }
+        result[length]++;
+        return result;
     }
 
-    @Override
-    public final int size() {
+    /*
+     * Instrumentation methods ------------------------------------------------
+     */
 
-        return this.size;
+    /**
+     * Starts gathering statistics about {@code this}, if it is not doing so
+     * already, and returns them. Operations, hash code computations, key
+     * comparisons, and resizes are counted from this point on, including the
+     * lookups made by assertion checks of preconditions; occupancy numbers
+     * are computed from the table when read. The statistics can be read
+     * directly or, after {@link Map4Stats#register(String)}, over JMX.
+     *
+     * @return the statistics of {@code this}
+     * @ensures enableStatistics = [the statistics of this]
+     */
+    public final Map4Stats enableStatistics() {
+        if (this.stats == null) {
+            this.stats = new Map4Stats(this);
+        }
+        return this.stats;
     }
 
-    @Override
-    public final Iterator<Pair<K, V>> iterator() {
-        return new Map4Iterator();
+    /**
+     * Stops gathering statistics about {@code this}, unregistering them from
+     * JMX if they are registered.
+     *
+     * @ensures [statistics are disabled]
+     */
+    public final void disableStatistics() {
+        if (this.stats != null) {
+            this.stats.unregister();
+            this.stats = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of {@code this}, or {@code null} if statistics
+     * are disabled.
+     *
+     * @return the statistics, or {@code null}
+     */
+    public final Map4Stats statistics() {
+        return this.stats;
     }
 
     /**
@@ -268,9 +2197,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         private int numberSeen;
 
         /**
-         * Bucket from which current bucket iterator comes.
+         * Position in {@code liveBuckets} of the bucket from which current
+         * bucket iterator comes.
          */
-        private int currentBucket;
+        private int currentLive;
 
         /**
          * Bucket iterator from which next element will come.
@@ -282,8 +2212,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          */
         Map4Iterator() {
             this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable[0].iterator();
+            this.currentLive = -1;
+            this.bucketIterator = null;
         }
 
         @Override
@@ -303,10 +2233,12 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                 throw new NoSuchElementException();
             }
             this.numberSeen++;
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
-                this.bucketIterator = Map4.this.hashTable[this.currentBucket]
-                        .iterator();
+            //only non-empty buckets are visited
+            while (this.bucketIterator == null
+                    || !this.bucketIterator.hasNext()) {
+                this.currentLive++;
+                int bucket = Map4.this.liveBuckets[this.currentLive];
+                this.bucketIterator = Map4.this.hashTable[bucket].iterator();
             }
             return this.bucketIterator.next();
         }
@@ -319,4 +2251,139 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     }
 
+    /**
+     * Implementation of {@code Spliterator} interface for {@code Map4}, over
+     * the buckets at positions [lo, hi) of {@code liveBuckets}.
+     */
+    private final class Map4Spliterator implements Spliterator<Pair<K, V>> {
+
+        /**
+         * Position in {@code liveBuckets} of the next bucket to start on.
+         */
+        private int lo;
+
+        /**
+         * Position in {@code liveBuckets} just past the last bucket of this
+         * range.
+         */
+        private final int hi;
+
+        /**
+         * Number of entries not yet traversed, including those left in
+         * {@code bucketIterator}.
+         */
+        private long remaining;
+
+        /**
+         * Number of entries in the buckets before each position in
+         * {@code liveBuckets}, shared by all spliterators split from one, or
+         * null until the first split.
+         */
+        private int[] before;
+
+        /**
+         * Iterator over the bucket being traversed, or null.
+         */
+        private Iterator<Pair<K, V>> bucketIterator;
+
+        /**
+         * Constructor from range, size, and running counts.
+         *
+         * @param lo
+         *            the position of the first bucket
+         * @param hi
+         *            the position just past the last bucket
+         * @param remaining
+         *            the number of entries in the range
+         * @param before
+         *            the running counts, or null
+         */
+        Map4Spliterator(int lo, int hi, long remaining, int[] before) {
+            this.lo = lo;
+            this.hi = hi;
+            this.remaining = remaining;
+            this.before = before;
+            this.bucketIterator = null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            //only non-empty buckets are visited
+            while (this.bucketIterator == null
+                    || !this.bucketIterator.hasNext()) {
+                if (this.lo >= this.hi) {
+                    return false;
+                }
+                int bucket = Map4.this.liveBuckets[this.lo];
+                this.lo++;
+                this.bucketIterator = Map4.this.hashTable[bucket].iterator();
+            }
+            this.remaining--;
+            action.accept(this.bucketIterator.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            if (this.bucketIterator != null) {
+                while (this.bucketIterator.hasNext()) {
+                    action.accept(this.bucketIterator.next());
+                }
+                this.bucketIterator = null;
+            }
+            Map<K, V>[] table = Map4.this.hashTable;
+            int[] live = Map4.this.liveBuckets;
+            for (int i = this.lo; i < this.hi; i++) {
+                for (Pair<K, V> p : table[live[i]]) {
+                    action.accept(p);
+                }
+            }
+            this.lo = this.hi;
+            this.remaining = 0;
+        }
+
+        @Override
+        public Spliterator<Pair<K, V>> trySplit() {
+            int mid = (this.lo + this.hi) >>> 1;
+            if (mid <= this.lo) {
+                return null;
+            }
+            if (this.before == null) {
+                /*
+                 * Only the first spliterator can get here without counts, and
+                 * it splits before it hands any range to another thread
+                 */
+                int[] counts = new int[Map4.this.liveCount + 1];
+                for (int i = 0; i < Map4.this.liveCount; i++) {
+                    counts[i + 1] = counts[i] + Map4.this.hashTable[
+                            Map4.this.liveBuckets[i]].size();
+                }
+                this.before = counts;
+            }
+            long lowerPart = this.before[mid] - this.before[this.lo];
+            Map4Spliterator prefix = new Map4Spliterator(this.lo, mid,
+                    lowerPart, this.before);
+            //the bucket being traversed, if any, stays with this
+            this.lo = mid;
+            this.remaining -= lowerPart;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+    }
+
 }
@@ -0,0 +1,153 @@
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures the bytes allocated and the time taken by the {@code Map4}
+ * operations that reset a representation (construction, {@code clear},
+ * {@code newInstance}, {@code transferFrom}), to check that they do not
+ * depend on the size of the hash table.
+ *
+ * <p>
+ * Allocation is read from the HotSpot per-thread allocation counter; on a JVM
+ * without one only times are reported.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4AllocationBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4AllocationBenchmark() {
+    }
+
+    /**
+     * Number of times each operation is run before measuring.
+     */
+    private static final int WARMUP = 200_000;
+
+    /**
+     * Number of times each operation is measured.
+     */
+    private static final int ITERATIONS = 1_000_000;
+
+    /**
+     * Large table size, to show that resetting does not depend on it.
+     */
+    private static final int LARGE_TABLE_SIZE = 1009;
+
+    /**
+     * Where results are stored so that allocations cannot be optimized away.
+     */
+    private static Object sink;
+
+    /**
+     * Reports the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM cannot tell.
+     *
+     * @return the bytes allocated, or -1
+     */
+    private static long allocatedBytes() {
+        long bytes = -1;
+        Object threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof ThreadMXBean) {
+            ThreadMXBean hotspot = (ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported()
+                    && hotspot.isThreadAllocatedMemoryEnabled()) {
+                bytes = hotspot.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Runs {@code operation} and prints the bytes allocated and nanoseconds
+     * taken per run.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the name of the operation
+     * @param operation
+     *            the operation to measure
+     * @updates out.content
+     * @requires out.is_open
+     */
+    private static void measure(SimpleWriter out, String name,
+            Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytesAfter = allocatedBytes();
+        String bytes = "n/a";
+        if (bytesBefore >= 0) {
+            bytes = String.format("%.1f",
+                    (double) (bytesAfter - bytesBefore) / ITERATIONS);
+        }
+        out.println(name + "\t" + bytes + "\t"
+                + String.format("%.1f", (double) elapsed / ITERATIONS));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("operation\tbytes/op\tns/op");
+
+        measure(out, "new Map4()", () -> {
+            sink = new Map4<String, Integer>();
+        });
+        measure(out, "new Map4(" + LARGE_TABLE_SIZE + ")", () -> {
+            sink = new Map4<String, Integer>(LARGE_TABLE_SIZE);
+        });
+
+        Map<String, Integer> cleared = new Map4<>(LARGE_TABLE_SIZE);
+        measure(out, "clear() (" + LARGE_TABLE_SIZE + " buckets)", () -> {
+            cleared.clear();
+        });
+
+        Map<String, Integer> prototype = new Map4<>();
+        measure(out, "newInstance()", () -> {
+            sink = prototype.newInstance();
+        });
+
+        /*
+         * Swapping two maps back and forth, as Program2.swapContext does,
+         * resets the source of every transfer
+         */
+        Map<String, Integer> first = new Map4<>(LARGE_TABLE_SIZE);
+        Map<String, Integer> second = new Map4<>(LARGE_TABLE_SIZE);
+        first.add("key", 1);
+        measure(out, "swap, 2 x transferFrom() (" + LARGE_TABLE_SIZE
+                + " buckets)", () -> {
+                    second.transferFrom(first);
+                    first.transferFrom(second);
+                });
+
+        measure(out, "new Map4() + first add", () -> {
+            Map<String, Integer> map = new Map4<>();
+            map.add("key", 1);
+            sink = map;
+        });
+
+        out.close();
+    }
+
+}
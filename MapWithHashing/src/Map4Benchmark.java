@@ -0,0 +1,107 @@
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times {@code Map4} lookups on maps of growing size, to check that a
+ * resizing {@code Map4} keeps the cost of a lookup flat as the number of keys
+ * grows.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4Benchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4Benchmark() {
+    }
+
+    /**
+     * Smallest number of keys timed.
+     */
+    private static final int MIN_KEYS = 1_000;
+
+    /**
+     * Largest number of keys timed.
+     */
+    private static final int MAX_KEYS = 10_000_000;
+
+    /**
+     * Number of lookups timed for each map size.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Load factor of the resizing maps.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Returns the key used for entry {@code i}.
+     *
+     * @param i
+     *            the entry number
+     * @return the key for entry {@code i}
+     */
+    private static String key(int i) {
+        return "word" + i;
+    }
+
+    /**
+     * Fills {@code map} with {@code n} keys and returns the average number of
+     * nanoseconds taken by a {@code hasKey} followed by a {@code value}.
+     *
+     * @param map
+     *            the map to fill and time
+     * @param n
+     *            the number of keys
+     * @return nanoseconds per lookup
+     * @updates map
+     * @requires map = {}
+     */
+    private static double timeLookups(Map<String, Integer> map, int n) {
+        for (int i = 0; i < n; i++) {
+            map.add(key(i), i);
+        }
+        /*
+         * Build the probe keys up front so that string building is not timed
+         */
+        String[] probes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = key((int) ((i * 2_654_435_761L) % n));
+        }
+        long sum = 0;
+        long start = System.nanoTime();
+        for (String probe : probes) {
+            if (map.hasKey(probe)) {
+                sum += map.value(probe);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        //use the sum so the lookups cannot be optimized away
+        if (sum < 0) {
+            throw new AssertionError("Unexpected negative sum");
+        }
+        return (double) elapsed / LOOKUPS;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("keys\tns/lookup (resizing, load factor " + LOAD_FACTOR
+                + ")");
+        for (int n = MIN_KEYS; n <= MAX_KEYS; n *= 10) {
+            Map<String, Integer> map = new Map4<>(101, LOAD_FACTOR);
+            out.println(n + "\t" + String.format("%.1f", timeLookups(map, n)));
+        }
+        out.close();
+    }
+
+}
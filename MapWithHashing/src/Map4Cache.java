@@ -0,0 +1,953 @@
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Bounded cache, with the interface of a {@code Map}, whose keys are indexed
+ * by a {@code Map4} hash table.
+ *
+ * <p>
+ * A cache never holds more than its maximum size. When {@code add} would go
+ * past it, an entry is evicted, chosen by the cache's policy:
+ * <ul>
+ * <li>{@link Policy#LRU}: the least recently used entry.</li>
+ * <li>{@link Policy#TINY_LFU}: Window TinyLFU. New entries enter a small LRU
+ * window; an entry leaving the window is admitted to the main segmented LRU
+ * only if it has been asked for more often than the main segment's next
+ * victim, according to a count-min sketch of recent access frequencies that
+ * counts misses as well as hits. This keeps a burst of one-time keys from
+ * flushing out keys that are used again and again.</li>
+ * </ul>
+ * A cache may also have a time to live, counted from when an entry is added.
+ * An entry that has outlived it is dropped when {@code hasKey} or
+ * {@code getIfPresent} finds it, or by a bounded sweep of the oldest entries
+ * at each {@code add}. Every operation, eviction and expiry included, takes
+ * constant time apart from the amortized cost of the underlying
+ * {@code Map4}.
+ *
+ * <p>
+ * Unlike other {@code Map}s, a cache drops entries by itself, but only at
+ * the points above: an entry reported by {@code hasKey} stays until the next
+ * {@code add}, so code written against {@code Map} that checks
+ * {@code hasKey} before {@code value} works unchanged. {@code hasKey},
+ * {@code value}, and {@code getIfPresent} count as uses of a key for the
+ * eviction policy; hits and misses are counted by {@code hasKey} and
+ * {@code getIfPresent}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * $this.maximumSize > 0  and  $this.timeToLive >= 0  and
+ * [$this.index maps the key of every node to that node]  and
+ * [every node of $this.index is in exactly one of the queues, and
+ *  $this.queueSizes holds the number of nodes in each]  and
+ * [every node of $this.index is in the write-order list, in the order the
+ *  nodes were added]  and
+ * $this.index.size() <= $this.maximumSize  and
+ * if $this.policy = LRU then
+ *   [all nodes are in the PROBATION queue]
+ * else
+ *   $this.queueSizes[WINDOW] <= $this.windowMaximum  and
+ *   $this.queueSizes[PROTECTED] <= $this.protectedMaximum
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *            where ((k, n) is in $this.index  and  v = n.entry.value)}
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class Map4Cache<K, V> extends MapSecondary<K, V> {
+
+    /**
+     * Eviction policies.
+     */
+    public enum Policy {
+        /**
+         * Evict the least recently used entry.
+         */
+        LRU,
+
+        /**
+         * Window TinyLFU: admit entries to the main cache by recent access
+         * frequency.
+         */
+        TINY_LFU
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Maximum ratio of size to buckets of the index.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Percentage of the maximum size given to the TinyLFU window.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * Percentage of the main segment given to its protected part.
+     */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * Maximum number of expired entries dropped by the sweep of one
+     * {@code add}.
+     */
+    private static final int EXPIRY_SWEEP_LIMIT = 4;
+
+    /**
+     * Queue of new entries under TinyLFU.
+     */
+    private static final int WINDOW = 0;
+
+    /**
+     * Queue of entries admitted to the main segment but not used since; the
+     * only queue under LRU.
+     */
+    private static final int PROBATION = 1;
+
+    /**
+     * Queue of entries used while in probation.
+     */
+    private static final int PROTECTED = 2;
+
+    /**
+     * Number of queues.
+     */
+    private static final int QUEUES = 3;
+
+    /**
+     * Cache entry, linked into one recency queue and into the write-order
+     * list. Its key and value are kept as the pair handed out for it.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Node<K, V> {
+
+        /**
+         * The key and value.
+         */
+        private final MapPair<K, V> entry;
+
+        /**
+         * Time at which the entry expires, by the cache's ticker.
+         */
+        private final long expiresAt;
+
+        /**
+         * Queue the node is in.
+         */
+        private int queue;
+
+        /**
+         * Neighbor toward the most recently used end of the queue.
+         */
+        private Node<K, V> previous;
+
+        /**
+         * Neighbor toward the least recently used end of the queue.
+         */
+        private Node<K, V> next;
+
+        /**
+         * Neighbor added just before this one.
+         */
+        private Node<K, V> older;
+
+        /**
+         * Neighbor added just after this one.
+         */
+        private Node<K, V> newer;
+
+        /**
+         * Constructor from key, value, and expiry time.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param expiresAt
+         *            the expiry time
+         */
+        Node(K key, V value, long expiresAt) {
+            this.entry = new MapPair<K, V>(key, value);
+            this.expiresAt = expiresAt;
+            this.previous = this;
+            this.next = this;
+            this.older = this;
+            this.newer = this;
+        }
+
+    }
+
+    /**
+     * Count-min sketch of recent access frequencies, with 4-bit counters
+     * that are halved in a rolling sweep so that old accesses fade.
+     */
+    private static final class FrequencySketch {
+
+        /**
+         * Number of rows, each indexed by a different hash.
+         */
+        private static final int DEPTH = 4;
+
+        /**
+         * Largest counter value.
+         */
+        private static final int MAX_COUNT = 15;
+
+        /**
+         * Number of accesses, as a multiple of the cache size, over which
+         * every counter is halved once.
+         */
+        private static final int SAMPLE_FACTOR = 10;
+
+        /**
+         * Number of counters in a row per entry of the cache, so that few
+         * keys share all their counters.
+         */
+        private static final int WIDTH_FACTOR = 4;
+
+        /**
+         * Largest number of counters in a row.
+         */
+        private static final int MAX_WIDTH = 1 << 24;
+
+        /**
+         * Odd constants making the hash of each row different.
+         */
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B,
+            0xC2B2AE35, 0x27D4EB2F };
+
+        /**
+         * Counters, row after row.
+         */
+        private final byte[] counters;
+
+        /**
+         * Number of counters in a row; a power of 2.
+         */
+        private final int width;
+
+        /**
+         * Number of counters halved at each increment.
+         */
+        private final int agingStep;
+
+        /**
+         * Next counter to be halved.
+         */
+        private int agingCursor;
+
+        /**
+         * Constructor from cache size.
+         *
+         * @param maximumSize
+         *            the maximum size of the cache
+         * @requires maximumSize > 0
+         */
+        FrequencySketch(int maximumSize) {
+            this.width = HashStrategy.MixedMask
+                    .powerOfTwoAtLeast((int) Math.min(MAX_WIDTH,
+                            (long) WIDTH_FACTOR * maximumSize));
+            this.counters = new byte[DEPTH * this.width];
+            long sample = (long) SAMPLE_FACTOR * maximumSize;
+            this.agingStep = (int) Math.max(1,
+                    (this.counters.length + sample - 1) / sample);
+            this.agingCursor = 0;
+        }
+
+        /**
+         * Returns the position of the counter for {@code hash} in row
+         * {@code row}.
+         *
+         * @param hash
+         *            the key's hash code
+         * @param row
+         *            the row
+         * @return the counter position
+         */
+        private int slot(int hash, int row) {
+            return row * this.width
+                    + (HashStrategy.MixedMask.mix(hash * SEEDS[row])
+                            & (this.width - 1));
+        }
+
+        /**
+         * Reports the estimated recent access frequency of a key.
+         *
+         * @param hash
+         *            the key's hash code
+         * @return the estimated frequency
+         */
+        int frequency(int hash) {
+            int estimate = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate,
+                        this.counters[this.slot(hash, row)]);
+            }
+            return estimate;
+        }
+
+        /**
+         * Records an access of a key, and halves the next few counters.
+         *
+         * @param hash
+         *            the key's hash code
+         */
+        void increment(int hash) {
+            for (int row = 0; row < DEPTH; row++) {
+                int i = this.slot(hash, row);
+                if (this.counters[i] < MAX_COUNT) {
+                    this.counters[i]++;
+                }
+            }
+            for (int k = 0; k < this.agingStep; k++) {
+                this.counters[this.agingCursor] >>= 1;
+                this.agingCursor = (this.agingCursor + 1)
+                        % this.counters.length;
+            }
+        }
+
+    }
+
+    /**
+     * Maps each key to its node.
+     */
+    private Map4<K, Node<K, V>> index;
+
+    /**
+     * Sentinel of each queue; its {@code next} is the most recently used node
+     * and its {@code previous} the least recently used.
+     */
+    private Node<K, V>[] queueHeads;
+
+    /**
+     * Number of nodes in each queue.
+     */
+    private int[] queueSizes;
+
+    /**
+     * Sentinel of the write-order list; its {@code newer} is the oldest node.
+     */
+    private Node<K, V> writeOrder;
+
+    /**
+     * Access frequencies, or {@code null} under LRU.
+     */
+    private FrequencySketch sketch;
+
+    /**
+     * Maximum number of entries.
+     */
+    private int maximumSize;
+
+    /**
+     * Eviction policy.
+     */
+    private Policy policy;
+
+    /**
+     * Time to live of an entry in ticker units, or 0 if entries never expire.
+     */
+    private long timeToLive;
+
+    /**
+     * Source of the current time, in nanoseconds.
+     */
+    private LongSupplier ticker;
+
+    /**
+     * Maximum size of the TinyLFU window.
+     */
+    private int windowMaximum;
+
+    /**
+     * Maximum size of the protected queue.
+     */
+    private int protectedMaximum;
+
+    /**
+     * Number of lookups that found their key.
+     */
+    private long hitCount;
+
+    /**
+     * Number of lookups that did not find their key.
+     */
+    private long missCount;
+
+    /**
+     * Number of entries evicted to keep within the maximum size.
+     */
+    private long evictionCount;
+
+    /**
+     * Number of entries dropped because they expired.
+     */
+    private long expirationCount;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param size
+     *            the maximum size
+     * @param evictionPolicy
+     *            the eviction policy
+     * @param ttl
+     *            the time to live in nanoseconds, or 0
+     * @param clock
+     *            the source of the current time
+     * @requires size > 0  and  ttl >= 0
+     * @ensures this = {}
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(int size, Policy evictionPolicy, long ttl,
+            LongSupplier clock) {
+        this.maximumSize = size;
+        this.policy = evictionPolicy;
+        this.timeToLive = ttl;
+        this.ticker = clock;
+        //the cache never outgrows its bound, so its index never resizes
+        this.index = new Map4<>((int) Math.ceil(size / LOAD_FACTOR));
+        this.queueHeads = (Node<K, V>[]) new Node<?, ?>[QUEUES];
+        for (int q = 0; q < QUEUES; q++) {
+            this.queueHeads[q] = new Node<K, V>(null, null, 0);
+        }
+        this.queueSizes = new int[QUEUES];
+        this.writeOrder = new Node<K, V>(null, null, 0);
+        if (evictionPolicy == Policy.TINY_LFU) {
+            this.sketch = new FrequencySketch(size);
+            this.windowMaximum = Math.max(1, size * WINDOW_PERCENT / 100);
+            int mainMaximum = size - this.windowMaximum;
+            this.protectedMaximum = mainMaximum * PROTECTED_PERCENT / 100;
+        } else {
+            this.sketch = null;
+            this.windowMaximum = 0;
+            this.protectedMaximum = 0;
+        }
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+        this.expirationCount = 0;
+    }
+
+    /**
+     * Links {@code node} into queue {@code queue} as its most recently used
+     * node.
+     *
+     * @param node
+     *            the node
+     * @param queue
+     *            the queue
+     * @requires [node is in no queue]
+     */
+    private void pushFront(Node<K, V> node, int queue) {
+        Node<K, V> head = this.queueHeads[queue];
+        node.queue = queue;
+        node.previous = head;
+        node.next = head.next;
+        head.next.previous = node;
+        head.next = node;
+        this.queueSizes[queue]++;
+    }
+
+    /**
+     * Unlinks {@code node} from its queue.
+     *
+     * @param node
+     *            the node
+     * @requires [node is in a queue]
+     */
+    private void unlinkQueue(Node<K, V> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = node;
+        node.next = node;
+        this.queueSizes[node.queue]--;
+    }
+
+    /**
+     * Returns the least recently used node of queue {@code queue}, or
+     * {@code null} if it is empty.
+     *
+     * @param queue
+     *            the queue
+     * @return the least recently used node, or {@code null}
+     */
+    private Node<K, V> leastRecent(int queue) {
+        Node<K, V> last = null;
+        if (this.queueSizes[queue] > 0) {
+            last = this.queueHeads[queue].previous;
+        }
+        return last;
+    }
+
+    /**
+     * Drops {@code node} from the cache.
+     *
+     * @param node
+     *            the node
+     * @updates this
+     * @requires [node is in the cache]
+     * @ensures this = #this \ {node.entry}
+     */
+    private void removeNode(Node<K, V> node) {
+        this.unlinkQueue(node);
+        node.older.newer = node.newer;
+        node.newer.older = node.older;
+        node.older = node;
+        node.newer = node;
+        this.index.remove(node.entry.key());
+    }
+
+    /**
+     * Reports whether {@code node} has outlived the time to live.
+     *
+     * @param node
+     *            the node
+     * @return true iff {@code node} has expired
+     */
+    private boolean isExpired(Node<K, V> node) {
+        return this.timeToLive > 0
+                && this.ticker.getAsLong() - node.expiresAt >= 0;
+    }
+
+    /**
+     * Drops up to {@code EXPIRY_SWEEP_LIMIT} of the oldest entries, stopping
+     * at the first one that has not expired.
+     *
+     * @updates this
+     */
+    private void sweepExpired() {
+        if (this.timeToLive > 0) {
+            int dropped = 0;
+            Node<K, V> oldest = this.writeOrder.newer;
+            while (dropped < EXPIRY_SWEEP_LIMIT && oldest != this.writeOrder
+                    && this.isExpired(oldest)) {
+                this.removeNode(oldest);
+                this.expirationCount++;
+                dropped++;
+                oldest = this.writeOrder.newer;
+            }
+        }
+    }
+
+    /**
+     * Finds the node of {@code key}, dropping it if it has expired, and
+     * counts the lookup as a use of {@code key}, a hit, or a miss.
+     *
+     * @param key
+     *            the key
+     * @return the node of {@code key}, or {@code null}
+     * @updates this
+     */
+    private Node<K, V> lookUp(K key) {
+        Node<K, V> node = this.index.getOrDefault(key, null);
+        if (node != null && this.isExpired(node)) {
+            this.removeNode(node);
+            this.expirationCount++;
+            node = null;
+        }
+        if (this.sketch != null) {
+            //misses are counted too, so a key asked for often gets admitted
+            this.sketch.increment(key.hashCode());
+        }
+        if (node == null) {
+            this.missCount++;
+        } else {
+            this.hitCount++;
+            this.touch(node);
+        }
+        return node;
+    }
+
+    /**
+     * Moves {@code node} up its queue after a use, promoting it from
+     * probation to protected under TinyLFU.
+     *
+     * @param node
+     *            the node
+     * @updates this
+     * @ensures this = #this
+     */
+    private void touch(Node<K, V> node) {
+        int queue = node.queue;
+        this.unlinkQueue(node);
+        if (queue == PROBATION && this.policy == Policy.TINY_LFU) {
+            this.pushFront(node, PROTECTED);
+            if (this.queueSizes[PROTECTED] > this.protectedMaximum) {
+                Node<K, V> demoted = this.leastRecent(PROTECTED);
+                this.unlinkQueue(demoted);
+                this.pushFront(demoted, PROBATION);
+            }
+        } else {
+            this.pushFront(node, queue);
+        }
+    }
+
+    /**
+     * Evicts entries until the cache is within its maximum size and, under
+     * TinyLFU, the window is within its share.
+     *
+     * @updates this
+     * @ensures this is subset of #this
+     */
+    private void evict() {
+        if (this.policy == Policy.LRU) {
+            if (this.index.size() > this.maximumSize) {
+                this.removeNode(this.leastRecent(PROBATION));
+                this.evictionCount++;
+            }
+        } else if (this.queueSizes[WINDOW] > this.windowMaximum) {
+            Node<K, V> candidate = this.leastRecent(WINDOW);
+            this.unlinkQueue(candidate);
+            if (this.index.size() <= this.maximumSize) {
+                //the main segment has room
+                this.pushFront(candidate, PROBATION);
+            } else {
+                Node<K, V> victim = this.leastRecent(PROBATION);
+                if (victim == null) {
+                    victim = this.leastRecent(PROTECTED);
+                }
+                if (victim != null && this.sketch.frequency(
+                        candidate.entry.key().hashCode()) > this.sketch
+                                .frequency(victim.entry.key().hashCode())) {
+                    this.pushFront(candidate, PROBATION);
+                    this.removeNode(victim);
+                } else {
+                    /*
+                     * The candidate is linked back in only so removeNode can
+                     * unlink it
+                     */
+                    this.pushFront(candidate, WINDOW);
+                    this.removeNode(candidate);
+                }
+                this.evictionCount++;
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for an LRU cache of at most {@code maximumSize} entries that
+     * never expire.
+     *
+     * @param maximumSize
+     *            the maximum number of entries
+     * @requires maximumSize > 0
+     * @ensures this = {}
+     */
+    public Map4Cache(int maximumSize) {
+        this(maximumSize, Policy.LRU, Duration.ZERO);
+    }
+
+    /**
+     * Constructor for a cache of at most {@code maximumSize} entries, evicted
+     * by {@code policy}, whose entries expire {@code timeToLive} after they
+     * are added, or never if {@code timeToLive} is zero.
+     *
+     * @param maximumSize
+     *            the maximum number of entries
+     * @param policy
+     *            the eviction policy
+     * @param timeToLive
+     *            the time to live of an entry, or zero
+     * @requires <pre>
+     * maximumSize > 0  and  policy /= null  and
+     * timeToLive /= null  and  timeToLive >= 0
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4Cache(int maximumSize, Policy policy, Duration timeToLive) {
+        this(maximumSize, policy, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * Constructor as for {@link #Map4Cache(int, Policy, Duration)}, reading
+     * the time from {@code ticker}, in nanoseconds.
+     *
+     * @param maximumSize
+     *            the maximum number of entries
+     * @param policy
+     *            the eviction policy
+     * @param timeToLive
+     *            the time to live of an entry, or zero
+     * @param ticker
+     *            the source of the current time
+     * @requires <pre>
+     * maximumSize > 0  and  policy /= null  and
+     * timeToLive /= null  and  timeToLive >= 0  and  ticker /= null
+     * </pre>
+     * @ensures this = {}
+     */
+    Map4Cache(int maximumSize, Policy policy, Duration timeToLive,
+            LongSupplier ticker) {
+        assert maximumSize > 0 : "Violation of: maximumSize > 0";
+        assert policy != null : "Violation of: policy is not null";
+        assert timeToLive != null : "Violation of: timeToLive is not null";
+        assert !timeToLive.isNegative() : "Violation of: timeToLive >= 0";
+        assert ticker != null : "Violation of: ticker is not null";
+
+        this.createNewRep(maximumSize, policy, timeToLive.toNanos(), ticker);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<K, V> newInstance() {
+        return new Map4Cache<K, V>(this.maximumSize, this.policy,
+                Duration.ofNanos(this.timeToLive), this.ticker);
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.maximumSize, this.policy, this.timeToLive,
+                this.ticker);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4Cache<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4Cache<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4Cache<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled.
+         */
+        Map4Cache<K, V> localSource = (Map4Cache<K, V>) source;
+        this.index = localSource.index;
+        this.queueHeads = localSource.queueHeads;
+        this.queueSizes = localSource.queueSizes;
+        this.writeOrder = localSource.writeOrder;
+        this.sketch = localSource.sketch;
+        this.maximumSize = localSource.maximumSize;
+        this.policy = localSource.policy;
+        this.timeToLive = localSource.timeToLive;
+        this.ticker = localSource.ticker;
+        this.windowMaximum = localSource.windowMaximum;
+        this.protectedMaximum = localSource.protectedMaximum;
+        this.hitCount = localSource.hitCount;
+        this.missCount = localSource.missCount;
+        this.evictionCount = localSource.evictionCount;
+        this.expirationCount = localSource.expirationCount;
+        localSource.createNewRep(localSource.maximumSize, localSource.policy,
+                localSource.timeToLive, localSource.ticker);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.index.hasKey(key) : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.sweepExpired();
+        long expiresAt = 0;
+        if (this.timeToLive > 0) {
+            expiresAt = this.ticker.getAsLong() + this.timeToLive;
+        }
+        Node<K, V> node = new Node<K, V>(key, value, expiresAt);
+        this.index.add(key, node);
+        node.older = this.writeOrder.older;
+        node.newer = this.writeOrder;
+        this.writeOrder.older.newer = node;
+        this.writeOrder.older = node;
+        if (this.policy == Policy.LRU) {
+            this.pushFront(node, PROBATION);
+        } else {
+            this.pushFront(node, WINDOW);
+        }
+        this.evict();
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.index.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        Node<K, V> node = this.index.value(key);
+        this.removeNode(node);
+        return node.entry;
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        //take the entry the policy would evict next
+        Node<K, V> node = this.leastRecent(WINDOW);
+        if (this.queueSizes[PROBATION] > 0) {
+            node = this.leastRecent(PROBATION);
+        } else if (this.queueSizes[PROTECTED] > 0) {
+            node = this.leastRecent(PROTECTED);
+        }
+        this.removeNode(node);
+        return node.entry;
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.index.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        Node<K, V> node = this.index.value(key);
+        //an entry reported by hasKey stays readable even if it expires now
+        this.touch(node);
+        return node.entry.value();
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.lookUp(key) != null;
+    }
+
+    @Override
+    public final int size() {
+        return this.index.size();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        Iterator<Pair<K, Node<K, V>>> entries = this.index.iterator();
+        return new Iterator<Pair<K, V>>() {
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Pair<K, V> next() {
+                return entries.next().value().entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "remove operation not supported");
+            }
+
+        };
+    }
+
+    /*
+     * Cache methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the value associated with {@code key}, or {@code null} if
+     * {@code key} is not in {@code this}, with a single lookup counted as a
+     * hit or a miss.
+     *
+     * @param key
+     *            the key
+     * @return the value for {@code key}, or {@code null}
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * [this is #this, less any expired entry for key]  and
+     * if key is in DOMAIN(this) then getIfPresent = this(key)
+     * else getIfPresent = null
+     * </pre>
+     */
+    public final V getIfPresent(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Node<K, V> node = this.lookUp(key);
+        V result = null;
+        if (node != null) {
+            result = node.entry.value();
+        }
+        return result;
+    }
+
+    /**
+     * Reports the maximum number of entries.
+     *
+     * @return the maximum size
+     */
+    public final int maximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Reports the number of lookups that found their key.
+     *
+     * @return the hit count
+     */
+    public final long hitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Reports the number of lookups that did not find their key.
+     *
+     * @return the miss count
+     */
+    public final long missCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Reports the fraction of lookups that found their key, or 0 if there
+     * have been none.
+     *
+     * @return the hit rate
+     */
+    public final double hitRate() {
+        long lookups = this.hitCount + this.missCount;
+        double rate = 0;
+        if (lookups > 0) {
+            rate = (double) this.hitCount / lookups;
+        }
+        return rate;
+    }
+
+    /**
+     * Reports the number of entries evicted to keep within the maximum size.
+     *
+     * @return the eviction count
+     */
+    public final long evictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Reports the number of entries dropped because they expired.
+     *
+     * @return the expiration count
+     */
+    public final long expirationCount() {
+        return this.expirationCount;
+    }
+
+}
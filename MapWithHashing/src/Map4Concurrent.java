@@ -0,0 +1,812 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Thread-safe {@code Map} represented as a hash table of singly-linked
+ * chains, with each group of buckets guarded by its own lock, that grows to
+ * keep the average number of entries per bucket at most a load factor, with
+ * implementations of primary methods.
+ *
+ * <p>
+ * Kernel methods, {@code replaceValue}, {@code merge}, and {@code increment}
+ * may be called from any number of threads at once. Lookups ({@code hasKey},
+ * {@code value}) never lock: chain links and values are {@code volatile}, and
+ * a chain is only changed by publishing a complete node. Updates lock only the
+ * stripe of the key's bucket, so updates of keys in different stripes run in
+ * parallel. {@code size} is kept in a striped counter so it is not a point of
+ * contention.
+ *
+ * <p>
+ * An update that leaves more than load factor times as many entries as
+ * buckets grows the table from n to 2n+1 buckets. The resize takes every
+ * stripe's lock, so it waits for the updates in progress and holds up the
+ * rest, and it links copies of the nodes into the new table, so lookups
+ * still walking the old one are not disturbed. An update that finds the
+ * table replaced after taking its lock starts again in the new table. The
+ * table never grows beyond {@code MAX_TABLE_SIZE} buckets, after which the
+ * chains just get longer, and it never shrinks.
+ *
+ * <p>
+ * The Standard methods ({@code clear}, {@code newInstance},
+ * {@code transferFrom}) and iterators are not atomic with respect to
+ * concurrent updates; iterators are weakly consistent.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * $this.initialTableSize <= |$this.table| <= MAX_TABLE_SIZE  and
+ * $this.loadFactor >= 0  and  |$this.locks| > 0  and
+ * for all i: integer, n: Node
+ *     where (0 <= i  and  i < |$this.table|  and
+ *            [n is in the chain starting at $this.table[i]])
+ *   (n.hash = [computed result of n.key.hashCode()]  and
+ *    n.hash mod |$this.table| = i  and
+ *    n.value /= null)  and
+ * [the keys of all nodes in all chains are pairwise not equal]  and
+ * [chain i is changed only while holding $this.locks[i mod |$this.locks|]]
+ * and
+ * [$this.table is replaced only while holding every lock of $this.locks]
+ * and
+ * $this.count = [total number of nodes in all chains]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *            where (there exists n: Node
+ *                     ([n is in some chain]  and
+ *                      n.key = k  and  n.value = v))}
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class Map4Concurrent<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default initial size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 1009;
+
+    /**
+     * Default load factor.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest size the hash table grows to.
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Number of lock stripes per available processor.
+     */
+    private static final int STRIPES_PER_PROCESSOR = 4;
+
+    /**
+     * Chain node.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Node<K, V> implements Pair<K, V> {
+
+        /**
+         * Key.
+         */
+        private final K key;
+
+        /**
+         * Hash code of key.
+         */
+        private final int hash;
+
+        /**
+         * Value; written only under the bucket's lock.
+         */
+        private volatile V value;
+
+        /**
+         * Next node in the chain; written only under the bucket's lock.
+         */
+        private volatile Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of {@code key}
+         * @param value
+         *            the value
+         * @param next
+         *            the next node in the chain
+         */
+        Node(K key, int hash, V value, Node<K, V> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Bucket heads; replaced by a larger table as the map grows.
+     */
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+
+    /**
+     * Size of hash table to start with, and to go back to on {@code clear}.
+     */
+    private int initialTableSize;
+
+    /**
+     * Maximum average number of entries per bucket, or 0 for a table that
+     * never changes size.
+     */
+    private double loadFactor;
+
+    /**
+     * Lock stripes; bucket i is guarded by {@code locks[i mod |locks|]}.
+     */
+    private ReentrantLock[] locks;
+
+    /**
+     * Striped count of entries.
+     */
+    private LongAdder count;
+
+    /**
+     * Bucket at which the next {@code removeAny} starts looking: the last one
+     * it took an entry from, so that draining the map sweeps the table once
+     * instead of looking through the buckets it has emptied again each time.
+     */
+    private AtomicInteger removeAnyHint;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the initial size of the hash table
+     * @param loadFactor
+     *            the load factor, or 0 for a table that never changes size
+     * @requires 0 < hashTableSize <= MAX_TABLE_SIZE  and  loadFactor >= 0
+     * @ensures <pre>
+     * |$this.table| = hashTableSize  and  [all chains are empty]  and
+     * $this.initialTableSize = hashTableSize  and
+     * $this.loadFactor = loadFactor  and  $this.count = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize, double loadFactor) {
+        //the stripes outnumber the processors however small the table is
+        int stripes = STRIPES_PER_PROCESSOR
+                * Runtime.getRuntime().availableProcessors();
+        this.table = new AtomicReferenceArray<>(hashTableSize);
+        this.initialTableSize = hashTableSize;
+        this.loadFactor = loadFactor;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.count = new LongAdder();
+        this.removeAnyHint = new AtomicInteger();
+    }
+
+    /**
+     * Returns the lock guarding bucket {@code bucket}.
+     *
+     * @param bucket
+     *            the bucket index
+     * @return the lock for {@code bucket}
+     */
+    private ReentrantLock lockFor(int bucket) {
+        return this.locks[bucket % this.locks.length];
+    }
+
+    /**
+     * Takes the lock of the bucket of hash code {@code hash} in the current
+     * table, and returns that table. If a resize replaces the table before
+     * the lock is taken, the lock is released and taken again for the bucket
+     * in the new table.
+     *
+     * @param hash
+     *            the hash code
+     * @return the current table, in which the lock for bucket
+     *         {@code hash mod |table|} is now held
+     * @ensures <pre>
+     * lockTableFor = $this.table  and
+     * [the lock for bucket hash mod |$this.table| is held]
+     * </pre>
+     */
+    private AtomicReferenceArray<Node<K, V>> lockTableFor(int hash) {
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        ReentrantLock lock = this.lockFor(
+                HashStrategy.Modulus.mod(hash, tab.length()));
+        lock.lock();
+        while (tab != this.table) {
+            lock.unlock();
+            tab = this.table;
+            lock = this.lockFor(HashStrategy.Modulus.mod(hash, tab.length()));
+            lock.lock();
+        }
+        return tab;
+    }
+
+    /**
+     * Grows the table if it holds more than {@code loadFactor} entries per
+     * bucket and can still grow.
+     *
+     * @param tab
+     *            the table the caller has just added to
+     * @updates $this.table
+     * @requires [no lock of $this.locks is held by the calling thread]
+     * @ensures <pre>
+     * [if tab was still $this.table and was overloaded, $this.table is a
+     *  larger table with the same entries]
+     * </pre>
+     */
+    private void growIfOverloaded(AtomicReferenceArray<Node<K, V>> tab) {
+        int tableSize = tab.length();
+        if (this.loadFactor > 0 && tableSize <= (MAX_TABLE_SIZE - 1) / 2
+                && this.count.sum() > this.loadFactor * tableSize) {
+            ReentrantLock[] stripes = this.locks;
+            //take the stripes in order, so two resizes cannot deadlock
+            for (ReentrantLock lock : stripes) {
+                lock.lock();
+            }
+            try {
+                //another thread may have grown the table already
+                if (tab == this.table) {
+                    this.table = grown(tab, 2 * tableSize + 1);
+                }
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a table of {@code newTableSize} buckets holding copies of the
+     * nodes of {@code tab}. The nodes of {@code tab} are left as they are, so
+     * that a lookup in {@code tab} that has not finished still works.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param tab
+     *            the table to copy
+     * @param newTableSize
+     *            the size of the new table
+     * @return the new table
+     * @requires <pre>
+     * newTableSize > 0  and
+     * [no chain of tab is changed during the call]
+     * </pre>
+     * @ensures <pre>
+     * |grown| = newTableSize  and
+     * [grown holds a copy of each node of tab, in chain
+     *  node.hash mod newTableSize]
+     * </pre>
+     */
+    private static <K, V> AtomicReferenceArray<Node<K, V>> grown(
+            AtomicReferenceArray<Node<K, V>> tab, int newTableSize) {
+        AtomicReferenceArray<Node<K, V>> result = new AtomicReferenceArray<>(
+                newTableSize);
+        for (int i = 0; i < tab.length(); i++) {
+            for (Node<K, V> n = tab.get(i); n != null; n = n.next) {
+                int bucket = HashStrategy.Modulus.mod(n.hash, newTableSize);
+                result.set(bucket, new Node<K, V>(n.key, n.hash, n.value,
+                        result.get(bucket)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node for {@code key} in chain {@code bucket} of {@code tab},
+     * or {@code null} if there is none. Takes no lock.
+     *
+     * @param tab
+     *            the table
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of {@code key}
+     * @param bucket
+     *            the bucket index
+     * @return the node holding {@code key}, or {@code null}
+     */
+    private Node<K, V> find(AtomicReferenceArray<Node<K, V>> tab, K key,
+            int hash, int bucket) {
+        Node<K, V> n = tab.get(bucket);
+        while (n != null && !(n.hash == hash && n.key.equals(key))) {
+            n = n.next;
+        }
+        return n;
+    }
+
+    /**
+     * Unlinks {@code target} from chain {@code bucket} of {@code tab}.
+     *
+     * @param tab
+     *            the table
+     * @param target
+     *            the node to unlink
+     * @param bucket
+     *            the bucket index
+     * @requires <pre>
+     * tab = $this.table  and
+     * [the lock for bucket is held and target is in chain bucket]
+     * </pre>
+     * @ensures [target is no longer in chain bucket]
+     */
+    private void unlink(AtomicReferenceArray<Node<K, V>> tab, Node<K, V> target,
+            int bucket) {
+        Node<K, V> head = tab.get(bucket);
+        if (head == target) {
+            tab.set(bucket, target.next);
+        } else {
+            Node<K, V> pred = head;
+            while (pred.next != target) {
+                pred = pred.next;
+            }
+            /*
+             * Readers already at target still find the rest of the chain
+             * through target.next, which is left unchanged
+             */
+            pred.next = target.next;
+        }
+        this.count.decrement();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4Concurrent() {
+        this.createNewRep(DEFAULT_HASH_TABLE_SIZE, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor resulting in a hash table that starts with
+     * {@code hashTableSize} buckets and grows with the default load factor.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @requires 0 < hashTableSize <= MAX_TABLE_SIZE
+     * @ensures this = {}
+     */
+    public Map4Concurrent(int hashTableSize) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert hashTableSize <= MAX_TABLE_SIZE : ""
+                + "Violation of: hashTableSize <= MAX_TABLE_SIZE";
+
+        this.createNewRep(hashTableSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor resulting in a hash table that starts with
+     * {@code hashTableSize} buckets and grows to keep the average number of
+     * entries per bucket at most {@code loadFactor}, up to
+     * {@code MAX_TABLE_SIZE} (2^30) buckets.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum average number of entries per bucket, or 0 for a
+     *            table that never changes size
+     * @requires 0 < hashTableSize <= MAX_TABLE_SIZE  and  loadFactor >= 0
+     * @ensures this = {}
+     */
+    public Map4Concurrent(int hashTableSize, double loadFactor) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert hashTableSize <= MAX_TABLE_SIZE : ""
+                + "Violation of: hashTableSize <= MAX_TABLE_SIZE";
+        assert loadFactor >= 0 : "Violation of: loadFactor >= 0";
+
+        this.createNewRep(hashTableSize, loadFactor);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialTableSize, this.loadFactor);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4Concurrent<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4Concurrent<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4Concurrent<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        Map4Concurrent<K, V> localSource = (Map4Concurrent<K, V>) source;
+        this.table = localSource.table;
+        this.initialTableSize = localSource.initialTableSize;
+        this.loadFactor = localSource.loadFactor;
+        this.locks = localSource.locks;
+        this.count = localSource.count;
+        this.removeAnyHint = localSource.removeAnyHint;
+        localSource.createNewRep(localSource.initialTableSize,
+                localSource.loadFactor);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.lockTableFor(hash);
+        int bucket = HashStrategy.Modulus.mod(hash, tab.length());
+        try {
+            //publish a fully built node at the head of the chain
+            tab.set(bucket, new Node<K, V>(key, hash, value, tab.get(bucket)));
+            this.count.increment();
+        } finally {
+            this.lockFor(bucket).unlock();
+        }
+        this.growIfOverloaded(tab);
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.lockTableFor(hash);
+        int bucket = HashStrategy.Modulus.mod(hash, tab.length());
+        try {
+            Node<K, V> n = this.find(tab, key, hash, bucket);
+            this.unlink(tab, n, bucket);
+            return new MapPair<K, V>(n.key, n.value);
+        } finally {
+            this.lockFor(bucket).unlock();
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        int tableSize = tab.length();
+        int bucket = HashStrategy.Modulus.mod(this.removeAnyHint.get(),
+                tableSize);
+        int bucketsChecked = 0;
+        Pair<K, V> removed = null;
+        /*
+         * Another thread may empty a bucket between the unlocked check and
+         * taking its lock, so the head is checked again under the lock
+         */
+        while (removed == null) {
+            if (bucketsChecked == tableSize) {
+                /*
+                 * Only possible if other threads emptied the map after the
+                 * precondition was checked
+                 */
+                throw new NoSuchElementException();
+            }
+            bucketsChecked++;
+            if (tab.get(bucket) != null) {
+                ReentrantLock lock = this.lockFor(bucket);
+                lock.lock();
+                try {
+                    if (tab != this.table) {
+                        //the table grew, so look again in the new one
+                        tab = this.table;
+                        tableSize = tab.length();
+                        bucketsChecked = 0;
+                    } else {
+                        Node<K, V> head = tab.get(bucket);
+                        if (head != null) {
+                            this.unlink(tab, head, bucket);
+                            removed = new MapPair<K, V>(head.key,
+                                    head.value);
+                            this.removeAnyHint.set(bucket);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            bucket = (bucket + 1) % tableSize;
+        }
+        return removed;
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        return this.find(tab, key, hash,
+                HashStrategy.Modulus.mod(hash, tab.length())).value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.table;
+        return this.find(tab, key, hash,
+                HashStrategy.Modulus.mod(hash, tab.length())) != null;
+    }
+
+    @Override
+    public final int size() {
+        return (int) this.count.sum();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4ConcurrentIterator();
+    }
+
+    /*
+     * Atomic update methods --------------------------------------------------
+     */
+
+    @Override
+    public final V replaceValue(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.lockTableFor(hash);
+        int bucket = HashStrategy.Modulus.mod(hash, tab.length());
+        try {
+            Node<K, V> n = this.find(tab, key, hash, bucket);
+            V old = n.value;
+            n.value = value;
+            return old;
+        } finally {
+            this.lockFor(bucket).unlock();
+        }
+    }
+
+    /**
+     * Atomically combines {@code value} into the value associated with
+     * {@code key}, or adds {@code (key, value)} if {@code key} is absent. If
+     * {@code combiner} returns {@code null}, {@code key} is removed.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value to add or combine in
+     * @param combiner
+     *            the function combining the old value with {@code value}; it
+     *            runs while the key's stripe is locked, so it should be short
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         {@code key} was removed
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   [r = combiner(#this(key), value)]
+     * else
+     *   r = value  and
+     * if r = null then
+     *   this = #this \ {(key, #this(key))}
+     * else
+     *   this = (#this \ {(key, #this(key))}) union {(key, r)}  and
+     * merge = r
+     * </pre>
+     */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> combiner) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert combiner != null : "Violation of: combiner is not null";
+
+        int hash = key.hashCode();
+        AtomicReferenceArray<Node<K, V>> tab = this.lockTableFor(hash);
+        int bucket = HashStrategy.Modulus.mod(hash, tab.length());
+        boolean added = false;
+        V result;
+        try {
+            Node<K, V> n = this.find(tab, key, hash, bucket);
+            if (n == null) {
+                result = value;
+                tab.set(bucket,
+                        new Node<K, V>(key, hash, value, tab.get(bucket)));
+                this.count.increment();
+                added = true;
+            } else {
+                result = combiner.apply(n.value, value);
+                if (result == null) {
+                    this.unlink(tab, n, bucket);
+                } else {
+                    n.value = result;
+                }
+            }
+        } finally {
+            this.lockFor(bucket).unlock();
+        }
+        if (added) {
+            this.growIfOverloaded(tab);
+        }
+        return result;
+    }
+
+    /**
+     * Atomically adds {@code delta} to the count associated with {@code key}
+     * in {@code map}, starting from 0 if {@code key} is absent.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param map
+     *            the map of counts
+     * @param key
+     *            the key whose count changes
+     * @param delta
+     *            the amount to add
+     * @return the new count for {@code key}
+     * @updates map
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#map) then
+     *   map = (#map \ {(key, #map(key))}) union {(key, #map(key) + delta)}
+     * else
+     *   map = #map union {(key, delta)}  and
+     * increment = map(key)
+     * </pre>
+     */
+    public static <K> int increment(Map4Concurrent<K, Integer> map, K key,
+            int delta) {
+        assert map != null : "Violation of: map is not null";
+        assert key != null : "Violation of: key is not null";
+
+        return map.merge(key, delta, Integer::sum);
+    }
+
+    /**
+     * Reports the number of buckets of the current table.
+     *
+     * @return the table size
+     */
+    final int tableSize() {
+        return this.table.length();
+    }
+
+    /**
+     * Weakly consistent implementation of {@code Iterator} interface for
+     * {@code Map4Concurrent}: it never fails because of concurrent updates,
+     * and reports each entry present for the whole iteration exactly once.
+     * If the table grows meanwhile, it goes on through the table it started
+     * in, which no longer changes, so later updates are not seen.
+     */
+    private final class Map4ConcurrentIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Table being iterated.
+         */
+        private final AtomicReferenceArray<Node<K, V>> iteratedTable;
+
+        /**
+         * Bucket of {@code nextNode}.
+         */
+        private int currentBucket;
+
+        /**
+         * Node to be returned by the next call of {@code next}, or
+         * {@code null} if there is none.
+         */
+        private Node<K, V> nextNode;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4ConcurrentIterator() {
+            this.iteratedTable = Map4Concurrent.this.table;
+            this.currentBucket = -1;
+            this.nextNode = null;
+            this.advance();
+        }
+
+        /**
+         * Moves {@code nextNode} to the next node, skipping empty buckets.
+         */
+        private void advance() {
+            if (this.nextNode != null) {
+                this.nextNode = this.nextNode.next;
+            }
+            int tableSize = this.iteratedTable.length();
+            while (this.nextNode == null
+                    && this.currentBucket + 1 < tableSize) {
+                this.currentBucket++;
+                this.nextNode = this.iteratedTable.get(this.currentBucket);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<K, V> n = this.nextNode;
+            this.advance();
+            return new MapPair<K, V>(n.key, n.value);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
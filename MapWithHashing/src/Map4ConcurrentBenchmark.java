@@ -0,0 +1,115 @@
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures the throughput of {@code Map4Concurrent} on a mixed read/write
+ * word-counting workload as the number of threads grows, to check that it
+ * scales with the number of cores.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4ConcurrentBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4ConcurrentBenchmark() {
+    }
+
+    /**
+     * Number of distinct keys.
+     */
+    private static final int KEYS = 100_000;
+
+    /**
+     * Number of operations done by each thread.
+     */
+    private static final int OPERATIONS_PER_THREAD = 5_000_000;
+
+    /**
+     * One operation in this many is a write; the rest are reads.
+     */
+    private static final int WRITE_EVERY = 5;
+
+    /**
+     * Size of hash table.
+     */
+    private static final int HASH_TABLE_SIZE = 131_071;
+
+    /**
+     * Runs the workload on {@code threads} threads and returns the total
+     * throughput.
+     *
+     * @param threads
+     *            number of threads
+     * @param words
+     *            the keys
+     * @return millions of operations per second over all threads
+     * @throws InterruptedException
+     *             if interrupted while waiting for the workers
+     */
+    private static double run(int threads, String[] words)
+            throws InterruptedException {
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>(
+                HASH_TABLE_SIZE);
+        for (String word : words) {
+            map.add(word, 0);
+        }
+        Thread[] workers = new Thread[threads];
+        long[] sums = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                long sum = 0;
+                //simple per-thread linear congruential sequence of keys
+                int x = id * 7919 + 1;
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    x = x * 1_103_515_245 + 12_345;
+                    String word = words[(x >>> 1) % KEYS];
+                    if (i % WRITE_EVERY == 0) {
+                        Map4Concurrent.increment(map, word, 1);
+                    } else {
+                        sum += map.value(word);
+                    }
+                }
+                sums[id] = sum;
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (double) threads * OPERATIONS_PER_THREAD * 1_000 / elapsed;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     * @throws InterruptedException
+     *             if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        SimpleWriter out = new SimpleWriter1L();
+        String[] words = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            words[i] = "word" + i;
+        }
+        //warm up the JIT before timing anything
+        run(1, words);
+        int cores = Runtime.getRuntime().availableProcessors();
+        out.println("threads\tMops/s (1 write per " + WRITE_EVERY + " ops)");
+        for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+            out.println(threads + "\t"
+                    + String.format("%.1f", run(threads, words)));
+        }
+        out.close();
+    }
+
+}
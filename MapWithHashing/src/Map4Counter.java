@@ -0,0 +1,429 @@
+import java.util.Arrays;
+
+/**
+ * Counts of {@code String}s, represented as a hash table like {@code Map4}'s
+ * but with the entries kept in parallel arrays, so that counts are stored as
+ * {@code int}s rather than boxed {@code Integer}s.
+ *
+ * <p>
+ * Entries are numbered from 0 in the order their words were first counted.
+ * Each bucket is a chain of entry numbers linked through {@code next}, and
+ * each entry remembers its word's hash code, so a lookup compares hash codes
+ * before calling {@code equals} and a resize relinks the chains without
+ * rehashing any word. Counting a word that is already present allocates
+ * nothing; counting a new word allocates only when the arrays grow.
+ *
+ * @mathmodel type Map4Counter is modeled by finite set of (word: string of
+ *            character, count: integer) where (the words are unique)
+ * @convention <pre>
+ * |$this.heads| = $this.hashStrategy.tableSize(|$this.heads|)  and
+ * |$this.words| = |$this.counts| = |$this.hashes| = |$this.next|  and
+ * 0 <= $this.size <= |$this.words|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.size)
+ *   ($this.words[i] /= null  and
+ *    $this.hashes[i] = [computed result of $this.words[i].hashCode()]  and
+ *    [entry i is in the chain starting at
+ *     $this.heads[$this.hashStrategy.index($this.hashes[i],
+ *                                          |$this.heads|)]])  and
+ * [each chain ends with -1 and visits only entries below $this.size]  and
+ * [$this.words[0, $this.size) are pairwise not equal]  and
+ * $this.size <= LOAD_FACTOR * |$this.heads|
+ * </pre>
+ * @correspondence <pre>
+ * this = {(w, c): (string of character, integer)
+ *           where (there exists i: integer
+ *                    (0 <= i  and  i < $this.size  and
+ *                     w = $this.words[i]  and  c = $this.counts[i]))}
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4Counter {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of entries room is made for.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Maximum ratio of entries to buckets before the table grows.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Maps hash codes to bucket indices and picks table sizes.
+     */
+    private final HashStrategy hashStrategy = new HashStrategy.MixedMask();
+
+    /**
+     * First entry of each bucket's chain, or -1 for an empty bucket.
+     */
+    private int[] heads;
+
+    /**
+     * Word of each entry.
+     */
+    private String[] words;
+
+    /**
+     * Count of each entry.
+     */
+    private int[] counts;
+
+    /**
+     * Hash code of each entry's word.
+     */
+    private int[] hashes;
+
+    /**
+     * Next entry in the same chain, or -1 at the end of a chain.
+     */
+    private int[] next;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of entries to make room for
+     * @requires capacity > 0
+     * @ensures this = {}  and  |$this.words| = capacity
+     */
+    private void createNewRep(int capacity) {
+        this.words = new String[capacity];
+        this.counts = new int[capacity];
+        this.hashes = new int[capacity];
+        this.next = new int[capacity];
+        this.heads = new int[this.hashStrategy
+                .tableSize((int) Math.ceil(capacity / LOAD_FACTOR))];
+        Arrays.fill(this.heads, -1);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the entry number of {@code word}, or -1 if it is not counted.
+     *
+     * @param word
+     *            the word
+     * @param hash
+     *            the hash code of {@code word}
+     * @return the entry number of {@code word}, or -1
+     * @requires hash = [computed result of word.hashCode()]
+     */
+    private int find(String word, int hash) {
+        int entry = this.heads[this.hashStrategy.index(hash,
+                this.heads.length)];
+        while (entry >= 0 && !(this.hashes[entry] == hash
+                && this.words[entry].equals(word))) {
+            entry = this.next[entry];
+        }
+        return entry;
+    }
+
+    /**
+     * Adds entry {@code (word, 0)}, growing the arrays and the table if
+     * needed.
+     *
+     * @param word
+     *            the word
+     * @param hash
+     *            the hash code of {@code word}
+     * @return the number of the new entry
+     * @updates this
+     * @requires <pre>
+     * hash = [computed result of word.hashCode()]  and
+     * word is not in DOMAIN(this)
+     * </pre>
+     * @ensures this = #this union {(word, 0)}
+     */
+    private int addEntry(String word, int hash) {
+        if (this.size == this.words.length) {
+            int capacity = 2 * this.words.length;
+            this.words = Arrays.copyOf(this.words, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+            this.hashes = Arrays.copyOf(this.hashes, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        if (this.size + 1 > LOAD_FACTOR * this.heads.length) {
+            this.relink(this.hashStrategy.tableSize(2 * this.heads.length));
+        }
+        int entry = this.size;
+        this.words[entry] = word;
+        this.counts[entry] = 0;
+        this.hashes[entry] = hash;
+        int bucket = this.hashStrategy.index(hash, this.heads.length);
+        this.next[entry] = this.heads[bucket];
+        this.heads[bucket] = entry;
+        this.size++;
+        return entry;
+    }
+
+    /**
+     * Rebuilds the chains over a table of {@code tableSize} buckets, using
+     * the stored hash codes.
+     *
+     * @param tableSize
+     *            the new number of buckets
+     * @updates $this.heads, $this.next
+     * @requires tableSize = [a value returned by $this.hashStrategy.tableSize]
+     * @ensures this = #this  and  |$this.heads| = tableSize
+     */
+    private void relink(int tableSize) {
+        this.heads = new int[tableSize];
+        Arrays.fill(this.heads, -1);
+        for (int entry = 0; entry < this.size; entry++) {
+            int bucket = this.hashStrategy.index(this.hashes[entry],
+                    tableSize);
+            this.next[entry] = this.heads[bucket];
+            this.heads[bucket] = entry;
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4Counter() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor making room for {@code expectedWords} distinct words before
+     * any array has to grow.
+     *
+     * @param expectedWords
+     *            the expected number of distinct words
+     * @requires expectedWords > 0
+     * @ensures this = {}
+     */
+    public Map4Counter(int expectedWords) {
+        assert expectedWords > 0 : "Violation of: expectedWords > 0";
+
+        this.createNewRep(expectedWords);
+    }
+
+    /*
+     * Counting methods -------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code delta} to the count of {@code word}, starting from 0 if
+     * {@code word} has not been counted.
+     *
+     * @param word
+     *            the word
+     * @param delta
+     *            the amount to add
+     * @return the new count of {@code word}
+     * @updates this
+     * @requires word /= null
+     * @ensures <pre>
+     * if word is in DOMAIN(#this) then
+     *   this = (#this \ {(word, #this(word))}) union
+     *          {(word, #this(word) + delta)}
+     * else
+     *   this = #this union {(word, delta)}  and
+     * add = this(word)
+     * </pre>
+     */
+    public int add(String word, int delta) {
+        assert word != null : "Violation of: word is not null";
+
+        int hash = word.hashCode();
+        int entry = this.find(word, hash);
+        if (entry < 0) {
+            entry = this.addEntry(word, hash);
+        }
+        this.counts[entry] += delta;
+        return this.counts[entry];
+    }
+
+    /**
+     * Adds 1 to the count of {@code word}, starting from 0 if {@code word} has
+     * not been counted.
+     *
+     * @param word
+     *            the word
+     * @return the new count of {@code word}
+     * @updates this
+     * @requires word /= null
+     * @ensures [this and increment are as for add(word, 1)]
+     */
+    public int increment(String word) {
+        return this.add(word, 1);
+    }
+
+    /**
+     * Reports the count of {@code word}, or 0 if it has not been counted.
+     *
+     * @param word
+     *            the word
+     * @return the count of {@code word}
+     * @requires word /= null
+     * @ensures <pre>
+     * if word is in DOMAIN(this) then count = this(word)
+     * else count = 0
+     * </pre>
+     */
+    public int count(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        int entry = this.find(word, word.hashCode());
+        int result = 0;
+        if (entry >= 0) {
+            result = this.counts[entry];
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code word} has been counted.
+     *
+     * @param word
+     *            the word
+     * @return true iff {@code word} is in DOMAIN(this)
+     * @requires word /= null
+     * @ensures hasWord = (word is in DOMAIN(this))
+     */
+    public boolean hasWord(String word) {
+        assert word != null : "Violation of: word is not null";
+
+        return this.find(word, word.hashCode()) >= 0;
+    }
+
+    /**
+     * Reports the number of distinct words counted.
+     *
+     * @return |this|
+     * @ensures size = |this|
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes every word.
+     *
+     * @clears this
+     */
+    public void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Export methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports the word of entry {@code entry}; entries are numbered in the
+     * order their words were first counted.
+     *
+     * @param entry
+     *            the entry number
+     * @return the word of entry {@code entry}
+     * @requires 0 <= entry < |this|
+     */
+    public String word(int entry) {
+        assert 0 <= entry : "Violation of: 0 <= entry";
+        assert entry < this.size : "Violation of: entry < |this|";
+
+        return this.words[entry];
+    }
+
+    /**
+     * Reports the count of entry {@code entry}.
+     *
+     * @param entry
+     *            the entry number
+     * @return the count of entry {@code entry}
+     * @requires 0 <= entry < |this|
+     * @ensures countAt = this(word(entry))
+     */
+    public int countAt(int entry) {
+        assert 0 <= entry : "Violation of: 0 <= entry";
+        assert entry < this.size : "Violation of: entry < |this|";
+
+        return this.counts[entry];
+    }
+
+    /**
+     * Returns the entry numbers sorted by decreasing count, with entries of
+     * equal count in the order their words were first counted.
+     *
+     * @return the entry numbers in order of decreasing count
+     * @ensures <pre>
+     * [byCount is a permutation of <0, 1, ..., |this| - 1>]  and
+     * for all i: integer
+     *     where (0 < i  and  i < |byCount|)
+     *   (countAt(byCount[i-1]) > countAt(byCount[i])  or
+     *    (countAt(byCount[i-1]) = countAt(byCount[i])  and
+     *     byCount[i-1] < byCount[i]))
+     * </pre>
+     */
+    public int[] byCount() {
+        /*
+         * Each entry is packed into a long whose high half orders by
+         * decreasing count and whose low half is the entry number, so the
+         * sort is a primitive sort with no comparator and no boxing
+         */
+        final int entryBits = 32;
+        long[] keys = new long[this.size];
+        for (int entry = 0; entry < this.size; entry++) {
+            keys[entry] = ((long) ~this.counts[entry] << entryBits) | entry;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[this.size];
+        for (int i = 0; i < this.size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Returns the words sorted by decreasing count, as for
+     * {@link #byCount()}.
+     *
+     * @return the words in order of decreasing count
+     * @ensures <pre>
+     * |wordsByCount| = |this|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |this|)
+     *   (wordsByCount[i] = word(byCount[i]))
+     * </pre>
+     */
+    public String[] wordsByCount() {
+        int[] order = this.byCount();
+        String[] result = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = this.words[order[i]];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int entry = 0; entry < this.size; entry++) {
+            if (entry > 0) {
+                result.append(",");
+            }
+            result.append("(").append(this.words[entry]).append(",")
+                    .append(this.counts[entry]).append(")");
+        }
+        return result.append("}").toString();
+    }
+
+}
@@ -0,0 +1,1071 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.BiFunction;
+import java.util.zip.CRC32;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} from {@code String}s to {@code Integer}, {@code Long}, or
+ * {@code Double} values, kept in a {@code Map4} and made durable by an
+ * append-only log in a directory of its own.
+ *
+ * <p>
+ * Every change ({@code add}, {@code remove}, {@code removeAny},
+ * {@code replaceValue}, {@code merge}, {@code clear}) appends a record to an
+ * in-memory batch. A background writer appends each batch to the log and
+ * forces it to disk with one {@code fsync}, so all the changes made during
+ * one commit interval share a single {@code fsync}; a change is durable at
+ * most one commit interval (plus the time of the write) after it is made,
+ * and {@link #sync()} waits until every change made so far is durable.
+ * Each record carries a CRC-32, so a record torn by a crash is recognized
+ * and dropped with everything after it.
+ *
+ * <p>
+ * When the log grows past the compaction size, a new log is started and a
+ * {@code Map4Snapshot} of the map as it was at that moment is written in the
+ * background; once the snapshot is safely in place, older snapshots and
+ * logs are deleted. {@link #open(String, Map4Snapshot.Format)} recovers the
+ * map by loading the newest snapshot and replaying the logs written since.
+ * The files of generation g are {@code snapshot-g} and {@code log-g}, where
+ * {@code snapshot-g} holds the map as it was when {@code log-g} was started.
+ *
+ * <p>
+ * Like other {@code Map}s, a {@code Map4Durable} is for use by one thread
+ * at a time; the writer and compaction threads are internal.
+ * {@code transferFrom} copies the entries of the source into this map's log
+ * and so takes time linear in the size of the source. I/O errors are
+ * reported by the next change, {@code sync}, or {@code close} as an
+ * {@code UncheckedIOException}, except for an error while writing a
+ * snapshot: that loses nothing, since the older snapshot and logs stay in
+ * place, so it is kept for {@link #compactionFailure()} to report instead.
+ *
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * [$this.map holds the entries of snapshot-g and the records of the logs of
+ *  generations g through $this.generation, replayed in order, where g is
+ *  the newest complete snapshot, followed by the records in $this.batch]
+ * and  0 <= $this.durable <= $this.appended  and
+ * [the first $this.durable records appended are on disk]
+ * </pre>
+ * @correspondence this = $this.map
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4Durable<V> extends MapSecondary<String, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default time a change may wait in a batch before it is written.
+     */
+    private static final Duration DEFAULT_COMMIT_INTERVAL = Duration
+            .ofMillis(10);
+
+    /**
+     * Default log size, in bytes, above which the map is compacted.
+     */
+    private static final long DEFAULT_COMPACT_AFTER = 64L << 20;
+
+    /**
+     * Batch size, in bytes, at which a batch is written without waiting for
+     * the commit interval to end.
+     */
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    /**
+     * Batch size, in bytes, at which changes wait for the writer to catch
+     * up.
+     */
+    private static final int MAX_PENDING_BYTES = 16 << 20;
+
+    /**
+     * Initial capacity of a batch, in bytes.
+     */
+    private static final int INITIAL_BATCH_BYTES = 4096;
+
+    /**
+     * Initial size of the hash table of the map.
+     */
+    private static final int INITIAL_TABLE_SIZE = 101;
+
+    /**
+     * Load factor of the map.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Bytes before the payload of a record: its length and CRC-32.
+     */
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * Bytes of the payload of a record before the key's characters: the
+     * operation and the key's length.
+     */
+    private static final int PAYLOAD_HEADER_BYTES = 1 + Integer.BYTES;
+
+    /**
+     * Operation of a record associating a value with a key.
+     */
+    private static final byte PUT = 1;
+
+    /**
+     * Operation of a record removing a key.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * Operation of a record removing every key.
+     */
+    private static final byte CLEAR = 3;
+
+    /**
+     * Prefix of the names of snapshot files.
+     */
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    /**
+     * Prefix of the names of log files.
+     */
+    private static final String LOG_PREFIX = "log-";
+
+    /**
+     * Suffix of the name of a snapshot being written.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The entries.
+     */
+    private Map4<String, V> map;
+
+    /**
+     * Encoding of the values.
+     */
+    private Map4Snapshot.Format<V> format;
+
+    /**
+     * Directory of the snapshots and logs.
+     */
+    private Path directory;
+
+    /**
+     * Time a change may wait in a batch, in nanoseconds.
+     */
+    private long commitIntervalNanos;
+
+    /**
+     * Log size, in bytes, above which the map is compacted.
+     */
+    private long compactAfter;
+
+    /**
+     * Generation of the current log.
+     */
+    private int generation;
+
+    /**
+     * Bytes appended to the current log, including those still in a batch.
+     */
+    private long logBytes;
+
+    /**
+     * Lock guarding the fields shared with the writer thread, below, and
+     * signaled whenever one of them changes.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Records not yet handed to the writer.
+     */
+    private byte[] batch;
+
+    /**
+     * Number of bytes used in {@code batch}.
+     */
+    private int batchLength;
+
+    /**
+     * Buffer the writer writes from, swapped with {@code batch}.
+     */
+    private byte[] spare;
+
+    /**
+     * Number of records appended.
+     */
+    private long appended;
+
+    /**
+     * Number of records known to be on disk.
+     */
+    private long durable;
+
+    /**
+     * Number of threads waiting in {@code sync}.
+     */
+    private int syncWaiters;
+
+    /**
+     * The current log.
+     */
+    private FileChannel log;
+
+    /**
+     * First I/O error of the writer or of compaction, or {@code null}.
+     */
+    private IOException failure;
+
+    /**
+     * I/O error of the latest compaction to finish, or {@code null} if it
+     * succeeded.
+     */
+    private IOException compactionFailure;
+
+    /**
+     * Whether {@code close} has been called.
+     */
+    private boolean closed;
+
+    /**
+     * Whether a snapshot is being written.
+     */
+    private boolean compacting;
+
+    /**
+     * Thread writing batches to the log.
+     */
+    private Thread writer;
+
+    /**
+     * Thread writing the latest snapshot, or {@code null}.
+     */
+    private Thread compactor;
+
+    /**
+     * Reports the generation in the name of file {@code name} with prefix
+     * {@code prefix}, or -1 if the name is not the prefix followed by a
+     * generation.
+     *
+     * @param name
+     *            the file name
+     * @param prefix
+     *            the prefix
+     * @return the generation, or -1
+     */
+    private static int generationOf(String name, String prefix) {
+        int result = -1;
+        if (name.startsWith(prefix) && name.length() > prefix.length()) {
+            try {
+                result = Integer.parseInt(name.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                result = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forces the entries of {@code dir} to disk, so that files just created,
+     * renamed, or deleted stay that way after a crash. Not every platform
+     * supports this, so failures are ignored.
+     *
+     * @param dir
+     *            the directory
+     */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //the entries are forced eventually by the file system anyway
+            return;
+        }
+    }
+
+    /**
+     * Returns the file of generation {@code g} with prefix {@code prefix}.
+     *
+     * @param prefix
+     *            the prefix
+     * @param g
+     *            the generation
+     * @return the file
+     */
+    private Path file(String prefix, int g) {
+        return this.directory.resolve(prefix + g);
+    }
+
+    /**
+     * Replays the records of {@code logFile} on {@code this.map}, stopping at
+     * the first record that is incomplete or fails its CRC-32.
+     *
+     * @param logFile
+     *            the log
+     * @return the number of bytes of complete records
+     * @throws IOException
+     *             if the log cannot be read
+     * @updates this.map
+     */
+    private long replay(Path logFile) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        CRC32 crc = new CRC32();
+        int position = 0;
+        boolean valid = true;
+        while (valid && bytes.capacity() - position >= RECORD_HEADER_BYTES) {
+            int length = bytes.getInt(position);
+            int payload = position + RECORD_HEADER_BYTES;
+            valid = length >= PAYLOAD_HEADER_BYTES
+                    && length <= bytes.capacity() - payload;
+            if (valid) {
+                crc.reset();
+                crc.update(bytes.array(), payload, length);
+                valid = (int) crc.getValue() == bytes
+                        .getInt(position + Integer.BYTES);
+            }
+            if (valid) {
+                valid = this.apply(bytes, payload, length);
+            }
+            if (valid) {
+                position = payload + length;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Applies the record whose payload is {@code bytes[payload, payload +
+     * length)} to {@code this.map}.
+     *
+     * @param bytes
+     *            the log
+     * @param payload
+     *            the offset of the payload
+     * @param length
+     *            the length of the payload
+     * @return true iff the payload is well formed
+     * @updates this.map
+     */
+    private boolean apply(ByteBuffer bytes, int payload, int length) {
+        byte op = bytes.get(payload);
+        int keyLength = bytes.getInt(payload + 1);
+        long expected = PAYLOAD_HEADER_BYTES
+                + (long) keyLength * Character.BYTES;
+        if (op == PUT) {
+            expected += this.format.width();
+        }
+        boolean valid = keyLength >= 0 && expected == length
+                && (op == PUT || op == REMOVE || op == CLEAR);
+        if (valid) {
+            char[] chars = new char[keyLength];
+            int at = payload + PAYLOAD_HEADER_BYTES;
+            for (int i = 0; i < keyLength; i++) {
+                chars[i] = bytes.getChar(at + i * Character.BYTES);
+            }
+            String key = new String(chars);
+            if (op == PUT) {
+                V value = this.format.get(bytes,
+                        at + keyLength * Character.BYTES);
+                if (this.map.hasKey(key)) {
+                    this.map.replaceValue(key, value);
+                } else {
+                    this.map.add(key, value);
+                }
+            } else if (op == REMOVE) {
+                if (this.map.hasKey(key)) {
+                    this.map.remove(key);
+                }
+            } else {
+                this.map.clear();
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Recovers the map from the files in {@code this.directory} and opens
+     * the log to append to.
+     *
+     * @throws IOException
+     *             if the files cannot be read or the log cannot be opened
+     * @updates this
+     */
+    private void recover() throws IOException {
+        int snapshotGeneration = -1;
+        int[] logGenerations = new int[0];
+        try (DirectoryStream<Path> files = Files
+                .newDirectoryStream(this.directory)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    //a snapshot whose writing was cut short
+                    Files.delete(f);
+                }
+                snapshotGeneration = Math.max(snapshotGeneration,
+                        generationOf(name, SNAPSHOT_PREFIX));
+                int g = generationOf(name, LOG_PREFIX);
+                if (g >= 0) {
+                    logGenerations = Arrays.copyOf(logGenerations,
+                            logGenerations.length + 1);
+                    logGenerations[logGenerations.length - 1] = g;
+                }
+            }
+        }
+        Arrays.sort(logGenerations);
+        this.map = new Map4<String, V>(INITIAL_TABLE_SIZE, LOAD_FACTOR);
+        this.generation = Math.max(snapshotGeneration, 0);
+        if (snapshotGeneration >= 0) {
+            Map4Snapshot<V> snapshot = Map4Snapshot.load(
+                    this.file(SNAPSHOT_PREFIX, snapshotGeneration).toString(),
+                    this.format);
+            for (Pair<String, V> p : snapshot) {
+                this.map.add(p.key(), p.value());
+            }
+        }
+        long validLength = 0;
+        for (int g : logGenerations) {
+            if (g >= this.generation) {
+                validLength = this.replay(this.file(LOG_PREFIX, g));
+                this.generation = g;
+            }
+        }
+        this.log = FileChannel.open(this.file(LOG_PREFIX, this.generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        //drop a record torn by a crash so that new records follow valid ones
+        this.log.truncate(validLength);
+        this.log.position(validLength);
+        forceDirectory(this.directory);
+        this.logBytes = validLength;
+    }
+
+    /**
+     * Appends a record to the batch, and starts a compaction if the log has
+     * grown too large.
+     *
+     * @param op
+     *            the operation
+     * @param key
+     *            the key, or "" for {@code CLEAR}
+     * @param value
+     *            the value for {@code PUT}, or {@code null}
+     * @updates this
+     */
+    private void append(byte op, String key, V value) {
+        int payloadLength = PAYLOAD_HEADER_BYTES
+                + key.length() * Character.BYTES;
+        if (op == PUT) {
+            payloadLength += this.format.width();
+        }
+        int recordLength = RECORD_HEADER_BYTES + payloadLength;
+        synchronized (this.lock) {
+            this.checkFailure();
+            while (this.batchLength >= MAX_PENDING_BYTES
+                    && this.failure == null) {
+                this.await(0);
+            }
+            if (this.batchLength + recordLength > this.batch.length) {
+                this.batch = Arrays.copyOf(this.batch,
+                        Math.max(2 * this.batch.length,
+                                this.batchLength + recordLength));
+            }
+            ByteBuffer out = ByteBuffer.wrap(this.batch);
+            int payload = this.batchLength + RECORD_HEADER_BYTES;
+            out.put(payload, op);
+            out.putInt(payload + 1, key.length());
+            int at = payload + PAYLOAD_HEADER_BYTES;
+            for (int i = 0; i < key.length(); i++) {
+                out.putChar(at + i * Character.BYTES, key.charAt(i));
+            }
+            if (op == PUT) {
+                this.format.put(out, at + key.length() * Character.BYTES,
+                        value);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(this.batch, payload, payloadLength);
+            out.putInt(this.batchLength, payloadLength);
+            out.putInt(this.batchLength + Integer.BYTES, (int) crc.getValue());
+            this.batchLength += recordLength;
+            this.appended++;
+            if (this.batchLength == recordLength
+                    || this.batchLength >= FLUSH_BYTES) {
+                this.lock.notifyAll();
+            }
+        }
+        this.logBytes += recordLength;
+        if (this.logBytes >= this.compactAfter && !this.isCompacting()) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Waits on {@code this.lock} for at most {@code nanos} nanoseconds, or
+     * until signaled if {@code nanos} is 0.
+     *
+     * @param nanos
+     *            the longest time to wait, or 0
+     * @requires [the current thread holds this.lock]
+     */
+    private void await(long nanos) {
+        try {
+            final long nanosPerMilli = 1_000_000;
+            if (nanos == 0) {
+                this.lock.wait();
+            } else {
+                this.lock.wait(nanos / nanosPerMilli,
+                        (int) (nanos % nanosPerMilli));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting", e);
+        }
+    }
+
+    /**
+     * Throws the first I/O error of the writer or of compaction, if any.
+     *
+     * @requires [the current thread holds this.lock]
+     */
+    private void checkFailure() {
+        if (this.failure != null) {
+            throw new UncheckedIOException(this.failure);
+        }
+    }
+
+    /**
+     * Reports whether a snapshot is being written.
+     *
+     * @return true iff a compaction is in progress
+     */
+    private boolean isCompacting() {
+        synchronized (this.lock) {
+            return this.compacting;
+        }
+    }
+
+    /**
+     * Body of the writer thread: waits for records, gives later records up to
+     * the commit interval to join them, and writes and forces each batch.
+     */
+    private void writeBatches() {
+        boolean running = true;
+        while (running) {
+            byte[] bytes;
+            int length;
+            long target;
+            FileChannel channel;
+            synchronized (this.lock) {
+                while (!this.closed && this.batchLength == 0) {
+                    this.await(0);
+                }
+                long deadline = System.nanoTime() + this.commitIntervalNanos;
+                long remaining = this.commitIntervalNanos;
+                while (!this.closed && this.syncWaiters == 0
+                        && this.batchLength < FLUSH_BYTES && remaining > 0) {
+                    this.await(remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+                running = !this.closed || this.batchLength > 0;
+                bytes = this.batch;
+                length = this.batchLength;
+                this.batch = this.spare;
+                this.spare = bytes;
+                this.batchLength = 0;
+                target = this.appended;
+                channel = this.log;
+                this.lock.notifyAll();
+            }
+            if (length > 0) {
+                IOException error = null;
+                try {
+                    ByteBuffer out = ByteBuffer.wrap(bytes, 0, length);
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+                synchronized (this.lock) {
+                    if (error == null) {
+                        this.durable = target;
+                    } else if (this.failure == null) {
+                        this.failure = error;
+                    }
+                    this.lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes {@code snapshot-g} from the given entries, then deletes the
+     * snapshots and logs it replaces.
+     *
+     * @param g
+     *            the generation of the snapshot
+     * @param keys
+     *            the keys
+     * @param values
+     *            the values, parallel to {@code keys}
+     */
+    private void writeSnapshot(int g, String[] keys, V[] values) {
+        IOException error = null;
+        try {
+            Map4<String, V> copy = new Map4<String, V>(
+                    (int) Math.ceil(Math.max(1, keys.length) / LOAD_FACTOR),
+                    LOAD_FACTOR);
+            for (int i = 0; i < keys.length; i++) {
+                copy.add(keys[i], values[i]);
+            }
+            Path temporary = this.directory
+                    .resolve(SNAPSHOT_PREFIX + g + TEMPORARY_SUFFIX);
+            Map4Snapshot.write(copy, this.format, temporary.toString());
+            Files.move(temporary, this.file(SNAPSHOT_PREFIX, g),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory(this.directory);
+            try (DirectoryStream<Path> files = Files
+                    .newDirectoryStream(this.directory)) {
+                for (Path f : files) {
+                    String name = f.getFileName().toString();
+                    int old = Math.max(generationOf(name, SNAPSHOT_PREFIX),
+                            generationOf(name, LOG_PREFIX));
+                    if (old >= 0 && old < g) {
+                        Files.deleteIfExists(f);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            /*
+             * The older snapshot and logs are still in place, so nothing is
+             * lost; the next compaction tries again
+             */
+            error = e;
+        } finally {
+            synchronized (this.lock) {
+                this.compactionFailure = error;
+                this.compacting = false;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param dir
+     *            the directory
+     * @param valueFormat
+     *            the encoding of the values
+     * @param commitInterval
+     *            the commit interval
+     * @param compactAfterBytes
+     *            the compaction size
+     * @throws IOException
+     *             if the map cannot be recovered
+     */
+    private void createNewRep(Path dir, Map4Snapshot.Format<V> valueFormat,
+            Duration commitInterval, long compactAfterBytes)
+            throws IOException {
+        this.directory = dir;
+        this.format = valueFormat;
+        this.commitIntervalNanos = commitInterval.toNanos();
+        this.compactAfter = compactAfterBytes;
+        Files.createDirectories(dir);
+        this.recover();
+        this.batch = new byte[INITIAL_BATCH_BYTES];
+        this.spare = new byte[INITIAL_BATCH_BYTES];
+        this.batchLength = 0;
+        this.appended = 0;
+        this.durable = 0;
+        this.syncWaiters = 0;
+        this.failure = null;
+        this.compactionFailure = null;
+        this.closed = false;
+        this.compacting = false;
+        this.compactor = null;
+        this.writer = new Thread(this::writeBatches,
+                "Map4Durable writer " + dir.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor recovering the map in {@code dir}.
+     *
+     * @param dir
+     *            the directory
+     * @param format
+     *            the encoding of the values
+     * @param commitInterval
+     *            the commit interval
+     * @param compactAfterBytes
+     *            the compaction size
+     * @throws IOException
+     *             if the map cannot be recovered
+     */
+    private Map4Durable(Path dir, Map4Snapshot.Format<V> format,
+            Duration commitInterval, long compactAfterBytes)
+            throws IOException {
+        this.createNewRep(dir, format, commitInterval, compactAfterBytes);
+    }
+
+    /**
+     * Opens the durable map kept in directory {@code directoryName},
+     * creating the directory if it does not exist, with a commit interval of
+     * 10 ms and compaction after 64 MB of log.
+     *
+     * @param <V>
+     *            type of value
+     * @param directoryName
+     *            the name of the directory
+     * @param format
+     *            the encoding of the values
+     * @return the recovered map
+     * @throws IOException
+     *             if the map cannot be recovered
+     * @requires <pre>
+     * directoryName /= null  and  format /= null  and
+     * [no other open Map4Durable uses the directory]
+     * </pre>
+     * @ensures open = [the map as of its last durable change]
+     */
+    public static <V> Map4Durable<V> open(String directoryName,
+            Map4Snapshot.Format<V> format) throws IOException {
+        return open(directoryName, format, DEFAULT_COMMIT_INTERVAL,
+                DEFAULT_COMPACT_AFTER);
+    }
+
+    /**
+     * Opens the durable map kept in directory {@code directoryName},
+     * creating the directory if it does not exist.
+     *
+     * @param <V>
+     *            type of value
+     * @param directoryName
+     *            the name of the directory
+     * @param format
+     *            the encoding of the values
+     * @param commitInterval
+     *            the longest time a change waits to be written
+     * @param compactAfterBytes
+     *            the log size, in bytes, above which the map is compacted
+     * @return the recovered map
+     * @throws IOException
+     *             if the map cannot be recovered
+     * @requires <pre>
+     * directoryName /= null  and  format /= null  and
+     * commitInterval /= null  and  commitInterval >= 0  and
+     * compactAfterBytes > 0  and
+     * [no other open Map4Durable uses the directory]
+     * </pre>
+     * @ensures open = [the map as of its last durable change]
+     */
+    public static <V> Map4Durable<V> open(String directoryName,
+            Map4Snapshot.Format<V> format, Duration commitInterval,
+            long compactAfterBytes) throws IOException {
+        assert directoryName != null : ""
+                + "Violation of: directoryName is not null";
+        assert format != null : "Violation of: format is not null";
+        assert commitInterval != null : ""
+                + "Violation of: commitInterval is not null";
+        assert !commitInterval.isNegative() : ""
+                + "Violation of: commitInterval >= 0";
+        assert compactAfterBytes > 0 : "Violation of: compactAfterBytes > 0";
+
+        return new Map4Durable<V>(Paths.get(directoryName), format,
+                commitInterval, compactAfterBytes);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The new map is kept in a new temporary directory, with the settings of
+     * {@code this}.
+     */
+    @Override
+    public Map<String, V> newInstance() {
+        try {
+            Path dir = Files.createTempDirectory("map4durable");
+            return new Map4Durable<V>(dir, this.format,
+                    Duration.ofNanos(this.commitIntervalNanos),
+                    this.compactAfter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.map.clear();
+        this.append(CLEAR, "", null);
+    }
+
+    @Override
+    public void transferFrom(Map<String, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4Durable<?> : ""
+                + "Violation of: source is of dynamic type Map4Durable<?>";
+
+        this.clear();
+        for (Pair<String, V> p : source) {
+            this.add(p.key(), p.value());
+        }
+        source.clear();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void add(String key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        this.map.add(key, value);
+        this.append(PUT, key, value);
+    }
+
+    @Override
+    public Pair<String, V> remove(String key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        Pair<String, V> removed = this.map.remove(key);
+        this.append(REMOVE, key, null);
+        return removed;
+    }
+
+    @Override
+    public Pair<String, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Pair<String, V> removed = this.map.removeAny();
+        this.append(REMOVE, removed.key(), null);
+        return removed;
+    }
+
+    @Override
+    public V value(String key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.map.value(key);
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.map.hasKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.map.size();
+    }
+
+    @Override
+    public Iterator<Pair<String, V>> iterator() {
+        return this.map.iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    @Override
+    public V replaceValue(String key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        V old = this.map.replaceValue(key, value);
+        this.append(PUT, key, value);
+        return old;
+    }
+
+    /**
+     * Merges {@code value} into the value associated with {@code key} as by
+     * {@link Map4#merge(Object, Object, BiFunction)}, logging the result as
+     * one record.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value to add or combine in
+     * @param combiner
+     *            the function combining the old value with {@code value}
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         {@code key} was removed
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures [this and merge are as for Map4.merge]
+     */
+    public V merge(String key, V value,
+            BiFunction<? super V, ? super V, ? extends V> combiner) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert combiner != null : "Violation of: combiner is not null";
+
+        V result = this.map.merge(key, value, combiner);
+        if (result == null) {
+            this.append(REMOVE, key, null);
+        } else {
+            this.append(PUT, key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Waits until every change made so far is on disk.
+     *
+     * @throws UncheckedIOException
+     *             if a change could not be written
+     */
+    public void sync() {
+        synchronized (this.lock) {
+            long target = this.appended;
+            this.syncWaiters++;
+            this.lock.notifyAll();
+            try {
+                while (this.durable < target && this.failure == null) {
+                    this.await(0);
+                }
+            } finally {
+                this.syncWaiters--;
+            }
+            this.checkFailure();
+        }
+    }
+
+    /**
+     * Starts a new log and writes a snapshot of the map as it is now in the
+     * background, unless a snapshot is already being written. Called
+     * automatically when the log reaches the compaction size.
+     *
+     * @throws UncheckedIOException
+     *             if the new log cannot be started
+     */
+    @SuppressWarnings("unchecked")
+    public void compact() {
+        if (!this.isCompacting()) {
+            //everything in the current log must be on disk before it is retired
+            this.sync();
+            int next = this.generation + 1;
+            FileChannel previous;
+            try {
+                FileChannel nextLog = FileChannel.open(
+                        this.file(LOG_PREFIX, next), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                forceDirectory(this.directory);
+                synchronized (this.lock) {
+                    previous = this.log;
+                    this.log = nextLog;
+                    this.compacting = true;
+                }
+                previous.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.generation = next;
+            this.logBytes = 0;
+            String[] keys = new String[this.map.size()];
+            V[] values = (V[]) new Object[this.map.size()];
+            int i = 0;
+            for (Pair<String, V> p : this.map) {
+                keys[i] = p.key();
+                values[i] = p.value();
+                i++;
+            }
+            this.compactor = new Thread(
+                    () -> this.writeSnapshot(next, keys, values),
+                    "Map4Durable compactor " + this.directory.getFileName());
+            this.compactor.setDaemon(true);
+            this.compactor.start();
+        }
+    }
+
+    /**
+     * Writes every change made so far to disk, waits for any compaction to
+     * finish, and stops the background threads. Only
+     * {@link #compactionFailure()} may be called afterwards.
+     *
+     * @throws UncheckedIOException
+     *             if a change could not be written
+     */
+    public void close() {
+        this.sync();
+        synchronized (this.lock) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        try {
+            this.writer.join();
+            if (this.compactor != null) {
+                this.compactor.join();
+            }
+            this.log.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reports the generation of the current log, which is also the
+     * generation of the latest snapshot once it has been written, unless
+     * {@link #compactionFailure()} reports that writing it failed.
+     *
+     * @return the generation
+     */
+    public int generation() {
+        return this.generation;
+    }
+
+    /**
+     * Reports the I/O error that kept the latest finished compaction from
+     * writing its snapshot or deleting the files it replaces, or {@code null}
+     * if it succeeded or none has finished. A compaction still running is not
+     * waited for; after {@code close}, the last compaction has finished.
+     *
+     * @return the error of the latest compaction, or {@code null}
+     */
+    public IOException compactionFailure() {
+        synchronized (this.lock) {
+            return this.compactionFailure;
+        }
+    }
+
+}
@@ -0,0 +1,606 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Immutable {@code Map} made by {@link Map4#freeze()}, represented with a
+ * minimal perfect hash function built by the CHD (compress, hash, and
+ * displace) method.
+ *
+ * <p>
+ * The entries are kept in three parallel arrays with one slot per entry and
+ * no empty slots. The hash code of a key picks a bucket, and the bucket's
+ * displacement either names the key's slot outright or gives the seed of a
+ * second hash that does. So a lookup reads one displacement and one slot,
+ * compares the stored hash code, and calls {@code equals} at most once; there
+ * are no chains to walk. The build places the largest buckets first, trying
+ * seeds until every key of the bucket lands in a free slot, and then gives
+ * the buckets of one key the slots left over.
+ *
+ * <p>
+ * Two keys with equal hash codes always hash alike, so no seed can separate
+ * them. For each hash code shared by several keys, all but one of them are
+ * kept in a small {@code Map4} on the side, which is looked in only when a
+ * lookup finds a different key with the same hash code in its slot.
+ *
+ * <p>
+ * The read side of {@code Map} ({@code hasKey}, {@code value},
+ * {@code size}, {@code iterator}, and the secondary methods built on them)
+ * works as for any {@code Map}. Operations that would change the map throw
+ * {@code UnsupportedOperationException}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values| = |$this.hashes|  and
+ * |$this.displacements| > 0  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   ($this.keys[i] /= null  and  $this.values[i] /= null  and
+ *    $this.hashes[i] = [computed result of $this.keys[i].hashCode()]  and
+ *    [this.slot($this.hashes[i]) = i])  and
+ * [$this.hashes has no repeated entries]  and
+ * if $this.overflow /= null then
+ *   $this.overflow.size() > 0  and
+ *   for all x: K
+ *       where (x is in DOMAIN($this.overflow))
+ *     ([computed result of x.hashCode()] is in entries($this.hashes)  and
+ *      x is not in entries($this.keys))
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *            where (there exists i: integer
+ *                     (0 <= i  and  i < |$this.keys|  and
+ *                      k = $this.keys[i]  and  v = $this.values[i]))}
+ *        union [the entries of $this.overflow, if it is not null]
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class Map4Frozen<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Average number of keys per bucket of the perfect hash function. Smaller
+     * buckets take more displacements to store but are placed faster.
+     */
+    private static final int KEYS_PER_BUCKET = 2;
+
+    /**
+     * Odd constant spreading successive seeds apart (2^32 divided by the
+     * golden ratio).
+     */
+    private static final int SEED_STEP = 0x9E3779B9;
+
+    /**
+     * Number of bits of an entry number packed into a {@code long} sort key.
+     */
+    private static final int ENTRY_BITS = 32;
+
+    /**
+     * Mask of the entry number in a packed {@code long} sort key.
+     */
+    private static final long ENTRY_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Result of {@code find} for a key that is not in the arrays and whose
+     * hash code no key in the arrays has.
+     */
+    private static final int ABSENT = -1;
+
+    /**
+     * Result of {@code find} for a key that is not in the arrays but whose
+     * hash code a key in the arrays has.
+     */
+    private static final int SAME_HASH = -2;
+
+    /**
+     * Keys, one per slot.
+     */
+    private K[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private V[] values;
+
+    /**
+     * Hash codes of the keys, parallel to {@code keys}.
+     */
+    private int[] hashes;
+
+    /**
+     * Displacement of each bucket: a positive seed for the hash giving the
+     * slots of the bucket's keys, or {@code -slot - 1} for a bucket of one
+     * key, or 0 for an empty bucket.
+     */
+    private int[] displacements;
+
+    /**
+     * Keys whose hash codes are shared with a key in {@code keys}, or
+     * {@code null} if there are none.
+     */
+    private Map4<K, V> overflow;
+
+    /**
+     * Maps a 32-bit hash uniformly onto [0, {@code range}) with a multiply
+     * and a shift rather than a division.
+     *
+     * @param hash
+     *            the hash
+     * @param range
+     *            the size of the range
+     * @return a number in [0, {@code range})
+     * @requires range > 0
+     * @ensures 0 <= reduce < range
+     */
+    private static int reduce(int hash, int range) {
+        return (int) (((hash & ENTRY_MASK) * range) >>> ENTRY_BITS);
+    }
+
+    /**
+     * Returns the bucket of a key with hash code {@code hash} among
+     * {@code bucketCount} buckets.
+     *
+     * @param hash
+     *            the key's hash code
+     * @param bucketCount
+     *            the number of buckets
+     * @return the bucket
+     * @requires bucketCount > 0
+     */
+    private static int bucketOf(int hash, int bucketCount) {
+        return reduce(HashStrategy.MixedMask.mix(hash), bucketCount);
+    }
+
+    /**
+     * Returns the slot of a key with hash code {@code hash} among
+     * {@code slotCount} slots, for displacement seed {@code seed}.
+     *
+     * @param hash
+     *            the key's hash code
+     * @param seed
+     *            the seed
+     * @param slotCount
+     *            the number of slots
+     * @return the slot
+     * @requires seed > 0  and  slotCount > 0
+     */
+    private static int slotOf(int hash, int seed, int slotCount) {
+        return reduce(HashStrategy.MixedMask.mix(hash + seed * SEED_STEP),
+                slotCount);
+    }
+
+    /**
+     * Returns the slot where a key with hash code {@code hash} would be.
+     *
+     * @param hash
+     *            the key's hash code
+     * @return the slot
+     * @requires |this.keys| > 0
+     */
+    private int slot(int hash) {
+        int d = this.displacements[bucketOf(hash, this.displacements.length)];
+        int result;
+        if (d < 0) {
+            result = -d - 1;
+        } else {
+            result = slotOf(hash, d, this.keys.length);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slot of {@code key}; or {@code SAME_HASH} if the slot holds
+     * another key with the same hash code, so that {@code key} may be in the
+     * overflow map; or {@code ABSENT}.
+     *
+     * @param key
+     *            the key
+     * @return the slot of {@code key}, {@code SAME_HASH}, or {@code ABSENT}
+     */
+    private int find(K key) {
+        int result = ABSENT;
+        if (this.keys.length > 0) {
+            int hash = key.hashCode();
+            int s = this.slot(hash);
+            if (this.hashes[s] == hash) {
+                if (this.keys[s].equals(key)) {
+                    result = s;
+                } else {
+                    result = SAME_HASH;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation, holding the entries of
+     * {@code source}.
+     *
+     * @param source
+     *            the entries to hold
+     * @ensures this = source
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(Map<K, V> source) {
+        int n = source.size();
+        K[] allKeys = (K[]) new Object[n];
+        V[] allValues = (V[]) new Object[n];
+        long[] byHash = new long[n];
+        int count = 0;
+        for (Pair<K, V> p : source) {
+            allKeys[count] = p.key();
+            allValues[count] = p.value();
+            byHash[count] = ((long) p.key().hashCode() << ENTRY_BITS) | count;
+            count++;
+        }
+        /*
+         * Sort by hash code so that keys sharing a hash code are adjacent;
+         * the first of each run goes in the arrays, the rest in the overflow
+         */
+        Arrays.sort(byHash);
+        int[] primary = new int[n];
+        int primaryCount = 0;
+        this.overflow = null;
+        for (int i = 0; i < n; i++) {
+            int entry = (int) (byHash[i] & ENTRY_MASK);
+            if (i > 0 && (byHash[i] >> ENTRY_BITS) == (byHash[i - 1]
+                    >> ENTRY_BITS)) {
+                if (this.overflow == null) {
+                    this.overflow = new Map4<K, V>();
+                }
+                this.overflow.add(allKeys[entry], allValues[entry]);
+            } else {
+                primary[primaryCount] = entry;
+                primaryCount++;
+            }
+        }
+        this.keys = (K[]) new Object[primaryCount];
+        this.values = (V[]) new Object[primaryCount];
+        this.hashes = new int[primaryCount];
+        int bucketCount = Math.max(1,
+                (primaryCount + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET);
+        this.displacements = new int[bucketCount];
+        if (primaryCount > 0) {
+            this.place(allKeys, allValues, Arrays.copyOf(primary, primaryCount),
+                    bucketCount);
+        }
+    }
+
+    /**
+     * Finds a displacement for each bucket and fills the arrays.
+     *
+     * @param allKeys
+     *            the keys, by entry number
+     * @param allValues
+     *            the values, by entry number
+     * @param entries
+     *            the entry numbers to place, with distinct hash codes
+     * @param bucketCount
+     *            the number of buckets
+     * @updates this
+     * @requires <pre>
+     * |$this.keys| = |entries| > 0  and
+     * |$this.displacements| = bucketCount
+     * </pre>
+     * @ensures [the convention holds for the entries in entries]
+     */
+    private void place(K[] allKeys, V[] allValues, int[] entries,
+            int bucketCount) {
+        int slotCount = entries.length;
+        /*
+         * Group the entries by bucket with a counting sort
+         */
+        int[] bucketStart = new int[bucketCount + 1];
+        int[] entryBucket = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            entryBucket[i] = bucketOf(allKeys[entries[i]].hashCode(),
+                    bucketCount);
+            bucketStart[entryBucket[i] + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] members = new int[slotCount];
+        int[] fill = Arrays.copyOf(bucketStart, bucketCount);
+        for (int i = 0; i < slotCount; i++) {
+            members[fill[entryBucket[i]]] = entries[i];
+            fill[entryBucket[i]]++;
+        }
+        /*
+         * Visit the buckets largest first, packing each as
+         * (slotCount - bucket size, bucket) so a plain sort orders them
+         */
+        long[] order = new long[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            int bucketSize = bucketStart[b + 1] - bucketStart[b];
+            order[b] = ((long) (slotCount - bucketSize) << ENTRY_BITS) | b;
+        }
+        Arrays.sort(order);
+        boolean[] taken = new boolean[slotCount];
+        int[] trial = new int[slotCount];
+        int nextFree = 0;
+        for (long packed : order) {
+            int b = (int) (packed & ENTRY_MASK);
+            int first = bucketStart[b];
+            int bucketSize = bucketStart[b + 1] - first;
+            if (bucketSize == 1) {
+                while (taken[nextFree]) {
+                    nextFree++;
+                }
+                this.displacements[b] = -nextFree - 1;
+                this.store(nextFree, allKeys[members[first]],
+                        allValues[members[first]]);
+                taken[nextFree] = true;
+            } else if (bucketSize > 1) {
+                int seed = 0;
+                boolean placed = false;
+                while (!placed) {
+                    seed++;
+                    placed = true;
+                    int k = 0;
+                    while (placed && k < bucketSize) {
+                        int s = slotOf(allKeys[members[first + k]].hashCode(),
+                                seed, slotCount);
+                        placed = !taken[s];
+                        for (int j = 0; placed && j < k; j++) {
+                            placed = trial[j] != s;
+                        }
+                        trial[k] = s;
+                        k++;
+                    }
+                }
+                this.displacements[b] = seed;
+                for (int k = 0; k < bucketSize; k++) {
+                    this.store(trial[k], allKeys[members[first + k]],
+                            allValues[members[first + k]]);
+                    taken[trial[k]] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores entry {@code (key, value)} in slot {@code s}.
+     *
+     * @param s
+     *            the slot
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates this
+     */
+    private void store(int s, K key, V value) {
+        this.keys[s] = key;
+        this.values[s] = value;
+        this.hashes[s] = key.hashCode();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor holding the entries of {@code source}, which is left
+     * unchanged.
+     *
+     * @param source
+     *            the entries to hold
+     * @requires source /= null
+     * @ensures this = source
+     */
+    Map4Frozen(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+
+        this.createNewRep(source);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<K, V> newInstance() {
+        return new Map4Frozen<K, V>(new Map4<K, V>());
+    }
+
+    @Override
+    public final void clear() {
+        throw new UnsupportedOperationException(
+                "clear operation not supported");
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        throw new UnsupportedOperationException(
+                "transferFrom operation not supported");
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        throw new UnsupportedOperationException(
+                "add operation not supported");
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        throw new UnsupportedOperationException(
+                "remove operation not supported");
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        throw new UnsupportedOperationException(
+                "removeAny operation not supported");
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int s = this.find(key);
+        V result;
+        if (s >= 0) {
+            result = this.values[s];
+        } else {
+            //only keys sharing a hash code with a key in the arrays get here
+            result = this.overflow.value(key);
+        }
+        return result;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int s = this.find(key);
+        return s >= 0 || (s == SAME_HASH && this.overflow != null
+                && this.overflow.hasKey(key));
+    }
+
+    @Override
+    public final int size() {
+        int result = this.keys.length;
+        if (this.overflow != null) {
+            result += this.overflow.size();
+        }
+        return result;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4FrozenIterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the value associated with {@code key}, or {@code defaultValue}
+     * if {@code key} is not in {@code this}, with a single lookup.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the value to report if {@code key} is not in {@code this}
+     * @return the value for {@code key}, or {@code defaultValue}
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then getOrDefault = this(key)
+     * else getOrDefault = defaultValue
+     * </pre>
+     */
+    public final V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        int s = this.find(key);
+        V result = defaultValue;
+        if (s >= 0) {
+            result = this.values[s];
+        } else if (s == SAME_HASH && this.overflow != null) {
+            result = this.overflow.getOrDefault(key, defaultValue);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of keys kept outside the perfect hash table because
+     * another key has the same hash code.
+     *
+     * @return the number of overflow keys
+     */
+    public final int overflowSize() {
+        int result = 0;
+        if (this.overflow != null) {
+            result = this.overflow.size();
+        }
+        return result;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4Frozen}:
+     * the slots in order, then the overflow map.
+     */
+    private final class Map4FrozenIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Next slot to visit.
+         */
+        private int nextSlot;
+
+        /**
+         * Iterator over the overflow map, once the slots are done.
+         */
+        private Iterator<Pair<K, V>> overflowIterator;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4FrozenIterator() {
+            this.nextSlot = 0;
+            this.overflowIterator = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean result = this.nextSlot < Map4Frozen.this.keys.length;
+            if (!result && Map4Frozen.this.overflow != null) {
+                if (this.overflowIterator == null) {
+                    this.overflowIterator = Map4Frozen.this.overflow
+                            .iterator();
+                }
+                result = this.overflowIterator.hasNext();
+            }
+            return result;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Pair<K, V> result;
+            if (this.nextSlot < Map4Frozen.this.keys.length) {
+                result = new MapPair<K, V>(
+                        Map4Frozen.this.keys[this.nextSlot],
+                        Map4Frozen.this.values[this.nextSlot]);
+                this.nextSlot++;
+            } else {
+                result = this.overflowIterator.next();
+            }
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+import java.util.concurrent.ForkJoinPool;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times merging per-shard word counts into one {@code Map4}, comparing a
+ * key-at-a-time merge with {@code Map4.mergeFrom} on one thread and on the
+ * common fork-join pool.
+ *
+ * <p>
+ * By default 32 shards of 1,000,000 distinct keys each are merged, with keys
+ * drawn from a set four times the size of a shard so that shards overlap.
+ * The number of shards and keys per shard can be given as the first two
+ * arguments, for machines with less memory.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4MergeBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4MergeBenchmark() {
+    }
+
+    /**
+     * Default number of shards.
+     */
+    private static final int DEFAULT_SHARDS = 32;
+
+    /**
+     * Default number of distinct keys in each shard.
+     */
+    private static final int DEFAULT_KEYS_PER_SHARD = 1_000_000;
+
+    /**
+     * Ratio of the number of possible keys to the keys in a shard.
+     */
+    private static final int KEY_SPACE_FACTOR = 4;
+
+    /**
+     * Step between the keys of a shard; prime, so that a shard's keys are
+     * distinct.
+     */
+    private static final int KEY_STRIDE = 1_000_003;
+
+    /**
+     * Load factor of every map.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Builds the shards: shard {@code s} counts {@code keysPerShard} distinct
+     * keys from {@code keys}, each once.
+     *
+     * @param keys
+     *            the possible keys
+     * @param shardCount
+     *            the number of shards
+     * @param keysPerShard
+     *            the number of keys in each shard
+     * @return the shards
+     */
+    private static Map4<String, Integer>[] buildShards(String[] keys,
+            int shardCount, int keysPerShard) {
+        @SuppressWarnings("unchecked")
+        Map4<String, Integer>[] shards =
+                (Map4<String, Integer>[]) new Map4<?, ?>[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            shards[s] = new Map4<>(101, LOAD_FACTOR);
+            long position = (long) s * keysPerShard;
+            for (int j = 0; j < keysPerShard; j++) {
+                position = (position + KEY_STRIDE) % keys.length;
+                Map4.increment(shards[s], keys[(int) position], 1);
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Reports the sum of the values of {@code map}.
+     *
+     * @param map
+     *            the map
+     * @return the sum of the values
+     */
+    private static long total(Map<String, Integer> map) {
+        long sum = 0;
+        for (Map.Pair<String, Integer> p : map) {
+            sum += p.value();
+        }
+        return sum;
+    }
+
+    /**
+     * Merges {@code shards} into the first shard one key at a time, with
+     * {@code hasKey}, {@code value}, {@code replaceValue}, and {@code add}.
+     *
+     * @param shards
+     *            the shards
+     * @return the merged map
+     */
+    private static Map4<String, Integer> mergeByKey(
+            Map4<String, Integer>[] shards) {
+        Map4<String, Integer> result = shards[0];
+        for (int s = 1; s < shards.length; s++) {
+            for (Map.Pair<String, Integer> p : shards[s]) {
+                if (result.hasKey(p.key())) {
+                    result.replaceValue(p.key(),
+                            result.value(p.key()) + p.value());
+                } else {
+                    result.add(p.key(), p.value());
+                }
+            }
+            shards[s].clear();
+        }
+        return result;
+    }
+
+    /**
+     * Merges {@code shards} into the first shard with {@code mergeFrom} on
+     * {@code pool}.
+     *
+     * @param shards
+     *            the shards
+     * @param pool
+     *            the pool to merge on
+     * @return the merged map
+     */
+    private static Map4<String, Integer> mergeByBucket(
+            Map4<String, Integer>[] shards, ForkJoinPool pool) {
+        Map4<String, Integer> result = shards[0];
+        for (int s = 1; s < shards.length; s++) {
+            result.mergeFrom(shards[s], Integer::sum, pool);
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the number of shards and the number of keys per
+     *            shard
+     */
+    public static void main(String[] args) {
+        int shardCount = DEFAULT_SHARDS;
+        int keysPerShard = DEFAULT_KEYS_PER_SHARD;
+        if (args.length >= 2) {
+            shardCount = Integer.parseInt(args[0]);
+            keysPerShard = Integer.parseInt(args[1]);
+        }
+        String[] keys = new String[KEY_SPACE_FACTOR * keysPerShard];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "word" + i;
+        }
+        long expected = (long) shardCount * keysPerShard;
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(shardCount + " shards of " + keysPerShard + " keys, "
+                + ForkJoinPool.commonPool().getParallelism()
+                + " common pool threads");
+        out.println("merge\tms\tkeys\ttotal ok");
+        ForkJoinPool single = new ForkJoinPool(1);
+        for (int method = 0; method < 3; method++) {
+            Map4<String, Integer>[] shards = buildShards(keys, shardCount,
+                    keysPerShard);
+            long start = System.nanoTime();
+            Map4<String, Integer> merged;
+            String name;
+            if (method == 0) {
+                name = "key at a time";
+                merged = mergeByKey(shards);
+            } else if (method == 1) {
+                name = "mergeFrom, 1 thread";
+                merged = mergeByBucket(shards, single);
+            } else {
+                name = "mergeFrom, common pool";
+                merged = mergeByBucket(shards, ForkJoinPool.commonPool());
+            }
+            long elapsed = System.nanoTime() - start;
+            out.println(name + "\t" + elapsed / 1_000_000 + "\t"
+                    + merged.size() + "\t" + (total(merged) == expected));
+        }
+        single.shutdown();
+        out.close();
+    }
+
+}
@@ -0,0 +1,933 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Immutable {@code Map} from {@code String}s to {@code Integer},
+ * {@code Long}, or {@code Double} values, read straight out of a snapshot
+ * file written by {@link #write(Map4, Format, String)}.
+ *
+ * <p>
+ * A snapshot lays the keys out in the buckets of the {@code Map4} it was
+ * written from, using the same table size and hash strategy, flattened into
+ * arrays:
+ *
+ * <pre>
+ * header        8 ints: magic, version, value format, strategy kind,
+ *               strategy seed, table size, number of entries, number of
+ *               key characters
+ * bucketStart   table size + 1 ints: entries of bucket b are
+ *               [bucketStart[b], bucketStart[b+1])
+ * hashes        one int per entry: the key's hash code
+ * keyStart      entries + 1 ints: the characters of entry e's key are
+ *               [keyStart[e], keyStart[e+1])
+ * values        one value per entry, 4 or 8 bytes, 8-byte aligned
+ * characters    the keys' UTF-16 characters, 2 bytes each
+ * </pre>
+ *
+ * All numbers are big-endian. {@link #load(String, Format)} maps the file
+ * with {@code FileChannel.map} and checks only the header, so loading takes
+ * the same time whatever the size of the map; lookups read the mapped bytes
+ * directly, comparing the hash codes of the key's bucket and then the
+ * characters of matching keys, without building any {@code String}. Only
+ * the pages a lookup touches are read from the file.
+ *
+ * <p>
+ * The read side of {@code Map} works as for any {@code Map}. Operations that
+ * would change the map throw {@code UnsupportedOperationException}. A
+ * snapshot is limited to 2 GB, the most one mapping can hold.
+ *
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * [$this.buffer holds a snapshot with a valid header whose value format is
+ *  $this.format]  and
+ * [$this.strategy is the strategy named by the header, and
+ *  $this.tableSize and $this.size are as given by the header]  and
+ * [the other offsets are those of the sections of $this.buffer]  and
+ * [the entries of bucket b have keys whose bucket under $this.strategy is b]
+ * and  [the keys of the entries are pairwise not equal]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (string of character, V)
+ *            where ([k and v are the key and value of an entry of
+ *                    $this.buffer])}
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class Map4Snapshot<V> extends MapSecondary<String, V> {
+
+    /**
+     * Encoding of the values of a snapshot.
+     *
+     * @param <V>
+     *            type of value
+     */
+    public abstract static class Format<V> {
+
+        /**
+         * {@code Integer} values, 4 bytes each.
+         */
+        public static final Format<Integer> INT = new Format<Integer>(1,
+                Integer.BYTES) {
+
+            @Override
+            Integer get(ByteBuffer buffer, int position) {
+                return buffer.getInt(position);
+            }
+
+            @Override
+            void put(ByteBuffer buffer, int position, Integer value) {
+                buffer.putInt(position, value);
+            }
+
+        };
+
+        /**
+         * {@code Long} values, 8 bytes each.
+         */
+        public static final Format<Long> LONG = new Format<Long>(2,
+                Long.BYTES) {
+
+            @Override
+            Long get(ByteBuffer buffer, int position) {
+                return buffer.getLong(position);
+            }
+
+            @Override
+            void put(ByteBuffer buffer, int position, Long value) {
+                buffer.putLong(position, value);
+            }
+
+        };
+
+        /**
+         * {@code Double} values, 8 bytes each.
+         */
+        public static final Format<Double> DOUBLE = new Format<Double>(3,
+                Double.BYTES) {
+
+            @Override
+            Double get(ByteBuffer buffer, int position) {
+                return buffer.getDouble(position);
+            }
+
+            @Override
+            void put(ByteBuffer buffer, int position, Double value) {
+                buffer.putDouble(position, value);
+            }
+
+        };
+
+        /**
+         * Number identifying this format in the header.
+         */
+        private final int id;
+
+        /**
+         * Number of bytes of a value.
+         */
+        private final int width;
+
+        /**
+         * Constructor from identifying number and value width.
+         *
+         * @param id
+         *            the number identifying the format
+         * @param width
+         *            the number of bytes of a value
+         */
+        private Format(int id, int width) {
+            this.id = id;
+            this.width = width;
+        }
+
+        /**
+         * Reports the number of bytes of a value.
+         *
+         * @return the width of a value
+         */
+        int width() {
+            return this.width;
+        }
+
+        /**
+         * Reads the value at {@code position} of {@code buffer}.
+         *
+         * @param buffer
+         *            the buffer
+         * @param position
+         *            the byte offset of the value
+         * @return the value
+         */
+        abstract V get(ByteBuffer buffer, int position);
+
+        /**
+         * Writes {@code value} at {@code position} of {@code buffer}.
+         *
+         * @param buffer
+         *            the buffer
+         * @param position
+         *            the byte offset of the value
+         * @param value
+         *            the value
+         */
+        abstract void put(ByteBuffer buffer, int position, V value);
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * First int of every snapshot ("M4SN").
+     */
+    private static final int MAGIC = 0x4D34534E;
+
+    /**
+     * Version of the layout written by this class.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of ints in the header.
+     */
+    private static final int HEADER_INTS = 8;
+
+    /**
+     * Position in the header, in ints, of the value format.
+     */
+    private static final int FORMAT_FIELD = 2;
+
+    /**
+     * Position in the header, in ints, of the strategy kind.
+     */
+    private static final int STRATEGY_FIELD = 3;
+
+    /**
+     * Position in the header, in ints, of the strategy seed.
+     */
+    private static final int SEED_FIELD = 4;
+
+    /**
+     * Position in the header, in ints, of the table size.
+     */
+    private static final int TABLE_SIZE_FIELD = 5;
+
+    /**
+     * Position in the header, in ints, of the number of entries.
+     */
+    private static final int SIZE_FIELD = 6;
+
+    /**
+     * Position in the header, in ints, of the number of key
+     * characters.
+     */
+    private static final int CHARS_FIELD = 7;
+
+    /**
+     * Strategy kind of {@code HashStrategy.PrimeModulus}.
+     */
+    private static final int PRIME_MODULUS = 0;
+
+    /**
+     * Strategy kind of {@code HashStrategy.MixedMask}.
+     */
+    private static final int MIXED_MASK = 1;
+
+    /**
+     * Strategy kind of {@code HashStrategy.Seeded}.
+     */
+    private static final int SEEDED = 2;
+
+    /**
+     * Strategy kind of {@code HashStrategy.Modulus}.
+     */
+    private static final int MODULUS = 3;
+
+    /**
+     * Alignment of the values section, in bytes.
+     */
+    private static final int VALUE_ALIGNMENT = Long.BYTES;
+
+    /**
+     * Byte offsets of the sections of a snapshot.
+     */
+    private static final class Layout {
+
+        /**
+         * Offset of bucketStart.
+         */
+        private final long bucketStart;
+
+        /**
+         * Offset of hashes.
+         */
+        private final long hashes;
+
+        /**
+         * Offset of keyStart.
+         */
+        private final long keyStart;
+
+        /**
+         * Offset of values.
+         */
+        private final long values;
+
+        /**
+         * Offset of the characters.
+         */
+        private final long chars;
+
+        /**
+         * Total length.
+         */
+        private final long length;
+
+        /**
+         * Constructor from the header fields that fix the layout.
+         *
+         * @param tableSize
+         *            the number of buckets
+         * @param size
+         *            the number of entries
+         * @param charCount
+         *            the number of key characters
+         * @param valueWidth
+         *            the number of bytes of a value
+         */
+        Layout(int tableSize, int size, long charCount, int valueWidth) {
+            this.bucketStart = (long) HEADER_INTS * Integer.BYTES;
+            this.hashes = this.bucketStart
+                    + ((long) tableSize + 1) * Integer.BYTES;
+            this.keyStart = this.hashes + (long) size * Integer.BYTES;
+            long afterKeyStart = this.keyStart
+                    + ((long) size + 1) * Integer.BYTES;
+            this.values = (afterKeyStart + VALUE_ALIGNMENT - 1)
+                    / VALUE_ALIGNMENT * VALUE_ALIGNMENT;
+            this.chars = this.values + (long) size * valueWidth;
+            this.length = this.chars + charCount * Character.BYTES;
+        }
+
+    }
+
+    /**
+     * The snapshot.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Encoding of the values.
+     */
+    private Format<V> format;
+
+    /**
+     * Hash strategy the keys were laid out with.
+     */
+    private HashStrategy strategy;
+
+    /**
+     * Number of buckets.
+     */
+    private int tableSize;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Byte offset of bucketStart.
+     */
+    private int bucketStartAt;
+
+    /**
+     * Byte offset of hashes.
+     */
+    private int hashesAt;
+
+    /**
+     * Byte offset of keyStart.
+     */
+    private int keyStartAt;
+
+    /**
+     * Byte offset of values.
+     */
+    private int valuesAt;
+
+    /**
+     * Byte offset of the characters.
+     */
+    private int charsAt;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @param valueFormat
+     *            the encoding of the values
+     * @throws IOException
+     *             if {@code snapshot} is not a snapshot with values in
+     *             {@code valueFormat}
+     * @ensures this = [the entries of snapshot]
+     */
+    private void createNewRep(ByteBuffer snapshot, Format<V> valueFormat)
+            throws IOException {
+        if (snapshot.capacity() < HEADER_INTS * Integer.BYTES
+                || snapshot.getInt(0) != MAGIC) {
+            throw new IOException("Not a Map4 snapshot");
+        }
+        if (snapshot.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported snapshot version "
+                    + snapshot.getInt(Integer.BYTES));
+        }
+        if (snapshot.getInt(FORMAT_FIELD * Integer.BYTES) != valueFormat.id) {
+            throw new IOException("Snapshot values are not in the "
+                    + "requested format");
+        }
+        int kind = snapshot.getInt(STRATEGY_FIELD * Integer.BYTES);
+        int seed = snapshot.getInt(SEED_FIELD * Integer.BYTES);
+        int buckets = snapshot.getInt(TABLE_SIZE_FIELD * Integer.BYTES);
+        int entries = snapshot.getInt(SIZE_FIELD * Integer.BYTES);
+        int charCount = snapshot.getInt(CHARS_FIELD * Integer.BYTES);
+        Layout layout = new Layout(buckets, entries, charCount,
+                valueFormat.width);
+        if (buckets <= 0 || entries < 0 || charCount < 0
+                || layout.length != snapshot.capacity()) {
+            throw new IOException("Snapshot is truncated or corrupt");
+        }
+        if (kind == PRIME_MODULUS) {
+            this.strategy = new HashStrategy.PrimeModulus();
+        } else if (kind == MIXED_MASK) {
+            this.strategy = new HashStrategy.MixedMask();
+        } else if (kind == SEEDED) {
+            this.strategy = new HashStrategy.Seeded(seed);
+        } else if (kind == MODULUS) {
+            this.strategy = new HashStrategy.Modulus();
+        } else {
+            throw new IOException("Unknown hash strategy " + kind);
+        }
+        this.buffer = snapshot;
+        this.format = valueFormat;
+        this.tableSize = buckets;
+        this.size = entries;
+        this.bucketStartAt = (int) layout.bucketStart;
+        this.hashesAt = (int) layout.hashes;
+        this.keyStartAt = (int) layout.keyStart;
+        this.valuesAt = (int) layout.values;
+        this.charsAt = (int) layout.chars;
+    }
+
+    /**
+     * Reports the kind recorded in the header for {@code strategy}; any
+     * strategy other than the four provided is recorded as
+     * {@code MIXED_MASK}.
+     *
+     * @param strategy
+     *            the strategy
+     * @return the strategy kind
+     */
+    private static int kindOf(HashStrategy strategy) {
+        int kind = MIXED_MASK;
+        if (strategy instanceof HashStrategy.PrimeModulus) {
+            kind = PRIME_MODULUS;
+        } else if (strategy instanceof HashStrategy.Seeded) {
+            kind = SEEDED;
+        } else if (strategy instanceof HashStrategy.Modulus) {
+            kind = MODULUS;
+        }
+        return kind;
+    }
+
+    /**
+     * Returns the number of bytes of the snapshot of {@code map}, and fills
+     * in {@code keys}, {@code values}, and {@code order} so that the entries
+     * of bucket b are {@code order[bucketStart[b], bucketStart[b+1])}.
+     *
+     * @param <V>
+     *            type of value
+     * @param map
+     *            the map
+     * @param strategy
+     *            the hash strategy to lay the keys out with
+     * @param bucketStart
+     *            the first entry of each bucket, filled in
+     * @param keys
+     *            the keys, filled in
+     * @param values
+     *            the values, filled in
+     * @param order
+     *            the entry numbers in bucket order, filled in
+     * @param valueWidth
+     *            the number of bytes of a value
+     * @return the snapshot's layout
+     * @requires <pre>
+     * |bucketStart| = [the table size] + 1  and
+     * |keys| = |values| = |order| = |map|  and
+     * [bucketStart is all zeros]
+     * </pre>
+     */
+    private static <V> Layout arrange(Map<String, V> map,
+            HashStrategy strategy, int[] bucketStart, String[] keys,
+            Object[] values, int[] order, int valueWidth) {
+        int buckets = bucketStart.length - 1;
+        int[] bucketOf = new int[keys.length];
+        long charCount = 0;
+        int e = 0;
+        for (Pair<String, V> p : map) {
+            keys[e] = p.key();
+            values[e] = p.value();
+            bucketOf[e] = strategy.index(p.key().hashCode(), buckets);
+            bucketStart[bucketOf[e] + 1]++;
+            charCount += p.key().length();
+            e++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] fill = new int[buckets];
+        System.arraycopy(bucketStart, 0, fill, 0, buckets);
+        for (int i = 0; i < keys.length; i++) {
+            order[fill[bucketOf[i]]] = i;
+            fill[bucketOf[i]]++;
+        }
+        return new Layout(buckets, keys.length, charCount, valueWidth);
+    }
+
+    /**
+     * Writes the snapshot of {@code map} into {@code out}.
+     *
+     * @param <V>
+     *            type of value
+     * @param map
+     *            the map
+     * @param format
+     *            the encoding of the values
+     * @param out
+     *            the buffer to write into
+     * @param strategy
+     *            the hash strategy to lay the keys out with
+     * @param tableSize
+     *            the number of buckets
+     * @updates out
+     * @requires <pre>
+     * [tableSize is a value returned by strategy.tableSize]  and
+     * |out| = [the length of the snapshot]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> void encode(Map<String, V> map, Format<V> format,
+            ByteBuffer out, HashStrategy strategy, int tableSize) {
+        int n = map.size();
+        int[] bucketStart = new int[tableSize + 1];
+        String[] keys = new String[n];
+        Object[] values = new Object[n];
+        int[] order = new int[n];
+        Layout layout = arrange(map, strategy, bucketStart, keys, values,
+                order, format.width);
+        int seed = 0;
+        if (strategy instanceof HashStrategy.Seeded) {
+            seed = ((HashStrategy.Seeded) strategy).seed();
+        }
+        out.putInt(0, MAGIC);
+        out.putInt(Integer.BYTES, VERSION);
+        out.putInt(FORMAT_FIELD * Integer.BYTES, format.id);
+        out.putInt(STRATEGY_FIELD * Integer.BYTES, kindOf(strategy));
+        out.putInt(SEED_FIELD * Integer.BYTES, seed);
+        out.putInt(TABLE_SIZE_FIELD * Integer.BYTES, tableSize);
+        out.putInt(SIZE_FIELD * Integer.BYTES, n);
+        out.putInt(CHARS_FIELD * Integer.BYTES,
+                (int) ((layout.length - layout.chars) / Character.BYTES));
+        for (int b = 0; b <= tableSize; b++) {
+            out.putInt((int) layout.bucketStart + b * Integer.BYTES,
+                    bucketStart[b]);
+        }
+        int charPosition = 0;
+        for (int e = 0; e < n; e++) {
+            String key = keys[order[e]];
+            out.putInt((int) layout.hashes + e * Integer.BYTES,
+                    key.hashCode());
+            out.putInt((int) layout.keyStart + e * Integer.BYTES,
+                    charPosition);
+            format.put(out, (int) layout.values + e * format.width,
+                    (V) values[order[e]]);
+            int at = (int) layout.chars + charPosition * Character.BYTES;
+            for (int i = 0; i < key.length(); i++) {
+                out.putChar(at + i * Character.BYTES, key.charAt(i));
+            }
+            charPosition += key.length();
+        }
+        out.putInt((int) layout.keyStart + n * Integer.BYTES, charPosition);
+    }
+
+    /**
+     * Reports the number of bytes of the snapshot of {@code map}.
+     *
+     * @param map
+     *            the map
+     * @param tableSize
+     *            the number of buckets
+     * @param valueWidth
+     *            the number of bytes of a value
+     * @return the length of the snapshot
+     */
+    private static long lengthOf(Map<String, ?> map, int tableSize,
+            int valueWidth) {
+        long charCount = 0;
+        for (Pair<String, ?> p : map) {
+            charCount += p.key().length();
+        }
+        return new Layout(tableSize, map.size(), charCount, valueWidth).length;
+    }
+
+    /**
+     * Returns the entry number of {@code key}, or -1 if it is not in
+     * {@code this}.
+     *
+     * @param key
+     *            the key
+     * @return the entry number of {@code key}, or -1
+     */
+    private int find(String key) {
+        int hash = key.hashCode();
+        int b = this.strategy.index(hash, this.tableSize);
+        int at = this.bucketStartAt + b * Integer.BYTES;
+        int end = this.buffer.getInt(at + Integer.BYTES);
+        int result = -1;
+        for (int e = this.buffer.getInt(at); result < 0 && e < end; e++) {
+            if (this.buffer.getInt(this.hashesAt + e * Integer.BYTES) == hash
+                    && this.keyEquals(e, key)) {
+                result = e;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether the key of entry {@code e} is {@code key}.
+     *
+     * @param e
+     *            the entry number
+     * @param key
+     *            the key
+     * @return true iff the key of entry {@code e} equals {@code key}
+     */
+    private boolean keyEquals(int e, String key) {
+        int at = this.keyStartAt + e * Integer.BYTES;
+        int start = this.buffer.getInt(at);
+        int length = this.buffer.getInt(at + Integer.BYTES) - start;
+        boolean equal = length == key.length();
+        int charAt = this.charsAt + start * Character.BYTES;
+        for (int i = 0; equal && i < length; i++) {
+            equal = this.buffer.getChar(charAt + i * Character.BYTES) == key
+                    .charAt(i);
+        }
+        return equal;
+    }
+
+    /**
+     * Returns the key of entry {@code e}.
+     *
+     * @param e
+     *            the entry number
+     * @return the key of entry {@code e}
+     */
+    private String keyAt(int e) {
+        int at = this.keyStartAt + e * Integer.BYTES;
+        int start = this.buffer.getInt(at);
+        int length = this.buffer.getInt(at + Integer.BYTES) - start;
+        char[] chars = new char[length];
+        int charAt = this.charsAt + start * Character.BYTES;
+        for (int i = 0; i < length; i++) {
+            chars[i] = this.buffer.getChar(charAt + i * Character.BYTES);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the value of entry {@code e}.
+     *
+     * @param e
+     *            the entry number
+     * @return the value of entry {@code e}
+     */
+    private V valueAt(int e) {
+        return this.format.get(this.buffer,
+                this.valuesAt + e * this.format.width);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from a snapshot already in memory.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @param format
+     *            the encoding of the values
+     * @throws IOException
+     *             if {@code snapshot} is not a snapshot with values in
+     *             {@code format}
+     * @ensures this = [the entries of snapshot]
+     */
+    private Map4Snapshot(ByteBuffer snapshot, Format<V> format)
+            throws IOException {
+        this.createNewRep(snapshot, format);
+    }
+
+    /**
+     * Writes a snapshot of {@code map} to file {@code fileName}, replacing
+     * the file if it exists. The keys are laid out with the table size and
+     * hash strategy of {@code map}; a strategy other than the four provided
+     * by {@code HashStrategy} is replaced by {@code MixedMask}.
+     *
+     * @param <V>
+     *            type of value
+     * @param map
+     *            the map to save
+     * @param format
+     *            the encoding of the values
+     * @param fileName
+     *            the name of the file to write
+     * @throws IOException
+     *             if the file cannot be written, or the snapshot would be
+     *             larger than 2 GB
+     * @requires map /= null  and  format /= null  and  fileName /= null
+     * @ensures [file fileName holds a snapshot of map]
+     */
+    public static <V> void write(Map4<String, V> map, Format<V> format,
+            String fileName) throws IOException {
+        assert map != null : "Violation of: map is not null";
+        assert format != null : "Violation of: format is not null";
+        assert fileName != null : "Violation of: fileName is not null";
+
+        HashStrategy strategy = map.hashStrategy();
+        int tableSize = map.tableSize();
+        if (kindOf(strategy) == MIXED_MASK
+                && !(strategy instanceof HashStrategy.MixedMask)) {
+            strategy = new HashStrategy.MixedMask();
+            tableSize = strategy.tableSize(tableSize);
+        }
+        long length = lengthOf(map, tableSize, format.width);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + length
+                    + " bytes is larger than one mapping can hold");
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, length);
+            encode(map, format, out, strategy, tableSize);
+            out.force();
+        }
+    }
+
+    /**
+     * Maps the snapshot in file {@code fileName} into memory and returns it
+     * as a {@code Map}. Only the header is read; the rest of the file is read
+     * by the lookups that need it.
+     *
+     * @param <V>
+     *            type of value
+     * @param fileName
+     *            the name of the snapshot file
+     * @param format
+     *            the encoding of the values
+     * @return the snapshot
+     * @throws IOException
+     *             if the file cannot be read, or is not a snapshot with
+     *             values in {@code format}
+     * @requires fileName /= null  and  format /= null
+     * @ensures load = [the entries of the snapshot in file fileName]
+     */
+    public static <V> Map4Snapshot<V> load(String fileName, Format<V> format)
+            throws IOException {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert format != null : "Violation of: format is not null";
+
+        MappedByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        return new Map4Snapshot<V>(snapshot, format);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<String, V> newInstance() {
+        Map4<String, V> empty = new Map4<String, V>();
+        ByteBuffer snapshot = ByteBuffer.allocate((int) lengthOf(empty,
+                empty.tableSize(), this.format.width));
+        encode(empty, this.format, snapshot, empty.hashStrategy(),
+                empty.tableSize());
+        try {
+            return new Map4Snapshot<V>(snapshot, this.format);
+        } catch (IOException e) {
+            throw new AssertionError("Cannot read back an empty snapshot", e);
+        }
+    }
+
+    @Override
+    public final void clear() {
+        throw new UnsupportedOperationException(
+                "clear operation not supported");
+    }
+
+    @Override
+    public final void transferFrom(Map<String, V> source) {
+        throw new UnsupportedOperationException(
+                "transferFrom operation not supported");
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(String key, V value) {
+        throw new UnsupportedOperationException(
+                "add operation not supported");
+    }
+
+    @Override
+    public final Pair<String, V> remove(String key) {
+        throw new UnsupportedOperationException(
+                "remove operation not supported");
+    }
+
+    @Override
+    public final Pair<String, V> removeAny() {
+        throw new UnsupportedOperationException(
+                "removeAny operation not supported");
+    }
+
+    @Override
+    public final V value(String key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.valueAt(this.find(key));
+    }
+
+    @Override
+    public final boolean hasKey(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<String, V>> iterator() {
+        return new Map4SnapshotIterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the value associated with {@code key}, or {@code defaultValue}
+     * if {@code key} is not in {@code this}, with a single lookup.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the value to report if {@code key} is not in {@code this}
+     * @return the value for {@code key}, or {@code defaultValue}
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then getOrDefault = this(key)
+     * else getOrDefault = defaultValue
+     * </pre>
+     */
+    public final V getOrDefault(String key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        int e = this.find(key);
+        V result = defaultValue;
+        if (e >= 0) {
+            result = this.valueAt(e);
+        }
+        return result;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4Snapshot}:
+     * the entries in the order they are stored.
+     */
+    private final class Map4SnapshotIterator
+            implements Iterator<Pair<String, V>> {
+
+        /**
+         * Next entry to visit.
+         */
+        private int next;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4SnapshotIterator() {
+            this.next = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < Map4Snapshot.this.size;
+        }
+
+        @Override
+        public Pair<String, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Pair<String, V> result = new MapPair<String, V>(
+                    Map4Snapshot.this.keyAt(this.next),
+                    Map4Snapshot.this.valueAt(this.next));
+            this.next++;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
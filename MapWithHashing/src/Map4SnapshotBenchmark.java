@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares, for growing numbers of keys, the time to rebuild a
+ * {@code Map4<String, Integer>} key by key with the time to load a
+ * {@code Map4Snapshot} of it, and the time of a lookup in each.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4SnapshotBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4SnapshotBenchmark() {
+    }
+
+    /**
+     * Smallest number of keys measured.
+     */
+    private static final int MIN_KEYS = 1_000;
+
+    /**
+     * Largest number of keys measured.
+     */
+    private static final int MAX_KEYS = 1_000_000;
+
+    /**
+     * Number of lookups timed for each map.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Load factor of the maps.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Returns the key used for entry {@code i}.
+     *
+     * @param i
+     *            the entry number
+     * @return the key for entry {@code i}
+     */
+    private static String key(int i) {
+        return "word" + i;
+    }
+
+    /**
+     * Builds a map of {@code n} keys.
+     *
+     * @param n
+     *            the number of keys
+     * @return the map
+     */
+    private static Map4<String, Integer> build(int n) {
+        Map4<String, Integer> map = new Map4<>(101, LOAD_FACTOR);
+        for (int i = 0; i < n; i++) {
+            map.add(key(i), i);
+        }
+        return map;
+    }
+
+    /**
+     * Returns the average number of nanoseconds taken by a
+     * {@code getOrDefault} on {@code map}, for keys spread over {@code n}
+     * entries.
+     *
+     * @param map
+     *            the map to time
+     * @param n
+     *            the number of keys
+     * @return nanoseconds per lookup
+     */
+    private static double timeLookups(Map4Snapshot<Integer> map, int n) {
+        String[] probes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = key((int) ((i * 2_654_435_761L) % n));
+        }
+        long sum = 0;
+        long start = System.nanoTime();
+        for (String probe : probes) {
+            sum += map.getOrDefault(probe, 0);
+        }
+        long elapsed = System.nanoTime() - start;
+        //use the sum so the lookups cannot be optimized away
+        if (sum < 0) {
+            throw new AssertionError("Unexpected negative sum");
+        }
+        return (double) elapsed / LOOKUPS;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     * @throws IOException
+     *             if a snapshot cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("keys\tbuild ms\tload ms\tfile KB\tns/lookup (snapshot)");
+        for (int n = MIN_KEYS; n <= MAX_KEYS; n *= 10) {
+            long start = System.nanoTime();
+            Map4<String, Integer> map = build(n);
+            long built = System.nanoTime() - start;
+
+            Path file = Files.createTempFile("map4", ".snapshot");
+            file.toFile().deleteOnExit();
+            Map4Snapshot.write(map, Map4Snapshot.Format.INT, file.toString());
+            start = System.nanoTime();
+            Map4Snapshot<Integer> snapshot = Map4Snapshot.load(file.toString(),
+                    Map4Snapshot.Format.INT);
+            long loaded = System.nanoTime() - start;
+
+            out.println(n + "\t" + built / 1_000_000 + "\t"
+                    + String.format("%.3f", loaded / 1e6) + "\t"
+                    + Files.size(file) / 1024 + "\t"
+                    + String.format("%.1f", timeLookups(snapshot, n)));
+        }
+        out.close();
+    }
+
+}
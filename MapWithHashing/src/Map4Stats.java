@@ -0,0 +1,263 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Statistics of one {@code Map4}, created by
+ * {@link Map4#enableStatistics()}.
+ *
+ * <p>
+ * The operation, hash, comparison, and resize counts are gathered by the map
+ * as it runs, from the time statistics are enabled; a map whose statistics
+ * are disabled pays only a {@code null} check at each counting point. The
+ * bucket occupancy numbers are computed from the table each time they are
+ * read. Key comparisons are counted as the length of the chain searched in a
+ * list bucket (an upper bound; a hit stops early) or the depth of a balanced
+ * tree bucket.
+ *
+ * <p>
+ * The counts are plain fields updated by the thread using the map, and
+ * {@code Map4} is not thread-safe, so numbers read from another thread, such
+ * as over JMX, while the map is being changed are approximate.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4Stats implements Map4StatsMXBean {
+
+    /**
+     * Domain of the JMX names of registered statistics.
+     */
+    private static final String JMX_DOMAIN = "Map4";
+
+    /**
+     * The map these statistics describe.
+     */
+    private final Map4<?, ?> map;
+
+    /**
+     * Number of operations counted.
+     */
+    private long operations;
+
+    /**
+     * Number of key hash codes computed.
+     */
+    private long hashes;
+
+    /**
+     * Number of key comparisons made in bucket searches.
+     */
+    private long keyComparisons;
+
+    /**
+     * Number of resizes started.
+     */
+    private long resizes;
+
+    /**
+     * JMX name under which {@code this} is registered, or {@code null}.
+     */
+    private ObjectName jmxName;
+
+    /**
+     * Constructor from map.
+     *
+     * @param map
+     *            the map these statistics describe
+     */
+    Map4Stats(Map4<?, ?> map) {
+        this.map = map;
+        this.jmxName = null;
+        this.reset();
+    }
+
+    /**
+     * Counts one operation.
+     */
+    void recordOperation() {
+        this.operations++;
+    }
+
+    /**
+     * Counts one hash code computation.
+     */
+    void recordHash() {
+        this.hashes++;
+    }
+
+    /**
+     * Counts {@code count} key comparisons.
+     *
+     * @param count
+     *            the number of comparisons
+     */
+    void recordComparisons(int count) {
+        this.keyComparisons += count;
+    }
+
+    /**
+     * Counts one resize.
+     */
+    void recordResize() {
+        this.resizes++;
+    }
+
+    /**
+     * Registers {@code this} with the platform MBean server under the name
+     * {@code Map4:type=Statistics,name=<name>}.
+     *
+     * @param name
+     *            the name identifying the map
+     * @requires <pre>
+     * name /= null  and  [this is not registered]  and
+     * [no statistics are registered under name]
+     * </pre>
+     * @ensures [this is registered under name]
+     */
+    public void register(String name) {
+        assert name != null : "Violation of: name is not null";
+        assert this.jmxName == null : "Violation of: this is not registered";
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN
+                    + ":type=Statistics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.jmxName = objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException(
+                    "Cannot register statistics as " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters {@code this} from the platform MBean server, if it is
+     * registered.
+     *
+     * @ensures [this is not registered]
+     */
+    public void unregister() {
+        if (this.jmxName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(this.jmxName);
+            } catch (JMException e) {
+                //already gone, which is the state wanted
+            }
+            this.jmxName = null;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return this.map.size();
+    }
+
+    @Override
+    public int getBucketCount() {
+        int buckets = 0;
+        for (int count : this.map.chainLengthHistogram()) {
+            buckets += count;
+        }
+        return buckets;
+    }
+
+    @Override
+    public int getOccupiedBucketCount() {
+        int[] histogram = this.map.chainLengthHistogram();
+        int occupied = 0;
+        for (int i = 1; i < histogram.length; i++) {
+            occupied += histogram[i];
+        }
+        return occupied;
+    }
+
+    @Override
+    public int[] getOccupancyHistogram() {
+        return this.map.chainLengthHistogram();
+    }
+
+    @Override
+    public int getMaxChainLength() {
+        return this.map.chainLengthHistogram().length - 1;
+    }
+
+    @Override
+    public double getMeanChainLength() {
+        int[] histogram = this.map.chainLengthHistogram();
+        long entries = 0;
+        long occupied = 0;
+        for (int i = 1; i < histogram.length; i++) {
+            entries += (long) i * histogram[i];
+            occupied += histogram[i];
+        }
+        double mean = 0;
+        if (occupied > 0) {
+            mean = (double) entries / occupied;
+        }
+        return mean;
+    }
+
+    @Override
+    public long getOperations() {
+        return this.operations;
+    }
+
+    @Override
+    public long getHashes() {
+        return this.hashes;
+    }
+
+    @Override
+    public long getKeyComparisons() {
+        return this.keyComparisons;
+    }
+
+    @Override
+    public double getHashesPerOperation() {
+        double ratio = 0;
+        if (this.operations > 0) {
+            ratio = (double) this.hashes / this.operations;
+        }
+        return ratio;
+    }
+
+    @Override
+    public double getKeyComparisonsPerOperation() {
+        double ratio = 0;
+        if (this.operations > 0) {
+            ratio = (double) this.keyComparisons / this.operations;
+        }
+        return ratio;
+    }
+
+    @Override
+    public long getResizes() {
+        return this.resizes;
+    }
+
+    @Override
+    public void reset() {
+        this.operations = 0;
+        this.hashes = 0;
+        this.keyComparisons = 0;
+        this.resizes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + this.getSize() + ", buckets=" + this.getBucketCount()
+                + ", occupied=" + this.getOccupiedBucketCount()
+                + ", maxChain=" + this.getMaxChainLength() + ", meanChain="
+                + String.format("%.2f", this.getMeanChainLength())
+                + ", operations=" + this.operations + ", hashes/op="
+                + String.format("%.2f", this.getHashesPerOperation())
+                + ", comparisons/op="
+                + String.format("%.2f", this.getKeyComparisonsPerOperation())
+                + ", resizes=" + this.resizes;
+    }
+
+}
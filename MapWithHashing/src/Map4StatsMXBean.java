@@ -0,0 +1,101 @@
+/**
+ * Management interface through which the statistics of a {@code Map4} are
+ * read over JMX; see {@link Map4Stats}.
+ *
+ * @author Kierra Smith
+ *
+ */
+public interface Map4StatsMXBean {
+
+    /**
+     * Reports the number of entries in the map.
+     *
+     * @return the size of the map
+     */
+    int getSize();
+
+    /**
+     * Reports the number of buckets, counting the buckets of a table still
+     * being rehashed.
+     *
+     * @return the number of buckets
+     */
+    int getBucketCount();
+
+    /**
+     * Reports the number of non-empty buckets.
+     *
+     * @return the number of occupied buckets
+     */
+    int getOccupiedBucketCount();
+
+    /**
+     * Reports the bucket occupancy histogram: entry {@code i} is the number of
+     * buckets holding exactly {@code i} entries.
+     *
+     * @return the occupancy histogram
+     */
+    int[] getOccupancyHistogram();
+
+    /**
+     * Reports the number of entries in the largest bucket.
+     *
+     * @return the maximum chain length
+     */
+    int getMaxChainLength();
+
+    /**
+     * Reports the average number of entries in a non-empty bucket.
+     *
+     * @return the mean chain length
+     */
+    double getMeanChainLength();
+
+    /**
+     * Reports the number of operations counted.
+     *
+     * @return the number of operations
+     */
+    long getOperations();
+
+    /**
+     * Reports the number of key hash codes computed.
+     *
+     * @return the number of hashes
+     */
+    long getHashes();
+
+    /**
+     * Reports the number of key comparisons made in bucket searches.
+     *
+     * @return the number of key comparisons
+     */
+    long getKeyComparisons();
+
+    /**
+     * Reports the average number of hash codes computed per operation.
+     *
+     * @return hashes per operation
+     */
+    double getHashesPerOperation();
+
+    /**
+     * Reports the average number of key comparisons per operation.
+     *
+     * @return key comparisons per operation
+     */
+    double getKeyComparisonsPerOperation();
+
+    /**
+     * Reports the number of times the table has started to resize.
+     *
+     * @return the number of resizes
+     */
+    long getResizes();
+
+    /**
+     * Sets the operation, hash, comparison, and resize counts back to 0.
+     */
+    void reset();
+
+}
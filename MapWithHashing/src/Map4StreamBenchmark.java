@@ -0,0 +1,124 @@
+import java.util.concurrent.ForkJoinPool;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times an aggregation over every entry of a large {@code Map4}: a for-each
+ * loop, a sequential {@code stream}, and a {@code parallelStream} on the
+ * common fork-join pool.
+ *
+ * <p>
+ * By default the map has 10,000,000 entries; the number can be given as the
+ * first argument, for machines with less memory.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Map4StreamBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4StreamBenchmark() {
+    }
+
+    /**
+     * Default number of entries.
+     */
+    private static final int DEFAULT_ENTRIES = 10_000_000;
+
+    /**
+     * Number of timed runs of each aggregation; the best is reported.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Divisor picking the values the aggregation counts.
+     */
+    private static final int DIVISOR = 7;
+
+    /**
+     * Load factor of the map.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Aggregates {@code map} with a for-each loop: the sum of the values
+     * divisible by {@code DIVISOR}.
+     *
+     * @param map
+     *            the map
+     * @return the sum
+     */
+    private static long byLoop(Map4<String, Integer> map) {
+        long sum = 0;
+        for (Map.Pair<String, Integer> p : map) {
+            if (p.value() % DIVISOR == 0) {
+                sum += p.value();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Aggregates {@code map} as {@code byLoop} does, with a stream.
+     *
+     * @param map
+     *            the map
+     * @param parallel
+     *            whether the stream is parallel
+     * @return the sum
+     */
+    private static long byStream(Map4<String, Integer> map, boolean parallel) {
+        return (parallel ? map.parallelStream() : map.stream())
+                .mapToLong(Map.Pair::value).filter(v -> v % DIVISOR == 0)
+                .sum();
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the number of entries
+     */
+    public static void main(String[] args) {
+        int entries = DEFAULT_ENTRIES;
+        if (args.length >= 1) {
+            entries = Integer.parseInt(args[0]);
+        }
+        Map4<String, Integer> map = new Map4<>(101, LOAD_FACTOR);
+        for (int i = 0; i < entries; i++) {
+            map.add("word" + i, i);
+        }
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(entries + " entries, "
+                + ForkJoinPool.commonPool().getParallelism()
+                + " common pool threads");
+        out.println("aggregation\tbest ms\tsum");
+        for (int method = 0; method < 3; method++) {
+            long best = Long.MAX_VALUE;
+            long sum = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                if (method == 0) {
+                    sum = byLoop(map);
+                } else {
+                    sum = byStream(map, method == 2);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            String name = "for-each loop";
+            if (method == 1) {
+                name = "stream";
+            } else if (method == 2) {
+                name = "parallelStream";
+            }
+            out.println(name + "\t" + best / 1_000_000 + "\t" + sum);
+        }
+        out.close();
+    }
+
+}
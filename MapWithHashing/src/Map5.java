@@ -0,0 +1,474 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with Robin Hood
+ * linear probing, keeping keys, values, and hash codes in flat parallel
+ * arrays, with implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Map4}, there is no per-bucket object: a lookup hashes the key
+ * once and then scans consecutive array slots. Robin Hood insertion keeps
+ * every probe sequence short by letting an entry that is far from its home
+ * slot take the place of one that is closer to its own, and removal uses
+ * backward-shift deletion, so no tombstones are ever left behind.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @mathdefinitions <pre>
+ * HOME (
+ *   h: integer,
+ *   n: integer
+ *  ) : integer is
+ *  [the home slot of a key with spread hash code h in a table of n slots,
+ *   i.e., h mod n]
+ *
+ * DIST (
+ *   i: integer,
+ *   h: integer,
+ *   n: integer
+ *  ) : integer is
+ *  (i - HOME(h, n)) mod n
+ * </pre>
+ * @convention <pre>
+ * |$this.keys| = |$this.values| = |$this.hashes|  and
+ * [|$this.keys| is a power of 2]  and
+ * MIN_CAPACITY <= |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null)  and
+ *    if $this.keys[i] /= null then
+ *      $this.hashes[i] = [spread hash code of $this.keys[i]]  and
+ *      [every slot from HOME($this.hashes[i], |$this.keys|) up to (cyclically)
+ *       but not including i is occupied by an entry whose DIST is at least
+ *       DIST(i, $this.hashes[i], |$this.keys|) minus its distance to i])  and
+ * [the non-null entries of $this.keys are pairwise not equal]  and
+ * $this.size = |{i: integer where ($this.keys[i] /= null)}|  and
+ * $this.size <= MAX_LOAD * |$this.keys|  and
+ * for all i: integer
+ *     where ($this.lastOccupied < i  and  i < |$this.keys|)
+ *   ($this.keys[i] = null)
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *            where (there exists i: integer
+ *                     ($this.keys[i] = k  and  $this.values[i] = v))}
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class Map5<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Smallest (and initial) number of slots; a power of 2.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Maximum fraction of slots in use before the table doubles.
+     */
+    private static final double MAX_LOAD = 0.8;
+
+    /**
+     * Keys, or {@code null} in empty slots.
+     */
+    private Object[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Spread hash codes of the keys, parallel to {@code keys}.
+     */
+    private int[] hashes;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Upper bound on the index of the last occupied slot, used by
+     * {@code removeAny}.
+     */
+    private int lastOccupied;
+
+    /**
+     * Spreads the bits of {@code h} so that the low bits used to pick a slot
+     * depend on all of its bits.
+     *
+     * @param h
+     *            a hash code
+     * @return the spread hash code
+     */
+    private static int spread(int h) {
+        int x = h * 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+
+    /**
+     * Returns how far slot {@code i} is from the home slot of hash code
+     * {@code h} in a table of {@code capacity} slots.
+     *
+     * @param i
+     *            the slot
+     * @param h
+     *            the spread hash code
+     * @param capacity
+     *            the number of slots
+     * @return DIST(i, h, capacity)
+     * @requires [capacity is a power of 2]
+     */
+    private static int distance(int i, int h, int capacity) {
+        return (i - h) & (capacity - 1);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires [capacity is a power of 2]  and  MIN_CAPACITY <= capacity
+     * @ensures <pre>
+     * |$this.keys| = capacity  and  $this.size = 0  and
+     * [all slots are empty]
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.size = 0;
+        this.lastOccupied = 0;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key
+     * @param h
+     *            the spread hash code of {@code key}
+     * @return the slot of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then $this.keys[indexOf] = key
+     * else indexOf = -1
+     * </pre>
+     */
+    private int indexOf(Object key, int h) {
+        int mask = this.keys.length - 1;
+        int i = h & mask;
+        int dist = 0;
+        /*
+         * Robin Hood order lets the search stop at the first slot whose entry
+         * is closer to home than the key would be at that slot
+         */
+        while (this.keys[i] != null
+                && distance(i, this.hashes[i], this.keys.length) >= dist) {
+            if (this.hashes[i] == h && this.keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            dist++;
+        }
+        return -1;
+    }
+
+    /**
+     * Places an entry known not to be in the table, displacing entries that
+     * are closer to their home slots than the incoming one.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @param h
+     *            the spread hash code of {@code key}
+     * @updates $this.keys, $this.values, $this.hashes, $this.lastOccupied
+     * @requires [key is not in the table and there is an empty slot]
+     * @ensures [(key, value) is in the table]
+     */
+    private void place(Object key, Object value, int h) {
+        int mask = this.keys.length - 1;
+        Object k = key;
+        Object v = value;
+        int hash = h;
+        int i = hash & mask;
+        int dist = 0;
+        while (this.keys[i] != null) {
+            int existing = distance(i, this.hashes[i], this.keys.length);
+            if (existing < dist) {
+                //the incoming entry is poorer, so it takes this slot
+                Object tk = this.keys[i];
+                Object tv = this.values[i];
+                int th = this.hashes[i];
+                this.keys[i] = k;
+                this.values[i] = v;
+                this.hashes[i] = hash;
+                k = tk;
+                v = tv;
+                hash = th;
+                dist = existing;
+            }
+            i = (i + 1) & mask;
+            dist++;
+        }
+        this.keys[i] = k;
+        this.values[i] = v;
+        this.hashes[i] = hash;
+        if (i > this.lastOccupied) {
+            this.lastOccupied = i;
+        }
+    }
+
+    /**
+     * Empties slot {@code i} and shifts the following displaced entries back
+     * by one slot.
+     *
+     * @param i
+     *            the slot to empty
+     * @updates $this.keys, $this.values, $this.hashes
+     * @requires $this.keys[i] /= null
+     * @ensures [the entry in slot i is no longer in the table]
+     */
+    private void deleteAt(int i) {
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int next = (hole + 1) & mask;
+        while (this.keys[next] != null
+                && distance(next, this.hashes[next], this.keys.length) > 0) {
+            this.keys[hole] = this.keys[next];
+            this.values[hole] = this.values[next];
+            this.hashes[hole] = this.hashes[next];
+            hole = next;
+            next = (next + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+        this.size--;
+    }
+
+    /**
+     * Rebuilds the table with {@code capacity} slots.
+     *
+     * @param capacity
+     *            the new number of slots
+     * @updates $this
+     * @requires <pre>
+     * [capacity is a power of 2]  and  MIN_CAPACITY <= capacity  and
+     * |this| <= MAX_LOAD * capacity
+     * </pre>
+     * @ensures this = #this  and  |$this.keys| = capacity
+     */
+    private void resize(int capacity) {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int[] oldHashes = this.hashes;
+        int oldSize = this.size;
+        this.createNewRep(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                this.place(oldKeys[i], oldValues[i], oldHashes[i]);
+            }
+        }
+        this.size = oldSize;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map5() {
+        this.createNewRep(MIN_CAPACITY);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(MIN_CAPACITY);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map5<?, ?> : ""
+                + "Violation of: source is of dynamic type Map5<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map5<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map5<K, V> localSource = (Map5<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.hashes = localSource.hashes;
+        this.size = localSource.size;
+        this.lastOccupied = localSource.lastOccupied;
+        localSource.createNewRep(MIN_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > MAX_LOAD * this.keys.length) {
+            this.resize(2 * this.keys.length);
+        }
+        this.place(key, value, spread(key.hashCode()));
+        this.size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int i = this.indexOf(key, spread(key.hashCode()));
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteAt(i);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Nothing is ever stored above lastOccupied, and removing the last
+         * occupied slot can only shift an entry into that same slot, so a
+         * drain with repeated removeAny scans the table once overall
+         */
+        while (this.keys[this.lastOccupied] == null) {
+            this.lastOccupied--;
+        }
+        int i = this.lastOccupied;
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteAt(i);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.indexOf(key, spread(key.hashCode()))];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.indexOf(key, spread(key.hashCode())) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map5}.
+     */
+    private final class Map5Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot at which the search for the next element starts.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map5Iterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map5.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (Map5.this.keys[this.currentSlot] == null) {
+                this.currentSlot++;
+            }
+            int i = this.currentSlot;
+            this.currentSlot++;
+            return new MapPair<K, V>((K) Map5.this.keys[i],
+                    (V) Map5.this.values[i]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
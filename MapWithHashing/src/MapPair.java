@@ -0,0 +1,75 @@
+import components.map.Map.Pair;
+
+/**
+ * Immutable implementation of {@code Pair}, shared by the {@code Map}
+ * implementations of this package for the entries they return. The key and
+ * value cannot be replaced once the pair is made, so a later change to the map
+ * it came from does not show through it; the key and value themselves are
+ * shared with the map, not copied.
+ *
+ * @param <K>
+ *            type of key
+ * @param <V>
+ *            type of value
+ *
+ * @author Kierra Smith
+ *
+ */
+final class MapPair<K, V> implements Pair<K, V> {
+
+    /**
+     * The key.
+     */
+    private final K key;
+
+    /**
+     * The value.
+     */
+    private final V value;
+
+    /**
+     * Constructor from key and value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    MapPair(K key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K key() {
+        return this.key;
+    }
+
+    @Override
+    public V value() {
+        return this.value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Pair<?, ?>)) {
+            return false;
+        }
+        Pair<?, ?> p = (Pair<?, ?>) obj;
+        return this.key.equals(p.key()) && this.value.equals(p.value());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.key.hashCode() ^ this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.key + "," + this.value + ")";
+    }
+
+}
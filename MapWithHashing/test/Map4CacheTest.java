@@ -0,0 +1,157 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Cache}: the {@code Map} tests,
+ * on a cache too large to evict, plus tests of eviction, expiry, and the
+ * counters.
+ */
+public class Map4CacheTest extends MapTest {
+
+    /**
+     * Maximum size of the cache used by the {@code Map} tests.
+     */
+    private static final int LARGE_SIZE = 1000;
+
+    /**
+     * Time to live used by the expiry tests, in nanoseconds.
+     */
+    private static final long TTL_NANOS = 100;
+
+    /**
+     * Current time of the fake ticker used by the expiry tests.
+     */
+    private long now = 0;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Cache<String, String>(LARGE_SIZE);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testLruEvictsLeastRecentlyUsed() {
+        Map4Cache<String, String> cache = new Map4Cache<>(3);
+        cache.add("a", "1");
+        cache.add("b", "2");
+        cache.add("c", "3");
+        assertTrue(cache.hasKey("a"));
+        cache.add("d", "4");
+        assertEquals(3, cache.size());
+        assertFalse(cache.hasKey("b"));
+        assertTrue(cache.hasKey("a"));
+        assertTrue(cache.hasKey("c"));
+        assertTrue(cache.hasKey("d"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public final void testLruRemoveAnyTakesLeastRecentlyUsed() {
+        Map4Cache<String, String> cache = new Map4Cache<>(3);
+        cache.add("a", "1");
+        cache.add("b", "2");
+        cache.value("a");
+        assertEquals("b", cache.removeAny().key());
+        assertEquals("a", cache.removeAny().key());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public final void testTinyLfuKeepsFrequentKeys() {
+        final int size = 100;
+        Map4Cache<String, String> cache = new Map4Cache<>(size,
+                Map4Cache.Policy.TINY_LFU, Duration.ZERO);
+        for (int i = 0; i < size; i++) {
+            cache.add("hot" + i, "v");
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < size; i++) {
+                assertTrue(cache.hasKey("hot" + i));
+            }
+        }
+        //a scan of keys used once must not flush out the hot keys
+        for (int i = 0; i < 10 * size; i++) {
+            cache.add("cold" + i, "v");
+        }
+        assertEquals(size, cache.size());
+        int hot = 0;
+        for (int i = 0; i < size; i++) {
+            if (cache.getIfPresent("hot" + i) != null) {
+                hot++;
+            }
+        }
+        assertTrue(hot >= size - 2);
+    }
+
+    @Test
+    public final void testTinyLfuSizeOne() {
+        Map4Cache<String, String> cache = new Map4Cache<>(1,
+                Map4Cache.Policy.TINY_LFU, Duration.ZERO);
+        cache.add("a", "1");
+        cache.add("b", "2");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public final void testExpiry() {
+        Map4Cache<String, String> cache = new Map4Cache<>(10,
+                Map4Cache.Policy.LRU, Duration.ofNanos(TTL_NANOS),
+                () -> this.now);
+        cache.add("a", "1");
+        this.now = TTL_NANOS / 2;
+        cache.add("b", "2");
+        assertTrue(cache.hasKey("a"));
+        assertEquals("1", cache.value("a"));
+        this.now = TTL_NANOS;
+        assertFalse(cache.hasKey("a"));
+        assertEquals(1, cache.size());
+        assertEquals("2", cache.getIfPresent("b"));
+        this.now = 2 * TTL_NANOS;
+        cache.add("c", "3");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.expirationCount());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    public final void testCounters() {
+        Map4Cache<String, String> cache = new Map4Cache<>(10);
+        cache.add("a", "1");
+        assertTrue(cache.hasKey("a"));
+        assertFalse(cache.hasKey("b"));
+        assertEquals("1", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("c"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(0.5, cache.hitRate(), 0);
+    }
+
+    @Test
+    public final void testTransferFromKeepsConfiguration() {
+        Map4Cache<String, String> source = new Map4Cache<>(2);
+        Map4Cache<String, String> target = new Map4Cache<>(LARGE_SIZE);
+        source.add("a", "1");
+        target.transferFrom(source);
+        assertEquals(0, source.size());
+        assertEquals(2, target.maximumSize());
+        target.add("b", "2");
+        target.add("c", "3");
+        assertEquals(2, target.size());
+        assertFalse(target.hasKey("a"));
+    }
+
+}
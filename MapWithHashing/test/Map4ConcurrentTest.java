@@ -0,0 +1,187 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Concurrent} using default
+ * constructor.
+ */
+public class Map4ConcurrentTest extends MapTest {
+
+    /**
+     * Number of threads used by the concurrent test.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of increments made by each thread in the concurrent test.
+     */
+    private static final int INCREMENTS = 20_000;
+
+    /**
+     * Number of distinct keys used by the concurrent test.
+     */
+    private static final int KEYS = 100;
+
+    /**
+     * Number of keys added by each thread in the concurrent growth test.
+     */
+    private static final int KEYS_PER_THREAD = 5_000;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Concurrent<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Many threads incrementing a few shared keys lose no updates.
+     *
+     * @throws InterruptedException
+     *             if the test thread is interrupted
+     */
+    @Test
+    public final void testConcurrentIncrement() throws InterruptedException {
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>();
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < INCREMENTS; i++) {
+                    Map4Concurrent.increment(map, "k" + (i % KEYS), 1);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(KEYS, map.size());
+        for (int k = 0; k < KEYS; k++) {
+            assertEquals(THREADS * INCREMENTS / KEYS,
+                    map.value("k" + k).intValue());
+        }
+    }
+
+    @Test
+    public final void testGrowsFromOneBucket() {
+        final int keys = 1000;
+        final double loadFactor = 0.75;
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>(1,
+                loadFactor);
+        for (int i = 0; i < keys; i++) {
+            map.add("key" + i, i);
+            assertTrue(map.size() <= loadFactor * map.tableSize());
+        }
+        assertEquals(keys, map.size());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i, map.value("key" + i).intValue());
+        }
+        int tableSize = map.tableSize();
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i, map.remove("key" + i).value().intValue());
+            assertFalse(map.hasKey("key" + i));
+        }
+        //the table never shrinks, but clear goes back to the initial size
+        assertEquals(tableSize, map.tableSize());
+        map.clear();
+        assertEquals(1, map.tableSize());
+    }
+
+    @Test
+    public final void testZeroLoadFactorKeepsSize() {
+        final int tableSize = 7;
+        final int keys = 100;
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>(tableSize,
+                0);
+        for (int i = 0; i < keys; i++) {
+            map.add("key" + i, i);
+        }
+        assertEquals(tableSize, map.tableSize());
+        assertEquals(keys, map.size());
+    }
+
+    @Test
+    public final void testMergeGrows() {
+        final int keys = 100;
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>(1);
+        for (int i = 0; i < keys; i++) {
+            Map4Concurrent.increment(map, "key" + i, i);
+        }
+        assertTrue(map.tableSize() > 1);
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i, map.value("key" + i).intValue());
+        }
+    }
+
+    @Test
+    public final void testTransferFromKeepsGrowth() {
+        final int keys = 100;
+        Map4Concurrent<String, Integer> source = new Map4Concurrent<>(1);
+        for (int i = 0; i < keys; i++) {
+            source.add("key" + i, i);
+        }
+        int tableSize = source.tableSize();
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>();
+        map.transferFrom(source);
+        assertEquals(tableSize, map.tableSize());
+        assertEquals(1, source.tableSize());
+        assertEquals(0, source.size());
+        map.clear();
+        assertEquals(1, map.tableSize());
+    }
+
+    /**
+     * Many threads adding, incrementing, and removing keys while the table
+     * grows from one bucket lose no entries and no updates.
+     *
+     * @throws InterruptedException
+     *             if the test thread is interrupted
+     */
+    @Test
+    public final void testConcurrentGrowth() throws InterruptedException {
+        Map4Concurrent<String, Integer> map = new Map4Concurrent<>(1);
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    map.add(id + "/" + i, i);
+                    Map4Concurrent.increment(map, "k" + (i % KEYS), 1);
+                    if (i % 2 == 1) {
+                        map.remove(id + "/" + (i - 1));
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(THREADS * KEYS_PER_THREAD / 2 + KEYS, map.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < KEYS_PER_THREAD; i += 2) {
+                assertEquals(i, map.value(t + "/" + i).intValue());
+            }
+        }
+        for (int k = 0; k < KEYS; k++) {
+            assertEquals(THREADS * KEYS_PER_THREAD / KEYS,
+                    map.value("k" + k).intValue());
+        }
+        int seen = 0;
+        for (Map.Pair<String, Integer> p : map) {
+            assertTrue(map.hasKey(p.key()));
+            seen++;
+        }
+        assertEquals(map.size(), seen);
+    }
+
+}
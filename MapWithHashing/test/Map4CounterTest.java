@@ -0,0 +1,110 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Map4Counter}.
+ */
+public class Map4CounterTest {
+
+    /**
+     * Number of distinct words used by the growth test.
+     */
+    private static final int MANY_WORDS = 10_000;
+
+    @Test
+    public final void testConstructor() {
+        Map4Counter counter = new Map4Counter();
+        assertEquals(0, counter.size());
+        assertFalse(counter.hasWord("red"));
+        assertEquals(0, counter.count("red"));
+    }
+
+    @Test
+    public final void testIncrementNew() {
+        Map4Counter counter = new Map4Counter();
+        assertEquals(1, counter.increment("red"));
+        assertEquals(1, counter.size());
+        assertTrue(counter.hasWord("red"));
+        assertEquals(1, counter.count("red"));
+    }
+
+    @Test
+    public final void testIncrementExisting() {
+        Map4Counter counter = new Map4Counter();
+        counter.increment("red");
+        counter.increment("blue");
+        assertEquals(2, counter.increment("red"));
+        assertEquals(2, counter.size());
+        assertEquals(2, counter.count("red"));
+        assertEquals(1, counter.count("blue"));
+    }
+
+    @Test
+    public final void testAddDelta() {
+        Map4Counter counter = new Map4Counter();
+        assertEquals(5, counter.add("red", 5));
+        assertEquals(2, counter.add("red", -3));
+        assertEquals(2, counter.count("red"));
+    }
+
+    @Test
+    public final void testEqualButNotSameWord() {
+        Map4Counter counter = new Map4Counter();
+        counter.increment(new String("red"));
+        counter.increment(new String("red"));
+        assertEquals(1, counter.size());
+        assertEquals(2, counter.count("red"));
+    }
+
+    @Test
+    public final void testGrowth() {
+        Map4Counter counter = new Map4Counter(1);
+        for (int i = 0; i < MANY_WORDS; i++) {
+            counter.add("w" + i, i);
+        }
+        assertEquals(MANY_WORDS, counter.size());
+        for (int i = 0; i < MANY_WORDS; i++) {
+            assertEquals(i, counter.count("w" + i));
+            assertEquals("w" + i, counter.word(i));
+            assertEquals(i, counter.countAt(i));
+        }
+    }
+
+    @Test
+    public final void testByCount() {
+        Map4Counter counter = new Map4Counter();
+        counter.add("red", 2);
+        counter.add("green", 5);
+        counter.add("blue", 2);
+        counter.add("white", 7);
+        assertArrayEquals(new int[] { 3, 1, 0, 2 }, counter.byCount());
+        assertArrayEquals(new String[] { "white", "green", "red", "blue" },
+                counter.wordsByCount());
+    }
+
+    @Test
+    public final void testByCountNegative() {
+        Map4Counter counter = new Map4Counter();
+        counter.add("red", -1);
+        counter.add("green", Integer.MIN_VALUE);
+        counter.add("blue", Integer.MAX_VALUE);
+        counter.add("white", 0);
+        assertArrayEquals(new String[] { "blue", "white", "red", "green" },
+                counter.wordsByCount());
+    }
+
+    @Test
+    public final void testClear() {
+        Map4Counter counter = new Map4Counter();
+        counter.increment("red");
+        counter.clear();
+        assertEquals(0, counter.size());
+        assertFalse(counter.hasWord("red"));
+        assertEquals(0, counter.byCount().length);
+    }
+
+}
@@ -0,0 +1,344 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for {@code Map4Durable}, including a test that kills a
+ * process using one at random points and checks what is recovered.
+ */
+public class Map4DurableTest {
+
+    /**
+     * Commit interval used by the tests.
+     */
+    private static final Duration COMMIT_INTERVAL = Duration.ofMillis(2);
+
+    /**
+     * Compaction size used by the tests, small so that compactions happen.
+     */
+    private static final long COMPACT_AFTER = 16 * 1024;
+
+    /**
+     * Number of distinct keys the random changes use.
+     */
+    private static final int KEYS = 300;
+
+    /**
+     * Number of random changes between two calls of {@code sync} in the
+     * child process.
+     */
+    private static final int SYNC_EVERY = 1000;
+
+    /**
+     * Number of times the child process is killed.
+     */
+    private static final int KILLS = 5;
+
+    /**
+     * Longest time the child process runs before it is killed, in ms.
+     */
+    private static final int MAX_RUN_MILLIS = 1000;
+
+    /**
+     * Creates a new temporary directory, whose files are deleted when the
+     * JVM exits.
+     *
+     * @return the directory's name
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    private static String tempDirectory() throws IOException {
+        Path dir = Files.createTempDirectory("map4durable");
+        dir.toFile().deleteOnExit();
+        return dir.toString();
+    }
+
+    /**
+     * Opens the durable map in {@code dir} with the test settings.
+     *
+     * @param dir
+     *            the directory's name
+     * @return the map
+     * @throws IOException
+     *             if the map cannot be recovered
+     */
+    private static Map4Durable<Integer> open(String dir) throws IOException {
+        return Map4Durable.open(dir, Map4Snapshot.Format.INT, COMMIT_INTERVAL,
+                COMPACT_AFTER);
+    }
+
+    /**
+     * Makes one random change to {@code map}, as a counting service would.
+     *
+     * @param map
+     *            the map to change
+     * @param random
+     *            the source of the change
+     * @updates map, random
+     */
+    private static void change(Map<String, Integer> map, Random random) {
+        final int kinds = 10_000;
+        final int increments = 8_000;
+        final int removes = 9_999;
+        String key = "word" + random.nextInt(KEYS);
+        int kind = random.nextInt(kinds);
+        if (kind < increments) {
+            if (map.hasKey(key)) {
+                map.replaceValue(key, map.value(key) + 1);
+            } else {
+                map.add(key, 1);
+            }
+        } else if (kind < removes) {
+            if (map.hasKey(key)) {
+                map.remove(key);
+            }
+        } else {
+            map.clear();
+        }
+    }
+
+    /**
+     * Child process for the kill test: makes random changes to the durable
+     * map in a directory forever, calling {@code sync} every
+     * {@code SYNC_EVERY} changes and then printing how many changes are
+     * durable.
+     */
+    public static final class Child {
+
+        /**
+         * Private constructor so this utility class cannot be instantiated.
+         */
+        private Child() {
+        }
+
+        /**
+         * Main method.
+         *
+         * @param args
+         *            the directory's name and the random seed
+         * @throws IOException
+         *             if the map cannot be recovered
+         */
+        public static void main(String[] args) throws IOException {
+            Map4Durable<Integer> map = open(args[0]);
+            Random random = new Random(Long.parseLong(args[1]));
+            System.out.println("started");
+            System.out.flush();
+            for (long done = 1; true; done++) {
+                change(map, random);
+                if (done % SYNC_EVERY == 0) {
+                    map.sync();
+                    System.out.println("synced " + done);
+                    System.out.flush();
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public final void testEmpty() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        assertEquals(0, map.size());
+        map.close();
+        map = open(dir);
+        assertEquals(0, map.size());
+        map.close();
+    }
+
+    @Test
+    public final void testReopen() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        map.add("red", 1);
+        map.add("blue", 2);
+        map.add("green", 3);
+        map.replaceValue("blue", 5);
+        map.remove("green");
+        map.merge("red", 4, Integer::sum);
+        map.close();
+        Map4Durable<Integer> reopened = open(dir);
+        assertEquals(2, reopened.size());
+        assertEquals(Integer.valueOf(5), reopened.value("red"));
+        assertEquals(Integer.valueOf(5), reopened.value("blue"));
+        assertFalse(reopened.hasKey("green"));
+        reopened.close();
+    }
+
+    @Test
+    public final void testClearAndRemoveAny() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        map.add("red", 1);
+        map.clear();
+        map.add("blue", 2);
+        map.add("green", 3);
+        String removed = map.removeAny().key();
+        map.close();
+        Map4Durable<Integer> reopened = open(dir);
+        assertEquals(1, reopened.size());
+        assertFalse(reopened.hasKey("red"));
+        assertFalse(reopened.hasKey(removed));
+        reopened.close();
+    }
+
+    @Test
+    public final void testCompaction() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        Map<String, Integer> expected = new Map4<String, Integer>();
+        Random random = new Random(1);
+        final int changes = 20_000;
+        for (int i = 0; i < changes; i++) {
+            change(map, random);
+        }
+        random = new Random(1);
+        for (int i = 0; i < changes; i++) {
+            change(expected, random);
+        }
+        assertTrue(map.generation() > 0);
+        map.close();
+        assertNull(map.compactionFailure());
+        Map4Durable<Integer> reopened = open(dir);
+        assertEquals(expected, reopened);
+        reopened.close();
+        //only the latest snapshot and log are left
+        assertTrue(new File(dir).list().length <= 2);
+    }
+
+    @Test
+    public final void testFailedCompactionIsReported() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        /*
+         * A directory in the way of the first snapshot's temporary file,
+         * made after open, which deletes leftover temporary files
+         */
+        File blocker = new File(dir, "snapshot-1.tmp");
+        assertTrue(blocker.mkdir());
+        blocker.deleteOnExit();
+        Map<String, Integer> expected = new Map4<String, Integer>();
+        Random random = new Random(2);
+        Random expectedRandom = new Random(2);
+        while (map.generation() == 0) {
+            change(map, random);
+            change(expected, expectedRandom);
+        }
+        map.close();
+        assertNotNull(map.compactionFailure());
+        //the older log still holds everything
+        Map4Durable<Integer> reopened = open(dir);
+        assertFalse(blocker.exists());
+        assertEquals(expected, reopened);
+        reopened.close();
+        assertNull(reopened.compactionFailure());
+    }
+
+    @Test
+    public final void testTornRecord() throws IOException {
+        String dir = tempDirectory();
+        Map4Durable<Integer> map = open(dir);
+        map.add("red", 1);
+        map.add("blue", 2);
+        map.close();
+        //cut the last record short, as a crash in the middle of a write would
+        File log = new File(dir, "log-0");
+        try (RandomAccessFile f = new RandomAccessFile(log, "rw")) {
+            f.setLength(f.length() - 1);
+        }
+        Map4Durable<Integer> reopened = open(dir);
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.hasKey("red"));
+        reopened.add("green", 3);
+        reopened.close();
+        reopened = open(dir);
+        assertEquals(2, reopened.size());
+        assertEquals(Integer.valueOf(3), reopened.value("green"));
+        reopened.close();
+    }
+
+    @Test
+    public final void testKilledProcessRecovers() throws IOException,
+            InterruptedException {
+        Random random = new Random();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString();
+        for (int kill = 0; kill < KILLS; kill++) {
+            String dir = tempDirectory();
+            long seed = random.nextLong();
+            String message = "seed " + seed + ": ";
+            Process child = new ProcessBuilder(java, "-cp",
+                    System.getProperty("java.class.path"),
+                    Child.class.getName(), dir, Long.toString(seed))
+                            .redirectErrorStream(true).start();
+            BufferedReader output = new BufferedReader(new InputStreamReader(
+                    child.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals(message, "started", output.readLine());
+            /*
+             * Killing the child closes its output, so the reports are read on
+             * another thread while it runs
+             */
+            AtomicLong acknowledged = new AtomicLong();
+            Thread reader = new Thread(() -> {
+                try {
+                    String line = output.readLine();
+                    while (line != null) {
+                        acknowledged.set(Long.parseLong(
+                                line.substring("synced ".length())));
+                        line = output.readLine();
+                    }
+                } catch (IOException e) {
+                    //the child was killed
+                    return;
+                }
+            });
+            reader.start();
+            Thread.sleep(random.nextInt(MAX_RUN_MILLIS));
+            child.destroyForcibly().waitFor();
+            reader.join();
+
+            Map4Durable<Integer> recovered = open(dir);
+            /*
+             * The changes that were synced must all be there, and what is
+             * there must be the changes up to some point: the child cannot
+             * have got more than two syncs past the last one it reported
+             */
+            Map<String, Integer> expected = new Map4<String, Integer>();
+            Random changes = new Random(seed);
+            for (long done = 0; done < acknowledged.get(); done++) {
+                change(expected, changes);
+            }
+            boolean found = expected.equals(recovered);
+            for (int extra = 0; !found && extra < 2 * SYNC_EVERY; extra++) {
+                change(expected, changes);
+                found = expected.size() == recovered.size()
+                        && expected.equals(recovered);
+            }
+            recovered.close();
+            assertTrue(message + "recovered state after "
+                    + acknowledged.get() + " synced changes is not a prefix",
+                    found);
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4Frozen}, made by {@code Map4.freeze}.
+ */
+public class Map4FrozenTest {
+
+    /**
+     * Number of keys used by the large tests.
+     */
+    private static final int MANY_KEYS = 10_000;
+
+    /**
+     * Creates and returns a {@code Map4} with the given key-value pairs.
+     *
+     * @param args
+     *            the keys and values, alternating
+     * @return the constructed map
+     */
+    private static Map4<String, String> createFromArgs(String... args) {
+        Map4<String, String> map = new Map4<String, String>();
+        for (int i = 0; i < args.length; i += 2) {
+            map.add(args[i], args[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public final void testFreezeEmpty() {
+        Map4<String, String> m = createFromArgs();
+        Map<String, String> frozen = m.freeze();
+        assertEquals(0, frozen.size());
+        assertFalse(frozen.hasKey("red"));
+        assertFalse(frozen.iterator().hasNext());
+    }
+
+    @Test
+    public final void testFreezeOne() {
+        Map4<String, String> m = createFromArgs("red", "1");
+        Map<String, String> frozen = m.freeze();
+        assertEquals(1, frozen.size());
+        assertTrue(frozen.hasKey("red"));
+        assertFalse(frozen.hasKey("blue"));
+        assertEquals("1", frozen.value("red"));
+    }
+
+    @Test
+    public final void testFreezeLeavesSourceUnchanged() {
+        Map4<String, String> m = createFromArgs("red", "1", "blue", "2");
+        Map<String, String> mExpected = createFromArgs("red", "1", "blue",
+                "2");
+        Map<String, String> frozen = m.freeze();
+        assertEquals(mExpected, m);
+        assertEquals(mExpected, frozen);
+        m.add("green", "3");
+        assertFalse(frozen.hasKey("green"));
+        assertEquals(2, frozen.size());
+    }
+
+    @Test
+    public final void testFreezeMany() {
+        Map4<String, String> m = new Map4<String, String>();
+        Map<String, String> mExpected = new Map1L<String, String>();
+        for (int i = 0; i < MANY_KEYS; i++) {
+            m.add("key" + i, "value" + i);
+            mExpected.add("key" + i, "value" + i);
+        }
+        Map4Frozen<String, String> frozen = m.freeze();
+        assertEquals(MANY_KEYS, frozen.size());
+        for (int i = 0; i < MANY_KEYS; i++) {
+            assertTrue(frozen.hasKey("key" + i));
+            assertEquals("value" + i, frozen.value("key" + i));
+            assertFalse(frozen.hasKey("other" + i));
+        }
+        assertEquals(mExpected, frozen);
+        assertEquals(0, frozen.overflowSize());
+    }
+
+    @Test
+    public final void testFreezeSharedHashCodes() {
+        //"Aa" and "BB" have the same hash code, as do "AaAa", "AaBB", ...
+        Map4<String, String> m = createFromArgs("Aa", "1", "BB", "2", "AaAa",
+                "3", "AaBB", "4", "BBAa", "5", "red", "6");
+        Map<String, String> mExpected = createFromArgs("Aa", "1", "BB", "2",
+                "AaAa", "3", "AaBB", "4", "BBAa", "5", "red", "6");
+        Map4Frozen<String, String> frozen = m.freeze();
+        assertEquals(3, frozen.overflowSize());
+        assertEquals(mExpected, frozen);
+        assertEquals("2", frozen.value("BB"));
+        assertEquals("5", frozen.value("BBAa"));
+        assertFalse(frozen.hasKey("BBBB"));
+        assertEquals("none", frozen.getOrDefault("BBBB", "none"));
+    }
+
+    @Test
+    public final void testIterator() {
+        Map4<String, String> m = createFromArgs("red", "1", "blue", "2",
+                "green", "3");
+        Map<String, String> seen = new Map1L<String, String>();
+        for (Map.Pair<String, String> p : m.freeze()) {
+            seen.add(p.key(), p.value());
+        }
+        assertEquals(m, seen);
+    }
+
+    @Test
+    public final void testGetOrDefault() {
+        Map4Frozen<String, String> frozen = createFromArgs("red", "1")
+                .freeze();
+        assertEquals("1", frozen.getOrDefault("red", "none"));
+        assertEquals("none", frozen.getOrDefault("blue", "none"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testAddUnsupported() {
+        Map<String, String> frozen = createFromArgs("red", "1").freeze();
+        frozen.add("blue", "2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testRemoveUnsupported() {
+        Map<String, String> frozen = createFromArgs("red", "1").freeze();
+        frozen.remove("red");
+    }
+
+}
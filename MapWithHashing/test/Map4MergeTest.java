@@ -0,0 +1,415 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for the {@code mergeFrom} method of {@code Map4}.
+ */
+public class Map4MergeTest {
+
+    /**
+     * Size of hash table used by most tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Load factor used by most tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Treeify threshold used by the tree bucket tests.
+     */
+    private static final int TEST_TREEIFY_THRESHOLD = 4;
+
+    /**
+     * Adds "key" + i to {@code m} and {@code expected} with value
+     * {@code value} for i in [low, high).
+     *
+     * @param m
+     *            the map
+     * @param expected
+     *            the reference map
+     * @param low
+     *            the first key number
+     * @param high
+     *            the key number just past the last one
+     * @param value
+     *            the value of every key
+     */
+    private static void fill(Map4<String, Integer> m,
+            HashMap<String, Integer> expected, int low, int high, int value) {
+        for (int i = low; i < high; i++) {
+            m.add("key" + i, value);
+            expected.put("key" + i, value);
+        }
+    }
+
+    /**
+     * Merges {@code other} into {@code m} and {@code otherExpected} into
+     * {@code expected} with {@code combiner}, and checks that {@code other}
+     * is left empty.
+     *
+     * @param m
+     *            the map merged into
+     * @param expected
+     *            the reference map merged into
+     * @param other
+     *            the map merged in
+     * @param otherExpected
+     *            the reference map merged in
+     * @param combiner
+     *            the function combining the values of a key in both maps
+     */
+    private static void merge(Map4<String, Integer> m,
+            HashMap<String, Integer> expected, Map4<String, Integer> other,
+            HashMap<String, Integer> otherExpected,
+            BiFunction<Integer, Integer, Integer> combiner) {
+        m.mergeFrom(other, combiner);
+        for (java.util.Map.Entry<String, Integer> e : otherExpected
+                .entrySet()) {
+            expected.merge(e.getKey(), e.getValue(), combiner);
+        }
+        assertEquals(0, other.size());
+        assertFalse(other.iterator().hasNext());
+    }
+
+    /**
+     * Checks {@code m} against {@code expected}: its size, its iteration, and
+     * its occupancy histogram; then empties it in random order with
+     * {@code remove} and {@code removeAny}, which find the buckets through
+     * the occupancy index, checking each removal; then checks that it can be
+     * filled again.
+     *
+     * @param m
+     *            the map
+     * @param expected
+     *            the reference map
+     * @param seed
+     *            the random seed
+     */
+    private static void check(Map4<String, Integer> m,
+            HashMap<String, Integer> expected, long seed) {
+        assertEquals(expected.size(), m.size());
+        HashSet<String> seen = new HashSet<String>();
+        for (Map.Pair<String, Integer> p : m) {
+            assertTrue(seen.add(p.key()));
+            assertEquals(expected.get(p.key()), p.value());
+        }
+        assertEquals(expected.keySet(), seen);
+        int[] histogram = m.chainLengthHistogram();
+        int buckets = 0;
+        int entries = 0;
+        for (int length = 0; length < histogram.length; length++) {
+            buckets += histogram[length];
+            entries += length * histogram[length];
+        }
+        assertEquals(m.tableSize(), buckets);
+        assertEquals(expected.size(), entries);
+
+        Random random = new Random(seed);
+        List<String> keys = new ArrayList<String>(expected.keySet());
+        while (expected.size() > 0) {
+            if (random.nextInt(2) == 0) {
+                Map.Pair<String, Integer> p = m.removeAny();
+                assertEquals(expected.remove(p.key()), p.value());
+                keys.remove(p.key());
+            } else {
+                String key = keys.remove(random.nextInt(keys.size()));
+                assertEquals(expected.remove(key), m.remove(key).value());
+                assertFalse(m.hasKey(key));
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        m.add("again", 1);
+        assertEquals(1, m.size());
+        assertEquals(Integer.valueOf(1), m.value("again"));
+        assertEquals("again", m.removeAny().key());
+    }
+
+    @Test
+    public final void testSameSizeDisjoint() {
+        final int keys = 300;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys, 2 * keys, 2);
+        int tableSize = m.tableSize();
+        merge(m, expected, other, otherExpected, Integer::sum);
+        //buckets were merged in place, so the table was not resized
+        assertEquals(tableSize, m.tableSize());
+        check(m, expected, 1);
+    }
+
+    @Test
+    public final void testSameSizeOverlapping() {
+        final int keys = 200;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys / 2, keys + keys / 2, 2);
+        merge(m, expected, other, otherExpected, Integer::sum);
+        assertEquals(Integer.valueOf(1), m.value("key0"));
+        assertEquals(Integer.valueOf(1 + 2), m.value("key" + keys / 2));
+        assertEquals(Integer.valueOf(2), m.value("key" + keys));
+        check(m, expected, 2);
+    }
+
+    @Test
+    public final void testIntoEmpty() {
+        final int keys = 100;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(other, otherExpected, 0, keys, 2);
+        //every bucket is taken over whole
+        merge(m, expected, other, otherExpected, Integer::sum);
+        check(m, expected, 3);
+    }
+
+    @Test
+    public final void testFromEmpty() {
+        final int keys = 100;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        merge(m, expected, other, otherExpected, Integer::sum);
+        check(m, expected, 4);
+    }
+
+    @Test
+    public final void testCombinerReturningNullEmptiesMap() {
+        final int keys = 200;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, 0, keys, 2);
+        merge(m, expected, other, otherExpected, (x, y) -> null);
+        assertEquals(0, m.size());
+        assertFalse(m.iterator().hasNext());
+        //every bucket was emptied, so none is left in the occupancy index
+        assertEquals(m.tableSize(), m.chainLengthHistogram()[0]);
+        check(m, expected, 5);
+    }
+
+    @Test
+    public final void testCombinerReturningNullForSomeKeys() {
+        final int keys = 300;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys / 2, keys + keys / 2, 2);
+        //keys in both maps are dropped
+        merge(m, expected, other, otherExpected, (x, y) -> null);
+        assertEquals(keys, m.size());
+        assertFalse(m.hasKey("key" + keys / 2));
+        check(m, expected, 6);
+    }
+
+    @Test
+    public final void testDifferentSizes() {
+        final int otherTableSize = 37;
+        final int keys = 200;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                otherTableSize, TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys / 2, keys + keys / 2, 2);
+        merge(m, expected, other, otherExpected, Integer::sum);
+        check(m, expected, 7);
+    }
+
+    @Test
+    public final void testDifferentStrategies() {
+        final int keys = 200;
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        //same table size, but the strategies are not equal
+        Map4<String, Integer> other = new Map4<String, Integer>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR,
+                TEST_TREEIFY_THRESHOLD, new HashStrategy.PrimeModulus());
+        assertEquals(m.tableSize(), other.tableSize());
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys / 2, keys + keys / 2, 2);
+        merge(m, expected, other, otherExpected, Integer::sum);
+        check(m, expected, 8);
+    }
+
+    @Test
+    public final void testTreeBucketIntoChain() {
+        final int keys = 10;
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        Map4<String, Integer> other = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, 1, 1);
+        fill(other, otherExpected, 0, keys, 2);
+        assertEquals(0, m.treeBucketCount());
+        assertEquals(1, other.treeBucketCount());
+        merge(m, expected, other, otherExpected, Integer::sum);
+        //the chain grew past the threshold in the merge
+        assertEquals(1, m.treeBucketCount());
+        assertEquals(1, m.treeifyCount());
+        assertEquals(Integer.valueOf(1 + 2), m.value("key0"));
+        check(m, expected, 9);
+    }
+
+    @Test
+    public final void testTreeBucketTakenOver() {
+        final int keys = 10;
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        Map4<String, Integer> other = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(other, otherExpected, 0, keys, 2);
+        merge(m, expected, other, otherExpected, Integer::sum);
+        //the tree moved over as it was, with no conversion
+        assertEquals(1, m.treeBucketCount());
+        assertEquals(0, m.treeifyCount());
+        check(m, expected, 10);
+    }
+
+    @Test
+    public final void testTreeBucketsCombinerReturningNull() {
+        final int keys = 10;
+        final int kept = 2;
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        Map4<String, Integer> other = new Map4<String, Integer>(1, 0,
+                TEST_TREEIFY_THRESHOLD);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, kept, keys, 2);
+        assertEquals(1, m.treeBucketCount());
+        merge(m, expected, other, otherExpected, (x, y) -> null);
+        //two keys are below three quarters of the threshold
+        assertEquals(kept, m.size());
+        assertEquals(0, m.treeBucketCount());
+        assertEquals(1, m.untreeifyCount());
+        check(m, expected, 11);
+    }
+
+    @Test
+    public final void testSourceMidRehash() {
+        Map4<String, Integer> other = new Map4<String, Integer>(1,
+                TEST_LOAD_FACTOR);
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        //stop right after a resize, when buckets are still being moved
+        final int resizes = 5;
+        int resized = 0;
+        int n = 0;
+        while (resized < resizes) {
+            int tableSize = other.tableSize();
+            fill(other, otherExpected, n, n + 1, 2);
+            n++;
+            if (other.tableSize() != tableSize) {
+                resized++;
+            }
+        }
+        Map4<String, Integer> m = new Map4<String, Integer>(
+                other.tableSize(), TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        fill(m, expected, n / 2, n / 2 + n, 1);
+        int tableSize = m.tableSize();
+        merge(m, expected, other, otherExpected, Integer::sum);
+        assertEquals(tableSize, m.tableSize());
+        check(m, expected, 12);
+    }
+
+    @Test
+    public final void testBothMidRehash() {
+        final int resizes = 4;
+        Map4<String, Integer> m = new Map4<String, Integer>(1,
+                TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(1,
+                TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        int resized = 0;
+        int n = 0;
+        while (resized < resizes) {
+            int tableSize = m.tableSize();
+            fill(m, expected, n, n + 1, 1);
+            fill(other, otherExpected, n + 1, n + 2, 2);
+            n++;
+            if (m.tableSize() != tableSize) {
+                resized++;
+            }
+        }
+        merge(m, expected, other, otherExpected, Integer::sum);
+        check(m, expected, 13);
+    }
+
+    @Test
+    public final void testManyBucketsInParallel() {
+        final int tableSize = 20_011;
+        final int keys = 50_000;
+        final int parallelism = 4;
+        Map4<String, Integer> m = new Map4<String, Integer>(tableSize,
+                TEST_LOAD_FACTOR);
+        Map4<String, Integer> other = new Map4<String, Integer>(tableSize,
+                TEST_LOAD_FACTOR);
+        HashMap<String, Integer> expected = new HashMap<String, Integer>();
+        HashMap<String, Integer> otherExpected = new HashMap<String, Integer>();
+        fill(m, expected, 0, keys, 1);
+        fill(other, otherExpected, keys / 2, keys + keys / 2, 2);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            m.mergeFrom(other, Integer::sum, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (java.util.Map.Entry<String, Integer> e : otherExpected
+                .entrySet()) {
+            expected.merge(e.getKey(), e.getValue(), Integer::sum);
+        }
+        assertEquals(0, other.size());
+        check(m, expected, 14);
+    }
+
+}
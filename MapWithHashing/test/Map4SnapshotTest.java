@@ -0,0 +1,165 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for {@code Map4Snapshot}, writing each snapshot to a
+ * temporary file and loading it back.
+ */
+public class Map4SnapshotTest {
+
+    /**
+     * Number of keys used by the large tests.
+     */
+    private static final int MANY_KEYS = 10_000;
+
+    /**
+     * Creates an empty temporary file, deleted when the JVM exits (not
+     * before, since a file cannot be deleted on every platform while it is
+     * mapped).
+     *
+     * @return the file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    private static Path tempFile() throws IOException {
+        Path file = Files.createTempFile("map4", ".snapshot");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Writes {@code map} to a temporary file and loads it back.
+     *
+     * @param <V>
+     *            type of value
+     * @param map
+     *            the map to save
+     * @param format
+     *            the encoding of the values
+     * @return the loaded snapshot
+     * @throws IOException
+     *             if the snapshot cannot be written or read
+     */
+    private static <V> Map4Snapshot<V> roundTrip(Map4<String, V> map,
+            Map4Snapshot.Format<V> format) throws IOException {
+        Path file = tempFile();
+        Map4Snapshot.write(map, format, file.toString());
+        return Map4Snapshot.load(file.toString(), format);
+    }
+
+    @Test
+    public final void testEmpty() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        Map<String, Integer> snapshot = roundTrip(m,
+                Map4Snapshot.Format.INT);
+        assertEquals(0, snapshot.size());
+        assertFalse(snapshot.hasKey("red"));
+        assertFalse(snapshot.iterator().hasNext());
+    }
+
+    @Test
+    public final void testIntValues() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        m.add("red", 1);
+        m.add("", -2);
+        m.add("blue", Integer.MAX_VALUE);
+        Map4Snapshot<Integer> snapshot = roundTrip(m,
+                Map4Snapshot.Format.INT);
+        assertEquals(m, snapshot);
+        assertEquals(Integer.valueOf(-2), snapshot.value(""));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE),
+                snapshot.value("blue"));
+        assertFalse(snapshot.hasKey("green"));
+        assertEquals(Integer.valueOf(0), snapshot.getOrDefault("green", 0));
+    }
+
+    @Test
+    public final void testLongValues() throws IOException {
+        Map4<String, Long> m = new Map4<String, Long>();
+        m.add("red", Long.MIN_VALUE);
+        m.add("blue", 1L << 40);
+        assertEquals(m, roundTrip(m, Map4Snapshot.Format.LONG));
+    }
+
+    @Test
+    public final void testDoubleValues() throws IOException {
+        Map4<String, Double> m = new Map4<String, Double>();
+        m.add("red", 0.5);
+        m.add("blue", -1e300);
+        assertEquals(m, roundTrip(m, Map4Snapshot.Format.DOUBLE));
+    }
+
+    @Test
+    public final void testManyKeys() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0.75);
+        for (int i = 0; i < MANY_KEYS; i++) {
+            m.add("key" + i, i);
+        }
+        Map4Snapshot<Integer> snapshot = roundTrip(m,
+                Map4Snapshot.Format.INT);
+        assertEquals(MANY_KEYS, snapshot.size());
+        for (int i = 0; i < MANY_KEYS; i++) {
+            assertEquals(Integer.valueOf(i), snapshot.value("key" + i));
+            assertFalse(snapshot.hasKey("other" + i));
+        }
+        assertEquals(m, snapshot);
+    }
+
+    @Test
+    public final void testStrategies() throws IOException {
+        HashStrategy[] strategies = { new HashStrategy.Modulus(),
+            new HashStrategy.PrimeModulus(), new HashStrategy.MixedMask(),
+            new HashStrategy.Seeded(42) };
+        for (HashStrategy strategy : strategies) {
+            Map4<String, Integer> m = new Map4<String, Integer>(7, 0.75, 8,
+                    strategy);
+            //"Aa" and "BB" have the same hash code
+            m.add("Aa", 1);
+            m.add("BB", 2);
+            m.add("red", 3);
+            assertEquals(m, roundTrip(m, Map4Snapshot.Format.INT));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public final void testWrongFormat() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        m.add("red", 1);
+        Path file = tempFile();
+        Map4Snapshot.write(m, Map4Snapshot.Format.INT, file.toString());
+        Map4Snapshot.load(file.toString(), Map4Snapshot.Format.LONG);
+    }
+
+    @Test(expected = IOException.class)
+    public final void testNotASnapshot() throws IOException {
+        Path file = tempFile();
+        Files.write(file, "red blue green".getBytes("UTF-8"));
+        Map4Snapshot.load(file.toString(), Map4Snapshot.Format.INT);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testAddUnsupported() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        roundTrip(m, Map4Snapshot.Format.INT).add("red", 1);
+    }
+
+    @Test
+    public final void testNewInstance() throws IOException {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        m.add("red", 1);
+        Map<String, Integer> empty = roundTrip(m, Map4Snapshot.Format.INT)
+                .newInstance();
+        assertEquals(0, empty.size());
+        assertTrue(empty instanceof Map4Snapshot<?>);
+    }
+
+}
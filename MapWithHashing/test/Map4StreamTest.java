@@ -0,0 +1,169 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map.Pair;
+
+/**
+ * JUnit test fixture for the {@code spliterator}, {@code stream}, and
+ * {@code parallelStream} methods of {@code Map4}.
+ */
+public class Map4StreamTest {
+
+    /**
+     * Number of keys used by the large tests.
+     */
+    private static final int MANY_KEYS = 10_000;
+
+    /**
+     * Returns a map from "key" + i to i for i in [0, n).
+     *
+     * @param n
+     *            the number of keys
+     * @return the map
+     */
+    private static Map4<String, Integer> build(int n) {
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0.75);
+        for (int i = 0; i < n; i++) {
+            m.add("key" + i, i);
+        }
+        return m;
+    }
+
+    /**
+     * Splits {@code s} until no part splits any further, checking that the
+     * sizes of the parts add up, and collects the parts.
+     *
+     * @param s
+     *            the spliterator to split
+     * @param parts
+     *            the parts found so far
+     * @updates s, parts
+     */
+    private static void splitAll(Spliterator<Pair<String, Integer>> s,
+            List<Spliterator<Pair<String, Integer>>> parts) {
+        long size = s.getExactSizeIfKnown();
+        Spliterator<Pair<String, Integer>> prefix = s.trySplit();
+        if (prefix == null) {
+            parts.add(s);
+        } else {
+            assertEquals(size,
+                    prefix.getExactSizeIfKnown() + s.getExactSizeIfKnown());
+            splitAll(prefix, parts);
+            splitAll(s, parts);
+        }
+    }
+
+    @Test
+    public final void testEmpty() {
+        Map4<String, Integer> m = new Map4<String, Integer>();
+        Spliterator<Pair<String, Integer>> s = m.spliterator();
+        assertEquals(0, s.getExactSizeIfKnown());
+        assertNull(s.trySplit());
+        assertFalse(s.tryAdvance(p -> {
+        }));
+        assertEquals(0, m.parallelStream().count());
+    }
+
+    @Test
+    public final void testCharacteristics() {
+        Spliterator<Pair<String, Integer>> s = build(1).spliterator();
+        assertTrue(s.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(s.hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(s.hasCharacteristics(Spliterator.DISTINCT));
+        assertTrue(s.hasCharacteristics(Spliterator.NONNULL));
+    }
+
+    @Test
+    public final void testStream() {
+        Map4<String, Integer> m = build(MANY_KEYS);
+        assertEquals(MANY_KEYS, m.stream().count());
+        long expected = (long) MANY_KEYS * (MANY_KEYS - 1) / 2;
+        assertEquals(expected,
+                m.stream().mapToLong(Pair::value).sum());
+    }
+
+    @Test
+    public final void testParallelStream() {
+        Map4<String, Integer> m = build(MANY_KEYS);
+        Map<String, Integer> copy = m.parallelStream().collect(
+                Map4<String, Integer>::new, (c, p) -> c.add(p.key(), p.value()),
+                (a, b) -> a.mergeFrom(b, Integer::sum));
+        assertEquals(m, copy);
+        assertEquals(MANY_KEYS, m.parallelStream().map(Pair::key)
+                .collect(Collectors.toSet()).size());
+    }
+
+    @Test
+    public final void testSplitsAreExact() {
+        Map4<String, Integer> m = build(MANY_KEYS);
+        List<Spliterator<Pair<String, Integer>>> parts = new ArrayList<>();
+        splitAll(m.spliterator(), parts);
+        assertTrue(parts.size() > 1);
+        Map4<String, Integer> seen = new Map4<String, Integer>();
+        for (Spliterator<Pair<String, Integer>> part : parts) {
+            long size = part.getExactSizeIfKnown();
+            long[] count = new long[1];
+            part.forEachRemaining(p -> {
+                seen.add(p.key(), p.value());
+                count[0]++;
+            });
+            assertEquals(size, count[0]);
+            assertEquals(0, part.getExactSizeIfKnown());
+        }
+        assertEquals(m, seen);
+    }
+
+    @Test
+    public final void testSplitAfterAdvance() {
+        Map4<String, Integer> m = build(MANY_KEYS);
+        Spliterator<Pair<String, Integer>> s = m.spliterator();
+        Map4<String, Integer> seen = new Map4<String, Integer>();
+        assertTrue(s.tryAdvance(p -> seen.add(p.key(), p.value())));
+        Spliterator<Pair<String, Integer>> prefix = s.trySplit();
+        assertEquals(MANY_KEYS - 1,
+                prefix.getExactSizeIfKnown() + s.getExactSizeIfKnown());
+        prefix.forEachRemaining(p -> seen.add(p.key(), p.value()));
+        while (s.tryAdvance(p -> seen.add(p.key(), p.value()))) {
+            assertEquals(MANY_KEYS - seen.size(), s.getExactSizeIfKnown()
+                    + prefix.getExactSizeIfKnown());
+        }
+        assertEquals(m, seen);
+    }
+
+    @Test
+    public final void testDuringRehash() {
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0.75);
+        //stop right after a resize, when buckets are still being moved
+        int n = 0;
+        int buckets = m.tableSize();
+        while (m.tableSize() == buckets || n < 2) {
+            m.add("key" + n, n);
+            n++;
+        }
+        assertEquals(n, m.parallelStream().count());
+        assertEquals(n, m.stream().map(Pair::key).distinct().count());
+    }
+
+    @Test
+    public final void testTreeifiedBuckets() {
+        Map4<String, Integer> m = new Map4<String, Integer>(1, 0.75, 2,
+                new HashStrategy.PrimeModulus());
+        for (int i = 0; i < MANY_KEYS; i++) {
+            m.add("key" + i, i);
+        }
+        long expected = (long) MANY_KEYS * (MANY_KEYS - 1) / 2;
+        assertEquals(expected,
+                m.parallelStream().mapToLong(Pair::value).sum());
+    }
+
+}
@@ -1,3 +1,8 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
 import components.map.Map;
 import components.map.Map1L;
 
@@ -16,4 +21,57 @@ public class Map4Test extends MapTest {
         return new Map1L<String, String>();
     }
 
+    @Test
+    public final void testTableSizeIsKept() {
+        final int requested = 100;
+        Map4<String, String> m = new Map4<String, String>(requested);
+        m.add("red", "1");
+        assertEquals(requested, m.tableSize());
+    }
+
+    @Test
+    public final void testPrimeModulusRoundsUp() {
+        final int requested = 100;
+        final int prime = 101;
+        Map4<String, String> m = new Map4<String, String>(requested, 0, 0,
+                new HashStrategy.PrimeModulus());
+        m.add("red", "1");
+        assertEquals(prime, m.tableSize());
+    }
+
+    @Test
+    public final void testGrowthKeepsSizeOdd() {
+        final int requested = 5;
+        final int grown = 11;
+        Map4<String, String> m = new Map4<String, String>(requested, 1);
+        for (int i = 0; i <= requested; i++) {
+            m.add("key" + i, "value" + i);
+        }
+        assertEquals(grown, m.tableSize());
+        for (int i = 0; i <= requested; i++) {
+            m.remove("key" + i);
+        }
+        m.add("red", "1");
+        assertEquals(requested, m.tableSize());
+    }
+
+    @Test
+    public final void testGrowthStopsAtMaxTableSize() {
+        HashStrategy[] strategies = { new HashStrategy.Modulus(),
+                new HashStrategy.PrimeModulus(), new HashStrategy.MixedMask(),
+                new HashStrategy.Seeded(1) };
+        for (HashStrategy strategy : strategies) {
+            //grow from the largest sizes below the limit up to it
+            int size = strategy.tableSize(HashStrategy.MAX_TABLE_SIZE / 4);
+            int grown = strategy.grownTableSize(size);
+            while (grown != size) {
+                assertTrue(strategy.toString(), grown > size);
+                size = grown;
+                grown = strategy.grownTableSize(size);
+            }
+            assertTrue(strategy.toString(),
+                    size > HashStrategy.MAX_TABLE_SIZE / 2);
+        }
+    }
+
 }
@@ -0,0 +1,200 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using maps that were filled
+ * and then cleared, so that every test starts from a table that has been
+ * dropped and must be allocated again, together with tests of new, cleared,
+ * and transferred-from maps before their first {@code add}.
+ */
+public class Map4TestLazy extends MapTest {
+
+    /**
+     * Initial size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 7;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Number of entries added before a map is emptied.
+     */
+    private static final int FILL = 20;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        Map4<String, String> map = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        fill(map);
+        map.clear();
+        return map;
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Adds {@code FILL} entries to {@code map}, so that its table grows.
+     *
+     * @param map
+     *            the map
+     * @updates map
+     * @requires [none of the keys added is in map]
+     */
+    private static void fill(Map4<String, String> map) {
+        for (int i = 0; i < FILL; i++) {
+            map.add("key" + i, "value" + i);
+        }
+    }
+
+    /**
+     * Returns a new map, a cleared map, and a map emptied by
+     * {@code transferFrom}, none of which has been added to since.
+     *
+     * @return the empty maps
+     */
+    private static List<Map4<String, String>> emptyMaps() {
+        List<Map4<String, String>> maps = new ArrayList<>();
+        maps.add(new Map4<String, String>(TEST_HASH_TABLE_SIZE,
+                TEST_LOAD_FACTOR));
+        Map4<String, String> cleared = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        fill(cleared);
+        cleared.clear();
+        maps.add(cleared);
+        Map4<String, String> source = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        fill(source);
+        Map4<String, String> target = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        target.transferFrom(source);
+        assertEquals(FILL, target.size());
+        maps.add(source);
+        return maps;
+    }
+
+    @Test
+    public final void testQueriesBeforeFirstAdd() {
+        for (Map4<String, String> m : emptyMaps()) {
+            assertEquals(0, m.size());
+            assertFalse(m.hasKey("key0"));
+            assertEquals("none", m.getOrDefault("key0", "none"));
+            assertFalse(m.iterator().hasNext());
+            assertEquals(0, m.stream().count());
+            assertEquals(new Map1L<String, String>(), m);
+        }
+    }
+
+    @Test
+    public final void testStatisticsBeforeFirstAdd() {
+        for (Map4<String, String> m : emptyMaps()) {
+            //the initial size is kept, so the table starts over at it
+            assertEquals(TEST_HASH_TABLE_SIZE, m.tableSize());
+            assertArrayEquals(new int[] { TEST_HASH_TABLE_SIZE },
+                    m.chainLengthHistogram());
+            assertEquals(0, m.maxChainLength());
+            assertEquals(0, m.treeBucketCount());
+            Map4Stats stats = m.enableStatistics();
+            assertEquals(TEST_HASH_TABLE_SIZE, stats.getBucketCount());
+            assertEquals(0, stats.getOccupiedBucketCount());
+        }
+    }
+
+    @Test
+    public final void testUpdatesThatAddNothingBeforeFirstAdd() {
+        for (Map4<String, String> m : emptyMaps()) {
+            assertNull(m.compute("key0", (k, old) -> null));
+            assertEquals(0, m.size());
+            assertFalse(m.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public final void testFirstAddThenRemoveAny() {
+        for (Map4<String, String> m : emptyMaps()) {
+            m.add("red", "1");
+            assertEquals(1, m.size());
+            assertTrue(m.hasKey("red"));
+            Map.Pair<String, String> p = m.removeAny();
+            assertEquals("red", p.key());
+            assertEquals("1", p.value());
+            assertEquals(0, m.size());
+            assertFalse(m.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public final void testFirstUpdatesAllocate() {
+        for (Map4<String, String> m : emptyMaps()) {
+            assertNull(m.putIfAbsent("red", "1"));
+            assertEquals("2", m.merge("blue", "2", String::concat));
+            assertEquals("3", m.compute("green", (k, old) -> "3"));
+            assertEquals(3, m.size());
+            int seen = 0;
+            for (Map.Pair<String, String> p : m) {
+                assertEquals(p.value(), m.value(p.key()));
+                seen++;
+            }
+            assertEquals(3, seen);
+        }
+    }
+
+    @Test
+    public final void testRefillAfterEmptying() {
+        for (Map4<String, String> m : emptyMaps()) {
+            fill(m);
+            assertEquals(FILL, m.size());
+            for (int i = 0; i < FILL; i++) {
+                assertEquals("value" + i, m.value("key" + i));
+            }
+            while (m.size() > 0) {
+                m.removeAny();
+            }
+            assertFalse(m.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public final void testTransferFromNeverAllocated() {
+        Map4<String, String> target = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        fill(target);
+        target.transferFrom(new Map4<String, String>(TEST_HASH_TABLE_SIZE,
+                TEST_LOAD_FACTOR));
+        assertEquals(0, target.size());
+        assertFalse(target.hasKey("key0"));
+        target.add("red", "1");
+        assertEquals("1", target.value("red"));
+    }
+
+    @Test
+    public final void testMergeFromNeverAllocated() {
+        for (Map4<String, String> m : emptyMaps()) {
+            Map4<String, String> other = new Map4<String, String>(
+                    TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+            m.mergeFrom(other, String::concat);
+            assertEquals(0, m.size());
+            fill(other);
+            m.mergeFrom(other, String::concat);
+            assertEquals(FILL, m.size());
+            assertEquals(0, other.size());
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using a resizing hash table
+ * that starts with a single bucket, so that even small tests grow, shrink,
+ * and rehash the table.
+ */
+public class Map4TestResizing extends MapTest {
+
+    /**
+     * Initial size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.5;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4<String, String>(TEST_HASH_TABLE_SIZE,
+                TEST_LOAD_FACTOR);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Grows a resizing map with load factor {@code loadFactor} from a single
+     * bucket to {@code count} keys and shrinks it back, adding and removing
+     * random keys along the way, and checks it against a {@code HashMap}
+     * after each operation. With assertions enabled, a resize that starts
+     * before the previous rehash has finished fails.
+     *
+     * @param loadFactor
+     *            the load factor
+     * @param count
+     *            the largest number of keys
+     * @param seed
+     *            the random seed
+     */
+    private static void checkGrowAndShrink(double loadFactor, int count,
+            long seed) {
+        final int range = 4 * count;
+        Random random = new Random(seed);
+        Map4<String, String> m = new Map4<String, String>(1, loadFactor);
+        HashMap<String, String> expected = new HashMap<String, String>();
+        for (int phase = 0; phase < 2; phase++) {
+            //mostly adds while growing, then mostly removes
+            while (phase == 0 ? expected.size() < count
+                    : expected.size() > 0) {
+                String key = "key" + random.nextInt(range);
+                boolean add = random.nextInt(4) != 0;
+                if (phase == 1) {
+                    add = !add;
+                }
+                if (add && !expected.containsKey(key)) {
+                    m.add(key, "value" + key);
+                    expected.put(key, "value" + key);
+                } else if (!add && expected.size() > 0) {
+                    if (expected.containsKey(key)) {
+                        assertEquals(expected.remove(key),
+                                m.remove(key).value());
+                    } else {
+                        Map.Pair<String, String> p = m.removeAny();
+                        assertEquals(expected.remove(p.key()), p.value());
+                    }
+                }
+                assertEquals("seed " + seed, expected.size(), m.size());
+                assertEquals(expected.containsKey(key), m.hasKey(key));
+            }
+            for (Map.Pair<String, String> p : m) {
+                assertEquals(expected.get(p.key()), p.value());
+            }
+        }
+        assertEquals(1, m.tableSize());
+    }
+
+    /**
+     * Adds keys to a resizing map up to the add that starts its
+     * {@code resizes}-th resize, then empties it in random order with
+     * {@code remove} and {@code removeAny} while that rehash is still
+     * pending, checking the size, the keys, and the iteration order's
+     * contents against a {@code HashMap} after each removal.
+     *
+     * @param resizes
+     *            the number of resizes before the removals start
+     * @param removeAnyFirst
+     *            whether the first removal is a {@code removeAny}, which
+     *            finds the new table empty
+     * @param seed
+     *            the random seed
+     */
+    private static void checkEmptyDuringRehash(int resizes,
+            boolean removeAnyFirst, long seed) {
+        final double loadFactor = 0.75;
+        Random random = new Random(seed);
+        Map4<String, String> m = new Map4<String, String>(1, loadFactor);
+        HashMap<String, String> expected = new HashMap<String, String>();
+        List<String> keys = new ArrayList<String>();
+        int resized = 0;
+        while (resized < resizes) {
+            int tableSize = m.tableSize();
+            String key = "key" + keys.size();
+            m.add(key, "value" + key);
+            expected.put(key, "value" + key);
+            keys.add(key);
+            if (m.tableSize() != tableSize) {
+                resized++;
+            }
+        }
+        boolean first = true;
+        while (expected.size() > 0) {
+            if ((first && removeAnyFirst) || random.nextInt(3) == 0) {
+                Map.Pair<String, String> p = m.removeAny();
+                assertEquals(expected.remove(p.key()), p.value());
+                keys.remove(p.key());
+            } else {
+                String key = keys.remove(random.nextInt(keys.size()));
+                assertEquals(expected.remove(key), m.remove(key).value());
+                assertFalse(m.hasKey(key));
+            }
+            first = false;
+            assertEquals("seed " + seed, expected.size(), m.size());
+            HashSet<String> seen = new HashSet<String>();
+            for (Map.Pair<String, String> p : m) {
+                assertTrue(seen.add(p.key()));
+                assertEquals(expected.get(p.key()), p.value());
+            }
+            assertEquals(expected.keySet(), seen);
+        }
+    }
+
+    @Test
+    public final void testRemoveAnyWhileNewTableIsEmpty() {
+        final int maxResizes = 8;
+        for (int resizes = 1; resizes <= maxResizes; resizes++) {
+            checkEmptyDuringRehash(resizes, true, resizes);
+        }
+    }
+
+    @Test
+    public final void testRandomRemovalsDuringRehash() {
+        final int maxResizes = 8;
+        final int seeds = 5;
+        for (int resizes = 1; resizes <= maxResizes; resizes++) {
+            for (long seed = 0; seed < seeds; seed++) {
+                checkEmptyDuringRehash(resizes, false, seed);
+            }
+        }
+    }
+
+    @Test
+    public final void testLowLoadFactorRehashesInTime() {
+        final double loadFactor = 0.25;
+        final int count = 2000;
+        checkGrowAndShrink(loadFactor, count, 1);
+    }
+
+    @Test
+    public final void testVeryLowLoadFactorRehashesInTime() {
+        final double loadFactor = 0.05;
+        final int count = 1000;
+        checkGrowAndShrink(loadFactor, count, 2);
+    }
+
+    @Test
+    public final void testHighLoadFactorRehashesInTime() {
+        final double loadFactor = 4;
+        final int count = 5000;
+        checkGrowAndShrink(loadFactor, count, 3);
+    }
+
+    @Test
+    public final void testRepeatedResizesKeepEveryKey() {
+        //growing and shrinking around one size starts resize after resize
+        final double loadFactor = 0.25;
+        final int count = 64;
+        final int rounds = 50;
+        Map4<String, String> m = new Map4<String, String>(1, loadFactor);
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < count; i++) {
+                m.add("key" + i, "value" + i);
+            }
+            for (int i = 0; i < count; i++) {
+                assertTrue(m.hasKey("key" + i));
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals("value" + i, m.remove("key" + i).value());
+            }
+            assertEquals(0, m.size());
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using a resizing hash table
+ * with the seeded hash strategy over power-of-two table sizes.
+ */
+public class Map4TestSeeded extends MapTest {
+
+    /**
+     * Requested initial size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 2;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Treeify threshold to be used in tests.
+     */
+    private static final int TEST_TREEIFY_THRESHOLD = 8;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4<String, String>(TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR,
+                TEST_TREEIFY_THRESHOLD, new HashStrategy.Seeded());
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
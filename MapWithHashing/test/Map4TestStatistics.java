@@ -0,0 +1,234 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using a small resizing hash
+ * table with statistics enabled, so that the counting paths run in every
+ * test.
+ */
+public class Map4TestStatistics extends MapTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.5;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        Map4<String, String> map = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+        map.enableStatistics();
+        return map;
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Tolerance for comparing means.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Returns a fixed-size map of {@code tableSize} buckets that never become
+     * trees, with statistics enabled, holding the given keys.
+     *
+     * @param tableSize
+     *            the number of buckets
+     * @param keys
+     *            the keys, each added with the value "v"
+     * @return the map
+     */
+    private static Map4<String, String> fixedMap(int tableSize,
+            String... keys) {
+        Map4<String, String> m = new Map4<String, String>(tableSize, 0, 0);
+        m.enableStatistics();
+        for (String key : keys) {
+            m.add(key, "v");
+        }
+        return m;
+    }
+
+    @Test
+    public final void testOccupancy() {
+        /*
+         * With 5 buckets, "a", "f", and "k" (hash codes 97, 102, 107) share
+         * bucket 2, "b" is in bucket 3, and "c" in bucket 4
+         */
+        final int buckets = 5;
+        final int entries = 5;
+        final int longest = 3;
+        final double mean = 5.0 / 3;
+        Map4<String, String> m = fixedMap(buckets, "a", "f", "k", "b", "c");
+        Map4Stats stats = m.statistics();
+        assertEquals(entries, stats.getSize());
+        assertEquals(buckets, stats.getBucketCount());
+        assertEquals(3, stats.getOccupiedBucketCount());
+        assertArrayEquals(new int[] { 2, 2, 0, 1 },
+                stats.getOccupancyHistogram());
+        assertArrayEquals(new int[] { 2, 2, 0, 1 }, m.chainLengthHistogram());
+        assertEquals(longest, stats.getMaxChainLength());
+        assertEquals(longest, m.maxChainLength());
+        assertEquals(mean, stats.getMeanChainLength(), EPSILON);
+        m.remove("f");
+        assertArrayEquals(new int[] { 2, 2, 1 }, stats.getOccupancyHistogram());
+        assertEquals(2, stats.getMaxChainLength());
+    }
+
+    @Test
+    public final void testOccupancyOfEmptyMap() {
+        final int buckets = 7;
+        Map4<String, String> m = fixedMap(buckets);
+        Map4Stats stats = m.statistics();
+        assertEquals(0, stats.getSize());
+        assertEquals(buckets, stats.getBucketCount());
+        assertEquals(0, stats.getOccupiedBucketCount());
+        assertArrayEquals(new int[] { buckets }, stats.getOccupancyHistogram());
+        assertEquals(0, stats.getMaxChainLength());
+        assertEquals(0, stats.getMeanChainLength(), EPSILON);
+    }
+
+    @Test
+    public final void testProbesOfKnownCollisions() {
+        //"Aa" and "BB" have the same hash code, so they share a chain
+        final int buckets = 7;
+        Map4<String, String> m = fixedMap(buckets, "Aa", "BB");
+        Map4Stats stats = m.statistics();
+        stats.reset();
+        assertTrue(m.hasKey("Aa"));
+        assertEquals(1, stats.getOperations());
+        assertEquals(1, stats.getHashes());
+        assertEquals(2, stats.getKeyComparisons());
+        assertTrue(m.hasKey("BB"));
+        assertEquals(2, stats.getOperations());
+        assertEquals(2, stats.getHashes());
+        assertEquals(4, stats.getKeyComparisons());
+        assertEquals(2, stats.getKeyComparisonsPerOperation(), EPSILON);
+        assertEquals(1, stats.getHashesPerOperation(), EPSILON);
+        //an empty bucket is not searched
+        stats.reset();
+        assertFalse(m.hasKey("a"));
+        assertEquals(1, stats.getHashes());
+        assertEquals(0, stats.getKeyComparisons());
+    }
+
+    @Test
+    public final void testProbesOfTreeBucket() {
+        //4 keys with one hash code, in a tree of depth 3
+        final int depth = 3;
+        Map4<String, String> m = new Map4<String, String>(1, 0, 2);
+        Map4Stats stats = m.enableStatistics();
+        m.add("AaAa", "v");
+        m.add("AaBB", "v");
+        m.add("BBAa", "v");
+        m.add("BBBB", "v");
+        assertEquals(1, m.treeBucketCount());
+        stats.reset();
+        assertTrue(m.hasKey("BBBB"));
+        assertEquals(depth, stats.getKeyComparisons());
+    }
+
+    @Test
+    public final void testResizeCount() {
+        /*
+         * From 1 bucket with load factor 0.5, the table grows to 3, 7, 15,
+         * 31, and 63 buckets as the size passes 0, 1, 3, 7, and 15
+         */
+        final int keys = 20;
+        final int resizes = 5;
+        final int finalTableSize = 63;
+        Map4<String, String> m = new Map4<String, String>(1, 0.5);
+        Map4Stats stats = m.enableStatistics();
+        for (int i = 0; i < keys; i++) {
+            m.add("key" + i, "value" + i);
+        }
+        assertEquals(resizes, stats.getResizes());
+        assertEquals(finalTableSize, m.tableSize());
+        stats.reset();
+        assertEquals(0, stats.getResizes());
+        assertEquals(0, stats.getOperations());
+    }
+
+    @Test
+    public final void testEnableAndDisable() {
+        Map4<String, String> m = new Map4<String, String>();
+        assertNull(m.statistics());
+        Map4Stats stats = m.enableStatistics();
+        assertSame(stats, m.enableStatistics());
+        assertSame(stats, m.statistics());
+        m.disableStatistics();
+        assertNull(m.statistics());
+    }
+
+    @Test
+    public final void testRegisterAndUnregister() throws JMException {
+        String name = "Map4TestStatistics.testRegisterAndUnregister";
+        ObjectName objectName = new ObjectName(
+                "Map4:type=Statistics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Map4<String, String> m = fixedMap(3, "red", "blue");
+        Map4Stats stats = m.statistics();
+        stats.register(name);
+        try {
+            assertTrue(server.isRegistered(objectName));
+            assertEquals(2, server.getAttribute(objectName, "Size"));
+            assertEquals(3, server.getAttribute(objectName, "BucketCount"));
+            m.add("green", "v");
+            assertEquals(3, server.getAttribute(objectName, "Size"));
+        } finally {
+            stats.unregister();
+        }
+        assertFalse(server.isRegistered(objectName));
+        //unregistering again does nothing
+        stats.unregister();
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @Test
+    public final void testDisableUnregisters() throws JMException {
+        String name = "Map4TestStatistics.testDisableUnregisters";
+        ObjectName objectName = new ObjectName(
+                "Map4:type=Statistics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Map4<String, String> m = fixedMap(3, "red");
+        m.statistics().register(name);
+        assertTrue(server.isRegistered(objectName));
+        m.disableStatistics();
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testRegisterTakenName() {
+        String name = "Map4TestStatistics.testRegisterTakenName";
+        Map4Stats first = fixedMap(3).statistics();
+        first.register(name);
+        try {
+            fixedMap(3).statistics().register(name);
+        } finally {
+            first.unregister();
+        }
+    }
+
+}
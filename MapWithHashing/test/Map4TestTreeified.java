@@ -0,0 +1,222 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using a single-bucket hash
+ * table with a treeify threshold low enough that the bucket is a tree for
+ * most tests.
+ */
+public class Map4TestTreeified extends MapTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Treeify threshold to be used in tests.
+     */
+    private static final int TEST_TREEIFY_THRESHOLD = 1;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4<String, String>(TEST_HASH_TABLE_SIZE, 0,
+                TEST_TREEIFY_THRESHOLD);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testTreeifyAndUntreeifyCounts() {
+        final int threshold = 4;
+        final int keys = 5;
+        Map4<String, String> m = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, 0, threshold);
+        for (int i = 0; i < threshold; i++) {
+            m.add("key" + i, "value" + i);
+        }
+        assertEquals(0, m.treeifyCount());
+        assertEquals(0, m.treeBucketCount());
+        m.add("key" + threshold, "value" + threshold);
+        assertEquals(1, m.treeifyCount());
+        assertEquals(1, m.treeBucketCount());
+        //a tree is kept down to three quarters of the threshold
+        m.remove("key0");
+        m.remove("key1");
+        assertEquals(1, m.treeBucketCount());
+        assertEquals(0, m.untreeifyCount());
+        m.remove("key2");
+        assertEquals(1, m.untreeifyCount());
+        assertEquals(0, m.treeBucketCount());
+        for (int i = 0; i < keys - 2; i++) {
+            m.add("key" + i, "value" + i);
+        }
+        assertEquals(2, m.treeifyCount());
+        assertEquals(1, m.treeBucketCount());
+        m.clear();
+        assertEquals(0, m.treeifyCount());
+        assertEquals(0, m.untreeifyCount());
+        assertEquals(0, m.treeBucketCount());
+    }
+
+    @Test
+    public final void testFixtureTreeifies() {
+        Map4<String, String> m = (Map4<String, String>) this
+                .constructorTest();
+        m.add("red", "1");
+        assertEquals(0, m.treeBucketCount());
+        m.add("blue", "2");
+        assertEquals(1, m.treeifyCount());
+        assertEquals(1, m.treeBucketCount());
+        //one key is not below three quarters of the threshold
+        m.remove("red");
+        assertEquals(0, m.untreeifyCount());
+        assertEquals(1, m.treeBucketCount());
+        //an emptied bucket is dropped rather than converted
+        m.remove("blue");
+        assertEquals(0, m.untreeifyCount());
+        assertEquals(0, m.treeBucketCount());
+    }
+
+    @Test
+    public final void testKeyOfOtherClassUntreeifies() {
+        Map4<Object, String> m = new Map4<Object, String>(
+                TEST_HASH_TABLE_SIZE, 0, TEST_TREEIFY_THRESHOLD);
+        m.add("red", "1");
+        m.add("blue", "2");
+        assertEquals(1, m.treeBucketCount());
+        m.add(Integer.valueOf(1), "3");
+        assertEquals(1, m.treeifyCount());
+        assertEquals(1, m.untreeifyCount());
+        assertEquals(0, m.treeBucketCount());
+        assertEquals("3", m.value(Integer.valueOf(1)));
+        assertEquals("1", m.value("red"));
+    }
+
+    @Test
+    public final void testManyBucketsTreeify() {
+        //"Aa" and "BB" have the same hash code, so the pairs of keys
+        //built from them collide in every table
+        final int blocks = 3;
+        Map4<String, String> m = new Map4<String, String>(101, 0, 2);
+        String[] parts = { "Aa", "BB" };
+        for (int b = 0; b < blocks; b++) {
+            for (String x : parts) {
+                for (String y : parts) {
+                    m.add(b + x + y, "value");
+                }
+            }
+        }
+        assertEquals(blocks, m.treeifyCount());
+        assertEquals(blocks, m.treeBucketCount());
+        assertEquals(0, m.untreeifyCount());
+    }
+
+    /**
+     * Key whose hash codes are all equal and whose {@code compareTo} looks
+     * only at its rank, so that keys of equal rank but different ids are
+     * ranked as equal without being {@code equals}.
+     */
+    private static final class RankedKey implements Comparable<RankedKey> {
+
+        /**
+         * Rank compared by {@code compareTo}.
+         */
+        private final int rank;
+
+        /**
+         * Identity compared by {@code equals}.
+         */
+        private final int id;
+
+        /**
+         * Constructor from rank and id.
+         *
+         * @param rank
+         *            the rank
+         * @param id
+         *            the id
+         */
+        RankedKey(int rank, int id) {
+            this.rank = rank;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(RankedKey other) {
+            return Integer.compare(this.rank, other.rank);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RankedKey
+                    && ((RankedKey) obj).rank == this.rank
+                    && ((RankedKey) obj).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+    }
+
+    @Test
+    public final void testInconsistentKeysAreNotTreeified() {
+        Map4<RankedKey, String> m = new Map4<RankedKey, String>(
+                TEST_HASH_TABLE_SIZE, 0, TEST_TREEIFY_THRESHOLD);
+        m.add(new RankedKey(1, 1), "a");
+        m.add(new RankedKey(1, 2), "b");
+        assertEquals(0, m.treeifyCount());
+        assertEquals(0, m.treeBucketCount());
+        assertEquals(2, m.size());
+        assertEquals("a", m.value(new RankedKey(1, 1)));
+        assertEquals("b", m.value(new RankedKey(1, 2)));
+        assertFalse(m.hasKey(new RankedKey(1, 3)));
+    }
+
+    @Test
+    public final void testInconsistentKeyUntreeifies() {
+        Map4<RankedKey, String> m = new Map4<RankedKey, String>(
+                TEST_HASH_TABLE_SIZE, 0, TEST_TREEIFY_THRESHOLD);
+        m.add(new RankedKey(1, 1), "a");
+        m.add(new RankedKey(2, 2), "b");
+        assertEquals(1, m.treeBucketCount());
+        //ranked as equal to a key of the tree, but not that key
+        assertFalse(m.hasKey(new RankedKey(1, 3)));
+        assertEquals("none", m.getOrDefault(new RankedKey(2, 3), "none"));
+        m.add(new RankedKey(1, 3), "c");
+        assertEquals(1, m.untreeifyCount());
+        assertEquals(0, m.treeBucketCount());
+        assertEquals(3, m.size());
+        assertEquals("a", m.value(new RankedKey(1, 1)));
+        assertEquals("b", m.value(new RankedKey(2, 2)));
+        assertEquals("c", m.value(new RankedKey(1, 3)));
+        assertEquals("c", m.remove(new RankedKey(1, 3)).value());
+        assertTrue(m.hasKey(new RankedKey(1, 1)));
+        assertFalse(m.hasKey(new RankedKey(1, 3)));
+    }
+
+    @Test
+    public final void testInconsistentKeyMergedUntreeifies() {
+        Map4<RankedKey, String> m = new Map4<RankedKey, String>(
+                TEST_HASH_TABLE_SIZE, 0, TEST_TREEIFY_THRESHOLD);
+        m.add(new RankedKey(1, 1), "a");
+        m.add(new RankedKey(2, 2), "b");
+        assertEquals("c", m.merge(new RankedKey(2, 3), "c", String::concat));
+        assertEquals(0, m.treeBucketCount());
+        assertEquals(3, m.size());
+        assertEquals("b", m.value(new RankedKey(2, 2)));
+        assertEquals("c", m.value(new RankedKey(2, 3)));
+    }
+
+}
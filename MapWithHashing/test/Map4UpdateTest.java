@@ -0,0 +1,273 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for the fused update methods of {@code Map4}:
+ * {@code getOrDefault}, {@code putIfAbsent}, {@code merge}, {@code compute},
+ * and {@code increment}, using default constructor.
+ */
+public class Map4UpdateTest {
+
+    /**
+     * Invokes the appropriate {@code Map4} constructor for the fixture and
+     * returns the result.
+     *
+     * @param <V>
+     *            type of value
+     * @return the new map
+     * @ensures constructorTest = {}
+     */
+    protected <V> Map4<String, V> constructorTest() {
+        return new Map4<String, V>();
+    }
+
+    /**
+     * Creates and returns a {@code Map4<String, String>} of the fixture's
+     * kind with the given entries.
+     *
+     * @param args
+     *            the (key, value) pairs for the map
+     * @return the constructed map
+     * @requires <pre>
+     * [args.length is even]  and
+     * [the 'key' entries in args are unique]
+     * </pre>
+     * @ensures createFromArgsTest = [pairs in args]
+     */
+    private Map4<String, String> createFromArgsTest(String... args) {
+        assert args.length % 2 == 0 : "Violation of: args.length is even";
+        Map4<String, String> map = this.constructorTest();
+        for (int i = 0; i < args.length; i += 2) {
+            map.add(args[i], args[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Creates and returns a {@code Map<String, String>} of the reference
+     * implementation type with the given entries.
+     *
+     * @param args
+     *            the (key, value) pairs for the map
+     * @return the constructed map
+     * @requires <pre>
+     * [args.length is even]  and
+     * [the 'key' entries in args are unique]
+     * </pre>
+     * @ensures createFromArgsRef = [pairs in args]
+     */
+    private static Map<String, String> createFromArgsRef(String... args) {
+        assert args.length % 2 == 0 : "Violation of: args.length is even";
+        Map<String, String> map = new Map1L<String, String>();
+        for (int i = 0; i < args.length; i += 2) {
+            map.add(args[i], args[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Exception thrown by the remapping functions of the tests that check a
+     * throwing function leaves the map unchanged.
+     */
+    private static final class RemappingException extends RuntimeException {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    @Test
+    public final void testGetOrDefaultAbsent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1");
+        Map<String, String> mExpected = createFromArgsRef("red", "1");
+        assertEquals("0", m.getOrDefault("blue", "0"));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testGetOrDefaultPresent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        assertEquals("2", m.getOrDefault("blue", "0"));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testGetOrDefaultEmpty() {
+        Map4<String, String> m = this.createFromArgsTest();
+        assertNull(m.getOrDefault("red", null));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testPutIfAbsentAbsent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        assertNull(m.putIfAbsent("blue", "2"));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testPutIfAbsentPresent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        assertEquals("2", m.putIfAbsent("blue", "3"));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMergeAbsent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        assertEquals("2", m.merge("blue", "2", String::concat));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMergePresent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "23");
+        assertEquals("23", m.merge("blue", "3", String::concat));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMergeNullRemoves() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1");
+        assertNull(m.merge("blue", "3", (old, value) -> null));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMergeThrowingLeavesUnchanged() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        String[] keys = { "blue", "green" };
+        for (String key : keys) {
+            try {
+                m.merge(key, "3", (old, value) -> {
+                    throw new RemappingException();
+                });
+                if (key.equals("blue")) {
+                    throw new AssertionError("merge did not throw");
+                }
+            } catch (RemappingException e) {
+                assertEquals(mExpected, m);
+            }
+        }
+        //an absent key is added without calling the combiner
+        mExpected.add("green", "3");
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testComputeAbsent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "blue:null");
+        assertEquals("blue:null", m.compute("blue", (k, old) -> k + ":" + old));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testComputePresent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "blue:2");
+        assertEquals("blue:2", m.compute("blue", (k, old) -> k + ":" + old));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testComputeNullRemoves() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1");
+        assertNull(m.compute("blue", (k, old) -> null));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testComputeNullAbsentStaysAbsent() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1");
+        Map<String, String> mExpected = createFromArgsRef("red", "1");
+        assertNull(m.compute("blue", (k, old) -> null));
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testComputeThrowingLeavesUnchanged() {
+        Map4<String, String> m = this.createFromArgsTest("red", "1", "blue",
+                "2");
+        Map<String, String> mExpected = createFromArgsRef("red", "1", "blue",
+                "2");
+        String[] keys = { "blue", "green" };
+        for (String key : keys) {
+            try {
+                m.compute(key, (k, old) -> {
+                    throw new RemappingException();
+                });
+                throw new AssertionError("compute did not throw");
+            } catch (RemappingException e) {
+                assertEquals(mExpected, m);
+            }
+        }
+    }
+
+    @Test
+    public final void testIncrementNewKey() {
+        Map4<String, Integer> m = this.constructorTest();
+        assertEquals(3, Map4.increment(m, "red", 3));
+        assertEquals(1, m.size());
+        assertEquals(Integer.valueOf(3), m.value("red"));
+    }
+
+    @Test
+    public final void testIncrementExistingKey() {
+        Map4<String, Integer> m = this.constructorTest();
+        m.add("red", 1);
+        m.add("blue", 2);
+        assertEquals(2, Map4.increment(m, "red", 1));
+        assertEquals(-1, Map4.increment(m, "blue", -3));
+        assertEquals(2, m.size());
+        assertEquals(Integer.valueOf(2), m.value("red"));
+        assertEquals(Integer.valueOf(-1), m.value("blue"));
+    }
+
+    @Test
+    public final void testIncrementManyKeys() {
+        final int keys = 200;
+        final int rounds = 3;
+        Map4<String, Integer> m = this.constructorTest();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < keys; i++) {
+                assertEquals(round + 1, Map4.increment(m, "key" + i, 1));
+            }
+        }
+        assertEquals(keys, m.size());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(Integer.valueOf(rounds), m.value("key" + i));
+        }
+    }
+
+}
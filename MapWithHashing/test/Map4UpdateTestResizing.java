@@ -0,0 +1,23 @@
+/**
+ * Customized JUnit test fixture for the fused update methods of
+ * {@code Map4} using a resizing hash table that starts with a single bucket,
+ * so that the updates find keys in both tables of a pending rehash.
+ */
+public class Map4UpdateTestResizing extends Map4UpdateTest {
+
+    /**
+     * Initial size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.5;
+
+    @Override
+    protected final <V> Map4<String, V> constructorTest() {
+        return new Map4<String, V>(TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR);
+    }
+
+}
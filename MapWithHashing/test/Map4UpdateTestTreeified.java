@@ -0,0 +1,24 @@
+/**
+ * Customized JUnit test fixture for the fused update methods of
+ * {@code Map4} using a single-bucket hash table with a treeify threshold low
+ * enough that the bucket is a tree for most tests.
+ */
+public class Map4UpdateTestTreeified extends Map4UpdateTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Treeify threshold to be used in tests.
+     */
+    private static final int TEST_TREEIFY_THRESHOLD = 1;
+
+    @Override
+    protected final <V> Map4<String, V> constructorTest() {
+        return new Map4<String, V>(TEST_HASH_TABLE_SIZE, 0,
+                TEST_TREEIFY_THRESHOLD);
+    }
+
+}
@@ -0,0 +1,266 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map5} using default constructor,
+ * including many keys, colliding hash codes, resizing, probes that wrap
+ * around the end of the table, and backward-shift deletion.
+ */
+public class Map5Test extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map5<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Key with a given hash code, so that keys can be made to collide.
+     */
+    private static final class HashedKey {
+
+        /**
+         * Hash code reported by {@code hashCode}.
+         */
+        private final int hash;
+
+        /**
+         * Identity compared by {@code equals}.
+         */
+        private final int id;
+
+        /**
+         * Constructor from hash code and id.
+         *
+         * @param hash
+         *            the hash code
+         * @param id
+         *            the id
+         */
+        HashedKey(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof HashedKey
+                    && ((HashedKey) obj).hash == this.hash
+                    && ((HashedKey) obj).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public String toString() {
+            return this.hash + "/" + this.id;
+        }
+
+    }
+
+    /**
+     * Checks {@code m} against {@code expected}: its size, the value of every
+     * key in {@code universe}, and its iteration.
+     *
+     * @param <K>
+     *            type of the keys
+     * @param m
+     *            the map
+     * @param expected
+     *            the reference map
+     * @param universe
+     *            the keys that may be in the maps
+     * @param message
+     *            the message identifying the step checked
+     */
+    private static <K> void check(Map<K, Integer> m,
+            HashMap<K, Integer> expected, List<K> universe, String message) {
+        assertEquals(message, expected.size(), m.size());
+        for (K key : universe) {
+            boolean present = expected.containsKey(key);
+            assertEquals(message + " " + key, present, m.hasKey(key));
+            if (present) {
+                assertEquals(message + " " + key, expected.get(key),
+                        m.value(key));
+            }
+        }
+        HashSet<K> seen = new HashSet<K>();
+        for (Map.Pair<K, Integer> p : m) {
+            assertTrue(message, seen.add(p.key()));
+            assertEquals(message, expected.get(p.key()), p.value());
+        }
+        assertEquals(message, expected.keySet(), seen);
+    }
+
+    /**
+     * Adds all of {@code universe} to a new {@code Map5} in order, then
+     * empties it with random {@code remove}s and {@code removeAny}s, checking
+     * the map against a {@code HashMap} after every step.
+     *
+     * @param <K>
+     *            type of the keys
+     * @param universe
+     *            the keys
+     * @param seed
+     *            the random seed
+     */
+    private static <K> void fillAndEmpty(List<K> universe, long seed) {
+        Random random = new Random(seed);
+        Map<K, Integer> m = new Map5<K, Integer>();
+        HashMap<K, Integer> expected = new HashMap<K, Integer>();
+        for (int i = 0; i < universe.size(); i++) {
+            m.add(universe.get(i), i);
+            expected.put(universe.get(i), i);
+            check(m, expected, universe, "seed " + seed + " add " + i);
+        }
+        List<K> keys = new ArrayList<K>(universe);
+        while (expected.size() > 0) {
+            String message = "seed " + seed + " size " + expected.size();
+            if (random.nextInt(3) == 0) {
+                Map.Pair<K, Integer> p = m.removeAny();
+                assertEquals(message, expected.remove(p.key()), p.value());
+                keys.remove(p.key());
+            } else {
+                K key = keys.remove(random.nextInt(keys.size()));
+                assertEquals(message, expected.remove(key),
+                        m.remove(key).value());
+            }
+            check(m, expected, universe, message);
+        }
+    }
+
+    @Test
+    public final void testManyKeys() {
+        final int keys = 500;
+        List<String> universe = new ArrayList<String>();
+        for (int i = 0; i < keys; i++) {
+            universe.add("key" + i);
+        }
+        fillAndEmpty(universe, 1);
+    }
+
+    @Test
+    public final void testEqualHashCodes() {
+        /*
+         * Strings made of the blocks "Aa" and "BB" all have the same hash
+         * code, so every key probes from the same home slot
+         */
+        final int blocks = 8;
+        List<String> universe = new ArrayList<String>();
+        for (int bits = 0; bits < 1 << blocks; bits++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < blocks; b++) {
+                key.append(((bits >> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            universe.add(key.toString());
+        }
+        assertEquals(1, universe.stream().mapToInt(String::hashCode)
+                .distinct().count());
+        fillAndEmpty(universe, 2);
+    }
+
+    @Test
+    public final void testCollidingClusters() {
+        /*
+         * Runs of keys sharing a hash code, for hash codes whose home slots
+         * fall all over the table, including its last slots, so that the
+         * runs wrap around the end and overlap one another
+         */
+        final int hashes = 64;
+        final int perHash = 6;
+        List<HashedKey> universe = new ArrayList<HashedKey>();
+        for (int h = 0; h < hashes; h++) {
+            for (int id = 0; id < perHash; id++) {
+                universe.add(new HashedKey(h, id));
+            }
+        }
+        fillAndEmpty(universe, 3);
+    }
+
+    @Test
+    public final void testWrappedClusterInSmallTable() {
+        /*
+         * For each hash code in turn, a run of keys too short to resize the
+         * table but long enough to wrap around from any home slot near the
+         * end
+         */
+        final int hashes = 64;
+        final int perHash = 12;
+        for (int h = 0; h < hashes; h++) {
+            List<HashedKey> universe = new ArrayList<HashedKey>();
+            for (int id = 0; id < perHash; id++) {
+                universe.add(new HashedKey(h, id));
+            }
+            fillAndEmpty(universe, h);
+        }
+    }
+
+    @Test
+    public final void testRandomOperations() {
+        final int keys = 300;
+        final int operations = 3000;
+        final int seeds = 3;
+        for (long seed = 0; seed < seeds; seed++) {
+            Random random = new Random(seed);
+            List<HashedKey> universe = new ArrayList<HashedKey>();
+            for (int i = 0; i < keys; i++) {
+                //few enough hash codes that many keys collide
+                universe.add(new HashedKey(random.nextInt(keys / 4), i));
+            }
+            Map<HashedKey, Integer> m = new Map5<HashedKey, Integer>();
+            HashMap<HashedKey, Integer> expected =
+                    new HashMap<HashedKey, Integer>();
+            for (int i = 0; i < operations; i++) {
+                String message = "seed " + seed + " operation " + i;
+                HashedKey key = universe.get(random.nextInt(keys));
+                if (expected.containsKey(key)) {
+                    assertEquals(message, expected.remove(key),
+                            m.remove(key).value());
+                } else if (expected.size() > 0 && random.nextInt(4) == 0) {
+                    Map.Pair<HashedKey, Integer> p = m.removeAny();
+                    assertEquals(message, expected.remove(p.key()),
+                            p.value());
+                } else {
+                    m.add(key, i);
+                    expected.put(key, i);
+                }
+                check(m, expected, universe, message);
+            }
+        }
+    }
+
+    @Test
+    public final void testClearAfterGrowth() {
+        final int keys = 100;
+        Map<String, Integer> m = new Map5<String, Integer>();
+        for (int i = 0; i < keys; i++) {
+            m.add("key" + i, i);
+        }
+        m.clear();
+        assertEquals(0, m.size());
+        assertFalse(m.hasKey("key0"));
+        m.add("key0", 0);
+        assertEquals(1, m.size());
+        assertEquals("key0", m.removeAny().key());
+    }
+
+}
@@ -0,0 +1,626 @@
+import java.util.Arrays;
+
+/**
+ * Sorting machine for {@code int}s, kept in an {@code int[]} so that they are
+ * neither boxed nor compared through a {@code Comparator}. It has the modes of
+ * {@code SortingMachine5a}: entries are appended to the array in insertion
+ * mode, and the change to extraction mode either makes the array a heap in
+ * place or, from a given number of entries on (by default
+ * {@value #DEFAULT_RADIX_SORT_THRESHOLD}), sorts it with an LSD radix sort,
+ * after which {@code removeFirst} just advances a cursor. As in
+ * {@code SortingMachine5a}, {@code add} is also allowed in extraction mode.
+ *
+ * <p>
+ * The entries are ordered ascending or, if so constructed, descending. To
+ * keep a single order internally, a descending machine stores the complement
+ * {@code ~x} of each entry {@code x}, which reverses the order of
+ * {@code int}s.
+ *
+ * @mathdefinitions <pre>
+ * KEY (
+ *   x: integer,
+ *   descending: boolean
+ *  ) : integer is
+ *  if descending then -x - 1 else x
+ *
+ * SUBTREE_IS_HEAP (
+ *   a: string of integer,
+ *   start: integer,
+ *   stop: integer
+ *  ) : boolean is
+ *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
+ *   at index start and only through entry stop of a satisfies the heap
+ *   ordering property according to <=]
+ *
+ * IS_SORTED (
+ *   a: string of integer
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i < |a|)
+ *    (a[i-1] <= a[i])
+ * </pre>
+ * @convention <pre>
+ * 0 <= $this.first <= $this.size <= |$this.keys|  and
+ * |$this.keys| > 0  and  0 <= $this.radixSortThreshold  and
+ * if $this.insertionMode then
+ *   $this.first = 0  and  not $this.sorted
+ * else if $this.sorted then
+ *   IS_SORTED($this.keys[$this.first, $this.size))
+ * else
+ *   $this.first = 0  and
+ *   SUBTREE_IS_HEAP($this.keys, 0, $this.size - 1)
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.descending,
+ *         [the multiset of x such that KEY(x, $this.descending) is an entry
+ *          of $this.keys[$this.first, $this.size)])
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class IntSortingMachine {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Length of the array of a new machine.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Default number of entries from which the change to extraction mode
+     * radix sorts instead of building a heap.
+     */
+    public static final int DEFAULT_RADIX_SORT_THRESHOLD = 64;
+
+    /**
+     * Number of bits in a radix sort digit.
+     */
+    private static final int DIGIT_BITS = 8;
+
+    /**
+     * Number of values of a radix sort digit.
+     */
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    /**
+     * Mask selecting the lowest radix sort digit.
+     */
+    private static final int DIGIT_MASK = RADIX - 1;
+
+    /**
+     * Whether the entries are ordered descending.
+     */
+    private boolean descending;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Keys of the entries, in the order added in insertion mode and as a heap
+     * or sorted in extraction mode.
+     */
+    private int[] keys;
+
+    /**
+     * Position just past the last key.
+     */
+    private int size;
+
+    /**
+     * Position of the first key, which is 0 unless the keys have been sorted.
+     */
+    private int first;
+
+    /**
+     * Whether the keys have been sorted rather than made into a heap.
+     */
+    private boolean sorted;
+
+    /**
+     * Number of entries from which the change to extraction mode radix
+     * sorts.
+     */
+    private int radixSortThreshold;
+
+    /**
+     * Sorts {@code array[0, size)} ascending with an LSD radix sort on 8-bit
+     * digits, skipping the digits on which all the entries agree.
+     *
+     * @param array
+     *            the array to sort
+     * @param size
+     *            the number of entries to sort
+     * @updates array
+     * @requires 0 <= size <= |array|
+     * @ensures <pre>
+     * IS_SORTED(array[0, size))  and  perms(array[0, size), #array[0, size))
+     *  and
+     * [the entries from index size on are the same as in #array]
+     * </pre>
+     */
+    static void radixSort(int[] array, int size) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= size : "Violation of: 0 <= size";
+        assert size <= array.length : "Violation of: size <= |array|";
+
+        int[] from = array;
+        int[] to = new int[size];
+        int[] counts = new int[RADIX];
+        for (int shift = 0; shift < Integer.SIZE; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[digit(from[i], shift)]++;
+            }
+            if (size == 0 || counts[digit(from[0], shift)] == size) {
+                //every entry has the same digit, so this pass changes nothing
+                continue;
+            }
+            //turn the counts into the positions where each digit starts
+            int position = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int count = counts[d];
+                counts[d] = position;
+                position += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int x = from[i];
+                int d = digit(x, shift);
+                to[counts[d]] = x;
+                counts[d]++;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != array) {
+            System.arraycopy(from, 0, array, 0, size);
+        }
+    }
+
+    /**
+     * Returns the digit of {@code x} at the given shift, treating the sign
+     * bit as the highest bit of an unsigned number that is flipped, so that
+     * the digits order negative numbers before the others.
+     *
+     * @param x
+     *            the number
+     * @param shift
+     *            the position of the lowest bit of the digit
+     * @return the digit
+     * @requires 0 <= shift < 32
+     * @ensures <pre>
+     * digit = [bits shift to shift + 7 of x with the sign bit flipped]
+     * </pre>
+     */
+    private static int digit(int x, int shift) {
+        return ((x ^ Integer.MIN_VALUE) >>> shift) & DIGIT_MASK;
+    }
+
+    /**
+     * Sifts the root of the subtree of {@code array} rooted at {@code top}
+     * down, bottom-up, to turn that whole subtree into a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 1, last)  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 2, last)
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, top, last)  and  perms(array, #array)  and
+     * [the entries outside the subtree are the same as in #array]
+     * </pre>
+     */
+    static void siftDown(int[] array, int top, int last) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        //as SortingMachine5a.siftDown: down along the smaller children, then up
+        int root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+        while (child < last) {
+            if (array[child + 1] < array[child]) {
+                child++;
+            }
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+        if (child == last) {
+            array[hole] = array[child];
+            hole = child;
+        }
+        while (hole > top && root < array[(hole - 1) / 2]) {
+            array[hole] = array[(hole - 1) / 2];
+            hole = (hole - 1) / 2;
+        }
+        array[hole] = root;
+    }
+
+    /**
+     * Sifts the entry of {@code array} at index {@code bottom} up to turn the
+     * entries through {@code bottom} into a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param bottom
+     *            the index of the entry to sift up
+     * @updates array
+     * @requires <pre>
+     * 0 <= bottom < |array|  and  SUBTREE_IS_HEAP(array, 0, bottom - 1)
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, 0, bottom)  and  perms(array, #array)  and
+     * [the entries after index bottom are the same as in #array]
+     * </pre>
+     */
+    static void siftUp(int[] array, int bottom) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= bottom : "Violation of: 0 <= bottom";
+        assert bottom < array.length : "Violation of: bottom < |array|";
+
+        int entry = array[bottom];
+        int hole = bottom;
+        while (hole > 0 && entry < array[(hole - 1) / 2]) {
+            array[hole] = array[(hole - 1) / 2];
+            hole = (hole - 1) / 2;
+        }
+        array[hole] = entry;
+    }
+
+    /**
+     * Checks if the subtree of {@code array} rooted at {@code top} is a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @return true if the subtree is a heap; false otherwise
+     * @requires 0 <= top  and  last < |array|
+     * @ensures isHeap = SUBTREE_IS_HEAP(array, top, last)
+     */
+    static boolean isHeap(int[] array, int top, int last) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        //every entry of the subtree after its root is no less than its parent
+        boolean isHeap = true;
+        long levelStart = top;
+        long levelEnd = top;
+        while (isHeap && 2 * levelStart + 1 <= last) {
+            levelStart = 2 * levelStart + 1;
+            levelEnd = Math.min(2 * levelEnd + 2, last);
+            for (long i = levelStart; isHeap && i <= levelEnd; i++) {
+                isHeap = array[(int) ((i - 1) / 2)] <= array[(int) i];
+            }
+        }
+        return isHeap;
+    }
+
+    /**
+     * Moves the keys to the start of {@code $this.keys}.
+     *
+     * @updates $this.keys, $this.size, $this.first
+     * @ensures <pre>
+     * $this.first = 0  and  $this.size = #$this.size - #$this.first  and
+     * $this.keys[0, $this.size) = #$this.keys[#$this.first, #$this.size)
+     * </pre>
+     */
+    private void compact() {
+        int count = this.size - this.first;
+        System.arraycopy(this.keys, this.first, this.keys, 0, count);
+        this.size = count;
+        this.first = 0;
+    }
+
+    /**
+     * Makes room for one more key at the end of {@code $this.keys}, as
+     * {@code SortingMachine5a} does.
+     *
+     * @updates $this.keys, $this.size, $this.first
+     * @ensures <pre>
+     * $this.size < |$this.keys|  and
+     * $this.keys[$this.first, $this.size) =
+     *   #$this.keys[#$this.first, #$this.size)
+     * </pre>
+     */
+    private void makeRoom() {
+        if (this.size == this.keys.length) {
+            if (this.first >= this.keys.length / 2) {
+                this.compact();
+            } else {
+                this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Checks that the convention holds for the current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.first : "Violation of: 0 <= $this.first";
+        assert this.first <= this.size : ""
+                + "Violation of: $this.first <= $this.size";
+        assert this.size <= this.keys.length : ""
+                + "Violation of: $this.size <= |$this.keys|";
+        assert this.keys.length > 0 : "Violation of: |$this.keys| > 0";
+        assert 0 <= this.radixSortThreshold : ""
+                + "Violation of: 0 <= $this.radixSortThreshold";
+        if (this.insertionMode) {
+            assert this.first == 0 && !this.sorted : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.first = 0  and  not $this.sorted";
+        } else if (this.sorted) {
+            for (int i = this.first + 1; i < this.size; i++) {
+                assert this.keys[i - 1] <= this.keys[i] : ""
+                        + "Violation of: if $this.sorted then"
+                        + " IS_SORTED($this.keys[$this.first, $this.size))";
+            }
+        } else {
+            assert this.first == 0 : ""
+                    + "Violation of: if not $this.insertionMode and"
+                    + " not $this.sorted then $this.first = 0";
+            assert isHeap(this.keys, 0, this.size - 1) : ""
+                    + "Violation of: if not $this.insertionMode and"
+                    + " not $this.sorted then"
+                    + " SUBTREE_IS_HEAP($this.keys, 0, $this.size - 1)";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation, which keeps the array of
+     * {@code this}, if it has one, so that it is reused.
+     *
+     * @ensures <pre>
+     * $this.insertionMode = true  and  $this.size = 0  and
+     * $this.first = 0  and  not $this.sorted
+     * </pre>
+     */
+    private void createNewRep() {
+        this.insertionMode = true;
+        if (this.keys == null) {
+            this.keys = new int[INITIAL_CAPACITY];
+        }
+        this.size = 0;
+        this.first = 0;
+        this.sorted = false;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor, for an ascending machine.
+     */
+    public IntSortingMachine() {
+        this(false, DEFAULT_RADIX_SORT_THRESHOLD);
+    }
+
+    /**
+     * Constructor from direction and radix sort threshold.
+     *
+     * @param descending
+     *            whether the entries are ordered descending
+     * @param radixSortThreshold
+     *            the number of entries from which the change to extraction
+     *            mode radix sorts them instead of building a heap;
+     *            {@code Integer.MAX_VALUE} always builds a heap
+     */
+    public IntSortingMachine(boolean descending, int radixSortThreshold) {
+        assert radixSortThreshold >= 0 : ""
+                + "Violation of: radixSortThreshold >= 0";
+        this.descending = descending;
+        this.radixSortThreshold = radixSortThreshold;
+        this.createNewRep();
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * Returns a new empty machine with the direction and threshold of
+     * {@code this}.
+     *
+     * @return the new machine
+     * @ensures <pre>
+     * newInstance = (true, [the direction of this], {})
+     * </pre>
+     */
+    public final IntSortingMachine newInstance() {
+        return new IntSortingMachine(this.descending, this.radixSortThreshold);
+    }
+
+    /**
+     * Resets {@code this} to an empty machine in insertion mode.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep();
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Sets {@code this} to the value of {@code source} and resets
+     * {@code source} to an empty machine in insertion mode.
+     *
+     * @param source
+     *            the machine whose value is transferred
+     * @replaces this
+     * @clears source
+     * @requires source /= this
+     * @ensures this = #source
+     */
+    public final void transferFrom(IntSortingMachine source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+
+        //the array of this goes to source to be reused there
+        int[] spare = this.keys;
+        this.descending = source.descending;
+        this.insertionMode = source.insertionMode;
+        this.keys = source.keys;
+        this.size = source.size;
+        this.first = source.first;
+        this.sorted = source.sorted;
+        this.radixSortThreshold = source.radixSortThreshold;
+        source.keys = spare;
+        source.createNewRep();
+        assert this.conventionHolds();
+        assert source.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to the contents of {@code this}, in either mode, as
+     * {@code SortingMachine5a.add} does.
+     *
+     * @param x
+     *            the entry to be added
+     * @updates this.contents
+     * @ensures this.contents = #this.contents union {x}
+     */
+    public final void add(int x) {
+        int key = x;
+        if (this.descending) {
+            key = ~x;
+        }
+        this.makeRoom();
+        this.keys[this.size] = key;
+        this.size++;
+        if (!this.insertionMode) {
+            if (this.sorted && this.size - this.first > 1
+                    && key < this.keys[this.size - 2]) {
+                //a sorted array is a heap, once it starts at index 0
+                this.compact();
+                this.sorted = false;
+            }
+            if (!this.sorted) {
+                siftUp(this.keys, this.size - 1);
+            }
+        }
+
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Changes the mode of {@code this} from insertion to extraction.
+     *
+     * @updates this.insertion_mode
+     * @requires this.insertion_mode
+     * @ensures not this.insertion_mode
+     */
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        if (this.size >= this.radixSortThreshold) {
+            radixSort(this.keys, this.size);
+            this.sorted = true;
+        } else {
+            for (int top = this.size / 2 - 1; top >= 0; top--) {
+                siftDown(this.keys, top, this.size - 1);
+            }
+        }
+
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes and returns the first entry of {@code this} in its order.
+     *
+     * @return the entry removed
+     * @updates this.contents
+     * @requires not this.insertion_mode  and  this.contents /= {}
+     * @ensures <pre>
+     * removeFirst is in #this.contents  and
+     * for all y in #this.contents
+     *   ([removeFirst comes no later than y in the order of this])  and
+     * this.contents = #this.contents \ {removeFirst}
+     * </pre>
+     */
+    public final int removeFirst() {
+        assert !this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        int key = this.keys[this.first];
+        if (this.sorted) {
+            this.first++;
+        } else {
+            this.size--;
+            this.keys[0] = this.keys[this.size];
+            if (this.size > 0) {
+                siftDown(this.keys, 0, this.size - 1);
+            }
+        }
+        int x = key;
+        if (this.descending) {
+            x = ~key;
+        }
+
+        assert this.conventionHolds();
+        return x;
+    }
+
+    /**
+     * Reports whether {@code this} is in insertion mode.
+     *
+     * @return true iff this is in insertion mode
+     * @ensures isInInsertionMode = this.insertion_mode
+     */
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    /**
+     * Reports whether {@code this} orders its entries descending.
+     *
+     * @return true iff the entries of this are ordered descending
+     * @ensures isDescending = [the direction of this is descending]
+     */
+    public final boolean isDescending() {
+        assert this.conventionHolds();
+        return this.descending;
+    }
+
+    /**
+     * Reports the number of entries in {@code this}.
+     *
+     * @return the number of entries in this
+     * @ensures size = |this.contents|
+     */
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size - this.first;
+    }
+
+}
@@ -0,0 +1,151 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times filling and draining a {@code SortingMachine5a<Integer>}, and an
+ * {@code IntSortingMachine} with the heap and with the radix sort, with
+ * random word frequencies in descending order, over growing numbers of
+ * entries, to show what boxing costs and where
+ * {@code IntSortingMachine.DEFAULT_RADIX_SORT_THRESHOLD} belongs.
+ *
+ * <p>
+ * By default the sizes go from 16 to 16,777,216 entries by factors of 4; the
+ * largest size can be given as the first argument. Each size is sorted
+ * several times, the smaller ones more often, and the best time is reported.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class IntSortingMachineBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private IntSortingMachineBenchmark() {
+    }
+
+    /**
+     * Smallest number of entries measured.
+     */
+    private static final int MIN_ENTRIES = 1 << 4;
+
+    /**
+     * Default largest number of entries measured.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 1 << 24;
+
+    /**
+     * Factor between two sizes measured.
+     */
+    private static final int STEP = 4;
+
+    /**
+     * Number of entries sorted, in all, for each size and machine, so that
+     * the small sizes are repeated enough to be timed.
+     */
+    private static final int ENTRIES_PER_SIZE = 1 << 23;
+
+    /**
+     * Largest frequency generated.
+     */
+    private static final int MAX_FREQUENCY = 100_000;
+
+    /**
+     * Fills a {@code SortingMachine5a} with {@code values} and drains it, and
+     * reports the time taken.
+     *
+     * @param values
+     *            the entries to sort
+     * @return nanoseconds taken
+     */
+    private static long timeBoxed(int[] values) {
+        Comparator<Integer> order = (x, y) -> Integer.compare(y, x);
+        long start = System.nanoTime();
+        SortingMachine5a<Integer> machine = new SortingMachine5a<>(order);
+        for (int x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        int previous = Integer.MAX_VALUE;
+        while (machine.size() > 0) {
+            int next = machine.removeFirst();
+            //check the order, which also keeps the sort from being optimized
+            if (next > previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Fills an {@code IntSortingMachine} with {@code values} and drains it,
+     * and reports the time taken.
+     *
+     * @param values
+     *            the entries to sort
+     * @param radixSortThreshold
+     *            the threshold of the machine
+     * @return nanoseconds taken
+     */
+    private static long timePrimitive(int[] values, int radixSortThreshold) {
+        long start = System.nanoTime();
+        IntSortingMachine machine = new IntSortingMachine(true,
+                radixSortThreshold);
+        for (int x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        int previous = Integer.MAX_VALUE;
+        while (machine.size() > 0) {
+            int next = machine.removeFirst();
+            if (next > previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the largest number of entries
+     */
+    public static void main(String[] args) {
+        int maxEntries = DEFAULT_MAX_ENTRIES;
+        if (args.length >= 1) {
+            maxEntries = Integer.parseInt(args[0]);
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("entries\tns/entry boxed\tns/entry int heap"
+                + "\tns/entry int radix");
+        Random random = new Random(1);
+        for (long n = MIN_ENTRIES; n <= maxEntries; n *= STEP) {
+            int[] values = new int[(int) n];
+            for (int i = 0; i < n; i++) {
+                //most words are rare, as in real text
+                values[i] = 1 + random.nextInt(1 + random.nextInt(
+                        1 + random.nextInt(MAX_FREQUENCY)));
+            }
+            long runs = Math.max(1, ENTRIES_PER_SIZE / n);
+            long boxed = Long.MAX_VALUE;
+            long heap = Long.MAX_VALUE;
+            long radix = Long.MAX_VALUE;
+            for (long run = 0; run < runs; run++) {
+                boxed = Math.min(boxed, timeBoxed(values));
+                heap = Math.min(heap, timePrimitive(values, Integer.MAX_VALUE));
+                radix = Math.min(radix, timePrimitive(values, 0));
+            }
+            out.println(n + "\t" + String.format("%.1f", (double) boxed / n)
+                    + "\t" + String.format("%.1f", (double) heap / n) + "\t"
+                    + String.format("%.1f", (double) radix / n));
+        }
+        out.close();
+    }
+
+}
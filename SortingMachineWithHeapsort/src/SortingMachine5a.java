@@ -1,15 +1,48 @@
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import components.queue.Queue;
-import components.queue.Queue1L;
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachineSecondary;
 
 /**
- * {@code SortingMachine} represented as a {@code Queue} and an array (using an
- * embedding of heap sort), with implementations of primary methods.
+ * {@code SortingMachine} represented as a growable array (using an embedding
+ * of heap sort), with implementations of primary methods. Entries are appended
+ * to the array in insertion mode and the array is heapified in place on the
+ * change to extraction mode; the array is kept across {@code clear}, so a
+ * machine that is reused does not allocate again.
+ *
+ * <p>
+ * From a given number of entries on (by default
+ * {@value #DEFAULT_PARALLEL_SORT_THRESHOLD}), the change to extraction mode
+ * instead sorts the array with a parallel merge sort on the common fork-join
+ * pool, after which {@code removeFirst} just advances a cursor. That pays off
+ * when the machine is drained completely, as it usually is; a caller that
+ * takes only a few entries from a large machine should give a larger
+ * threshold.
+ *
+ * <p>
+ * The heap is d-ary, with {@code d} = {@value #DEFAULT_ARITY} unless the
+ * constructor is given another arity: a larger {@code d} makes the heap
+ * shallower, so {@code removeFirst} moves entries fewer times, at the cost of
+ * more comparisons per level, among children that share one or two cache
+ * lines.
+ *
+ * <p>
+ * {@code add} is also allowed in extraction mode, where it sifts the entry up
+ * into the heap, so the machine can serve as a priority queue that takes new
+ * entries while it is drained, without being rebuilt.
+ *
+ * <p>
+ * {@code add} also counts the runs of the entries, the stretches in which
+ * each entry comes no earlier than the one before it or strictly earlier
+ * than it. When they are few, {@value #MIN_AVERAGE_RUN_LENGTH} entries long
+ * on average or more, as they are for input that is already nearly sorted or
+ * reversed, the change to extraction mode sorts the array with
+ * {@code Arrays.sort}, a TimSort that merges those runs, instead; that takes
+ * O(n) comparisons on sorted input. Random input has runs of about 2 entries,
+ * so it still gets a heap.
  *
  * @param <T>
  *            type of {@code SortingMachine} entries
@@ -23,41 +56,69 @@ import components.sortingmachine.SortingMachineSecondary;
  *
  * SUBTREE_IS_HEAP (
  *   a: string of T,
+ *   d: integer,
  *   start: integer,
  *   stop: integer,
  *   r: binary relation on T
  *  ) : boolean is
- *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
- *   at index start and only through entry stop of a satisfies the heap
- *   ordering property according to the relation r]
+ *  [the subtree of a (when a is interpreted as a complete d-ary tree, where
+ *   the children of index i are at indices d * i + 1 through d * i + d)
+ *   rooted at index start and only through entry stop of a satisfies the
+ *   heap ordering property according to the relation r]
  *
  * SUBTREE_ARRAY_ENTRIES (
  *   a: string of T,
+ *   d: integer,
  *   start: integer,
  *   stop: integer
  *  ) : finite multiset of T is
  *  [the multiset of entries in a that belong to the subtree of a
- *   (when a is interpreted as a complete binary tree) rooted at
+ *   (when a is interpreted as a complete d-ary tree) rooted at
  *   index start and only through entry stop]
+ *
+ * IS_SORTED (
+ *   a: string of T,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i < |a|)
+ *    (r(a[i-1], a[i]))
+ *
+ * RUNS (
+ *   a: string of T,
+ *   r: binary relation on T
+ *  ) : integer is
+ *  [the number of runs a is cut into when, from its start, each run is made
+ *   as long as possible among those where r(a[i-1], a[i]) for every entry
+ *   after the first, and those where not r(a[i], a[i-1]) for every entry
+ *   after the first, and the kind of run is chosen by its first 2 entries]
  * </pre>
  * @convention <pre>
  * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.first <= $this.heapSize <= |$this.heap|  and
+ * |$this.heap| > 0  and  0 <= $this.parallelSortThreshold  and
+ * 2 <= $this.arity  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.heap|)
+ *   ([entry at position i in $this.heap is not null]
+ *      iff  $this.first <= i < $this.heapSize)  and
  * if $this.insertionMode then
- *   $this.heapSize = 0
- * else
- *   $this.entries = <>  and
- *   for all i: integer
- *       where (0 <= i  and  i < |$this.heap|)
- *     ([entry at position i in $this.heap is not null])  and
- *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *   $this.first = 0  and  not $this.sorted  and
+ *   $this.runCount = RUNS($this.heap[0, $this.heapSize),
  *     [relation computed by $this.machineOrder.compare method])  and
- *   0 <= $this.heapSize <= |$this.heap|
+ *   [$this.runDirection is 1 if the last run has 2 or more entries and
+ *    they are not decreasing, -1 if they are decreasing, and 0 otherwise]
+ * else if $this.sorted then
+ *   IS_SORTED($this.heap[$this.first, $this.heapSize),
+ *     [relation computed by $this.machineOrder.compare method])
+ * else
+ *   $this.first = 0  and
+ *   SUBTREE_IS_HEAP($this.heap, $this.arity, 0, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
  * </pre>
  * @correspondence <pre>
- * if $this.insertionMode then
- *   this = (true, $this.machineOrder, multiset_entries($this.entries))
- * else
- *   this = (false, $this.machineOrder, multiset_entries($this.heap[0, $this.heapSize)))
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[$this.first, $this.heapSize)))
  * </pre>
  *
  * @author Kierra Smith
@@ -69,6 +130,34 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Length of the array of a new machine.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Default number of entries from which the change to extraction mode
+     * sorts in parallel instead of building a heap.
+     */
+    public static final int DEFAULT_PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    /**
+     * Smallest average length of the runs of the entries for which the
+     * change to extraction mode merges them instead of building a heap.
+     */
+    public static final int MIN_AVERAGE_RUN_LENGTH = 16;
+
+    /**
+     * Number of children of each node of a new machine's heap.
+     */
+    public static final int DEFAULT_ARITY = 2;
+
+    /**
+     * Number of children of each node of the heaps sifted by the binary
+     * overloads of {@code siftDown}, {@code siftUp}, and {@code isHeap}.
+     */
+    private static final int BINARY = 2;
+
     /**
      * Order.
      */
@@ -80,19 +169,48 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private boolean insertionMode;
 
     /**
-     * Entries.
+     * Entries, in the order added in insertion mode and as a heap in
+     * extraction mode.
      */
-    private Queue<T> entries;
+    private T[] heap;
 
     /**
-     * Heap.
+     * Position just past the last entry.
      */
-    private T[] heap;
+    private int heapSize;
 
     /**
-     * Heap size.
+     * Position of the first entry, which is 0 unless the entries have been
+     * sorted.
      */
-    private int heapSize;
+    private int first;
+
+    /**
+     * Whether the entries have been sorted rather than made into a heap.
+     */
+    private boolean sorted;
+
+    /**
+     * Number of entries from which the change to extraction mode sorts in
+     * parallel.
+     */
+    private int parallelSortThreshold;
+
+    /**
+     * Number of runs of the entries added in insertion mode.
+     */
+    private int runCount;
+
+    /**
+     * Direction of the last run: 1 if ascending, -1 if descending, and 0 if
+     * it has a single entry so far.
+     */
+    private int runDirection;
+
+    /**
+     * Number of children of each node of the heap.
+     */
+    private int arity;
 
     /**
      * Exchanges entries at indices {@code i} and {@code j} of {@code array}.
@@ -109,7 +227,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @requires 0 <= i < |array| and 0 <= j < |array|
      * @ensures array = [#array with entries at indices i and j exchanged]
      */
-    private static <T> void exchangeEntries(T[] array, int i, int j) {
+    static <T> void exchangeEntries(T[] array, int i, int j) {
         assert array != null : "Violation of: array is not null";
         assert 0 <= i : "Violation of: 0 <= i";
         assert i < array.length : "Violation of: i < |array|";
@@ -143,184 +261,271 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @requires <pre>
      * 0 <= top  and  last < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
+     *     where (0 <= i  and  i <= last)
      *   ([entry at position i in array is not null])  and
      * [subtree rooted at {@code top} is a complete binary tree]  and
-     * SUBTREE_IS_HEAP(array, 2 * top + 1, last,
+     * SUBTREE_IS_HEAP(array, 2, 2 * top + 1, last,
      *     [relation computed by order.compare method])  and
-     * SUBTREE_IS_HEAP(array, 2 * top + 2, last,
+     * SUBTREE_IS_HEAP(array, 2, 2 * top + 2, last,
      *     [relation computed by order.compare method])  and
      * IS_TOTAL_PREORDER([relation computed by order.compare method])
      * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(array, top, last,
+     * SUBTREE_IS_HEAP(array, 2, top, last,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * SUBTREE_ARRAY_ENTRIES(array, 2, top, last) =
+     *  SUBTREE_ARRAY_ENTRIES(#array, 2, top, last)  and
+     * [the other entries in array are the same as in #array]
+     * </pre>
+     */
+    static <T> void siftDown(T[] array, int top, int last,
+            Comparator<T> order) {
+        siftDown(array, BINARY, top, last, order);
+    }
+
+    /**
+     * Given an array that represents a complete d-ary tree and an index
+     * referring to the root of a subtree that would be a heap except for its
+     * root, sifts the root down to turn that whole subtree into a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each node
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 2 <= d  and  0 <= top  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * for all c: integer
+     *     where (1 <= c  and  c <= d)
+     *   (SUBTREE_IS_HEAP(array, d, d * top + c, last,
+     *      [relation computed by order.compare method]))  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, d, top, last,
      *     [relation computed by order.compare method])  and
      * perms(array, #array)  and
-     * SUBTREE_ARRAY_ENTRIES(array, top, last) =
-     *  SUBTREE_ARRAY_ENTRIES(#array, top, last)  and
+     * SUBTREE_ARRAY_ENTRIES(array, d, top, last) =
+     *  SUBTREE_ARRAY_ENTRIES(#array, d, top, last)  and
      * [the other entries in array are the same as in #array]
      * </pre>
      */
-    private static <T> void siftDown(T[] array, int top, int last,
+    static <T> void siftDown(T[] array, int d, int top, int last,
             Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
+        assert 2 <= d : "Violation of: 2 <= d";
         assert 0 <= top : "Violation of: 0 <= top";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
+        for (int i = 0; i <= last; i++) {
             assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
+                    + "Violation of: array[0, last] entries are not null";
+        }
+        for (int c = 1; c <= d; c++) {
+            assert isHeap(array, d, d * top + c, last, order) : ""
+                    + "Violation of: SUBTREE_IS_HEAP(array, d, d * top + c,"
+                    + " last, [relation computed by order.compare method])";
         }
-        assert isHeap(array, 2 * top + 1, last, order) : ""
-                + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 1, last,"
-                + " [relation computed by order.compare method])";
-        assert isHeap(array, 2 * top + 2, last, order) : ""
-                + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 2, last,"
-                + " [relation computed by order.compare method])";
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Impractical to check last requires clause.
          */
 
-        //recursive base case
-        if (array.length != 0) {
-            //formulas for right and left index
-            int leftIndex = 2 * top + 1;
-            int rightIndex = leftIndex + 1;
-            //if there is a right child that means there must be a left child
-            //if right child is less than or equal to last
-            if (rightIndex <= last) {
-                //then compare val in left child compared to right child val
-                //also compare root and left child val
-                if (order.compare(array[leftIndex], array[rightIndex]) < 0
-                        && order.compare(array[top], array[leftIndex]) > 0) {
-                    //if true swap the top and left entries and siftdown
-                    exchangeEntries(array, top, leftIndex);
-                    siftDown(array, leftIndex, last, order);
-                    //if thats not true compare the val in left to val in right again
-                    // but this time also compare root to right child
-                } else if (order.compare(array[leftIndex],
-                        array[rightIndex]) > 0
-                        && order.compare(array[top], array[rightIndex]) > 0) {
-                    //if true swap top and right entries and siftdown
-                    exchangeEntries(array, top, rightIndex);
-                    siftDown(array, rightIndex, last, order);
-                }
-                //if left index is less than last node
-            } else if (leftIndex <= last) {
-                if (order.compare(array[top], array[leftIndex]) < 0) {
-                    exchangeEntries(array, top, leftIndex);
-                    siftDown(array, leftIndex, last, order);
+        /*
+         * Bottom-up sift (Wegener): move the hole left by the root down to a
+         * leaf along the path of children that come first, at d - 1
+         * comparisons per level, then climb back up to where the root
+         * belongs; it rarely climbs far, since the root of a heap being
+         * sorted was a leaf. With d > 2 there are fewer levels, and the
+         * children compared at each level share one or two cache lines
+         */
+        T root = array[top];
+        int hole = top;
+        //long arithmetic, since d * hole may overflow for a large array
+        long firstChild = (long) d * hole + 1;
+        while (firstChild <= last) {
+            int child = (int) firstChild;
+            int stop = (int) Math.min(last, firstChild + d - 1);
+            for (int sibling = child + 1; sibling <= stop; sibling++) {
+                if (order.compare(array[sibling], array[child]) < 0) {
+                    child = sibling;
                 }
             }
+            array[hole] = array[child];
+            hole = child;
+            firstChild = (long) d * hole + 1;
+        }
+        while (hole > top
+                && order.compare(root, array[(hole - 1) / d]) < 0) {
+            array[hole] = array[(hole - 1) / d];
+            hole = (hole - 1) / d;
         }
+        array[hole] = root;
     }
 
     /**
-     * Heapifies the subtree of the given array rooted at the given {@code top}.
+     * Given an array that represents a complete binary tree whose entries
+     * through {@code bottom - 1} form a heap, sifts the entry at index
+     * {@code bottom} up to turn the entries through {@code bottom} into a
+     * heap.
      *
      * @param <T>
      *            type of array entries
      * @param array
      *            the complete binary tree
-     * @param top
-     *            the index of the root of the "subtree" to heapify
+     * @param bottom
+     *            the index of the entry to sift up
      * @param order
-     *            the total preorder for sorting
+     *            total preorder for sorting
      * @updates array
      * @requires <pre>
-     * 0 <= top  and
+     * 0 <= bottom < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
+     *     where (0 <= i  and  i <= bottom)
      *   ([entry at position i in array is not null])  and
-     * [subtree rooted at {@code top} is a complete binary tree]  and
+     * SUBTREE_IS_HEAP(array, 2, 0, bottom - 1,
+     *     [relation computed by order.compare method])  and
      * IS_TOTAL_PREORDER([relation computed by order.compare method])
      * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(array, top, |array| - 1,
+     * SUBTREE_IS_HEAP(array, 2, 0, bottom,
      *     [relation computed by order.compare method])  and
-     * perms(array, #array)
+     * perms(array, #array)  and
+     * [the entries after index bottom are the same as in #array]
      * </pre>
      */
-    private static <T> void heapify(T[] array, int top, Comparator<T> order) {
+    static <T> void siftUp(T[] array, int bottom, Comparator<T> order) {
+        siftUp(array, BINARY, bottom, order);
+    }
+
+    /**
+     * Given an array that represents a complete d-ary tree whose entries
+     * through {@code bottom - 1} form a heap, sifts the entry at index
+     * {@code bottom} up to turn the entries through {@code bottom} into a
+     * heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each node
+     * @param bottom
+     *            the index of the entry to sift up
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 2 <= d  and  0 <= bottom < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= bottom)
+     *   ([entry at position i in array is not null])  and
+     * SUBTREE_IS_HEAP(array, d, 0, bottom - 1,
+     *     [relation computed by order.compare method])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, d, 0, bottom,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries after index bottom are the same as in #array]
+     * </pre>
+     */
+    static <T> void siftUp(T[] array, int d, int bottom,
+            Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
-        assert 0 <= top : "Violation of: 0 <= top";
-        for (int i = 0; i < array.length; i++) {
+        assert 2 <= d : "Violation of: 2 <= d";
+        assert 0 <= bottom : "Violation of: 0 <= bottom";
+        assert bottom < array.length : "Violation of: bottom < |array|";
+        for (int i = 0; i <= bottom; i++) {
             assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
+                    + "Violation of: array[0, bottom] entries are not null";
         }
+        assert isHeap(array, d, 0, bottom - 1, order) : ""
+                + "Violation of: SUBTREE_IS_HEAP(array, d, 0, bottom - 1,"
+                + " [relation computed by order.compare method])";
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Impractical to check last requires clause.
          */
-        //base case for recursive call
-        if (array.length != 0) {
-            //formula for right and left index
-            int left = 2 * top + 1;
-            int right = left + 1;
-            //if right index is less than the array length call heapify
-            if (right < array.length) {
-                heapify(array, right, order);
-            }
-            //if left index is less than array length call heapify
-            if (left < array.length) {
-                heapify(array, left, order);
-            }
-            //siftdown after heapify is called
-            siftDown(array, top, array.length - 1, order);
-        }
 
+        //move the hole up past every parent that comes after the new entry
+        T entry = array[bottom];
+        int hole = bottom;
+        while (hole > 0 && order.compare(entry, array[(hole - 1) / d]) < 0) {
+            array[hole] = array[(hole - 1) / d];
+            hole = (hole - 1) / d;
+        }
+        array[hole] = entry;
     }
 
     /**
-     * Constructs and returns an array representing a heap with the entries from
-     * the given {@code Queue}.
+     * Heapifies the first {@code size} entries of the given array as a d-ary
+     * tree, bottom-up (Floyd): sifts down the root of each subtree, from the
+     * last one with children back to the root of the whole tree, so each is
+     * sifted once its subtrees are heaps.
      *
      * @param <T>
-     *            type of {@code Queue} and array entries
-     * @param q
-     *            the {@code Queue} with the entries for the heap
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each node
+     * @param size
+     *            the number of entries in the tree
      * @param order
      *            the total preorder for sorting
-     * @return the array representation of a heap
-     * @clears q
-     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method])
-     * @ensures <pre>
-     * SUBTREE_IS_HEAP(buildHeap, 0, |buildHeap| - 1)  and
-     * perms(buildHeap, #q)  and
+     * @updates array
+     * @requires <pre>
+     * 2 <= d  and  0 <= size <= |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |buildHeap|)
-     *   ([entry at position i in buildHeap is not null])  and
+     *     where (0 <= i  and  i < size)
+     *   ([entry at position i in array is not null])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, d, 0, size - 1,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries from index size on are the same as in #array]
      * </pre>
      */
-    @SuppressWarnings("unchecked")
-    private static <T> T[] buildHeap(Queue<T> q, Comparator<T> order) {
-        assert q != null : "Violation of: q is not null";
+    private static <T> void heapify(T[] array, int d, int size,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
+        assert 2 <= d : "Violation of: 2 <= d";
+        assert 0 <= size : "Violation of: 0 <= size";
+        assert size <= array.length : "Violation of: size <= |array|";
+        for (int i = 0; i < size; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: array[0, size) entries are not null";
+        }
         /*
-         * Impractical to check the requires clause.
-         */
-        /*
-         * With "new T[...]" in place of "new Object[...]" it does not compile;
-         * as shown, it results in a warning about an unchecked cast, though it
-         * cannot fail.
+         * Impractical to check last requires clause.
          */
-        T[] heap = (T[]) (new Object[q.length()]);
-        //putting each value in queue in an array called heap
-        for (int i = 0; i < heap.length; i++) {
-            heap[i] = q.dequeue();
+        //the entries after the parent of the last one are leaves
+        if (size > 1) {
+            for (int top = (size - 2) / d; top >= 0; top--) {
+                siftDown(array, d, top, size - 1, order);
+            }
         }
-        //call heapify and return heap
-        heapify(heap, 0, order);
-        return heap;
     }
 
     /**
-     * Checks if the subtree of the given {@code array} rooted at the given
-     * {@code top} is a heap.
+     * Checks if the subtree of the given {@code array}, as a binary tree,
+     * rooted at the given {@code top} is a heap.
      *
      * @param <T>
      *            type of array entries
@@ -337,42 +542,206 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @requires <pre>
      * 0 <= top  and  last < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
-     *   ([entry at position i in array is not null])  and
-     * [subtree rooted at {@code top} is a complete binary tree]
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])
+     * </pre>
+     * @ensures <pre>
+     * isHeap = SUBTREE_IS_HEAP(array, 2, top, last,
+     *     [relation computed by order.compare method])
+     * </pre>
+     */
+    static <T> boolean isHeap(T[] array, int top, int last,
+            Comparator<T> order) {
+        return isHeap(array, BINARY, top, last, order);
+    }
+
+    /**
+     * Checks if the subtree of the given {@code array}, as a d-ary tree,
+     * rooted at the given {@code top} is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each node
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if the subtree of the given {@code array} rooted at the
+     *         given {@code top} is a heap; false otherwise
+     * @requires <pre>
+     * 2 <= d  and  0 <= top  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])
      * </pre>
      * @ensures <pre>
-     * isHeap = SUBTREE_IS_HEAP(array, top, last,
+     * isHeap = SUBTREE_IS_HEAP(array, d, top, last,
      *     [relation computed by order.compare method])
      * </pre>
      */
-    private static <T> boolean isHeap(T[] array, int top, int last,
+    static <T> boolean isHeap(T[] array, int d, int top, int last,
             Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
+        assert 2 <= d : "Violation of: 2 <= d";
         assert 0 <= top : "Violation of: 0 <= top";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
+        for (int i = 0; i <= last; i++) {
             assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
+                    + "Violation of: array[0, last] entries are not null";
         }
+
         /*
-         * No need to check the other requires clause, because it must be true
-         * when using the Array representation for a complete binary tree.
+         * Every entry of the subtree after its root must not come before its
+         * parent; the entries of the subtree at each depth form one range
          */
-        int left = 2 * top + 1;
         boolean isHeap = true;
-        if (left <= last) {
-            isHeap = (order.compare(array[top], array[left]) <= 0)
-                    && isHeap(array, left, last, order);
-            int right = left + 1;
-            if (isHeap && (right <= last)) {
-                isHeap = (order.compare(array[top], array[right]) <= 0)
-                        && isHeap(array, right, last, order);
+        long levelStart = top;
+        long levelEnd = top;
+        while (isHeap && levelStart * d + 1 <= last) {
+            long childStart = levelStart * d + 1;
+            long childEnd = Math.min(last, levelEnd * d + d);
+            for (long c = childStart; isHeap && c <= childEnd; c++) {
+                isHeap = order.compare(array[(int) ((c - 1) / d)],
+                        array[(int) c]) <= 0;
             }
+            levelStart = childStart;
+            levelEnd = childEnd;
         }
         return isHeap;
     }
 
+    /**
+     * Reports the number of runs of the first {@code size} entries of the
+     * given array.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the array
+     * @param size
+     *            the number of entries
+     * @param order
+     *            total preorder for sorting
+     * @return the number of runs
+     * @requires <pre>
+     * 0 <= size <= |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < size)
+     *   ([entry at position i in array is not null])
+     * </pre>
+     * @ensures <pre>
+     * countRuns = RUNS(array[0, size),
+     *     [relation computed by order.compare method])
+     * </pre>
+     */
+    private static <T> int countRuns(T[] array, int size,
+            Comparator<T> order) {
+        int runs = 0;
+        int i = 0;
+        while (i < size) {
+            runs++;
+            i++;
+            if (i < size) {
+                //the first 2 entries of a run decide its direction
+                boolean descending = order.compare(array[i],
+                        array[i - 1]) < 0;
+                i++;
+                while (i < size && (order.compare(array[i],
+                        array[i - 1]) < 0) == descending) {
+                    i++;
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Updates the count of runs for the entry just added at the end of
+     * {@code $this.heap} in insertion mode, at one comparison per entry.
+     *
+     * @updates $this.runCount, $this.runDirection
+     * @requires <pre>
+     * $this.insertionMode  and  $this.heapSize > 0  and
+     * $this.runCount = RUNS($this.heap[0, $this.heapSize - 1),
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     * @ensures <pre>
+     * $this.runCount = RUNS($this.heap[0, $this.heapSize),
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private void extendRuns() {
+        if (this.heapSize == 1) {
+            this.runCount = 1;
+            this.runDirection = 0;
+        } else {
+            boolean descending = this.machineOrder.compare(
+                    this.heap[this.heapSize - 1],
+                    this.heap[this.heapSize - 2]) < 0;
+            int direction = 1;
+            if (descending) {
+                direction = -1;
+            }
+            if (this.runDirection == 0) {
+                this.runDirection = direction;
+            } else if (this.runDirection != direction) {
+                //the entry starts a new run
+                this.runCount++;
+                this.runDirection = 0;
+            }
+        }
+    }
+
+    /**
+     * Moves the entries of {@code this} to the start of {@code $this.heap}.
+     *
+     * @updates $this.heap, $this.heapSize, $this.first
+     * @ensures <pre>
+     * $this.first = 0  and  $this.heapSize = #$this.heapSize - #$this.first
+     *  and
+     * $this.heap[0, $this.heapSize) =
+     *   #$this.heap[#$this.first, #$this.heapSize)  and
+     * [the other entries of $this.heap are null]
+     * </pre>
+     */
+    private void compact() {
+        int size = this.heapSize - this.first;
+        System.arraycopy(this.heap, this.first, this.heap, 0, size);
+        Arrays.fill(this.heap, Math.max(size, this.first), this.heapSize,
+                null);
+        this.heapSize = size;
+        this.first = 0;
+    }
+
+    /**
+     * Makes room for one more entry at the end of {@code $this.heap}, by
+     * moving the entries to its start if the sorted entries already removed
+     * take at least half of it, and by doubling its length otherwise, so
+     * either costs O(1) per entry.
+     *
+     * @updates $this.heap, $this.heapSize, $this.first
+     * @ensures <pre>
+     * $this.heapSize < |$this.heap|  and
+     * $this.heap[$this.first, $this.heapSize) =
+     *   #$this.heap[#$this.first, #$this.heapSize)
+     * </pre>
+     */
+    private void makeRoom() {
+        if (this.heapSize == this.heap.length) {
+            if (this.first >= this.heap.length / 2) {
+                this.compact();
+            } else {
+                //doubling keeps the cost of copying to O(1) per entry
+                this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+            }
+        }
+    }
+
     /**
      * Checks that the part of the convention repeated below holds for the
      * current representation.
@@ -380,47 +749,80 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @return true if the convention holds (or if assertion checking is off);
      *         otherwise reports a violated assertion
      * @convention <pre>
+     * 0 <= $this.first <= $this.heapSize <= |$this.heap|  and
+     * |$this.heap| > 0  and  0 <= $this.parallelSortThreshold  and
+     * 2 <= $this.arity  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |$this.heap|)
+     *   ([entry at position i in $this.heap is not null]
+     *      iff  $this.first <= i < $this.heapSize)  and
      * if $this.insertionMode then
-     *   $this.heapSize = 0
+     *   $this.first = 0  and  not $this.sorted  and
+     *   $this.runCount = RUNS($this.heap[0, $this.heapSize),
+     *     [relation computed by $this.machineOrder.compare method])
+     * else if $this.sorted then
+     *   IS_SORTED($this.heap[$this.first, $this.heapSize),
+     *     [relation computed by $this.machineOrder.compare method])
      * else
-     *   $this.entries = <>  and
-     *   for all i: integer
-     *       where (0 <= i  and  i < |$this.heap|)
-     *     ([entry at position i in $this.heap is not null])  and
-     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
-     *     [relation computed by $this.machineOrder.compare method])  and
-     *   0 <= $this.heapSize <= |$this.heap|
+     *   $this.first = 0  and
+     *   SUBTREE_IS_HEAP($this.heap, $this.arity, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
      * </pre>
      */
     private boolean conventionHolds() {
+        assert 0 <= this.first : "Violation of: 0 <= $this.first";
+        assert this.first <= this.heapSize : ""
+                + "Violation of: $this.first <= $this.heapSize";
+        assert this.heapSize <= this.heap.length : ""
+                + "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length > 0 : "Violation of: |$this.heap| > 0";
+        assert 0 <= this.parallelSortThreshold : ""
+                + "Violation of: 0 <= $this.parallelSortThreshold";
+        assert 2 <= this.arity : "Violation of: 2 <= $this.arity";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (this.first <= i
+                    && i < this.heapSize) : ""
+                            + "Violation of: [entry at position i in"
+                            + " $this.heap is not null] iff"
+                            + " $this.first <= i < $this.heapSize";
+        }
         if (this.insertionMode) {
-            assert this.heapSize == 0 : ""
-                    + "Violation of: if $this.insertionMode then $this.heapSize = 0";
-        } else {
-            assert this.entries.length() == 0 : ""
-                    + "Violation of: if not $this.insertionMode then $this.entries = <>";
-            assert 0 <= this.heapSize : ""
-                    + "Violation of: if not $this.insertionMode then 0 <= $this.heapSize";
-            assert this.heapSize <= this.heap.length : ""
-                    + "Violation of: if not $this.insertionMode then"
-                    + " $this.heapSize <= |$this.heap|";
-            for (int i = 0; i < this.heap.length; i++) {
-                assert this.heap[i] != null : ""
-                        + "Violation of: if not $this.insertionMode then"
-                        + " all entries in $this.heap are not null";
+            assert this.first == 0 && !this.sorted : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.first = 0  and  not $this.sorted";
+            assert this.runCount == countRuns(this.heap, this.heapSize,
+                    this.machineOrder) : ""
+                            + "Violation of: if $this.insertionMode then"
+                            + " $this.runCount = RUNS($this.heap[0,"
+                            + " $this.heapSize), [relation computed by"
+                            + " $this.machineOrder.compare method])";
+        } else if (this.sorted) {
+            for (int i = this.first + 1; i < this.heapSize; i++) {
+                assert this.machineOrder.compare(this.heap[i - 1],
+                        this.heap[i]) <= 0 : ""
+                                + "Violation of: if $this.sorted then"
+                                + " IS_SORTED($this.heap[$this.first,"
+                                + " $this.heapSize), [relation computed by"
+                                + " $this.machineOrder.compare method])";
             }
-            assert isHeap(this.heap, 0, this.heapSize - 1,
+        } else {
+            assert this.first == 0 : ""
+                    + "Violation of: if not $this.insertionMode and"
+                    + " not $this.sorted then $this.first = 0";
+            assert isHeap(this.heap, this.arity, 0, this.heapSize - 1,
                     this.machineOrder) : ""
-                            + "Violation of: if not $this.insertionMode then"
-                            + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
-                            + " [relation computed by $this.machineOrder.compare"
-                            + " method])";
+                            + "Violation of: if not $this.insertionMode and"
+                            + " not $this.sorted then SUBTREE_IS_HEAP("
+                            + "$this.heap, $this.arity, 0, $this.heapSize - 1,"
+                            + " [relation computed by"
+                            + " $this.machineOrder.compare method])";
         }
         return true;
     }
 
     /**
-     * Creator of initial representation.
+     * Creator of initial representation, which keeps the array of
+     * {@code this}, if it has one, so that it is reused.
      *
      * @param order
      *            total preorder for sorting
@@ -428,15 +830,31 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @ensures <pre>
      * $this.insertionMode = true  and
      * $this.machineOrder = order  and
-     * $this.entries = <>  and
-     * $this.heapSize = 0
+     * $this.heapSize = 0  and  $this.first = 0  and  not $this.sorted  and
+     * $this.runCount = 0  and  $this.runDirection = 0  and
+     * if #$this.heap /= null then |$this.heap| = |#$this.heap|
      * </pre>
      */
+    @SuppressWarnings("unchecked")
     private void createNewRep(Comparator<T> order) {
         this.insertionMode = true;
         this.machineOrder = order;
-        this.entries = new Queue1L<T>();
+        if (this.heap == null) {
+            /*
+             * With "new T[...]" in place of "new Object[...]" it does not
+             * compile; as shown, it results in a warning about an unchecked
+             * cast, though it cannot fail.
+             */
+            this.heap = (T[]) new Object[INITIAL_CAPACITY];
+        } else {
+            //drop the references to the old entries so they can be collected
+            Arrays.fill(this.heap, this.first, this.heapSize, null);
+        }
         this.heapSize = 0;
+        this.first = 0;
+        this.sorted = false;
+        this.runCount = 0;
+        this.runDirection = 0;
     }
 
     /*
@@ -450,6 +868,46 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *            total preorder for sorting
      */
     public SortingMachine5a(Comparator<T> order) {
+        this(order, DEFAULT_PARALLEL_SORT_THRESHOLD);
+    }
+
+    /**
+     * Constructor from order and parallel sort threshold.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param parallelSortThreshold
+     *            the number of entries from which the change to extraction
+     *            mode sorts them in parallel instead of building a heap;
+     *            {@code Integer.MAX_VALUE} never sorts in parallel, though
+     *            entries in long runs are still merged by a sequential sort
+     *            (see {@link #MIN_AVERAGE_RUN_LENGTH})
+     */
+    public SortingMachine5a(Comparator<T> order, int parallelSortThreshold) {
+        this(order, parallelSortThreshold, DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructor from order, parallel sort threshold, and arity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param parallelSortThreshold
+     *            the number of entries from which the change to extraction
+     *            mode sorts them in parallel instead of building a heap;
+     *            {@code Integer.MAX_VALUE} never sorts in parallel, though
+     *            entries in long runs are still merged by a sequential sort
+     *            (see {@link #MIN_AVERAGE_RUN_LENGTH})
+     * @param d
+     *            the number of children of each node of the heap
+     */
+    public SortingMachine5a(Comparator<T> order, int parallelSortThreshold,
+            int d) {
+        assert parallelSortThreshold >= 0 : ""
+                + "Violation of: parallelSortThreshold >= 0";
+        assert d >= 2 : "Violation of: d >= 2";
+        this.parallelSortThreshold = parallelSortThreshold;
+        this.arity = d;
         this.createNewRep(order);
         assert this.conventionHolds();
     }
@@ -462,8 +920,10 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final SortingMachine<T> newInstance() {
         try {
-            return this.getClass().getConstructor(Comparator.class)
-                    .newInstance(this.machineOrder);
+            return this.getClass()
+                    .getConstructor(Comparator.class, int.class, int.class)
+                    .newInstance(this.machineOrder,
+                            this.parallelSortThreshold, this.arity);
         } catch (ReflectiveOperationException e) {
             throw new AssertionError(
                     "Cannot construct object of type " + this.getClass());
@@ -489,11 +949,22 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * compiled.
          */
         SortingMachine5a<T> localSource = (SortingMachine5a<T>) source;
+        //the array of this, emptied, goes to source to be reused there
+        this.createNewRep(this.machineOrder);
+        T[] spare = this.heap;
         this.insertionMode = localSource.insertionMode;
         this.machineOrder = localSource.machineOrder;
-        this.entries = localSource.entries;
         this.heap = localSource.heap;
         this.heapSize = localSource.heapSize;
+        this.first = localSource.first;
+        this.sorted = localSource.sorted;
+        this.runCount = localSource.runCount;
+        this.runDirection = localSource.runDirection;
+        this.parallelSortThreshold = localSource.parallelSortThreshold;
+        this.arity = localSource.arity;
+        localSource.heap = spare;
+        localSource.heapSize = 0;
+        localSource.first = 0;
         localSource.createNewRep(localSource.machineOrder);
         assert this.conventionHolds();
         assert localSource.conventionHolds();
@@ -503,12 +974,44 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * Kernel methods ---------------------------------------------------------
      */
 
+    /**
+     * Adds {@code x} to the contents of {@code this}. Unlike the
+     * {@code SortingMachine} kernel, this also accepts entries in extraction
+     * mode, where it sifts {@code x} up into the heap in O(log n), so
+     * {@code add} and {@code removeFirst} can be interleaved as on a priority
+     * queue. After a sort, an entry that comes no earlier than the last one is
+     * simply appended; any other turns the sorted entries, which are already a
+     * heap, back into one.
+     *
+     * @param x
+     *            the element to be added
+     * @aliases reference x
+     * @updates this.contents
+     * @requires x is not null
+     * @ensures this.contents = #this.contents union {x}
+     */
     @Override
     public final void add(T x) {
         assert x != null : "Violation of: x is not null";
-        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
-        //working with queues so just enqueue onto entries
-        this.entries.enqueue(x);
+
+        this.makeRoom();
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
+        if (this.insertionMode) {
+            this.extendRuns();
+        } else {
+            if (this.sorted && this.heapSize - this.first > 1
+                    && this.machineOrder.compare(x,
+                            this.heap[this.heapSize - 2]) < 0) {
+                //a sorted array is a heap, once it starts at index 0
+                this.compact();
+                this.sorted = false;
+            }
+            if (!this.sorted) {
+                siftUp(this.heap, this.arity, this.heapSize - 1,
+                        this.machineOrder);
+            }
+        }
 
         assert this.conventionHolds();
     }
@@ -516,12 +1019,20 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final void changeToExtractionMode() {
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
-        //extraction mode can't be in insertion mode so set to false
+
         this.insertionMode = false;
-        // size of heap is the size of our given queue
-        this.heapSize = this.entries.length();
-        //build heap
-        this.heap = buildHeap(this.entries, this.machineOrder);
+        //the entries are already in the array; sort it or make it a heap
+        if (this.runCount <= this.heapSize / MIN_AVERAGE_RUN_LENGTH) {
+            //few long runs, which TimSort finds again and merges
+            Arrays.sort(this.heap, 0, this.heapSize, this.machineOrder);
+            this.sorted = true;
+        } else if (this.heapSize >= this.parallelSortThreshold) {
+            Arrays.parallelSort(this.heap, 0, this.heapSize,
+                    this.machineOrder);
+            this.sorted = true;
+        } else {
+            heapify(this.heap, this.arity, this.heapSize, this.machineOrder);
+        }
 
         assert this.conventionHolds();
     }
@@ -532,17 +1043,26 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                 .isInInsertionMode() : "Violation of: not this.insertion_mode";
         assert this.size() > 0 : "Violation of: this.contents /= {}";
         //take first value in heap and save value
-        T first = this.heap[0];
-        //swap first and last entries
-        exchangeEntries(this.heap, 0, this.heapSize - 1);
-        //decrease heapSize by one
-        this.heapSize--;
-        //call siftDown
-        siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        T firstEntry = this.heap[this.first];
+        if (this.sorted) {
+            //the entries are in order, so the next one is simply the first
+            this.heap[this.first] = null;
+            this.first++;
+        } else {
+            //move the last entry to the root, leaving its slot empty
+            this.heapSize--;
+            this.heap[0] = this.heap[this.heapSize];
+            this.heap[this.heapSize] = null;
+            //call siftDown
+            if (this.heapSize > 0) {
+                siftDown(this.heap, this.arity, 0, this.heapSize - 1,
+                        this.machineOrder);
+            }
+        }
 
         assert this.conventionHolds();
         // return the first value we saved in  beginning
-        return first;
+        return firstEntry;
     }
 
     @Override
@@ -559,18 +1079,21 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
 
     @Override
     public final int size() {
-        int size = 0;
-        //if we are in insertion mode we want the queue length because we can keep adding
-        //if we aren't in insertion mode we want heap size because we can't add to a heap
-        if (this.isInInsertionMode()) {
-            size = this.entries.length();
+        assert this.conventionHolds();
+        //the entries are in the array in both modes
+        return this.heapSize - this.first;
+    }
 
-        } else {
-            size = this.heapSize;
-        }
+    /**
+     * Reports the number of children of each node of the heap of
+     * {@code this}.
+     *
+     * @return the arity of the heap
+     * @ensures arity = [the number of children of each node of the heap]
+     */
+    public final int arity() {
         assert this.conventionHolds();
-        // Fix this line to return the result after checking the convention.
-        return size;
+        return this.arity;
     }
 
     @Override
@@ -585,12 +1108,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private final class SortingMachine5aIterator implements Iterator<T> {
 
         /**
-         * Representation iterator when in insertion mode.
-         */
-        private Iterator<T> queueIterator;
-
-        /**
-         * Representation iterator count when in extraction mode.
+         * Representation iterator count.
          */
         private int arrayCurrentIndex;
 
@@ -598,22 +1116,14 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * No-argument constructor.
          */
         private SortingMachine5aIterator() {
-            if (SortingMachine5a.this.insertionMode) {
-                this.queueIterator = SortingMachine5a.this.entries.iterator();
-            } else {
-                this.arrayCurrentIndex = 0;
-            }
+            this.arrayCurrentIndex = SortingMachine5a.this.first;
             assert SortingMachine5a.this.conventionHolds();
         }
 
         @Override
         public boolean hasNext() {
-            boolean hasNext;
-            if (SortingMachine5a.this.insertionMode) {
-                hasNext = this.queueIterator.hasNext();
-            } else {
-                hasNext = this.arrayCurrentIndex < SortingMachine5a.this.heapSize;
-            }
+            boolean hasNext = this.arrayCurrentIndex
+                    < SortingMachine5a.this.heapSize;
             assert SortingMachine5a.this.conventionHolds();
             return hasNext;
         }
@@ -629,13 +1139,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                  */
                 throw new NoSuchElementException();
             }
-            T next;
-            if (SortingMachine5a.this.insertionMode) {
-                next = this.queueIterator.next();
-            } else {
-                next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
-                this.arrayCurrentIndex++;
-            }
+            T next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
             assert SortingMachine5a.this.conventionHolds();
             return next;
         }
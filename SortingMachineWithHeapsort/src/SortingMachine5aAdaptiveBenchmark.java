@@ -0,0 +1,223 @@
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Counts the calls of {@code Comparator.compare}, and times, filling and
+ * draining {@code SortingMachine5a}, which merges the runs of presorted input,
+ * and a plain binary heap ({@code java.util.PriorityQueue}), for input that
+ * is sorted, reversed, made of a few sorted runs, nearly sorted, and random.
+ *
+ * <p>
+ * By default 1,000,000 entries are sorted; the number can be given as the
+ * first argument.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SortingMachine5aAdaptiveBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5aAdaptiveBenchmark() {
+    }
+
+    /**
+     * Default number of entries.
+     */
+    private static final int DEFAULT_ENTRIES = 1_000_000;
+
+    /**
+     * Number of sorted runs in the input made of a few of them.
+     */
+    private static final int FEW_RUNS = 16;
+
+    /**
+     * Fraction of the entries swapped at random in the nearly sorted input.
+     */
+    private static final double SWAPPED = 0.01;
+
+    /**
+     * {@code Integer} order that counts its calls.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of calls of {@code compare} so far.
+         */
+        private long calls;
+
+        /**
+         * No-argument constructor.
+         */
+        CountingOrder() {
+            this.calls = 0;
+        }
+
+        @Override
+        public int compare(Integer x, Integer y) {
+            this.calls++;
+            return x.compareTo(y);
+        }
+
+        /**
+         * Reports the number of calls of {@code compare} so far.
+         *
+         * @return the number of calls
+         */
+        long calls() {
+            return this.calls;
+        }
+
+    }
+
+    /**
+     * Fills {@code machine} with {@code values} and drains it, and reports
+     * the time taken and the comparisons made per entry.
+     *
+     * @param machine
+     *            the empty machine, in insertion mode
+     * @param order
+     *            the order of the machine
+     * @param values
+     *            the entries to sort
+     * @return the time in ms and the comparisons per entry, separated by a
+     *         tab
+     */
+    private static String measure(SortingMachine<Integer> machine,
+            CountingOrder order, Integer[] values) {
+        long start = System.nanoTime();
+        for (Integer x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        Integer previous = Integer.MIN_VALUE;
+        while (machine.size() > 0) {
+            Integer next = machine.removeFirst();
+            //check the order, which also keeps the sort from being optimized
+            if (next < previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / 1_000_000 + "\t"
+                + String.format("%.2f", (double) order.calls() / values.length);
+    }
+
+    /**
+     * Fills {@code queue} with {@code values} and drains it, and reports the
+     * time taken and the comparisons made per entry.
+     *
+     * @param queue
+     *            the empty queue
+     * @param order
+     *            the order of the queue
+     * @param values
+     *            the entries to sort
+     * @return the time in ms and the comparisons per entry, separated by a
+     *         tab
+     */
+    private static String measure(PriorityQueue<Integer> queue,
+            CountingOrder order, Integer[] values) {
+        long start = System.nanoTime();
+        for (Integer x : values) {
+            queue.add(x);
+        }
+        Integer previous = Integer.MIN_VALUE;
+        while (queue.size() > 0) {
+            Integer next = queue.remove();
+            //check the order, which also keeps the sort from being optimized
+            if (next < previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / 1_000_000 + "\t"
+                + String.format("%.2f", (double) order.calls() / values.length);
+    }
+
+    /**
+     * Reports the comparisons and time of the heap and the machine on
+     * {@code values}.
+     *
+     * @param out
+     *            the output
+     * @param input
+     *            the name of the kind of input
+     * @param values
+     *            the entries to sort
+     * @updates out
+     */
+    private static void compare(SimpleWriter out, String input,
+            Integer[] values) {
+        CountingOrder heapOrder = new CountingOrder();
+        String heap = measure(new PriorityQueue<>(heapOrder), heapOrder,
+                values);
+        CountingOrder adaptiveOrder = new CountingOrder();
+        //a threshold no input reaches, so only the runs decide
+        String adaptive = measure(
+                new SortingMachine5a<>(adaptiveOrder, Integer.MAX_VALUE),
+                adaptiveOrder, values);
+        out.println(input + "\t" + heap + "\t" + adaptive);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the number of entries
+     */
+    public static void main(String[] args) {
+        int entries = DEFAULT_ENTRIES;
+        if (args.length >= 1) {
+            entries = Integer.parseInt(args[0]);
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(entries + " entries");
+        out.println("input\theap ms\theap compares/entry"
+                + "\t5a ms\t5a compares/entry");
+        Random random = new Random(1);
+
+        Integer[] values = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            values[i] = i;
+        }
+        compare(out, "sorted", values);
+
+        for (int i = 0; i < entries; i++) {
+            values[i] = entries - i;
+        }
+        compare(out, "reversed", values);
+
+        for (int i = 0; i < entries; i++) {
+            values[i] = i % (entries / FEW_RUNS + 1);
+        }
+        compare(out, FEW_RUNS + " runs", values);
+
+        for (int i = 0; i < entries; i++) {
+            values[i] = i;
+        }
+        for (int k = 0; k < entries * SWAPPED; k++) {
+            int i = random.nextInt(entries);
+            int j = random.nextInt(entries);
+            Integer x = values[i];
+            values[i] = values[j];
+            values[j] = x;
+        }
+        compare(out, "nearly sorted", values);
+
+        for (int i = 0; i < entries; i++) {
+            values[i] = random.nextInt();
+        }
+        compare(out, "random", values);
+        out.close();
+    }
+
+}
@@ -0,0 +1,184 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Counts the calls of {@code Comparator.compare} made to sort random
+ * {@code Integer}s, comparing {@code SortingMachine5a} with a textbook heap
+ * sort whose sift-down compares both children and then the parent at each
+ * level.
+ *
+ * <p>
+ * By default 10,000,000 entries are sorted; the number can be given as the
+ * first argument, for machines with less memory.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SortingMachine5aBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5aBenchmark() {
+    }
+
+    /**
+     * Default number of entries.
+     */
+    private static final int DEFAULT_ENTRIES = 10_000_000;
+
+    /**
+     * {@code Integer} order that counts its calls.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of calls of {@code compare} so far.
+         */
+        private long calls;
+
+        /**
+         * No-argument constructor.
+         */
+        CountingOrder() {
+            this.calls = 0;
+        }
+
+        @Override
+        public int compare(Integer x, Integer y) {
+            this.calls++;
+            return x.compareTo(y);
+        }
+
+        /**
+         * Reports the number of calls of {@code compare} so far.
+         *
+         * @return the number of calls
+         */
+        long calls() {
+            return this.calls;
+        }
+
+    }
+
+    /**
+     * Sifts {@code array[top]} down into the heap {@code array[top, last]}
+     * the textbook way: at each level, the smaller child is found and then
+     * compared with the entry being sifted.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the subtree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            the order
+     * @updates array
+     */
+    private static void topDownSiftDown(Integer[] array, int top, int last,
+            Comparator<Integer> order) {
+        Integer root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+        boolean done = false;
+        while (!done && child <= last) {
+            if (child < last
+                    && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (order.compare(array[child], root) < 0) {
+                array[hole] = array[child];
+                hole = child;
+                child = 2 * hole + 1;
+            } else {
+                done = true;
+            }
+        }
+        array[hole] = root;
+    }
+
+    /**
+     * Sorts {@code array} by heap sort with {@code topDownSiftDown}, leaving
+     * the entries in decreasing order, as a min-heap sort in place does.
+     *
+     * @param array
+     *            the array to sort
+     * @param order
+     *            the order
+     * @updates array
+     */
+    private static void textbookHeapSort(Integer[] array,
+            Comparator<Integer> order) {
+        for (int top = array.length / 2 - 1; top >= 0; top--) {
+            topDownSiftDown(array, top, array.length - 1, order);
+        }
+        for (int last = array.length - 1; last > 0; last--) {
+            Integer first = array[0];
+            array[0] = array[last];
+            array[last] = first;
+            topDownSiftDown(array, 0, last - 1, order);
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the number of entries
+     */
+    public static void main(String[] args) {
+        int entries = DEFAULT_ENTRIES;
+        if (args.length >= 1) {
+            entries = Integer.parseInt(args[0]);
+        }
+        Integer[] values = new Integer[entries];
+        Random random = new Random(1);
+        for (int i = 0; i < entries; i++) {
+            values[i] = random.nextInt();
+        }
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(entries + " random entries");
+        out.println("heap sort\tms\tcompares/entry\tsorted");
+
+        CountingOrder order = new CountingOrder();
+        Integer[] copy = values.clone();
+        long start = System.nanoTime();
+        textbookHeapSort(copy, order);
+        long elapsed = System.nanoTime() - start;
+        boolean sorted = true;
+        for (int i = 1; i < copy.length; i++) {
+            sorted &= copy[i - 1] >= copy[i];
+        }
+        out.println("textbook top-down\t" + elapsed / 1_000_000 + "\t"
+                + String.format("%.2f", (double) order.calls() / entries)
+                + "\t" + sorted);
+
+        order = new CountingOrder();
+        start = System.nanoTime();
+        //a threshold no input reaches, so that the heap is always used
+        SortingMachine5a<Integer> machine = new SortingMachine5a<>(order,
+                Integer.MAX_VALUE);
+        for (Integer x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        sorted = true;
+        Integer previous = machine.removeFirst();
+        while (machine.size() > 0) {
+            Integer next = machine.removeFirst();
+            sorted &= previous <= next;
+            previous = next;
+        }
+        elapsed = System.nanoTime() - start;
+        out.println("SortingMachine5a\t" + elapsed / 1_000_000 + "\t"
+                + String.format("%.2f", (double) order.calls() / entries)
+                + "\t" + sorted);
+        out.close();
+    }
+
+}
@@ -0,0 +1,122 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times sorting random {@code Integer}s with {@code SortingMachine5a} for
+ * heaps of arity 2, 4, and 8, over growing numbers of entries, to show from
+ * which size the wider heaps win.
+ *
+ * <p>
+ * By default the sizes go from 1,000 to 10,000,000 entries by factors of 10;
+ * the largest size can be given as the first argument (100,000,000 needs a
+ * heap of several gigabytes). Each size is sorted several times, the smaller
+ * ones more often, and the best time is reported.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SortingMachine5aDaryBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5aDaryBenchmark() {
+    }
+
+    /**
+     * Smallest number of entries measured.
+     */
+    private static final int MIN_ENTRIES = 1_000;
+
+    /**
+     * Default largest number of entries measured.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 10_000_000;
+
+    /**
+     * Number of entries sorted, in all, for each size and arity, so that the
+     * small sizes are repeated enough to be timed.
+     */
+    private static final int ENTRIES_PER_SIZE = 10_000_000;
+
+    /**
+     * Arities measured.
+     */
+    private static final int[] ARITIES = { 2, 4, 8 };
+
+    /**
+     * Sorts {@code values} with a machine of arity {@code d} and reports the
+     * time taken.
+     *
+     * @param values
+     *            the entries to sort
+     * @param d
+     *            the arity of the heap
+     * @return nanoseconds taken
+     */
+    private static long timeSort(Integer[] values, int d) {
+        Comparator<Integer> order = Integer::compare;
+        long start = System.nanoTime();
+        /*
+         * A threshold no input reaches; the random input has short runs, so
+         * the machine builds a heap rather than merging them
+         */
+        SortingMachine5a<Integer> machine = new SortingMachine5a<>(order,
+                Integer.MAX_VALUE, d);
+        for (Integer x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        int previous = Integer.MIN_VALUE;
+        while (machine.size() > 0) {
+            int next = machine.removeFirst();
+            //check the order, which also keeps the sort from being optimized
+            if (next < previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the largest number of entries
+     */
+    public static void main(String[] args) {
+        int maxEntries = DEFAULT_MAX_ENTRIES;
+        if (args.length >= 1) {
+            maxEntries = Integer.parseInt(args[0]);
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        out.print("entries");
+        for (int d : ARITIES) {
+            out.print("\tns/entry d=" + d);
+        }
+        out.println();
+        Random random = new Random(1);
+        for (long n = MIN_ENTRIES; n <= maxEntries; n *= 10) {
+            Integer[] values = new Integer[(int) n];
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt();
+            }
+            long runs = Math.max(1, ENTRIES_PER_SIZE / n);
+            out.print(n);
+            for (int d : ARITIES) {
+                long best = Long.MAX_VALUE;
+                for (long run = 0; run < runs; run++) {
+                    best = Math.min(best, timeSort(values, d));
+                }
+                out.print("\t" + String.format("%.1f", (double) best / n));
+            }
+            out.println();
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,997 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} for more entries than fit in memory. At most a given
+ * number of entries, the budget, is kept in memory: when an {@code add} finds
+ * the buffer full, the buffered entries are sorted and written to a temporary
+ * file as a sorted run. In extraction mode the runs are merged through a heap
+ * of one reader per run, each reading its file through a buffer, so
+ * {@code removeFirst} reads each entry once and takes O(log k) comparisons
+ * for k runs. So that the readers, and their buffers, stay few, the change to
+ * extraction mode first merges the oldest runs, at most
+ * {@value #MAX_MERGE_WAYS} at a time, into a new run at the end, until no
+ * more than {@value #MAX_MERGE_WAYS} are left; each entry is rewritten once
+ * per such pass over the runs, about log(r) / log({@value #MAX_MERGE_WAYS})
+ * times for r runs.
+ * Entries are written and read with a {@link Serializer}. If all the entries
+ * fit in the budget, no file is written.
+ *
+ * <p>
+ * The run files are deleted when they have been read through, by
+ * {@code clear}, and by {@code transferFrom} on the machine that loses its
+ * entries; any left when the JVM exits, from a machine that was dropped
+ * without being emptied, are deleted then. An I/O error on a run file is
+ * reported as an {@code UncheckedIOException}. If the change to extraction
+ * mode fails that way, the machine stays in insertion mode with all its
+ * entries, and the change can be tried again.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_SORTED (
+ *   a: string of T,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i < |a|)
+ *    (r(a[i-1], a[i]))
+ *
+ * RUN_ENTRIES (
+ *   run: Run
+ *  ) : string of T is
+ *  [the entries of run's file not yet removed, in the order written]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method])
+ *  and
+ * 1 <= $this.budget  and
+ * 0 <= $this.first <= $this.bufferSize <= |$this.buffer| <= $this.budget  and
+ * [entries of $this.buffer outside [$this.first, $this.bufferSize) are null]
+ *  and
+ * $this.size = $this.bufferSize - $this.first +
+ *   [sum of |RUN_ENTRIES(r)| over the runs r in $this.runs]  and
+ * for each run r in $this.runs
+ *   (IS_SORTED(RUN_ENTRIES(r),
+ *      [relation computed by $this.machineOrder.compare method]))  and
+ * if $this.insertionMode then
+ *   $this.first = 0  and  $this.mergeSize = 0
+ * else
+ *   |$this.runs| <= MAX_MERGE_WAYS  and
+ *   $this.runs = <>  implies
+ *     IS_SORTED($this.buffer[$this.first, $this.bufferSize),
+ *       [relation computed by $this.machineOrder.compare method])  and
+ *   $this.runs /= <>  implies
+ *     $this.bufferSize = 0  and
+ *     [$this.mergeHeap[0, $this.mergeSize) are the runs of $this.runs
+ *      that have entries left, with their first entries read, forming a
+ *      heap by those entries]
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.buffer[$this.first, $this.bufferSize))
+ *         union [the multiset of RUN_ENTRIES(r) for the runs r in
+ *                $this.runs])
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class SortingMachine5aExternal<T> extends SortingMachineSecondary<T> {
+
+    /**
+     * Writes entries of type {@code T} to, and reads them back from, a run
+     * file.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    public interface Serializer<T> {
+
+        /**
+         * {@code String}s, as their length and then their {@code char}s, so
+         * that there is no limit on their length.
+         */
+        Serializer<String> STRING = new Serializer<String>() {
+
+            @Override
+            public void write(String x, DataOutput out) throws IOException {
+                out.writeInt(x.length());
+                out.writeChars(x);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                char[] chars = new char[in.readInt()];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = in.readChar();
+                }
+                return new String(chars);
+            }
+
+        };
+
+        /**
+         * {@code Integer}s, 4 bytes each.
+         */
+        Serializer<Integer> INTEGER = new Serializer<Integer>() {
+
+            @Override
+            public void write(Integer x, DataOutput out) throws IOException {
+                out.writeInt(x);
+            }
+
+            @Override
+            public Integer read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+
+        };
+
+        /**
+         * {@code Long}s, 8 bytes each.
+         */
+        Serializer<Long> LONG = new Serializer<Long>() {
+
+            @Override
+            public void write(Long x, DataOutput out) throws IOException {
+                out.writeLong(x);
+            }
+
+            @Override
+            public Long read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+
+        };
+
+        /**
+         * Writes {@code x} to {@code out}.
+         *
+         * @param x
+         *            the entry to write
+         * @param out
+         *            the output
+         * @throws IOException
+         *             if {@code out} cannot be written
+         * @updates out
+         * @requires x /= null
+         * @ensures out = #out * [the encoding of x]
+         */
+        void write(T x, DataOutput out) throws IOException;
+
+        /**
+         * Reads back an entry written by {@code write} from {@code in}.
+         *
+         * @param in
+         *            the input
+         * @return the entry
+         * @throws IOException
+         *             if {@code in} cannot be read
+         * @updates in
+         * @requires [in starts with the encoding of an entry]
+         * @ensures <pre>
+         * #in = [the encoding of read] * in  and  read /= null
+         * </pre>
+         */
+        T read(DataInput in) throws IOException;
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Largest number of runs merged at once.
+     */
+    public static final int MAX_MERGE_WAYS = 64;
+
+    /**
+     * Size in bytes of the buffer of each run file reader and writer.
+     */
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Length of the buffer of a new machine, if the budget is larger.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * A sorted run in a temporary file, with a reader over the entries not
+     * yet removed when it is being merged.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class Run<T> {
+
+        /**
+         * The file.
+         */
+        private final File file;
+
+        /**
+         * Number of entries written to the file.
+         */
+        private final long count;
+
+        /**
+         * Number of entries removed from the front of the run.
+         */
+        private long removed;
+
+        /**
+         * Reader over the file while it is merged, or null.
+         */
+        private DataInputStream in;
+
+        /**
+         * The first entry not yet removed, while the run is merged.
+         */
+        private T head;
+
+        /**
+         * Whether {@code delete} deletes the file, rather than leaving it to
+         * the run this one was copied from.
+         */
+        private final boolean ownsFile;
+
+        /**
+         * Constructor from file and count.
+         *
+         * @param file
+         *            the file
+         * @param count
+         *            the number of entries in it
+         */
+        Run(File file, long count) {
+            this(file, count, true);
+        }
+
+        /**
+         * Constructor from file, count, and ownership of the file.
+         *
+         * @param file
+         *            the file
+         * @param count
+         *            the number of entries in it
+         * @param ownsFile
+         *            whether {@code delete} deletes the file
+         */
+        private Run(File file, long count, boolean ownsFile) {
+            this.file = file;
+            this.count = count;
+            this.removed = 0;
+            this.in = null;
+            this.head = null;
+            this.ownsFile = ownsFile;
+        }
+
+        /**
+         * Returns a copy of this run, at the same first entry, for reading
+         * it without removing anything from it: removing entries from the
+         * copy leaves this run as it is, and deleting the copy only closes
+         * its reader.
+         *
+         * @return the copy
+         */
+        Run<T> cursor() {
+            Run<T> copy = new Run<T>(this.file, this.count, false);
+            copy.removed = this.removed;
+            return copy;
+        }
+
+        /**
+         * Opens a reader over the file, positioned after the entries removed.
+         *
+         * @param serializer
+         *            the serializer the file was written with
+         * @return the reader
+         * @throws IOException
+         *             if the file cannot be read
+         */
+        DataInputStream open(Serializer<T> serializer) throws IOException {
+            DataInputStream reader = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(this.file),
+                            IO_BUFFER_SIZE));
+            try {
+                for (long i = 0; i < this.removed; i++) {
+                    serializer.read(reader);
+                }
+            } catch (IOException e) {
+                reader.close();
+                throw e;
+            }
+            return reader;
+        }
+
+        /**
+         * Closes the reader, if any, and deletes the file if this run owns
+         * it.
+         *
+         * @throws IOException
+         *             if the reader cannot be closed
+         */
+        void delete() throws IOException {
+            if (this.in != null) {
+                this.in.close();
+                this.in = null;
+            }
+            this.head = null;
+            if (this.ownsFile && !this.file.delete() && this.file.exists()) {
+                throw new IOException("Cannot delete " + this.file);
+            }
+        }
+
+    }
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Order of runs by their first entries.
+     */
+    private Comparator<Run<T>> runOrder;
+
+    /**
+     * Largest number of entries kept in memory.
+     */
+    private int budget;
+
+    /**
+     * Serializer of entries.
+     */
+    private Serializer<T> serializer;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries in memory.
+     */
+    private T[] buffer;
+
+    /**
+     * Position just past the last entry in memory.
+     */
+    private int bufferSize;
+
+    /**
+     * Position of the first entry in memory.
+     */
+    private int first;
+
+    /**
+     * Runs written to files.
+     */
+    private List<Run<T>> runs;
+
+    /**
+     * Heap of the runs being merged.
+     */
+    private Run<T>[] mergeHeap;
+
+    /**
+     * Number of runs in {@code mergeHeap}.
+     */
+    private int mergeSize;
+
+    /**
+     * Number of entries.
+     */
+    private long size;
+
+    /**
+     * Writes the entries of the buffer, sorted, to a new run, and empties
+     * the buffer. If that fails, the new run's file is deleted and the
+     * buffer keeps its entries.
+     *
+     * @throws IOException
+     *             if the run cannot be written
+     * @updates $this.buffer, $this.bufferSize, $this.runs
+     */
+    private void spill() throws IOException {
+        Arrays.sort(this.buffer, 0, this.bufferSize, this.machineOrder);
+        File file = File.createTempFile("sortingmachine", ".run");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file),
+                        IO_BUFFER_SIZE))) {
+            for (int i = 0; i < this.bufferSize; i++) {
+                this.serializer.write(this.buffer[i], out);
+            }
+        } catch (IOException e) {
+            if (!file.delete() && file.exists()) {
+                e.addSuppressed(new IOException("Cannot delete " + file));
+            }
+            throw e;
+        }
+        this.runs.add(new Run<T>(file, this.bufferSize));
+        Arrays.fill(this.buffer, 0, this.bufferSize, null);
+        this.bufferSize = 0;
+    }
+
+    /**
+     * Opens the given runs and makes {@code mergeHeap} a heap of those that
+     * have entries left, by their first entries. If a run cannot be read,
+     * the readers opened are closed again.
+     *
+     * @param sources
+     *            the runs to merge
+     * @throws IOException
+     *             if a run cannot be read
+     * @updates sources, $this.mergeHeap, $this.mergeSize
+     */
+    @SuppressWarnings("unchecked")
+    private void startMerge(List<Run<T>> sources) throws IOException {
+        this.mergeHeap = (Run<T>[]) new Run<?>[sources.size()];
+        this.mergeSize = 0;
+        try {
+            for (Run<T> run : sources) {
+                if (run.removed < run.count) {
+                    run.in = run.open(this.serializer);
+                    this.mergeHeap[this.mergeSize] = run;
+                    this.mergeSize++;
+                    run.head = this.serializer.read(run.in);
+                }
+            }
+        } catch (IOException e) {
+            this.abandonMerge(e);
+            throw e;
+        }
+        for (int top = this.mergeSize / 2 - 1; top >= 0; top--) {
+            SortingMachine5a.siftDown(this.mergeHeap, top, this.mergeSize - 1,
+                    this.runOrder);
+        }
+    }
+
+    /**
+     * Closes the readers of the runs being merged after {@code cause} has
+     * stopped the merge, adding any error in closing them to {@code cause},
+     * and empties {@code mergeHeap}.
+     *
+     * @param cause
+     *            the error that stopped the merge
+     * @updates $this.runs, $this.mergeHeap, $this.mergeSize, cause
+     */
+    private void abandonMerge(IOException cause) {
+        for (int i = 0; i < this.mergeSize; i++) {
+            Run<T> run = this.mergeHeap[i];
+            try {
+                run.in.close();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            run.in = null;
+            run.head = null;
+        }
+        this.mergeHeap = null;
+        this.mergeSize = 0;
+    }
+
+    /**
+     * Removes and returns the first entry of the runs being merged, moving on
+     * in its run, or deleting the run if that was its last entry.
+     *
+     * @return the first entry
+     * @throws IOException
+     *             if a run cannot be read
+     * @updates $this.runs, $this.mergeHeap, $this.mergeSize
+     * @requires $this.mergeSize > 0
+     */
+    private T nextMerged() throws IOException {
+        Run<T> run = this.mergeHeap[0];
+        T result = run.head;
+        run.removed++;
+        if (run.removed < run.count) {
+            run.head = this.serializer.read(run.in);
+        } else {
+            run.delete();
+            this.runs.remove(run);
+            this.mergeSize--;
+            this.mergeHeap[0] = this.mergeHeap[this.mergeSize];
+            this.mergeHeap[this.mergeSize] = null;
+        }
+        if (this.mergeSize > 0) {
+            SortingMachine5a.siftDown(this.mergeHeap, 0, this.mergeSize - 1,
+                    this.runOrder);
+        }
+        return result;
+    }
+
+    /**
+     * Merges the first {@code ways} runs into a new run at the end of
+     * {@code runs}. The runs are read through copies, and replaced by the
+     * new run only once it has been written in full, so if the merge fails
+     * the runs are as they were; the new run's file is then deleted.
+     *
+     * @param ways
+     *            the number of runs to merge
+     * @throws IOException
+     *             if a run cannot be read or written
+     * @updates $this.runs
+     * @requires 0 <= ways <= |$this.runs|
+     */
+    private void mergeRuns(int ways) throws IOException {
+        List<Run<T>> sources = this.runs.subList(0, ways);
+        List<Run<T>> cursors = new ArrayList<Run<T>>();
+        long count = 0;
+        for (Run<T> run : sources) {
+            cursors.add(run.cursor());
+            count += run.count - run.removed;
+        }
+        File file = File.createTempFile("sortingmachine", ".run");
+        file.deleteOnExit();
+        try {
+            this.startMerge(cursors);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file),
+                            IO_BUFFER_SIZE))) {
+                while (this.mergeSize > 0) {
+                    this.serializer.write(this.nextMerged(), out);
+                }
+            } catch (IOException e) {
+                this.abandonMerge(e);
+                throw e;
+            }
+        } catch (IOException e) {
+            if (!file.delete() && file.exists()) {
+                e.addSuppressed(new IOException("Cannot delete " + file));
+            }
+            throw e;
+        }
+        this.mergeHeap = null;
+        //the entries are all in the new run now, so retire the old ones
+        List<Run<T>> merged = new ArrayList<Run<T>>(sources);
+        sources.clear();
+        this.runs.add(new Run<T>(file, count));
+        for (Run<T> run : merged) {
+            run.delete();
+        }
+    }
+
+    /**
+     * Deletes the files of all runs.
+     *
+     * @updates $this.runs
+     * @ensures $this.runs = <>
+     */
+    private void deleteRuns() {
+        try {
+            for (Run<T> run : this.runs) {
+                run.delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.runs.clear();
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.first <= $this.bufferSize <= |$this.buffer| <= $this.budget
+     *  and
+     * $this.size = $this.bufferSize - $this.first +
+     *   [sum of |RUN_ENTRIES(r)| over the runs r in $this.runs]  and
+     * if $this.insertionMode then
+     *   $this.first = 0  and  $this.mergeSize = 0
+     * else
+     *   |$this.runs| <= MAX_MERGE_WAYS
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.first : "Violation of: 0 <= $this.first";
+        assert this.first <= this.bufferSize : ""
+                + "Violation of: $this.first <= $this.bufferSize";
+        assert this.bufferSize <= this.buffer.length : ""
+                + "Violation of: $this.bufferSize <= |$this.buffer|";
+        assert this.buffer.length <= this.budget : ""
+                + "Violation of: |$this.buffer| <= $this.budget";
+        long inRuns = 0;
+        for (Run<T> run : this.runs) {
+            inRuns += run.count - run.removed;
+        }
+        assert this.size == this.bufferSize - this.first + inRuns : ""
+                + "Violation of: $this.size = $this.bufferSize - $this.first"
+                + " + [entries left in $this.runs]";
+        if (this.insertionMode) {
+            assert this.first == 0 && this.mergeSize == 0 : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.first = 0  and  $this.mergeSize = 0";
+        } else {
+            assert this.runs.size() <= MAX_MERGE_WAYS : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " |$this.runs| <= MAX_MERGE_WAYS";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param maxInMemory
+     *            the budget
+     * @param entrySerializer
+     *            the serializer
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])  and
+     * 1 <= maxInMemory
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and  $this.machineOrder = order  and
+     * $this.budget = maxInMemory  and  $this.serializer = entrySerializer  and
+     * $this.bufferSize = 0  and  $this.first = 0  and  $this.runs = <>  and
+     * $this.mergeSize = 0  and  $this.size = 0
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(Comparator<T> order, int maxInMemory,
+            Serializer<T> entrySerializer) {
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.runOrder = (r1, r2) -> order.compare(r1.head, r2.head);
+        this.budget = maxInMemory;
+        this.serializer = entrySerializer;
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        this.buffer = (T[]) new Object[Math.min(maxInMemory,
+                INITIAL_CAPACITY)];
+        this.bufferSize = 0;
+        this.first = 0;
+        this.runs = new ArrayList<Run<T>>();
+        this.mergeHeap = null;
+        this.mergeSize = 0;
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, memory budget, and serializer.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param maxInMemory
+     *            the largest number of entries kept in memory
+     * @param serializer
+     *            the serializer of entries to and from the run files
+     */
+    public SortingMachine5aExternal(Comparator<T> order, int maxInMemory,
+            Serializer<T> serializer) {
+        assert maxInMemory >= 1 : "Violation of: maxInMemory >= 1";
+        assert serializer != null : "Violation of: serializer is not null";
+        this.createNewRep(order, maxInMemory, serializer);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass()
+                    .getConstructor(Comparator.class, int.class,
+                            Serializer.class)
+                    .newInstance(this.machineOrder, this.budget,
+                            this.serializer);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.deleteRuns();
+        this.createNewRep(this.machineOrder, this.budget, this.serializer);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5aExternal<?> : ""
+                + "Violation of: source is of dynamic type"
+                + " SortingMachine5aExternal<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5aExternal<?>, and the ? must be T or the call would
+         * not have compiled.
+         */
+        SortingMachine5aExternal<T> localSource =
+                (SortingMachine5aExternal<T>) source;
+        this.deleteRuns();
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.runOrder = localSource.runOrder;
+        this.budget = localSource.budget;
+        this.serializer = localSource.serializer;
+        this.buffer = localSource.buffer;
+        this.bufferSize = localSource.bufferSize;
+        this.first = localSource.first;
+        this.runs = localSource.runs;
+        this.mergeHeap = localSource.mergeHeap;
+        this.mergeSize = localSource.mergeSize;
+        this.size = localSource.size;
+        //the runs now belong to this, so they are not deleted here
+        localSource.createNewRep(localSource.machineOrder, localSource.budget,
+                localSource.serializer);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        try {
+            if (this.bufferSize == this.budget) {
+                this.spill();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (this.bufferSize == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, (int) Math
+                    .min((long) this.budget, 2L * this.buffer.length));
+        }
+        this.buffer[this.bufferSize] = x;
+        this.bufferSize++;
+        this.size++;
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        if (this.runs.isEmpty()) {
+            //everything fits in memory
+            Arrays.sort(this.buffer, 0, this.bufferSize, this.machineOrder);
+        } else {
+            try {
+                if (this.bufferSize > 0) {
+                    this.spill();
+                }
+                /*
+                 * Merge the oldest runs first, so that every entry is
+                 * rewritten once per pass over the runs; the first merge
+                 * takes just enough runs that each later one is a full
+                 * merge of MAX_MERGE_WAYS and the last leaves exactly
+                 * MAX_MERGE_WAYS
+                 */
+                int ways = (this.runs.size() - 2) % (MAX_MERGE_WAYS - 1) + 2;
+                while (this.runs.size() > MAX_MERGE_WAYS) {
+                    this.mergeRuns(ways);
+                    ways = MAX_MERGE_WAYS;
+                }
+                this.startMerge(this.runs);
+            } catch (IOException e) {
+                //every entry is still in the buffer or an unmerged run
+                this.insertionMode = true;
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T result;
+        if (this.mergeSize > 0) {
+            try {
+                result = this.nextMerged();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            result = this.buffer[this.first];
+            this.buffer[this.first] = null;
+            this.first++;
+        }
+        this.size--;
+
+        assert this.conventionHolds();
+        return result;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        assert this.size <= Integer.MAX_VALUE : ""
+                + "Violation of: |this.contents| <= Integer.MAX_VALUE";
+        return (int) this.size;
+    }
+
+    /**
+     * Reports the largest number of entries {@code this} keeps in memory.
+     *
+     * @return the memory budget of {@code this}
+     * @ensures maxInMemory = [the memory budget of this]
+     */
+    public final int maxInMemory() {
+        assert this.conventionHolds();
+        return this.budget;
+    }
+
+    /**
+     * Returns an iterator over the entries of {@code this}: those in memory,
+     * then those of each run, read again from its file.
+     *
+     * @return an iterator over the entries of {@code this}
+     */
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5aExternalIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5aExternal}.
+     */
+    private final class SortingMachine5aExternalIterator
+            implements Iterator<T> {
+
+        /**
+         * Position in the buffer of the next entry.
+         */
+        private int current;
+
+        /**
+         * Position in {@code runs} of the run being read.
+         */
+        private int currentRun;
+
+        /**
+         * Reader over the run being read, or null.
+         */
+        private DataInputStream in;
+
+        /**
+         * Number of entries of the run being read not yet returned.
+         */
+        private long leftInRun;
+
+        /**
+         * Number of entries not yet returned.
+         */
+        private long left;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5aExternalIterator() {
+            this.current = SortingMachine5aExternal.this.first;
+            this.currentRun = 0;
+            this.in = null;
+            this.leftInRun = 0;
+            this.left = SortingMachine5aExternal.this.size;
+            assert SortingMachine5aExternal.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.left > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            SortingMachine5aExternal<T> machine = SortingMachine5aExternal.this;
+            T next;
+            try {
+                if (this.current < machine.bufferSize) {
+                    next = machine.buffer[this.current];
+                    this.current++;
+                } else {
+                    while (this.leftInRun == 0) {
+                        if (this.in != null) {
+                            this.in.close();
+                        }
+                        Run<T> run = machine.runs.get(this.currentRun);
+                        this.currentRun++;
+                        this.in = run.open(machine.serializer);
+                        this.leftInRun = run.count - run.removed;
+                    }
+                    next = machine.serializer.read(this.in);
+                    this.leftInRun--;
+                }
+                this.left--;
+                if (this.left == 0 && this.in != null) {
+                    this.in.close();
+                    this.in = null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times filling and draining a {@code SortingMachine5a} of random
+ * {@code Integer}s with the heap and with the parallel sort, over growing
+ * numbers of entries, to show where the parallel sort starts to win and so
+ * where {@code SortingMachine5a.DEFAULT_PARALLEL_SORT_THRESHOLD} belongs.
+ *
+ * <p>
+ * By default the sizes go from 1,024 to 4,194,304 entries by factors of 4;
+ * the largest size can be given as the first argument. Each size is sorted
+ * several times, the smaller ones more often, and the best time is reported.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SortingMachine5aParallelBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5aParallelBenchmark() {
+    }
+
+    /**
+     * Smallest number of entries measured.
+     */
+    private static final int MIN_ENTRIES = 1 << 10;
+
+    /**
+     * Default largest number of entries measured.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 1 << 22;
+
+    /**
+     * Factor between two sizes measured.
+     */
+    private static final int STEP = 4;
+
+    /**
+     * Number of entries sorted, in all, for each size and path, so that the
+     * small sizes are repeated enough to be timed.
+     */
+    private static final int ENTRIES_PER_SIZE = 1 << 23;
+
+    /**
+     * Fills a machine with {@code values} and drains it, and reports the time
+     * taken.
+     *
+     * @param values
+     *            the entries to sort
+     * @param parallelSortThreshold
+     *            the threshold of the machine
+     * @return nanoseconds taken
+     */
+    private static long timeSort(Integer[] values, int parallelSortThreshold) {
+        Comparator<Integer> order = Integer::compare;
+        long start = System.nanoTime();
+        SortingMachine5a<Integer> machine = new SortingMachine5a<>(order,
+                parallelSortThreshold);
+        for (Integer x : values) {
+            machine.add(x);
+        }
+        machine.changeToExtractionMode();
+        int previous = Integer.MIN_VALUE;
+        while (machine.size() > 0) {
+            int next = machine.removeFirst();
+            //check the order, which also keeps the sort from being optimized
+            if (next < previous) {
+                throw new AssertionError("Entries out of order");
+            }
+            previous = next;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the largest number of entries
+     */
+    public static void main(String[] args) {
+        int maxEntries = DEFAULT_MAX_ENTRIES;
+        if (args.length >= 1) {
+            maxEntries = Integer.parseInt(args[0]);
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(ForkJoinPool.commonPool().getParallelism()
+                + " common pool threads");
+        out.println("entries\tns/entry heap\tns/entry parallel sort");
+        Random random = new Random(1);
+        for (long n = MIN_ENTRIES; n <= maxEntries; n *= STEP) {
+            Integer[] values = new Integer[(int) n];
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt();
+            }
+            long runs = Math.max(1, ENTRIES_PER_SIZE / n);
+            long heap = Long.MAX_VALUE;
+            long sort = Long.MAX_VALUE;
+            for (long run = 0; run < runs; run++) {
+                heap = Math.min(heap, timeSort(values, Integer.MAX_VALUE));
+                sort = Math.min(sort, timeSort(values, 0));
+            }
+            out.println(n + "\t" + String.format("%.1f", (double) heap / n)
+                    + "\t" + String.format("%.1f", (double) sort / n));
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,166 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Times a mixed workload on a {@code SortingMachine5a}: an event queue that
+ * repeatedly takes the earliest event and schedules a new one a random delay
+ * later. It is run once with {@code add} in extraction mode, and once as a
+ * plain {@code SortingMachine} allows, by draining the machine into a new one
+ * in insertion mode, adding, and changing to extraction mode again for every
+ * new event.
+ *
+ * <p>
+ * By default the queue holds 10,000 events; that number can be given as the
+ * first argument. The rebuilds cost O(n) per event, so they are run for fewer
+ * events, and both are reported per event.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SortingMachine5aStreamingBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5aStreamingBenchmark() {
+    }
+
+    /**
+     * Default number of events in the queue.
+     */
+    private static final int DEFAULT_EVENTS = 10_000;
+
+    /**
+     * Number of events taken and scheduled with {@code add} in extraction
+     * mode.
+     */
+    private static final int STREAMING_STEPS = 5_000_000;
+
+    /**
+     * Number of events taken and scheduled with rebuilds.
+     */
+    private static final int REBUILD_STEPS = 2_000;
+
+    /**
+     * Longest delay of a new event after the one just taken.
+     */
+    private static final int MAX_DELAY = 1_000;
+
+    /**
+     * Makes a machine in extraction mode holding {@code events} random
+     * events.
+     *
+     * @param events
+     *            the number of events
+     * @param random
+     *            the source of the events
+     * @return the machine
+     */
+    private static SortingMachine<Integer> initialQueue(int events,
+            Random random) {
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> queue = new SortingMachine5a<>(order);
+        for (int i = 0; i < events; i++) {
+            queue.add(random.nextInt(MAX_DELAY));
+        }
+        queue.changeToExtractionMode();
+        return queue;
+    }
+
+    /**
+     * Takes the earliest event from {@code queue} and schedules a new one,
+     * {@code steps} times, with {@code add} in extraction mode, and reports
+     * the time taken.
+     *
+     * @param queue
+     *            the event queue
+     * @param steps
+     *            the number of events taken
+     * @param random
+     *            the source of the delays
+     * @return nanoseconds taken
+     * @updates queue, random
+     */
+    private static long timeStreaming(SortingMachine<Integer> queue,
+            int steps, Random random) {
+        long start = System.nanoTime();
+        int now = Integer.MIN_VALUE;
+        for (int i = 0; i < steps; i++) {
+            int next = queue.removeFirst();
+            //check the order, which also keeps the work from being optimized
+            if (next < now) {
+                throw new AssertionError("Events out of order");
+            }
+            now = next;
+            queue.add(now + random.nextInt(MAX_DELAY));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Takes the earliest event from {@code queue} and schedules a new one,
+     * {@code steps} times, rebuilding the machine for every new event, and
+     * reports the time taken.
+     *
+     * @param queue
+     *            the event queue
+     * @param steps
+     *            the number of events taken
+     * @param random
+     *            the source of the delays
+     * @return nanoseconds taken
+     * @updates queue, random
+     */
+    private static long timeRebuilds(SortingMachine<Integer> queue, int steps,
+            Random random) {
+        long start = System.nanoTime();
+        int now = Integer.MIN_VALUE;
+        for (int i = 0; i < steps; i++) {
+            int next = queue.removeFirst();
+            if (next < now) {
+                throw new AssertionError("Events out of order");
+            }
+            now = next;
+            SortingMachine<Integer> rebuilt = queue.newInstance();
+            while (queue.size() > 0) {
+                rebuilt.add(queue.removeFirst());
+            }
+            rebuilt.add(now + random.nextInt(MAX_DELAY));
+            rebuilt.changeToExtractionMode();
+            queue.transferFrom(rebuilt);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally, the number of events in the queue
+     */
+    public static void main(String[] args) {
+        int events = DEFAULT_EVENTS;
+        if (args.length >= 1) {
+            events = Integer.parseInt(args[0]);
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        Random random = new Random(1);
+        long streaming = timeStreaming(initialQueue(events, random),
+                STREAMING_STEPS, random);
+        long rebuilds = timeRebuilds(initialQueue(events, random),
+                REBUILD_STEPS, random);
+        out.println(events + " events in the queue");
+        out.println("add in extraction mode: "
+                + String.format("%.1f", (double) streaming / STREAMING_STEPS)
+                + " ns/event");
+        out.println("rebuild for each event: "
+                + String.format("%.1f", (double) rebuilds / REBUILD_STEPS)
+                + " ns/event");
+        out.close();
+    }
+
+}
@@ -0,0 +1,423 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} of bounded capacity k that keeps only the k entries
+ * that come first in its order, represented as an array holding, in insertion
+ * mode, a heap with the last of the kept entries at the root and, in
+ * extraction mode, the kept entries in order. It uses the heap code of
+ * {@code SortingMachine5a}. Adding n entries takes O(n log k) time and O(k)
+ * space, so this is the machine to use when only the first k of many entries
+ * are wanted, as for the most frequent words of a text.
+ *
+ * <p>
+ * It differs from {@code SortingMachine} in one respect: when an entry is
+ * added to a machine that already has k entries, the entry that comes last in
+ * the order (the new one, if it ties with the last kept one) is dropped.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_SORTED (
+ *   a: string of T,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i < |a|)
+ *    (r(a[i-1], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method])
+ *  and
+ * $this.heapOrder = [the reverse of $this.machineOrder]  and
+ * 1 <= $this.capacity  and
+ * 0 <= $this.first <= $this.heapSize <= |$this.heap| <= $this.capacity  and
+ * for all i: integer
+ *     where ($this.first <= i  and  i < $this.heapSize)
+ *   ([entry at position i in $this.heap is not null])  and
+ * if $this.insertionMode then
+ *   $this.first = 0  and
+ *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *     [relation computed by $this.heapOrder.compare method])
+ * else
+ *   IS_SORTED($this.heap[$this.first, $this.heapSize),
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[$this.first, $this.heapSize)))
+ * </pre>
+ *
+ * @author Kierra Smith
+ *
+ */
+public class SortingMachine5aTopK<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial length of the heap array, for a machine whose capacity is
+     * larger.
+     */
+    private static final int INITIAL_LENGTH = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Reverse of the order, which puts the last of the kept entries at the
+     * root of the heap.
+     */
+    private Comparator<T> heapOrder;
+
+    /**
+     * Largest number of entries kept.
+     */
+    private int capacity;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Heap, or in extraction mode the sorted entries.
+     */
+    private T[] heap;
+
+    /**
+     * Heap size.
+     */
+    private int heapSize;
+
+    /**
+     * Position in {@code heap} of the next entry to remove, in extraction
+     * mode.
+     */
+    private int first;
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.first <= $this.heapSize <= |$this.heap| <= $this.capacity
+     *  and
+     * if $this.insertionMode then
+     *   $this.first = 0  and
+     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.heapOrder.compare method])
+     * else
+     *   IS_SORTED($this.heap[$this.first, $this.heapSize),
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.first : "Violation of: 0 <= $this.first";
+        assert this.first <= this.heapSize : ""
+                + "Violation of: $this.first <= $this.heapSize";
+        assert this.heapSize <= this.heap.length : ""
+                + "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length <= this.capacity : ""
+                + "Violation of: |$this.heap| <= $this.capacity";
+        if (this.insertionMode) {
+            assert this.first == 0 : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.first = 0";
+            assert SortingMachine5a.isHeap(this.heap, 0, this.heapSize - 1,
+                    this.heapOrder) : ""
+                            + "Violation of: if $this.insertionMode then"
+                            + " SUBTREE_IS_HEAP($this.heap, 0,"
+                            + " $this.heapSize - 1, [relation computed by"
+                            + " $this.heapOrder.compare method])";
+        } else {
+            for (int i = this.first + 1; i < this.heapSize; i++) {
+                assert this.machineOrder.compare(this.heap[i - 1],
+                        this.heap[i]) <= 0 : ""
+                                + "Violation of: if not $this.insertionMode"
+                                + " then IS_SORTED($this.heap[$this.first,"
+                                + " $this.heapSize), [relation computed by"
+                                + " $this.machineOrder.compare method])";
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param k
+     *            the capacity
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])  and
+     * 1 <= k
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.capacity = k  and
+     * $this.heapSize = 0  and  $this.first = 0
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(Comparator<T> order, int k) {
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heapOrder = Collections.reverseOrder(order);
+        this.capacity = k;
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        this.heap = (T[]) new Object[Math.min(k, INITIAL_LENGTH)];
+        this.heapSize = 0;
+        this.first = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order and capacity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param k
+     *            the largest number of entries kept
+     */
+    public SortingMachine5aTopK(Comparator<T> order, int k) {
+        assert k >= 1 : "Violation of: k >= 1";
+        this.createNewRep(order, k);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class, int.class)
+                    .newInstance(this.machineOrder, this.capacity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder, this.capacity);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5aTopK<?> : ""
+                + "Violation of: source is of dynamic type"
+                + " SortingMachine5aTopK<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5aTopK<?>, and the ? must be T or the call would not
+         * have compiled.
+         */
+        SortingMachine5aTopK<T> localSource = (SortingMachine5aTopK<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.heapOrder = localSource.heapOrder;
+        this.capacity = localSource.capacity;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        this.first = localSource.first;
+        localSource.createNewRep(localSource.machineOrder,
+                localSource.capacity);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to the entries of {@code this}, then, if {@code this}
+     * has more than {@link #capacity()} entries, drops the one that comes
+     * last in {@code this.order}.
+     *
+     * @param x
+     *            the entry to be added
+     * @aliases reference x
+     * @updates this.contents
+     * @requires this.insertion_mode
+     * @ensures <pre>
+     * if |#this.contents| < this.capacity then
+     *   this.contents = #this.contents union {x}
+     * else
+     *   this.contents = [#this.contents union {x} with one of its entries
+     *     that comes last in this.order removed]
+     * </pre>
+     */
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.heapSize < this.capacity) {
+            if (this.heapSize == this.heap.length) {
+                //double up to the capacity, so the space stays O(k)
+                this.heap = Arrays.copyOf(this.heap, (int) Math
+                        .min((long) this.capacity, 2L * this.heap.length));
+            }
+            this.heap[this.heapSize] = x;
+            SortingMachine5a.siftUp(this.heap, this.heapSize, this.heapOrder);
+            this.heapSize++;
+        } else if (this.machineOrder.compare(x, this.heap[0]) < 0) {
+            //x comes before the last kept entry, which it replaces
+            this.heap[0] = x;
+            SortingMachine5a.siftDown(this.heap, 0, this.heapSize - 1,
+                    this.heapOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        //heap sort in place: the root is the last entry of those left
+        for (int last = this.heapSize - 1; last > 0; last--) {
+            SortingMachine5a.exchangeEntries(this.heap, 0, last);
+            SortingMachine5a.siftDown(this.heap, 0, last - 1, this.heapOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T result = this.heap[this.first];
+        //drop the reference so the entry can be collected
+        this.heap[this.first] = null;
+        this.first++;
+
+        assert this.conventionHolds();
+        return result;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize - this.first;
+    }
+
+    /**
+     * Reports the largest number of entries {@code this} keeps.
+     *
+     * @return the capacity of {@code this}
+     * @ensures capacity = [the capacity of this]
+     */
+    public final int capacity() {
+        assert this.conventionHolds();
+        return this.capacity;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5aTopKIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5aTopK}.
+     */
+    private final class SortingMachine5aTopKIterator implements Iterator<T> {
+
+        /**
+         * Position in the array of the next entry.
+         */
+        private int current;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5aTopKIterator() {
+            this.current = SortingMachine5aTopK.this.first;
+            assert SortingMachine5aTopK.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.current < SortingMachine5aTopK.this.heapSize;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5aTopK.this.heap[this.current];
+            this.current++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code IntSortingMachine}, with both the heap and
+ * the radix sort.
+ */
+public final class IntSortingMachineTest {
+
+    /**
+     * Radix sort thresholds tested: always, sometimes, and never.
+     */
+    private static final int[] THRESHOLDS = { 0, 100, Integer.MAX_VALUE };
+
+    /**
+     * Numbers of entries tested.
+     */
+    private static final int[] COUNTS = { 0, 1, 2, 7, 99, 100, 1000 };
+
+    /**
+     * Fills a machine with {@code values}, drains it, and checks that it
+     * returns them sorted.
+     *
+     * @param values
+     *            the entries
+     * @param descending
+     *            whether the machine orders entries descending
+     * @param threshold
+     *            the radix sort threshold of the machine
+     */
+    private static void checkSorts(int[] values, boolean descending,
+            int threshold) {
+        IntSortingMachine m = new IntSortingMachine(descending, threshold);
+        for (int x : values) {
+            m.add(x);
+        }
+        assertEquals(values.length, m.size());
+        m.changeToExtractionMode();
+        assertFalse(m.isInInsertionMode());
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+        for (int i = 0; i < expected.length; i++) {
+            int next = expected[i];
+            if (descending) {
+                next = expected[expected.length - 1 - i];
+            }
+            assertEquals(next, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testRandom() {
+        Random random = new Random(1);
+        for (int threshold : THRESHOLDS) {
+            for (int count : COUNTS) {
+                int[] values = new int[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = random.nextInt();
+                }
+                checkSorts(values, false, threshold);
+                checkSorts(values, true, threshold);
+            }
+        }
+    }
+
+    @Test
+    public final void testSmallFrequencies() {
+        //like word counts: small, mostly equal, so most digits are skipped
+        Random random = new Random(2);
+        for (int threshold : THRESHOLDS) {
+            for (int count : COUNTS) {
+                int[] values = new int[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = 1 + random.nextInt(1 + random.nextInt(300));
+                }
+                checkSorts(values, false, threshold);
+                checkSorts(values, true, threshold);
+            }
+        }
+    }
+
+    @Test
+    public final void testExtremes() {
+        int[] values = { 0, Integer.MAX_VALUE, -1, Integer.MIN_VALUE, 1,
+                Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, 0, -256, 255,
+                256, Integer.MIN_VALUE };
+        for (int threshold : THRESHOLDS) {
+            checkSorts(values, false, threshold);
+            checkSorts(values, true, threshold);
+        }
+    }
+
+    @Test
+    public final void testAddInExtractionMode() {
+        final int operations = 3000;
+        for (int threshold : THRESHOLDS) {
+            Random random = new Random(3);
+            IntSortingMachine m = new IntSortingMachine(true, threshold);
+            PriorityQueue<Integer> expected = new PriorityQueue<>(
+                    (x, y) -> Integer.compare(y, x));
+            for (int i = 0; i < COUNTS[COUNTS.length - 1]; i++) {
+                int x = random.nextInt();
+                m.add(x);
+                expected.add(x);
+            }
+            m.changeToExtractionMode();
+            for (int i = 0; i < operations; i++) {
+                if (random.nextInt(3) == 0 && expected.size() > 0) {
+                    assertEquals((int) expected.poll(), m.removeFirst());
+                } else {
+                    int x = random.nextInt();
+                    m.add(x);
+                    expected.add(x);
+                }
+                assertEquals(expected.size(), m.size());
+            }
+        }
+    }
+
+    @Test
+    public final void testClearTransferAndNewInstance() {
+        IntSortingMachine m = new IntSortingMachine(true, 0);
+        m.add(3);
+        m.add(5);
+        m.changeToExtractionMode();
+        m.clear();
+        assertTrue(m.isInInsertionMode());
+        assertEquals(0, m.size());
+
+        m.add(4);
+        m.add(9);
+        IntSortingMachine other = m.newInstance();
+        assertTrue(other.isDescending());
+        other.add(1);
+        other.transferFrom(m);
+        assertEquals(0, m.size());
+        assertTrue(m.isInInsertionMode());
+        other.changeToExtractionMode();
+        assertEquals(9, other.removeFirst());
+        assertEquals(4, other.removeFirst());
+        assertEquals(0, other.size());
+    }
+
+}
@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5a} with a d-ary
+ * heap, 4-ary for the inherited tests.
+ */
+public final class SortingMachine5aDaryTest extends SortingMachineTest {
+
+    /**
+     * Arity used by the inherited tests.
+     */
+    private static final int ARITY = 4;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5a<String>(order, Integer.MAX_VALUE, ARITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    @Test
+    public final void testSortsForEachArity() {
+        final int[] arities = { 2, 3, 4, 8, 16 };
+        final int[] counts = { 0, 1, 2, 7, 8, 9, 65, 300 };
+        Comparator<Integer> order = Integer::compare;
+        Random random = new Random(1);
+        for (int d : arities) {
+            for (int count : counts) {
+                SortingMachine<Integer> m = new SortingMachine5a<>(order,
+                        Integer.MAX_VALUE, d);
+                SortingMachine<Integer> mExpected = new SortingMachine1L<>(
+                        order);
+                for (int i = 0; i < count; i++) {
+                    //a small range, so that many entries are equal
+                    int x = random.nextInt(count + 1);
+                    m.add(x);
+                    mExpected.add(x);
+                }
+                m.changeToExtractionMode();
+                mExpected.changeToExtractionMode();
+                assertEquals(mExpected, m);
+                while (mExpected.size() > 0) {
+                    assertEquals(mExpected.removeFirst(), m.removeFirst());
+                }
+                assertEquals(0, m.size());
+            }
+        }
+    }
+
+    @Test
+    public final void testNewInstanceKeepsArity() {
+        SortingMachine5a<Integer> m = new SortingMachine5a<>(Integer::compare,
+                Integer.MAX_VALUE, 8);
+        SortingMachine<Integer> other = m.newInstance();
+        assertEquals(8, ((SortingMachine5a<Integer>) other).arity());
+        m.add(1);
+        other.transferFrom(m);
+        assertEquals(1, other.size());
+        assertEquals(8, m.arity());
+    }
+
+}
@@ -0,0 +1,311 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5aExternal}, with a
+ * memory budget of 2 entries for the inherited tests, so that most of them
+ * spill runs to disk.
+ */
+public final class SortingMachine5aExternalTest extends SortingMachineTest {
+
+    /**
+     * Memory budget used by the inherited tests.
+     */
+    private static final int SMALL_BUDGET = 2;
+
+    /**
+     * Memory budget used by the large tests.
+     */
+    private static final int BUDGET = 1000;
+
+    /**
+     * Number of entries in the large tests, 10 times the budget.
+     */
+    private static final int LARGE = 10 * BUDGET;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5aExternal<String>(order, SMALL_BUDGET,
+                SortingMachine5aExternal.Serializer.STRING);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /**
+     * Counts the run files in the temporary directory.
+     *
+     * @return the number of run files
+     */
+    private static int runFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("sortingmachine")
+                        && name.endsWith(".run"));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * Checks that {@code m} and {@code mExpected} remove the same entries in
+     * the same order.
+     *
+     * @param <T>
+     *            type of the entries
+     * @param m
+     *            the machine tested
+     * @param mExpected
+     *            the reference machine
+     * @updates m, mExpected
+     * @requires m and mExpected are in extraction mode
+     */
+    private static <T> void assertSameRemovals(SortingMachine<T> m,
+            SortingMachine<T> mExpected) {
+        assertEquals(mExpected.size(), m.size());
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testLargeIntegers() {
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order,
+                BUDGET, SortingMachine5aExternal.Serializer.INTEGER);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(order);
+        Random random = new Random(1);
+        for (int i = 0; i < LARGE; i++) {
+            //a small range, so that many entries are equal
+            int x = random.nextInt(LARGE / 4) - LARGE / 8;
+            m.add(x);
+            mExpected.add(x);
+        }
+        assertEquals(mExpected, m);
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertSameRemovals(m, mExpected);
+    }
+
+    @Test
+    public final void testLargeStrings() {
+        Comparator<String> order = String.CASE_INSENSITIVE_ORDER;
+        SortingMachine<String> m = new SortingMachine5aExternal<>(order,
+                BUDGET, SortingMachine5aExternal.Serializer.STRING);
+        SortingMachine<String> mExpected = new SortingMachine1L<>(order);
+        Random random = new Random(2);
+        for (int i = 0; i < LARGE; i++) {
+            StringBuilder x = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                x.append((char) ('a' + random.nextInt(3)));
+            }
+            m.add(x.toString());
+            mExpected.add(x.toString());
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertSameRemovals(m, mExpected);
+    }
+
+    @Test
+    public final void testLargeLongsSortedAndReversed() {
+        Comparator<Long> order = Long::compare;
+        SortingMachine<Long> m = new SortingMachine5aExternal<>(order, BUDGET,
+                SortingMachine5aExternal.Serializer.LONG);
+        SortingMachine<Long> mExpected = new SortingMachine1L<>(order);
+        for (long i = 0; i < LARGE; i++) {
+            m.add(i << 32);
+            mExpected.add(i << 32);
+            m.add(-i);
+            mExpected.add(-i);
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertEquals(mExpected, m);
+        assertSameRemovals(m, mExpected);
+    }
+
+    @Test
+    public final void testManyRunsAreMerged() {
+        final int budget = 3;
+        final int count = budget
+                * (2 * SortingMachine5aExternal.MAX_MERGE_WAYS + 5);
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order,
+                budget, SortingMachine5aExternal.Serializer.INTEGER);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(order);
+        Random random = new Random(3);
+        int before = runFiles();
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt();
+            m.add(x);
+            mExpected.add(x);
+        }
+        /*
+         * The runs are only merged on the change to extraction mode; the
+         * last entries are still in memory
+         */
+        assertEquals(count / budget - 1, runFiles() - before);
+        assertEquals(mExpected, m);
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertTrue(runFiles()
+                - before <= SortingMachine5aExternal.MAX_MERGE_WAYS);
+        assertEquals(mExpected, m);
+        assertSameRemovals(m, mExpected);
+        //each run file is deleted when it has been read through
+        assertEquals(before, runFiles());
+    }
+
+    @Test
+    public final void testRunsAreMergedInSeveralPasses() {
+        //more runs than two passes of full merges can bring down
+        final int count = SortingMachine5aExternal.MAX_MERGE_WAYS
+                * SortingMachine5aExternal.MAX_MERGE_WAYS + 10;
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order, 1,
+                SortingMachine5aExternal.Serializer.INTEGER);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(order);
+        Random random = new Random(6);
+        int before = runFiles();
+        for (int i = 0; i < count; i++) {
+            //a small range, so that many entries are equal
+            int x = random.nextInt(count / 2);
+            m.add(x);
+            mExpected.add(x);
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertEquals(SortingMachine5aExternal.MAX_MERGE_WAYS,
+                runFiles() - before);
+        assertSameRemovals(m, mExpected);
+        assertEquals(before, runFiles());
+    }
+
+    @Test
+    public final void testFailedMergeKeepsEntries() {
+        final int budget = 2;
+        final int count = budget
+                * (SortingMachine5aExternal.MAX_MERGE_WAYS + 3);
+        /*
+         * The first merge takes 4 runs, of 2 entries each; its last read
+         * comes after 3 of them have been read through
+         */
+        final int failingRead = 4 * budget;
+        final int[] reads = { 0 };
+        SortingMachine5aExternal.Serializer<Integer> failing =
+                new SortingMachine5aExternal.Serializer<Integer>() {
+
+                    @Override
+                    public void write(Integer x, DataOutput out)
+                            throws IOException {
+                        SortingMachine5aExternal.Serializer.INTEGER.write(x,
+                                out);
+                    }
+
+                    @Override
+                    public Integer read(DataInput in) throws IOException {
+                        reads[0]++;
+                        if (reads[0] == failingRead) {
+                            throw new IOException("Injected failure");
+                        }
+                        return SortingMachine5aExternal.Serializer.INTEGER
+                                .read(in);
+                    }
+
+                };
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order,
+                budget, failing);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(order);
+        int before = runFiles();
+        for (int i = 0; i < count; i++) {
+            m.add(count - i);
+            mExpected.add(count - i);
+        }
+        try {
+            m.changeToExtractionMode();
+            fail("changeToExtractionMode did not report the failed read");
+        } catch (UncheckedIOException e) {
+            assertEquals("Injected failure", e.getCause().getMessage());
+        }
+        //no entry is lost, and the partly written run is gone
+        assertTrue(m.isInInsertionMode());
+        assertEquals(count, m.size());
+        assertEquals(mExpected, m);
+        assertEquals(count / budget, runFiles() - before);
+        //the read does not fail again, so the change can be retried
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertSameRemovals(m, mExpected);
+        assertEquals(before, runFiles());
+    }
+
+    @Test
+    public final void testIteratorDuringMerge() {
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order,
+                BUDGET, SortingMachine5aExternal.Serializer.INTEGER);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(order);
+        Random random = new Random(4);
+        for (int i = 0; i < LARGE; i++) {
+            int x = random.nextInt();
+            m.add(x);
+            mExpected.add(x);
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        for (int i = 0; i < LARGE / 2; i++) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+        assertSameRemovals(m, mExpected);
+    }
+
+    @Test
+    public final void testClearAndTransferDeleteRuns() {
+        Comparator<Integer> order = Integer::compare;
+        SortingMachine<Integer> m = new SortingMachine5aExternal<>(order,
+                BUDGET, SortingMachine5aExternal.Serializer.INTEGER);
+        int before = runFiles();
+        for (int i = 0; i < LARGE; i++) {
+            m.add(i);
+        }
+        assertTrue(runFiles() > before);
+        m.clear();
+        assertEquals(before, runFiles());
+        assertEquals(0, m.size());
+
+        for (int i = 0; i < LARGE; i++) {
+            m.add(LARGE - i);
+        }
+        SortingMachine<Integer> other = m.newInstance();
+        other.add(-1);
+        other.transferFrom(m);
+        assertEquals(0, m.size());
+        assertEquals(LARGE, other.size());
+        other.changeToExtractionMode();
+        for (int i = 1; i <= LARGE; i++) {
+            assertEquals(Integer.valueOf(i), other.removeFirst());
+        }
+        assertEquals(before, runFiles());
+        assertEquals(BUDGET,
+                ((SortingMachine5aExternal<Integer>) m).maxInMemory());
+    }
+
+}
@@ -1,10 +1,20 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
 
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachine1L;
 
 /**
- * Customized JUnit test fixture for {@code SortingMachine5a}.
+ * Customized JUnit test fixture for {@code SortingMachine5a}, including
+ * {@code add} in extraction mode and the merge of presorted input.
  */
 public final class SortingMachine5aTest extends SortingMachineTest {
 
@@ -18,4 +28,164 @@ public final class SortingMachine5aTest extends SortingMachineTest {
         return new SortingMachine1L<String>(order);
     }
 
+    /**
+     * Interleaves random {@code add}s and {@code removeFirst}s on a machine in
+     * extraction mode with the given threshold, and checks each entry removed
+     * against a {@code PriorityQueue}.
+     *
+     * @param parallelSortThreshold
+     *            the threshold of the machine
+     * @param seed
+     *            the random seed
+     */
+    private static void checkInterleaved(int parallelSortThreshold,
+            long seed) {
+        final int initial = 200;
+        final int operations = 5000;
+        final int range = 1000;
+        Random random = new Random(seed);
+        SortingMachine<Integer> m = new SortingMachine5a<>(Integer::compare,
+                parallelSortThreshold);
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        for (int i = 0; i < initial; i++) {
+            int x = random.nextInt(range);
+            m.add(x);
+            expected.add(x);
+        }
+        m.changeToExtractionMode();
+        for (int i = 0; i < operations; i++) {
+            if (random.nextInt(3) == 0 && expected.size() > 0) {
+                assertEquals(expected.poll(), m.removeFirst());
+            } else {
+                int x = random.nextInt(range);
+                m.add(x);
+                expected.add(x);
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        while (expected.size() > 0) {
+            assertEquals(expected.poll(), m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testAddInExtractionModeHeap() {
+        checkInterleaved(Integer.MAX_VALUE, 1);
+    }
+
+    @Test
+    public final void testAddInExtractionModeSorted() {
+        checkInterleaved(0, 2);
+    }
+
+    @Test
+    public final void testAddInExtractionModeEmpty() {
+        Comparator<String> order = String.CASE_INSENSITIVE_ORDER;
+        SortingMachine<String> m = this.constructorTest(order);
+        m.changeToExtractionMode();
+        m.add("green");
+        m.add("blue");
+        SortingMachine<String> mExpected = this.constructorRef(order);
+        mExpected.add("green");
+        mExpected.add("blue");
+        mExpected.changeToExtractionMode();
+        assertEquals(mExpected, m);
+        assertEquals("blue", m.removeFirst());
+        assertEquals("green", m.removeFirst());
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testAddInOrderAfterSortKeepsSorted() {
+        final int count = 100;
+        SortingMachine<Integer> m = new SortingMachine5a<>(Integer::compare,
+                0);
+        m.add(0);
+        m.changeToExtractionMode();
+        /*
+         * Scheduling events no earlier than the one just taken, with the
+         * removed entries taking more and more of the array
+         */
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), m.removeFirst());
+            m.add(2 * i + 1);
+            m.add(2 * i + 2);
+        }
+        assertEquals(count + 1, m.size());
+        for (int i = count; i <= 2 * count; i++) {
+            assertEquals(Integer.valueOf(i), m.removeFirst());
+        }
+    }
+
+    /**
+     * Fills a machine that never sorts in parallel with {@code values},
+     * changes it to extraction mode, and reports whether it then iterates
+     * over them in order, which it does when it has merged them rather than
+     * built a heap; then checks that it removes them in order.
+     *
+     * @param values
+     *            the entries
+     * @return true iff the machine iterates over the entries in order
+     */
+    private static boolean merges(Integer[] values) {
+        SortingMachine<Integer> m = new SortingMachine5a<>(Integer::compare,
+                Integer.MAX_VALUE);
+        for (Integer x : values) {
+            m.add(x);
+        }
+        m.changeToExtractionMode();
+        Integer[] expected = values.clone();
+        Arrays.sort(expected);
+        boolean inOrder = true;
+        int i = 0;
+        for (Integer x : m) {
+            inOrder = inOrder && x.equals(expected[i]);
+            i++;
+        }
+        for (Integer x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+        return inOrder;
+    }
+
+    @Test
+    public final void testReversedInputIsMerged() {
+        final int count = 1000;
+        Integer[] values = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = count - i;
+        }
+        assertTrue(merges(values));
+    }
+
+    @Test
+    public final void testFewRunsAreMerged() {
+        //8 runs, ascending and descending by turns, with equal entries
+        final int runs = 8;
+        final int runLength = 125;
+        Integer[] values = new Integer[runs * runLength];
+        for (int r = 0; r < runs; r++) {
+            for (int i = 0; i < runLength; i++) {
+                int x = i / 2;
+                if (r % 2 == 1) {
+                    x = runLength - i;
+                }
+                values[r * runLength + i] = x + r;
+            }
+        }
+        assertTrue(merges(values));
+    }
+
+    @Test
+    public final void testRandomInputGetsHeap() {
+        final int count = 1000;
+        Random random = new Random(5);
+        Integer[] values = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt();
+        }
+        assertFalse(merges(values));
+    }
+
 }
@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5aTopK}. The
+ * inherited tests use a capacity larger than any of them needs, so the
+ * machine must behave as an unbounded one; the tests here fill it past its
+ * capacity.
+ */
+public final class SortingMachine5aTopKTest extends SortingMachineTest {
+
+    /**
+     * Capacity used by the inherited tests.
+     */
+    private static final int LARGE_CAPACITY = 1000;
+
+    /**
+     * Order used by the tests here.
+     */
+    private static final Comparator<Integer> INTEGER_ORDER = Integer::compare;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5aTopK<String>(order, LARGE_CAPACITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    @Test
+    public final void testKeepsFirstK() {
+        final int k = 10;
+        final int count = 10_000;
+        SortingMachine<Integer> m = new SortingMachine5aTopK<>(INTEGER_ORDER,
+                k);
+        SortingMachine<Integer> mExpected = new SortingMachine1L<>(
+                INTEGER_ORDER);
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(count);
+            m.add(x);
+            mExpected.add(x);
+            assertEquals(Math.min(i + 1, k), m.size());
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        for (int i = 0; i < k; i++) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testCapacityOne() {
+        SortingMachine<Integer> m = new SortingMachine5aTopK<>(INTEGER_ORDER,
+                1);
+        m.add(5);
+        m.add(3);
+        m.add(8);
+        assertEquals(1, m.size());
+        m.changeToExtractionMode();
+        assertEquals(Integer.valueOf(3), m.removeFirst());
+    }
+
+    @Test
+    public final void testTiesKeepEarlier() {
+        SortingMachine<String> m = new SortingMachine5aTopK<>(
+                Comparator.comparingInt(String::length), 2);
+        m.add("aa");
+        m.add("b");
+        //ties with the last kept entry, "aa", which stays
+        m.add("cc");
+        m.changeToExtractionMode();
+        assertEquals("b", m.removeFirst());
+        assertEquals("aa", m.removeFirst());
+    }
+
+    @Test
+    public final void testIteratorInExtractionMode() {
+        SortingMachine<Integer> m = new SortingMachine5aTopK<>(INTEGER_ORDER,
+                3);
+        for (int x : new int[] { 9, 4, 7, 1, 8 }) {
+            m.add(x);
+        }
+        m.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), m.removeFirst());
+        StringBuilder seen = new StringBuilder();
+        for (Integer x : m) {
+            seen.append(x).append(' ');
+        }
+        assertEquals("4 7 ", seen.toString());
+    }
+
+    @Test
+    public final void testNewInstanceAndTransferKeepCapacity() {
+        SortingMachine5aTopK<Integer> m = new SortingMachine5aTopK<>(
+                INTEGER_ORDER, 2);
+        m.add(1);
+        SortingMachine<Integer> other = m.newInstance();
+        other.transferFrom(m);
+        assertEquals(2, m.capacity());
+        assertEquals(0, m.size());
+        other.add(3);
+        other.add(2);
+        assertEquals(2, other.size());
+        other.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), other.removeFirst());
+        assertEquals(Integer.valueOf(2), other.removeFirst());
+    }
+
+}
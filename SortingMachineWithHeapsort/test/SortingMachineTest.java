@@ -1,6 +1,9 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Comparator;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -185,6 +188,66 @@ public abstract class SortingMachineTest {
         assertEquals(mExpected, m);
     }
 
+    @Test
+    public final void testRemoveFirstAllInOrder() {
+        final int count = 500;
+        final int distinct = 50;
+        SortingMachine<String> m = this.constructorTest(ORDER);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            //few distinct entries, so that many are equal
+            String s = "entry" + random.nextInt(distinct);
+            m.add(s);
+            mExpected.add(s);
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testRemoveFirstSortedAndReversed() {
+        final int count = 100;
+        SortingMachine<String> ascending = this.constructorTest(ORDER);
+        SortingMachine<String> descending = this.constructorTest(ORDER);
+        for (int i = 0; i < count; i++) {
+            ascending.add(String.format("%03d", i));
+            descending.add(String.format("%03d", count - 1 - i));
+        }
+        ascending.changeToExtractionMode();
+        descending.changeToExtractionMode();
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.format("%03d", i), ascending.removeFirst());
+            assertEquals(String.format("%03d", i), descending.removeFirst());
+        }
+    }
+
+    @Test
+    public final void testClearAndReuse() {
+        SortingMachine<String> m = this.createFromArgsTest(ORDER, false, "d",
+                "b", "a", "c");
+        m.removeFirst();
+        m.clear();
+        SortingMachine<String> mExpected = this.createFromArgsRef(ORDER, true);
+        assertEquals(mExpected, m);
+        final int count = 100;
+        for (int i = count - 1; i >= 0; i--) {
+            m.add(String.format("%03d", i));
+        }
+        m.changeToExtractionMode();
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.format("%03d", i), m.removeFirst());
+        }
+        m.clear();
+        m.add("e");
+        mExpected.add("e");
+        assertEquals(mExpected, m);
+    }
+
     @Test
     public final void testIsInInsertionModeTrue1() {
         SortingMachine<String> m = this.createFromArgsTest(ORDER, true, "one",
@@ -193,7 +256,7 @@ public abstract class SortingMachineTest {
                 "one", "two");
         boolean checkM = m.isInInsertionMode();
         assertEquals(mExpected, m);
-        assertEquals(checkM, true);
+        assertTrue(checkM);
     }
 
     public final void testIsInInsertionModeTrue2() {
@@ -201,7 +264,7 @@ public abstract class SortingMachineTest {
         SortingMachine<String> mExpected = this.createFromArgsRef(ORDER, true);
         boolean checkM = m.isInInsertionMode();
         assertEquals(mExpected, m);
-        assertEquals(checkM, true);
+        assertTrue(checkM);
     }
 
     @Test
@@ -212,7 +275,7 @@ public abstract class SortingMachineTest {
                 "one", "two");
         boolean checkM = m.isInInsertionMode();
         assertEquals(mExpected, m);
-        assertEquals(checkM, m);
+        assertFalse(checkM);
     }
 
     @Test
@@ -221,7 +284,7 @@ public abstract class SortingMachineTest {
         SortingMachine<String> mExpected = this.createFromArgsRef(ORDER, false);
         boolean checkM = m.isInInsertionMode();
         assertEquals(mExpected, m);
-        assertEquals(checkM, false);
+        assertFalse(checkM);
     }
 
     @Test
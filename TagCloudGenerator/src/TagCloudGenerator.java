@@ -1,7 +1,6 @@
 import java.util.Comparator;
 
 import components.map.Map;
-import components.map.Map1L;
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -16,6 +15,11 @@ import components.sortingmachine.SortingMachine1L;
  * in alphabetical order from a given input file for the most frequent words in
  * a file.
  *
+ * <p>
+ * Words are counted in a {@code Map4Counter} and the most frequent are kept
+ * by a {@code SortingMachine5aTopK}, so this program is compiled with
+ * MapWithHashing/src and SortingMachineWithHeapsort/src on its source path.
+ *
  * @author Katie Beatty, Kierra Smith, and Maggie Tiernan
  *
  *
@@ -29,13 +33,29 @@ public final class TagCloudGenerator {
     }
 
     /**
-     * Comparator to sort by frequency in descending order.
+     * Comparator to sort the entries of a counter by frequency in descending
+     * order.
      */
-    private static class ByFrequency implements Comparator<Map.Pair<String, Integer>> {
+    private static class ByFrequency implements Comparator<Integer> {
+        /**
+         * The counter whose entries are compared.
+         */
+        private final Map4Counter counts;
+
+        /**
+         * Constructor from counter.
+         *
+         * @param counts
+         *            the counter whose entries are compared
+         */
+        ByFrequency(Map4Counter counts) {
+            this.counts = counts;
+        }
+
         @Override
-        public int compare(Map.Pair<String, Integer> p1, Map.Pair<String, Integer> p2) {
+        public int compare(Integer e1, Integer e2) {
             //Descending order
-            return Integer.compare(p2.value(), p1.value());
+            return Integer.compare(this.counts.countAt(e2), this.counts.countAt(e1));
         }
     }
 
@@ -58,10 +78,10 @@ public final class TagCloudGenerator {
      * @param separators
      *            the set of separator characters
      * @param wordCounts
-     *            the map to store word counts
+     *            the counter to store word counts
      */
     public static void processInputFile(SimpleReader in, Set<Character> separators,
-            Map<String, Integer> wordCounts) {
+            Map4Counter wordCounts) {
         while (!in.atEOS()) {
             String line = in.nextLine().toLowerCase();
             int position = 0;
@@ -69,12 +89,7 @@ public final class TagCloudGenerator {
             while (position < line.length()) {
                 String token = nextWordOrSeparator(line, position, separators);
                 if (!separators.contains(token.charAt(0))) {
-                    if (wordCounts.hasKey(token)) {
-                        int count = wordCounts.value(token);
-                        wordCounts.replaceValue(token, count + 1);
-                    } else {
-                        wordCounts.add(token, 1);
-                    }
+                    wordCounts.increment(token);
                 }
                 position += token.length();
             }
@@ -185,8 +200,8 @@ public final class TagCloudGenerator {
         SimpleReader fileReader = new SimpleReader1L(inputFile);
         SimpleWriter htmlOut = new SimpleWriter1L(outputFile);
 
-        //Initialize the map for word counts and the set of separators
-        Map<String, Integer> wordCounts = new Map1L<>();
+        //Initialize the counter for word counts and the set of separators
+        Map4Counter wordCounts = new Map4Counter();
         Set<Character> separators = new Set1L<>();
 
         // Define separators
@@ -198,22 +213,21 @@ public final class TagCloudGenerator {
         // Process input file
         processInputFile(fileReader, separators, wordCounts);
 
-        // Sort words by frequency
-        SortingMachine<Map.Pair<String, Integer>> byFrequency = new SortingMachine1L<>(
-                new ByFrequency());
-        for (Map.Pair<String, Integer> pair : wordCounts) {
-            byFrequency.add(pair);
+        // Keep only the top N words by frequency, never holding more than N
+        SortingMachine<Integer> byFrequency = new SortingMachine5aTopK<>(
+                new ByFrequency(wordCounts), Math.max(1, n));
+        for (int entry = 0; entry < wordCounts.size(); entry++) {
+            byFrequency.add(entry);
         }
         byFrequency.changeToExtractionMode();
 
-        // Extract top N word tracking
+        // Sort the top N words alphabetically
         SortingMachine<Map.Pair<String, Integer>> sortedWords = new SortingMachine1L<>(
                 new ByAlphabet());
-        int count = 0;
-        while (count < n && byFrequency.size() > 0) {
-            Map.Pair<String, Integer> pair = byFrequency.removeFirst();
-            sortedWords.add(pair);
-            count++;
+        while (sortedWords.size() < n && byFrequency.size() > 0) {
+            int entry = byFrequency.removeFirst();
+            sortedWords.add(new MapPair<>(wordCounts.word(entry),
+                    wordCounts.countAt(entry)));
         }
         sortedWords.changeToExtractionMode();
 
@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -32,13 +33,47 @@ public final class TagCloudGenerator {
     }
 
     /**
-     * Comparator to sort by frequency in descending order.
+     * Word count entry with its position in the iteration order of the word
+     * counts, so that words of equal frequency keep that order.
      */
-    private static class ByFrequency implements Comparator<Map.Entry<String, Integer>> {
+    private static final class RankedEntry {
+
+        /**
+         * The word count entry.
+         */
+        private final Map.Entry<String, Integer> entry;
+
+        /**
+         * Position of the entry in the iteration order.
+         */
+        private final int position;
+
+        /**
+         * Constructor from entry and position.
+         *
+         * @param entry
+         *            the word count entry
+         * @param position
+         *            its position in the iteration order
+         */
+        RankedEntry(Map.Entry<String, Integer> entry, int position) {
+            this.entry = entry;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Comparator to sort by frequency in descending order, then by position.
+     */
+    private static class ByRank implements Comparator<RankedEntry> {
         @Override
-        public int compare(Map.Entry<String, Integer> p1, Map.Entry<String, Integer> p2) {
-            //Descending order
-            return Integer.compare(p2.getValue(), p1.getValue());
+        public int compare(RankedEntry r1, RankedEntry r2) {
+            //Descending frequency, then ascending position
+            int result = Integer.compare(r2.entry.getValue(), r1.entry.getValue());
+            if (result == 0) {
+                result = Integer.compare(r1.position, r2.position);
+            }
+            return result;
         }
     }
 
@@ -202,15 +237,27 @@ public final class TagCloudGenerator {
             // Process input file
             processInputFile(inputFile, separators, wordCounts);
 
-            // Sort words by frequency
-            List<Map.Entry<String, Integer>> byFrequency = new ArrayList<>(
-                    wordCounts.entrySet());
-            Collections.sort(byFrequency, new ByFrequency());
+            // Keep the top N words in a heap whose root is the last of them,
+            // so only N entries are held instead of sorting them all
+            Comparator<RankedEntry> byRank = new ByRank();
+            PriorityQueue<RankedEntry> topWords = new PriorityQueue<>(Math.max(1, n),
+                    byRank.reversed());
+            int position = 0;
+            for (Map.Entry<String, Integer> entry : wordCounts.entrySet()) {
+                RankedEntry ranked = new RankedEntry(entry, position);
+                position++;
+                if (topWords.size() < n) {
+                    topWords.add(ranked);
+                } else if (n > 0 && byRank.compare(ranked, topWords.peek()) < 0) {
+                    topWords.poll();
+                    topWords.add(ranked);
+                }
+            }
 
-            // Extract top N words and sort them alphabetically
+            // Sort the top N words alphabetically
             List<Map.Entry<String, Integer>> sortedWords = new ArrayList<>();
-            for (int i = 0; i < Math.min(n, byFrequency.size()); i++) {
-                sortedWords.add(byFrequency.get(i));
+            for (RankedEntry ranked : topWords) {
+                sortedWords.add(ranked.entry);
             }
             Collections.sort(sortedWords, new ByAlphabet());
 
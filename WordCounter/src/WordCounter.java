@@ -1,7 +1,5 @@
 import java.util.Comparator;
 
-import components.map.Map;
-import components.map.Map1L;
 import components.queue.Queue;
 import components.queue.Queue1L;
 import components.set.Set;
@@ -14,6 +12,10 @@ import components.simplewriter.SimpleWriter1L;
 /**
  * Simple HelloWorld program (clear of Checkstyle and SpotBugs warnings).
  *
+ * <p>
+ * Words are counted in a {@code Map4Counter}, so this program is compiled
+ * with MapWithHashing/src on its source path.
+ *
  * @author Kierra Smith
  */
 public final class WordCounter {
@@ -95,17 +97,17 @@ public final class WordCounter {
      * Makes a queue of keys and sorts the keys alphabetically.
      *
      * @param wordAndCount
-     *            map used to store word paired with respective definition
+     *            counter used to store each word with its count
      * @return keys are sorted alphabetically
      */
 
-    private static Queue<String> sort(Map<String, Integer> wordAndCount) {
+    private static Queue<String> sort(Map4Counter wordAndCount) {
         //create new Queue
         Queue<String> order = new Queue1L<>();
         Comparator<String> aToZ = new StringLT();
-        //for each wordPair in wordAndCount add the key to order
-        for (Map.Pair<String, Integer> wordPair : wordAndCount) {
-            order.enqueue(wordPair.key());
+        //for each word counted in wordAndCount add it to order
+        for (int i = 0; i < wordAndCount.size(); i++) {
+            order.enqueue(wordAndCount.word(i));
         }
         //sort the order Queue
         order.sort(aToZ);
@@ -140,7 +142,7 @@ public final class WordCounter {
      * @param keys
      *            queue that stores the words in wordsAndCount alphabetically
      * @param wordAndCount
-     *            map used to store word paired with respective definition
+     *            counter used to store each word with its count
      * @param fileName
      *            file name input by user
      * @param html
@@ -148,13 +150,13 @@ public final class WordCounter {
      * @ensures that each term has an html file
      */
     private static void printOrderedList(Queue<String> keys, String fileName,
-            Map<String, Integer> wordAndCount, SimpleWriter html) {
+            Map4Counter wordAndCount, SimpleWriter html) {
         //while loop print each word in alphabetical order into a table
         while (keys.length() > 0) {
             String word = keys.dequeue();
             html.println("<tr>");
             html.println("<td>" + word + "</td>");
-            html.println("<td>" + wordAndCount.value(word) + "</td>");
+            html.println("<td>" + wordAndCount.count(word) + "</td>");
             html.println("</tr>");
         }
     }
@@ -201,8 +203,8 @@ public final class WordCounter {
         SimpleWriter html = new SimpleWriter1L(fileName);
         //create your Queue of keys
         Queue<String> keys = new Queue1L<>();
-        //create your Map to store the word and its count
-        Map<String, Integer> wordAndCount = new Map1L<>();
+        //create your counter to store the word and its count, unboxed
+        Map4Counter wordAndCount = new Map4Counter();
         //make a set for characters are not being counted
         Set<Character> charSet = new Set1L<Character>();
         generateElements(" \t, .-", charSet);
@@ -218,13 +220,8 @@ public final class WordCounter {
                 String word = nextWordOrSeparator(line, position, charSet);
                 position += word.length();
                 if (!charSet.contains((word.charAt(0)))) {
-                    //update count value each time word appears
-                    if (wordAndCount.hasKey(word)) {
-                        int count = wordAndCount.value(word);
-                        wordAndCount.replaceValue(word, count + 1);
-                    } else {
-                        wordAndCount.add(word, 1);
-                    }
+                    //update count value each time word appears, hashing once
+                    wordAndCount.increment(word);
                 }
             }
         }